@@ -0,0 +1,345 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient;
+
+import net.rcarz.utils.BoundedExecutor;
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Creates many issues through the bulk create resource.
+ *
+ * Issues are gathered as {@link Issue.FluentCreate} builders, serialised
+ * into batches of up to 50 and posted to issue/bulk with a bounded number
+ * of batches in flight. Create metadata is fetched and compiled into a
+ * {@link FieldSerializer} once per project and issue type. Every input
+ * gets a {@link Result} in the order it was added.
+ */
+public class BulkCreate {
+
+    public static final int MAX_BATCH_SIZE = 50;
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    /**
+     * Outcome of creating one issue.
+     */
+    public static final class Result {
+        private final int index;
+        private final String id;
+        private final String key;
+        private final String error;
+        private final Map<String, String> fieldErrors;
+
+        Result(int index, String id, String key, String error, Map<String, String> fieldErrors) {
+            this.index = index;
+            this.id = id;
+            this.key = key;
+            this.error = error;
+            this.fieldErrors = fieldErrors;
+        }
+
+        @Override
+        public String toString() {
+            return index + ": " + (isSuccess() ? key : error);
+        }
+
+        /**
+         * @return true if the issue was created
+         */
+        public boolean isSuccess() {
+            return key != null;
+        }
+
+        /**
+         * @return position of the input, in the order it was added
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return why the issue wasn't created, null on success
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * @return field name to error message, empty if none were reported
+         */
+        public Map<String, String> getFieldErrors() {
+            return fieldErrors;
+        }
+    }
+
+    private RestClient restclient = null;
+    private Map<String, FieldSerializer> serializers = new HashMap<String, FieldSerializer>();
+    private List<Issue.FluentCreate> inputs = new ArrayList<Issue.FluentCreate>();
+    private int batchSize = MAX_BATCH_SIZE;
+    private int concurrency = DEFAULT_CONCURRENCY;
+
+    /**
+     * Creates an empty bulk create.
+     *
+     * @param restclient REST client instance
+     */
+    public BulkCreate(RestClient restclient) {
+        this.restclient = restclient;
+    }
+
+    /**
+     * Adds an issue to create. The create metadata of the project and issue
+     * type is retrieved on first use and shared by later issues.
+     *
+     * @param project Key of the project to create in
+     * @param issueType Name of the issue type to create
+     *
+     * @return a fluent create instance to set the fields on; don't call
+     *         execute() on it
+     *
+     * @throws JiraException when the metadata cannot be retrieved
+     */
+    public Issue.FluentCreate add(String project, String issueType) throws JiraException {
+        String cacheKey = project + "\n" + issueType;
+        FieldSerializer serializer = serializers.get(cacheKey);
+
+        if (serializer == null) {
+            serializer = FieldSerializer.compile(Issue.getCreateMetadata(restclient, project, issueType));
+            serializers.put(cacheKey, serializer);
+        }
+
+        Issue.FluentCreate fc = Issue.create(restclient, project, issueType, serializer);
+        inputs.add(fc);
+        return fc;
+    }
+
+    /**
+     * Adds an existing create builder.
+     *
+     * @param fc Fluent create instance
+     *
+     * @return this bulk create
+     */
+    public BulkCreate add(Issue.FluentCreate fc) {
+        inputs.add(fc);
+        return this;
+    }
+
+    private static String describe(JSONObject elementErrors, Map<String, String> fieldErrors) {
+        List<String> messages = new ArrayList<String>();
+
+        if (elementErrors.get("errorMessages") instanceof JSONArray) {
+            for (Object msg : (JSONArray)elementErrors.get("errorMessages"))
+                messages.add(msg.toString());
+        }
+
+        if (elementErrors.get("errors") instanceof JSONObject) {
+            JSONObject errors = (JSONObject)elementErrors.get("errors");
+
+            for (Object k : errors.keySet()) {
+                fieldErrors.put((String)k, Field.getString(errors.get(k)));
+                messages.add(k + ": " + errors.get(k));
+            }
+        }
+
+        return messages.isEmpty() ? "Issue was rejected" : messages.toString();
+    }
+
+    /**
+     * Maps a bulk create response back to the inputs of the batch.
+     */
+    private static void collect(JSONObject response, int[] indexes, Result[] results) {
+        boolean[] failed = new boolean[indexes.length];
+
+        if (response.get("errors") instanceof JSONArray) {
+            for (Object o : (JSONArray)response.get("errors")) {
+                JSONObject err = (JSONObject)o;
+
+                if (!err.containsKey("failedElementNumber"))
+                    continue;
+
+                int element = Field.getInteger(err.get("failedElementNumber"));
+
+                if (element < 0 || element >= indexes.length)
+                    continue;
+
+                JSONObject elementErrors = err.get("elementErrors") instanceof JSONObject ?
+                    (JSONObject)err.get("elementErrors") : new JSONObject();
+                Map<String, String> fieldErrors = new LinkedHashMap<String, String>();
+                String msg = describe(elementErrors, fieldErrors);
+
+                failed[element] = true;
+                results[indexes[element]] = new Result(indexes[element], null, null, msg,
+                    Collections.unmodifiableMap(fieldErrors));
+            }
+        }
+
+        /* created issues are listed in request order, skipping failed elements */
+        JSONArray created = response.get("issues") instanceof JSONArray ?
+            (JSONArray)response.get("issues") : new JSONArray();
+        int next = 0;
+
+        for (int i = 0; i < indexes.length; i++) {
+            if (failed[i])
+                continue;
+
+            if (next < created.size()) {
+                JSONObject issue = created.getJSONObject(next++);
+                results[indexes[i]] = new Result(indexes[i], Field.getString(issue.get("id")),
+                    Field.getString(issue.get("key")), null, Collections.<String, String>emptyMap());
+            } else {
+                results[indexes[i]] = new Result(indexes[i], null, null,
+                    "Issue missing from bulk create response", Collections.<String, String>emptyMap());
+            }
+        }
+    }
+
+    private void post(List<JSONObject> updates, int[] indexes, Result[] results) {
+        JSONObject req = new JSONObject();
+        req.put("issueUpdates", updates);
+
+        JSON response = null;
+        String failure = null;
+
+        try {
+            response = restclient.post(Resource.getBaseUri() + "issue/bulk", req);
+        } catch (RestException ex) {
+            /* the server answers 400 with per-element errors when every element failed */
+            try {
+                response = JSONObject.fromObject(ex.getHttpResult());
+            } catch (JSONException jex) {
+                failure = "Failed to create issues in bulk: " + ex.getMessage();
+            }
+        } catch (Exception ex) {
+            failure = "Failed to create issues in bulk: " + ex.getMessage();
+        }
+
+        if (failure == null && !(response instanceof JSONObject))
+            failure = "JSON payload is malformed";
+
+        if (failure == null) {
+            collect((JSONObject)response, indexes, results);
+            return;
+        }
+
+        for (int idx : indexes)
+            results[idx] = new Result(idx, null, null, failure, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Creates all added issues.
+     *
+     * @return one result per input, in the order the inputs were added
+     *
+     * @throws JiraException when the caller is interrupted
+     */
+    public List<Result> execute() throws JiraException {
+        final Result[] results = new Result[inputs.size()];
+        List<JSONObject> updates = new ArrayList<JSONObject>();
+        List<Integer> indexes = new ArrayList<Integer>();
+        List<Callable<Void>> batches = new ArrayList<Callable<Void>>();
+
+        for (int i = 0; i < inputs.size(); i++) {
+            try {
+                updates.add(inputs.get(i).toRequest());
+                indexes.add(i);
+            } catch (Exception ex) {
+                results[i] = new Result(i, null, null, ex.getMessage(), Collections.<String, String>emptyMap());
+            }
+
+            if (updates.size() == batchSize || (i == inputs.size() - 1 && !updates.isEmpty())) {
+                final List<JSONObject> batch = updates;
+                final int[] batchIndexes = new int[indexes.size()];
+
+                for (int j = 0; j < batchIndexes.length; j++)
+                    batchIndexes[j] = indexes.get(j);
+
+                batches.add(new Callable<Void>() {
+                    public Void call() {
+                        post(batch, batchIndexes, results);
+                        return null;
+                    }
+                });
+
+                updates = new ArrayList<JSONObject>();
+                indexes = new ArrayList<Integer>();
+            }
+        }
+
+        try {
+            BoundedExecutor.invokeAll(batches, concurrency);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Interrupted while creating issues in bulk", ex);
+        } catch (ExecutionException ex) {
+            throw new JiraException("Failed to create issues in bulk", ex.getCause());
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * @return the number of issues added
+     */
+    public int size() {
+        return inputs.size();
+    }
+
+    /**
+     * Sets the number of issues per request.
+     *
+     * @param batchSize Between 1 and {@link #MAX_BATCH_SIZE}
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE)
+            throw new IllegalArgumentException("Batch size must be between 1 and " + MAX_BATCH_SIZE);
+
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the maximum number of requests in flight.
+     *
+     * @param concurrency Number of concurrent requests
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+}
@@ -0,0 +1,492 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient;
+
+import net.rcarz.utils.BoundedExecutor;
+import net.sf.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies the same edit and/or transition to many issues concurrently.
+ *
+ * The issues are given as a JQL query or a list of keys and are resolved
+ * up front, so an edit that takes issues out of the query doesn't disturb
+ * paging. Edit metadata is fetched once per project and issue type, and
+ * transitions once per project, issue type and status. The edit and the
+ * transition each retry a transient error (connection trouble, 429 or
+ * 5xx) on their own with exponential back-off, so an edit that went
+ * through is never repeated. The {@link Report} lists every issue.
+ */
+public class BulkEdit {
+
+    public static final int DEFAULT_CONCURRENCY = 4;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final long DEFAULT_RETRY_DELAY = 1000;
+
+    private static final int KEYS_PER_SEARCH = 100;
+    private static final String SEARCH_FIELDS =
+        Field.PROJECT + "," + Field.ISSUE_TYPE + "," + Field.STATUS;
+
+    /**
+     * Outcome of a bulk edit.
+     */
+    public static final class Report {
+        private final List<String> succeeded = new ArrayList<String>();
+        private final Map<String, JiraException> failed = new LinkedHashMap<String, JiraException>();
+        private int retries = 0;
+
+        @Override
+        public String toString() {
+            return succeeded.size() + " succeeded, " + failed.size() + " failed, " + retries + " retries";
+        }
+
+        /**
+         * @return true if every issue was edited
+         */
+        public boolean isSuccess() {
+            return failed.isEmpty();
+        }
+
+        /**
+         * @return keys of the issues edited
+         */
+        public List<String> getSucceeded() {
+            return succeeded;
+        }
+
+        /**
+         * @return keys of the issues that couldn't be edited, with the error
+         */
+        public Map<String, JiraException> getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return the number of retried operations
+         */
+        public int getRetries() {
+            return retries;
+        }
+    }
+
+    private RestClient restclient = null;
+    private String jql = null;
+    private List<String> keys = null;
+    private Map<String, Object> fields = new HashMap<String, Object>();
+    private Map<String, List> fieldOpers = new HashMap<String, List>();
+    private String transition = null;
+    private Integer transitionId = null;
+    private Map<String, Object> transitionFields = new HashMap<String, Object>();
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private boolean notifyUsers = true;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+    private ConcurrentMap<String, FutureTask<Object>> metadata =
+        new ConcurrentHashMap<String, FutureTask<Object>>();
+    private TransitionResolver resolver = null;
+
+    /**
+     * Creates an empty bulk edit.
+     *
+     * @param restclient REST client instance
+     */
+    public BulkEdit(RestClient restclient) {
+        this(restclient, new TransitionResolver(restclient));
+    }
+
+    /**
+     * Creates an empty bulk edit sharing a transition resolver.
+     *
+     * @param restclient REST client instance
+     * @param resolver Resolver caching transitions by workflow state
+     */
+    public BulkEdit(RestClient restclient, TransitionResolver resolver) {
+        this.restclient = restclient;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Selects the issues matching a query.
+     *
+     * @param jql JQL query
+     *
+     * @return this bulk edit
+     */
+    public BulkEdit issues(String jql) {
+        this.jql = jql;
+        this.keys = null;
+        return this;
+    }
+
+    /**
+     * Selects issues by key.
+     *
+     * @param keys Issue keys
+     *
+     * @return this bulk edit
+     */
+    public BulkEdit issues(Collection<String> keys) {
+        this.keys = new ArrayList<String>(new LinkedHashSet<String>(keys));
+        this.jql = null;
+        return this;
+    }
+
+    /**
+     * Sets a field on every issue.
+     *
+     * @param name Name of the field
+     * @param value New field value
+     *
+     * @return this bulk edit
+     */
+    public BulkEdit field(String name, Object value) {
+        fields.put(name, value);
+        return this;
+    }
+
+    private BulkEdit fieldOperation(String oper, String name, Object value) {
+        if (!fieldOpers.containsKey(name))
+            fieldOpers.put(name, new ArrayList());
+
+        fieldOpers.get(name).add(new Field.Operation(oper, value));
+        return this;
+    }
+
+    /**
+     * Adds a value to a field of every issue.
+     *
+     * @param name Name of the field
+     * @param value Field value to append
+     *
+     * @return this bulk edit
+     */
+    public BulkEdit fieldAdd(String name, Object value) {
+        return fieldOperation("add", name, value);
+    }
+
+    /**
+     * Removes a value from a field of every issue.
+     *
+     * @param name Name of the field
+     * @param value Field value to remove
+     *
+     * @return this bulk edit
+     */
+    public BulkEdit fieldRemove(String name, Object value) {
+        return fieldOperation("remove", name, value);
+    }
+
+    /**
+     * Transitions every issue, after any field edits.
+     *
+     * @param name Transition name
+     *
+     * @return this bulk edit
+     */
+    public BulkEdit transition(String name) {
+        this.transition = name;
+        this.transitionId = null;
+        return this;
+    }
+
+    /**
+     * Transitions every issue, after any field edits.
+     *
+     * @param id Internal transition ID
+     *
+     * @return this bulk edit
+     */
+    public BulkEdit transition(int id) {
+        this.transitionId = id;
+        this.transition = null;
+        return this;
+    }
+
+    /**
+     * Sets a field on the transition screen.
+     *
+     * @param name Name of the field
+     * @param value Field value
+     *
+     * @return this bulk edit
+     */
+    public BulkEdit transitionField(String name, Object value) {
+        transitionFields.put(name, value);
+        return this;
+    }
+
+    /**
+     * Loads metadata once per cache key, with concurrent callers waiting for
+     * the first. Failed loads are not cached.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T shared(String cacheKey, Callable<T> loader) throws JiraException {
+        FutureTask<Object> task = new FutureTask<Object>((Callable<Object>)loader);
+        FutureTask<Object> existing = metadata.putIfAbsent(cacheKey, task);
+
+        if (existing == null) {
+            existing = task;
+            task.run();
+        }
+
+        try {
+            return (T)existing.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Interrupted while retrieving metadata", ex);
+        } catch (ExecutionException ex) {
+            metadata.remove(cacheKey, existing);
+
+            if (ex.getCause() instanceof JiraException)
+                throw (JiraException)ex.getCause();
+
+            throw new JiraException("Failed to retrieve metadata", ex.getCause());
+        }
+    }
+
+    private static String group(Issue issue) {
+        if (issue.getProject() == null || issue.getIssueType() == null)
+            return issue.getKey();
+
+        return issue.getProject().getKey() + "/" + issue.getIssueType().getId();
+    }
+
+    /**
+     * One request of the edit, retried on its own so a later failure never
+     * repeats an earlier step that already went through.
+     */
+    private interface Step {
+        void run() throws JiraException;
+    }
+
+    private void retrying(Step step, AtomicInteger retries) throws JiraException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                step.run();
+                return;
+            } catch (JiraException ex) {
+                if (attempt >= maxRetries || !RestException.isTransient(ex))
+                    throw ex;
+
+                retries.incrementAndGet();
+                Thread.sleep(retryDelay << attempt);
+            }
+        }
+    }
+
+    private void edit(Issue issue) throws JiraException {
+        final String key = issue.getKey();
+        FieldSerializer serializer = shared("editmeta:" + group(issue), new Callable<FieldSerializer>() {
+            public FieldSerializer call() throws JiraException {
+                return FieldSerializer.compile(Issue.getEditMetadata(restclient, key));
+            }
+        });
+
+        JSONObject req = Issue.toUpdateRequest(fields, fieldOpers, serializer);
+        Map<String, String> params = new HashMap<String, String>();
+
+        if (!notifyUsers)
+            params.put("notifyUsers", "false");
+
+        try {
+            restclient.put(restclient.buildURI(Resource.getBaseUri() + "issue/" + key, params), req);
+        } catch (Exception ex) {
+            throw new JiraException("Failed to update issue " + key, ex);
+        }
+    }
+
+    private void apply(final Issue issue, AtomicInteger retries) throws JiraException, InterruptedException {
+        if (!fields.isEmpty() || !fieldOpers.isEmpty()) {
+            /* add and remove operations aren't idempotent, so once the PUT
+               succeeded the edit is never sent again */
+            retrying(new Step() {
+                public void run() throws JiraException {
+                    edit(issue);
+                }
+            }, retries);
+        }
+
+        if (transition == null && transitionId == null)
+            return;
+
+        retrying(new Step() {
+            public void run() throws JiraException {
+                if (transitionId != null)
+                    resolver.transition(issue, transitionId.intValue(), transitionFields);
+                else
+                    resolver.transition(issue, transition, transitionFields);
+            }
+        }, retries);
+    }
+
+    /**
+     * Resolves the selected issues with just the fields metadata sharing
+     * needs. The key searches aren't validated, so keys the server doesn't
+     * know are left out of the result and reported as failures.
+     */
+    private List<Issue> resolve(Report report) throws JiraException {
+        List<Issue> result = new ArrayList<Issue>();
+
+        if (jql != null) {
+            Iterator<Issue> iter = Issue.search(restclient, jql, SEARCH_FIELDS, null, null, null).iterator();
+
+            while (iter.hasNext())
+                result.add(iter.next());
+
+            return result;
+        }
+
+        if (keys == null)
+            throw new JiraException("No issues were selected");
+
+        for (int i = 0; i < keys.size(); i += KEYS_PER_SEARCH) {
+            List<String> chunk = keys.subList(i, Math.min(keys.size(), i + KEYS_PER_SEARCH));
+            StringBuilder sb = new StringBuilder("key in (");
+
+            for (int j = 0; j < chunk.size(); j++)
+                sb.append(j > 0 ? "," : "").append('"').append(chunk.get(j)).append('"');
+
+            Set<String> missing = new LinkedHashSet<String>(chunk);
+            Iterator<Issue> iter = Issue.search(
+                restclient, sb.append(")").toString(), SEARCH_FIELDS, null, chunk.size(), null, false).iterator();
+
+            while (iter.hasNext()) {
+                Issue issue = iter.next();
+                missing.remove(issue.getKey());
+                result.add(issue);
+            }
+
+            for (String key : missing)
+                report.failed.put(key, new JiraException("Issue " + key + " was not found"));
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs the edit on every selected issue.
+     *
+     * @return the report, listing issues in selection order
+     *
+     * @throws JiraException when nothing was specified, the issues cannot be
+     *         resolved or the caller is interrupted
+     */
+    public Report execute() throws JiraException {
+        if (fields.isEmpty() && fieldOpers.isEmpty() && transition == null && transitionId == null)
+            throw new JiraException("No fields or transition were given for bulk edit");
+
+        final Report report = new Report();
+        final List<Issue> issues = resolve(report);
+        final JiraException[] errors = new JiraException[issues.size()];
+        final AtomicInteger retries = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+        for (int i = 0; i < issues.size(); i++) {
+            final int idx = i;
+
+            tasks.add(new Callable<Void>() {
+                public Void call() throws InterruptedException {
+                    try {
+                        apply(issues.get(idx), retries);
+                    } catch (JiraException ex) {
+                        errors[idx] = ex;
+                    }
+
+                    return null;
+                }
+            });
+        }
+
+        try {
+            BoundedExecutor.invokeAll(tasks, concurrency);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Interrupted during bulk edit", ex);
+        } catch (ExecutionException ex) {
+            throw new JiraException("Bulk edit failed", ex.getCause());
+        }
+
+        Map<String, JiraException> notFound = new LinkedHashMap<String, JiraException>(report.failed);
+        report.failed.clear();
+
+        for (int i = 0; i < issues.size(); i++) {
+            if (errors[i] == null)
+                report.succeeded.add(issues.get(i).getKey());
+            else
+                report.failed.put(issues.get(i).getKey(), errors[i]);
+        }
+
+        report.failed.putAll(notFound);
+        report.retries = retries.get();
+        return report;
+    }
+
+    /**
+     * Sets the maximum number of issues processed at once.
+     *
+     * @param concurrency Number of concurrent operations
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Sets whether watchers are notified of field edits. Suppressing
+     * notifications requires administrator rights; transitions always notify.
+     *
+     * @param notifyUsers false to suppress notifications
+     */
+    public void setNotifyUsers(boolean notifyUsers) {
+        this.notifyUsers = notifyUsers;
+    }
+
+    /**
+     * Sets how often a transient failure is retried.
+     *
+     * @param maxRetries Number of retries per operation
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Sets the delay before the first retry, doubled for each further one.
+     *
+     * @param retryDelay Delay in milliseconds
+     */
+    public void setRetryDelay(long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+}
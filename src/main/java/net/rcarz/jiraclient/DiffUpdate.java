@@ -0,0 +1,373 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Updates issues with only the fields that differ from a snapshot.
+ *
+ * The desired values are given like {@link Issue.FluentUpdate#field} values
+ * and compared with the fields of the last fetched {@link Issue}. Changed
+ * fields are set, except that array fields with comparable items
+ * (labels, components, versions, users, groups and options) are changed
+ * with add and remove operations for just the items that differ. When
+ * nothing differs no request is made. Fields missing from the snapshot
+ * are always written.
+ *
+ * Edit metadata is fetched and compiled once per project and issue type.
+ * Instances are safe to share between threads and keep running counts of
+ * issues and fields written and skipped.
+ */
+public class DiffUpdate {
+
+    /**
+     * Changes between a snapshot and a desired state.
+     */
+    public static final class Diff {
+        private final String key;
+        private final Map<String, Object> fields;
+        private final Map<String, List> operations;
+        private final Set<String> unchanged;
+
+        private Diff(String key, Map<String, Object> fields, Map<String, List> operations,
+            Set<String> unchanged) {
+
+            this.key = key;
+            this.fields = Collections.unmodifiableMap(fields);
+            this.operations = Collections.unmodifiableMap(operations);
+            this.unchanged = Collections.unmodifiableSet(unchanged);
+        }
+
+        @Override
+        public String toString() {
+            return key + ": set " + fields.keySet() + ", modify " + operations.keySet() +
+                ", unchanged " + unchanged;
+        }
+
+        /**
+         * @return true if no field differs
+         */
+        public boolean isEmpty() {
+            return fields.isEmpty() && operations.isEmpty();
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return fields to set, with their desired values
+         */
+        public Map<String, Object> getFields() {
+            return fields;
+        }
+
+        /**
+         * @return array fields to modify, with lists of {@link Field.Operation}
+         */
+        public Map<String, List> getOperations() {
+            return operations;
+        }
+
+        /**
+         * @return fields whose desired value matches the snapshot
+         */
+        public Set<String> getUnchanged() {
+            return unchanged;
+        }
+    }
+
+    private RestClient restclient = null;
+    private ConcurrentMap<String, FieldSerializer> serializers =
+        new ConcurrentHashMap<String, FieldSerializer>();
+    private final AtomicLong updated = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong fieldsWritten = new AtomicLong();
+    private final AtomicLong fieldsUnchanged = new AtomicLong();
+
+    /**
+     * Creates a diff update.
+     *
+     * @param restclient REST client instance
+     */
+    public DiffUpdate(RestClient restclient) {
+        this.restclient = restclient;
+    }
+
+    private FieldSerializer serializer(Issue issue) throws JiraException {
+        if (issue.getProject() == null || issue.getIssueType() == null)
+            return FieldSerializer.compile(Issue.getEditMetadata(restclient, issue.getKey()));
+
+        String cacheKey = issue.getProject().getKey() + "/" + issue.getIssueType().getId();
+        FieldSerializer serializer = serializers.get(cacheKey);
+
+        if (serializer == null) {
+            serializer = FieldSerializer.compile(Issue.getEditMetadata(restclient, issue.getKey()));
+            serializers.putIfAbsent(cacheKey, serializer);
+        }
+
+        return serializer;
+    }
+
+    private static boolean isEmpty(Object value) {
+        return value == null || value instanceof JSONNull || "".equals(value) ||
+            (value instanceof JSONObject && ((JSONObject)value).isNullObject()) ||
+            (value instanceof JSONArray && ((JSONArray)value).isEmpty());
+    }
+
+    /**
+     * Compares an encoded value with the value in the snapshot. References
+     * match when the attributes given (name, key, id or value) match.
+     */
+    private static boolean same(Object encoded, Object current) {
+        if (isEmpty(encoded) || isEmpty(current))
+            return isEmpty(encoded) && isEmpty(current);
+
+        if (encoded instanceof String && current instanceof JSONObject) {
+            try {
+                encoded = JSONObject.fromObject(encoded);
+            } catch (JSONException ex) {
+                return false;
+            }
+        }
+
+        if (encoded instanceof JSONObject && current instanceof JSONObject) {
+            JSONObject want = (JSONObject)encoded;
+            JSONObject have = (JSONObject)current;
+
+            for (Object k : want.keySet()) {
+                if (!String.valueOf(want.get(k)).equals(String.valueOf(have.get(k))))
+                    return false;
+            }
+
+            return true;
+        }
+
+        if (encoded instanceof Number && current instanceof Number)
+            return ((Number)encoded).doubleValue() == ((Number)current).doubleValue();
+
+        return String.valueOf(encoded).equals(String.valueOf(current));
+    }
+
+    private static boolean sameInstant(Object value, Object current) {
+        Date have = Field.getDateTime(current);
+
+        if (!(value instanceof Date) || have == null)
+            return !(value instanceof Date) && have == null;
+
+        return ((Date)value).getTime() == have.getTime();
+    }
+
+    /**
+     * Computes add and remove operations for an array field.
+     *
+     * @return the operations, empty if the items match, or null if the
+     *         items can't be compared
+     */
+    private static List diffArray(String itemKey, Iterable desired, Object current) {
+        String type = itemKey;
+        Map<String, Object> want = new LinkedHashMap<String, Object>();
+        Map<String, Object> have = new LinkedHashMap<String, Object>();
+
+        for (Object item : desired) {
+            if (item instanceof Field.Operation || item == null)
+                return null;
+            else if (item instanceof Field.ValueTuple && !itemKey.isEmpty())
+                type = ((Field.ValueTuple)item).type;
+        }
+
+        for (Object item : desired) {
+            Object id = item instanceof Field.ValueTuple ? ((Field.ValueTuple)item).value : item;
+            want.put(String.valueOf(id), item);
+        }
+
+        if (current instanceof JSONArray) {
+            for (Object item : (JSONArray)current) {
+                String id = itemKey.isEmpty() ? Field.getString(item) :
+                    (item instanceof JSONObject ? Field.getString(((JSONObject)item).get(type)) : null);
+
+                if (id == null)
+                    return null;
+
+                have.put(id, type.equals(itemKey) ? id : new Field.ValueTuple(type, id));
+            }
+        } else if (!isEmpty(current))
+            return null;
+
+        List operations = new ArrayList();
+
+        for (Map.Entry<String, Object> ent : want.entrySet()) {
+            if (!have.containsKey(ent.getKey()))
+                operations.add(new Field.Operation("add", ent.getValue()));
+        }
+
+        for (Map.Entry<String, Object> ent : have.entrySet()) {
+            if (!want.containsKey(ent.getKey()))
+                operations.add(new Field.Operation("remove", ent.getValue()));
+        }
+
+        return operations;
+    }
+
+    private Diff diff(Issue snapshot, Map<String, Object> desired, FieldSerializer serializer)
+        throws JiraException {
+
+        JSONObject json = snapshot.getJson();
+        JSONObject current = json != null && json.get("fields") instanceof JSONObject ?
+            json.getJSONObject("fields") : new JSONObject();
+
+        Map<String, Object> fields = new LinkedHashMap<String, Object>();
+        Map<String, List> operations = new LinkedHashMap<String, List>();
+        Set<String> unchanged = new LinkedHashSet<String>();
+
+        for (Map.Entry<String, Object> ent : desired.entrySet()) {
+            String name = ent.getKey();
+            Object value = ent.getValue();
+            Object encoded = serializer.toJson(name, value);
+            Field.Meta m = serializer.getMeta(name);
+
+            if (m == null || !current.containsKey(name)) {
+                fields.put(name, value);
+                continue;
+            }
+
+            Object now = current.get(name);
+            boolean same;
+
+            if ("array".equals(m.type) && FieldSerializer.itemKey(m) != null) {
+                List ops = diffArray(FieldSerializer.itemKey(m),
+                    value != null ? (Iterable)value : new ArrayList(), now);
+
+                if (ops == null) {
+                    same = same(encoded, now);
+                } else if (!ops.isEmpty()) {
+                    operations.put(name, ops);
+                    continue;
+                } else
+                    same = true;
+            } else if ("datetime".equals(m.type))
+                same = sameInstant(value, now);
+            else
+                same = same(encoded, now);
+
+            if (same)
+                unchanged.add(name);
+            else
+                fields.put(name, value);
+        }
+
+        return new Diff(snapshot.getKey(), fields, operations, unchanged);
+    }
+
+    /**
+     * Compares a desired state with a snapshot without writing anything.
+     *
+     * @param snapshot Issue as last fetched, including the fields compared
+     * @param desired Field name to desired value
+     *
+     * @return the differences
+     *
+     * @throws JiraException when the edit metadata cannot be retrieved or a
+     *         value is bad
+     */
+    public Diff diff(Issue snapshot, Map<String, Object> desired) throws JiraException {
+        return diff(snapshot, desired, serializer(snapshot));
+    }
+
+    /**
+     * Writes the fields that differ from the snapshot. The snapshot isn't
+     * refreshed.
+     *
+     * @param snapshot Issue as last fetched, including the fields compared
+     * @param desired Field name to desired value
+     *
+     * @return the differences that were written, empty if the write was
+     *         skipped
+     *
+     * @throws JiraException when the update fails
+     */
+    public Diff update(Issue snapshot, Map<String, Object> desired) throws JiraException {
+        FieldSerializer serializer = serializer(snapshot);
+        Diff diff = diff(snapshot, desired, serializer);
+
+        fieldsUnchanged.addAndGet(diff.unchanged.size());
+
+        if (diff.isEmpty()) {
+            skipped.incrementAndGet();
+            return diff;
+        }
+
+        JSONObject req = Issue.toUpdateRequest(diff.fields, diff.operations, serializer);
+
+        try {
+            restclient.put(Resource.getBaseUri() + "issue/" + snapshot.getKey(), req);
+        } catch (Exception ex) {
+            throw new JiraException("Failed to update issue " + snapshot.getKey(), ex);
+        }
+
+        updated.incrementAndGet();
+        fieldsWritten.addAndGet(diff.fields.size() + diff.operations.size());
+        return diff;
+    }
+
+    /**
+     * @return the number of issues written
+     */
+    public long getUpdated() {
+        return updated.get();
+    }
+
+    /**
+     * @return the number of updates skipped because nothing differed
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * @return the number of fields written
+     */
+    public long getFieldsWritten() {
+        return fieldsWritten.get();
+    }
+
+    /**
+     * @return the number of fields left out because they matched
+     */
+    public long getFieldsUnchanged() {
+        return fieldsUnchanged.get();
+    }
+}
@@ -21,7 +21,6 @@ package net.rcarz.jiraclient;
 
 import java.lang.Iterable;
 import java.lang.UnsupportedOperationException;
-import java.sql.Timestamp;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -29,6 +28,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
@@ -242,7 +242,7 @@ public final class Field {
         Date result = null;
 
         if (d instanceof String) {
-            SimpleDateFormat df = new SimpleDateFormat(DATE_FORMAT);
+            SimpleDateFormat df = FieldSerializer.parser(false);
             result = df.parse((String)d, new ParsePosition(0));
         }
 
@@ -260,7 +260,7 @@ public final class Field {
         Date result = null;
 
         if (d instanceof String) {
-            SimpleDateFormat df = new SimpleDateFormat(DATETIME_FORMAT);
+            SimpleDateFormat df = FieldSerializer.parser(true);
             result = df.parse((String)d, new ParsePosition(0));
         }
 
@@ -342,6 +342,152 @@ public final class Field {
         return result;
     }
 
+    private static final Map<Class<?>, ResourceFactory<?>> FACTORIES =
+        new ConcurrentHashMap<Class<?>, ResourceFactory<?>>();
+
+    static {
+        FACTORIES.put(Attachment.class, new ResourceFactory<Attachment>() {
+            public Attachment create(RestClient restclient, JSONObject json) {
+                return new Attachment(restclient, json);
+            }
+        });
+        FACTORIES.put(ChangeLog.class, new ResourceFactory<ChangeLog>() {
+            public ChangeLog create(RestClient restclient, JSONObject json) {
+                return new ChangeLog(restclient, json);
+            }
+        });
+        FACTORIES.put(ChangeLogEntry.class, new ResourceFactory<ChangeLogEntry>() {
+            public ChangeLogEntry create(RestClient restclient, JSONObject json) {
+                return new ChangeLogEntry(restclient, json);
+            }
+        });
+        FACTORIES.put(ChangeLogItem.class, new ResourceFactory<ChangeLogItem>() {
+            public ChangeLogItem create(RestClient restclient, JSONObject json) {
+                return new ChangeLogItem(restclient, json);
+            }
+        });
+        FACTORIES.put(Component.class, new ResourceFactory<Component>() {
+            public Component create(RestClient restclient, JSONObject json) {
+                return new Component(restclient, json);
+            }
+        });
+        FACTORIES.put(CustomFieldOption.class, new ResourceFactory<CustomFieldOption>() {
+            public CustomFieldOption create(RestClient restclient, JSONObject json) {
+                return new CustomFieldOption(restclient, json);
+            }
+        });
+        FACTORIES.put(Issue.class, new ResourceFactory<Issue>() {
+            public Issue create(RestClient restclient, JSONObject json) {
+                return new Issue(restclient, json);
+            }
+        });
+        FACTORIES.put(IssueLink.class, new ResourceFactory<IssueLink>() {
+            public IssueLink create(RestClient restclient, JSONObject json) {
+                return new IssueLink(restclient, json);
+            }
+        });
+        FACTORIES.put(IssueType.class, new ResourceFactory<IssueType>() {
+            public IssueType create(RestClient restclient, JSONObject json) {
+                return new IssueType(restclient, json);
+            }
+        });
+        FACTORIES.put(LinkType.class, new ResourceFactory<LinkType>() {
+            public LinkType create(RestClient restclient, JSONObject json) {
+                return new LinkType(restclient, json);
+            }
+        });
+        FACTORIES.put(Priority.class, new ResourceFactory<Priority>() {
+            public Priority create(RestClient restclient, JSONObject json) {
+                return new Priority(restclient, json);
+            }
+        });
+        FACTORIES.put(Project.class, new ResourceFactory<Project>() {
+            public Project create(RestClient restclient, JSONObject json) {
+                return new Project(restclient, json);
+            }
+        });
+        FACTORIES.put(ProjectCategory.class, new ResourceFactory<ProjectCategory>() {
+            public ProjectCategory create(RestClient restclient, JSONObject json) {
+                return new ProjectCategory(restclient, json);
+            }
+        });
+        FACTORIES.put(RemoteLink.class, new ResourceFactory<RemoteLink>() {
+            public RemoteLink create(RestClient restclient, JSONObject json) {
+                return new RemoteLink(restclient, json);
+            }
+        });
+        FACTORIES.put(Resolution.class, new ResourceFactory<Resolution>() {
+            public Resolution create(RestClient restclient, JSONObject json) {
+                return new Resolution(restclient, json);
+            }
+        });
+        FACTORIES.put(Status.class, new ResourceFactory<Status>() {
+            public Status create(RestClient restclient, JSONObject json) {
+                return new Status(restclient, json);
+            }
+        });
+        FACTORIES.put(Transition.class, new ResourceFactory<Transition>() {
+            public Transition create(RestClient restclient, JSONObject json) {
+                return new Transition(restclient, json);
+            }
+        });
+        FACTORIES.put(User.class, new ResourceFactory<User>() {
+            public User create(RestClient restclient, JSONObject json) {
+                return new User(restclient, json);
+            }
+        });
+        FACTORIES.put(Visibility.class, new ResourceFactory<Visibility>() {
+            public Visibility create(RestClient restclient, JSONObject json) {
+                return new Visibility(restclient, json);
+            }
+        });
+        FACTORIES.put(Version.class, new ResourceFactory<Version>() {
+            public Version create(RestClient restclient, JSONObject json) {
+                return new Version(restclient, json);
+            }
+        });
+        FACTORIES.put(Votes.class, new ResourceFactory<Votes>() {
+            public Votes create(RestClient restclient, JSONObject json) {
+                return new Votes(restclient, json);
+            }
+        });
+        FACTORIES.put(Watches.class, new ResourceFactory<Watches>() {
+            public Watches create(RestClient restclient, JSONObject json) {
+                return new Watches(restclient, json);
+            }
+        });
+        FACTORIES.put(WorkLog.class, new ResourceFactory<WorkLog>() {
+            public WorkLog create(RestClient restclient, JSONObject json) {
+                return new WorkLog(restclient, json);
+            }
+        });
+        FACTORIES.put(Security.class, new ResourceFactory<Security>() {
+            public Security create(RestClient restclient, JSONObject json) {
+                return new Security(restclient, json);
+            }
+        });
+    }
+
+    /**
+     * Registers the factory used to decode resources of the given type,
+     * replacing the built-in one. The registry is static, so the factory
+     * applies to every JiraClient in the JVM.
+     *
+     * @param type Resource data type
+     * @param factory Factory creating the resources, or a subclass of them
+     *
+     * @throws IllegalArgumentException for comments, which are always built
+     *         by their constructor as they need the issue key as well
+     */
+    public static <T extends Resource> void registerResourceFactory(
+        Class<T> type, ResourceFactory<? extends T> factory) {
+
+        if (type == Comment.class)
+            throw new IllegalArgumentException("Comments can't be decoded by a factory");
+
+        FACTORIES.put(type, factory);
+    }
+
     /**
      * Gets a JIRA resource from the given object.
      *
@@ -373,56 +519,19 @@ public final class Field {
         T result = null;
 
         if (r instanceof JSONObject && !((JSONObject)r).isNullObject()) {
-            if (type == Attachment.class)
-                result = (T)new Attachment(restclient, (JSONObject)r);
-            else if (type == ChangeLog.class)
-                result = (T)new ChangeLog(restclient, (JSONObject)r);
-            else if (type == ChangeLogEntry.class)
-                result = (T)new ChangeLogEntry(restclient, (JSONObject)r);
-            else if (type == ChangeLogItem.class)
-                result = (T)new ChangeLogItem(restclient, (JSONObject)r);
-            else if (type == Comment.class)
-                result = (T)new Comment(restclient, (JSONObject)r, parentId);
-            else if (type == Component.class)
-                result = (T)new Component(restclient, (JSONObject)r);
-            else if (type == CustomFieldOption.class)
-                result = (T)new CustomFieldOption(restclient, (JSONObject)r);
-            else if (type == Issue.class)
-                result = (T)new Issue(restclient, (JSONObject)r);
-            else if (type == IssueLink.class)
-                result = (T)new IssueLink(restclient, (JSONObject)r);
-            else if (type == IssueType.class)
-                result = (T)new IssueType(restclient, (JSONObject)r);
-            else if (type == LinkType.class)
-                result = (T)new LinkType(restclient, (JSONObject)r);
-            else if (type == Priority.class)
-                result = (T)new Priority(restclient, (JSONObject)r);
-            else if (type == Project.class)
-                result = (T)new Project(restclient, (JSONObject)r);
-            else if (type == ProjectCategory.class)
-                result = (T)new ProjectCategory(restclient, (JSONObject)r);
-            else if (type == RemoteLink.class)
-                result = (T)new RemoteLink(restclient, (JSONObject)r);
-            else if (type == Resolution.class)
-                result = (T)new Resolution(restclient, (JSONObject)r);
-            else if (type == Status.class)
-                result = (T)new Status(restclient, (JSONObject)r);
-            else if (type == Transition.class)
-                result = (T)new Transition(restclient, (JSONObject)r);
-            else if (type == User.class)
-                result = (T)new User(restclient, (JSONObject)r);
-            else if (type == Visibility.class)
-                result = (T)new Visibility(restclient, (JSONObject)r);
-            else if (type == Version.class)
-                result = (T)new Version(restclient, (JSONObject)r);
-            else if (type == Votes.class)
-                result = (T)new Votes(restclient, (JSONObject)r);
-            else if (type == Watches.class)
-                result = (T)new Watches(restclient, (JSONObject)r);
-            else if (type == WorkLog.class)
-                result = (T)new WorkLog(restclient, (JSONObject)r);
-            else if (type == Security.class)
-                result = (T)new Security(restclient, (JSONObject)r);
+            if (type == Comment.class)
+                return (T)new Comment(restclient, (JSONObject)r, parentId);
+
+            ResourceFactory<?> factory = FACTORIES.get(type);
+
+            if (factory != null) {
+                try {
+                    result = (T)factory.create(restclient, (JSONObject)r);
+                } catch (JiraException ex) {
+                    throw new IllegalArgumentException(
+                        "Failed to deserialize " + type.getSimpleName(), ex);
+                }
+            }
         }
 
         return result;
@@ -576,10 +685,7 @@ public final class Field {
             return (Date)value;
 
         String dateStr = value.toString();
-        SimpleDateFormat df = new SimpleDateFormat(DATE_FORMAT);
-        if (dateStr.length() > DATE_FORMAT.length()) {
-            df = new SimpleDateFormat(DATETIME_FORMAT);
-        }
+        SimpleDateFormat df = FieldSerializer.parser(dateStr.length() > DATE_FORMAT.length());
         return df.parse(dateStr, new ParsePosition(0));
     }
 
@@ -593,54 +699,7 @@ public final class Field {
      * @return a JSON-encoded array of items
      */
     public static JSONArray toArray(Iterable iter, String type, String custom) throws JiraException {
-        JSONArray results = new JSONArray();
-
-        if (type == null)
-            throw new JiraException("Array field metadata is missing item type");
-
-        for (Object val : iter) {
-            Operation oper = null;
-            Object realValue = null;
-            Object realResult = null;
-
-            if (val instanceof Operation) {
-                oper = (Operation)val;
-                realValue = oper.value;
-            } else
-                realValue = val;
-
-            if (type.equals("component") || type.equals("group") ||
-                type.equals("user") || type.equals("version")) {
-
-                JSONObject itemMap = new JSONObject();
-
-                if (realValue instanceof ValueTuple) {
-                    ValueTuple tuple = (ValueTuple)realValue;
-                    itemMap.put(tuple.type, tuple.value.toString());
-                } else
-                    itemMap.put(ValueType.NAME.toString(), realValue.toString());
-
-                realResult = itemMap;
-            } else if ( type.equals("option") ||
-                    (
-                    type.equals("string") && custom != null
-                    && (custom.equals("com.atlassian.jira.plugin.system.customfieldtypes:multicheckboxes") ||
-                    custom.equals("com.atlassian.jira.plugin.system.customfieldtypes:multiselect")))) {
-                
-                realResult = new JSONObject();
-                ((JSONObject)realResult).put(ValueType.VALUE.toString(), realValue.toString());
-            } else if (type.equals("string"))
-                realResult = realValue.toString();
-
-            if (oper != null) {
-                JSONObject operMap = new JSONObject();
-                operMap.put(oper.name, realResult);
-                results.add(operMap);
-            } else
-                results.add(realResult);
-        }
-
-        return results;
+        return FieldSerializer.toArray(iter, type, custom);
     }
 
     /**
@@ -658,104 +717,7 @@ public final class Field {
     public static Object toJson(String name, Object value, JSONObject editmeta)
         throws JiraException, UnsupportedOperationException {
 
-        Meta m = getFieldMetadata(name, editmeta);
-        if (m.type == null)
-            throw new JiraException("Field '" + name + "' is missing metadata type");
-
-        if (m.type.equals("array")) {
-            if (value == null)
-                value = new ArrayList();
-            else if (!(value instanceof Iterable))
-                throw new JiraException("Field '" + name + "' expects an Iterable value");
-
-            return toArray((Iterable)value, m.items, m.custom);
-        } else if (m.type.equals("date")) {
-            if (value == null)
-                return JSONNull.getInstance();
-
-            Date d = toDate(value);
-            if (d == null)
-                throw new JiraException("Field '" + name + "' expects a date value or format is invalid");
-
-            SimpleDateFormat df = new SimpleDateFormat(DATE_FORMAT);
-            return df.format(d);
-        } else if (m.type.equals("datetime")) {
-            if (value == null)
-                return JSONNull.getInstance();
-            else if (!(value instanceof Timestamp))
-                throw new JiraException("Field '" + name + "' expects a Timestamp value");
-
-            SimpleDateFormat df = new SimpleDateFormat(DATETIME_FORMAT);
-            return df.format(value);
-        } else if (m.type.equals("issuetype") || m.type.equals("priority") ||
-                m.type.equals("user") || m.type.equals("resolution") || m.type.equals("securitylevel")) {
-            JSONObject json = new JSONObject();
-
-            if (value == null)
-                return JSONNull.getInstance();
-            else if (value instanceof ValueTuple) {
-                ValueTuple tuple = (ValueTuple)value;
-                json.put(tuple.type, tuple.value.toString());
-            } else
-                json.put(ValueType.NAME.toString(), value.toString());
-
-            return json.toString();
-        } else if (m.type.equals("project") || m.type.equals("issuelink")) {
-            JSONObject json = new JSONObject();
-
-            if (value == null)
-                return JSONNull.getInstance();
-            else if (value instanceof ValueTuple) {
-                ValueTuple tuple = (ValueTuple)value;
-                json.put(tuple.type, tuple.value.toString());
-            } else
-                json.put(ValueType.KEY.toString(), value.toString());
-
-            return json.toString();
-        } else if (m.type.equals("string") || (m.type.equals("securitylevel") || m.type.equals("option"))) {
-            if (value == null)
-                return "";
-            else if (value instanceof List)
-                return toJsonMap((List)value);
-            else if (value instanceof ValueTuple) {
-                JSONObject json = new JSONObject();
-                ValueTuple tuple = (ValueTuple)value;
-                json.put(tuple.type, tuple.value.toString());
-                return json.toString();
-            }
-
-            return value.toString();
-        } else if (m.type.equals("timetracking")) {
-            if (value == null)
-                return JSONNull.getInstance();
-            else if (value instanceof TimeTracking)
-                return ((TimeTracking) value).toJsonObject();
-        } else if (m.type.equals("number")) {
-            if (value == null) //Non mandatory number fields can be set to null
-                return JSONNull.getInstance(); 
-            else if(!(value instanceof java.lang.Integer) && !(value instanceof java.lang.Double) && !(value 
-                    instanceof java.lang.Float) && !(value instanceof java.lang.Long) )
-            {
-                throw new JiraException("Field '" + name + "' expects a Numeric value");
-            }
-            return value;
-        } else if (m.type.equals("any")) {
-            if (value == null)
-                return JSONNull.getInstance();
-            else if (value instanceof List)
-                return toJsonMap((List)value);
-            else if (value instanceof ValueTuple) {
-                JSONObject json = new JSONObject();
-                ValueTuple tuple = (ValueTuple)value;
-                json.put(tuple.type, tuple.value.toString());
-                return json.toString();
-            } else if (value instanceof TimeTracking)
-                return ((TimeTracking) value).toJsonObject();
-
-            return value;
-        }
-
-        throw new UnsupportedOperationException(m.type + " is not a supported field type");
+        return FieldSerializer.encoder(name, editmeta).encode(value);
     }
 
     /**
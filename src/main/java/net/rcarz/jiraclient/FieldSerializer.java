@@ -0,0 +1,434 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient;
+
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+
+/**
+ * Field value encoders compiled from edit or create metadata.
+ *
+ * {@link Field#toJson} reads the metadata of a field and picks an encoding
+ * on every call. A serializer does that once per field when it is built,
+ * so writing many issues against the same metadata costs one map lookup
+ * per field. Serializers are immutable and can be shared between threads.
+ */
+public final class FieldSerializer {
+
+    private static final String MULTICHECKBOXES =
+        "com.atlassian.jira.plugin.system.customfieldtypes:multicheckboxes";
+    private static final String MULTISELECT =
+        "com.atlassian.jira.plugin.system.customfieldtypes:multiselect";
+
+    private static final ThreadLocal<SimpleDateFormat> DATE = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat(Field.DATE_FORMAT);
+        }
+    };
+
+    private static final ThreadLocal<SimpleDateFormat> DATETIME = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat(Field.DATETIME_FORMAT);
+        }
+    };
+
+    /**
+     * Encodes the values of one field.
+     */
+    abstract static class Encoder {
+        final String name;
+
+        Encoder(String name) {
+            this.name = name;
+        }
+
+        abstract Object encode(Object value) throws JiraException;
+    }
+
+    /**
+     * Encoding of array items.
+     */
+    private enum Item { OBJECT, VALUE, STRING, NONE }
+
+    private final Map<String, Encoder> encoders;
+    private final Map<String, Field.Meta> metadata;
+
+    private FieldSerializer(Map<String, Encoder> encoders, Map<String, Field.Meta> metadata) {
+        this.encoders = encoders;
+        this.metadata = metadata;
+    }
+
+    /**
+     * Compiles the encoders of every field in the metadata.
+     *
+     * @param meta Edit metadata, or the fields of create metadata
+     *
+     * @return a serializer for the metadata
+     */
+    public static FieldSerializer compile(JSONObject meta) {
+        Map<String, Encoder> encoders = new HashMap<String, Encoder>();
+        Map<String, Field.Meta> metadata = new HashMap<String, Field.Meta>();
+
+        if (meta != null && !meta.isNullObject()) {
+            for (Object name : meta.keySet()) {
+                encoders.put((String)name, encoder((String)name, meta));
+
+                try {
+                    metadata.put((String)name, Field.getFieldMetadata((String)name, meta));
+                } catch (Exception ex) {
+                    /* the encoder reports it when the field is written */
+                }
+            }
+        }
+
+        return new FieldSerializer(Collections.unmodifiableMap(encoders),
+            Collections.unmodifiableMap(metadata));
+    }
+
+    /**
+     * Checks whether a field can be written.
+     *
+     * @param name Field name
+     *
+     * @return true if the metadata lists the field
+     */
+    public boolean contains(String name) {
+        return encoders.containsKey(name);
+    }
+
+    /**
+     * Gets the metadata a field's encoder was compiled from.
+     *
+     * @param name Field name
+     *
+     * @return the metadata, or null if the field is missing or malformed
+     */
+    public Field.Meta getMeta(String name) {
+        return metadata.get(name);
+    }
+
+    /**
+     * Converts the given value to a JSON object, like {@link Field#toJson}.
+     *
+     * @param name Field name
+     * @param value New field value
+     *
+     * @return a JSON-encoded field value
+     *
+     * @throws JiraException when a value is bad or field has invalid metadata
+     * @throws UnsupportedOperationException when a field type isn't supported
+     */
+    public Object toJson(String name, Object value) throws JiraException {
+        Encoder e = encoders.get(name);
+
+        if (e == null)
+            throw new JiraException("Field '" + name + "' does not exist or read-only");
+
+        return e.encode(value);
+    }
+
+    /**
+     * Formats a date in the date field format.
+     */
+    static String formatDate(Date d) {
+        SimpleDateFormat df = DATE.get();
+        df.setTimeZone(TimeZone.getDefault());
+        return df.format(d);
+    }
+
+    /**
+     * Formats a date in the date-time field format.
+     */
+    static String formatDateTime(Date d) {
+        SimpleDateFormat df = DATETIME.get();
+        df.setTimeZone(TimeZone.getDefault());
+        return df.format(d);
+    }
+
+    /**
+     * Gets the per-thread formatter for parsing dates or date-times.
+     */
+    static SimpleDateFormat parser(boolean withTime) {
+        SimpleDateFormat df = withTime ? DATETIME.get() : DATE.get();
+        df.setTimeZone(TimeZone.getDefault());
+        return df;
+    }
+
+    /**
+     * Compiles the encoder of one field. Bad metadata yields an encoder that
+     * reports the problem when the field is written.
+     */
+    static Encoder encoder(final String name, JSONObject meta) {
+        final Field.Meta m;
+
+        try {
+            m = Field.getFieldMetadata(name, meta);
+        } catch (JiraException ex) {
+            return failing(name, ex.getMessage());
+        } catch (RuntimeException ex) {
+            return failing(name, "Field '" + name + "' has malformed metadata");
+        }
+
+        if (m.type == null)
+            return failing(name, "Field '" + name + "' is missing metadata type");
+
+        if (m.type.equals("array"))
+            return arrayEncoder(name, m.items, m.custom);
+        else if (m.type.equals("date")) {
+            return new Encoder(name) {
+                Object encode(Object value) throws JiraException {
+                    if (value == null)
+                        return JSONNull.getInstance();
+
+                    Date d = Field.toDate(value);
+                    if (d == null)
+                        throw new JiraException("Field '" + name + "' expects a date value or format is invalid");
+
+                    return formatDate(d);
+                }
+            };
+        } else if (m.type.equals("datetime")) {
+            return new Encoder(name) {
+                Object encode(Object value) throws JiraException {
+                    if (value == null)
+                        return JSONNull.getInstance();
+                    else if (!(value instanceof Timestamp))
+                        throw new JiraException("Field '" + name + "' expects a Timestamp value");
+
+                    return formatDateTime((Date)value);
+                }
+            };
+        } else if (m.type.equals("issuetype") || m.type.equals("priority") ||
+                m.type.equals("user") || m.type.equals("resolution") || m.type.equals("securitylevel"))
+            return referenceEncoder(name, Field.ValueType.NAME);
+        else if (m.type.equals("project") || m.type.equals("issuelink"))
+            return referenceEncoder(name, Field.ValueType.KEY);
+        else if (m.type.equals("string") || m.type.equals("option")) {
+            return new Encoder(name) {
+                Object encode(Object value) {
+                    if (value == null)
+                        return "";
+                    else if (value instanceof List)
+                        return Field.toJsonMap((List)value);
+                    else if (value instanceof Field.ValueTuple)
+                        return tupleJson((Field.ValueTuple)value);
+
+                    return value.toString();
+                }
+            };
+        } else if (m.type.equals("timetracking")) {
+            return new Encoder(name) {
+                Object encode(Object value) {
+                    if (value == null)
+                        return JSONNull.getInstance();
+                    else if (value instanceof TimeTracking)
+                        return ((TimeTracking)value).toJsonObject();
+
+                    throw new UnsupportedOperationException(m.type + " is not a supported field type");
+                }
+            };
+        } else if (m.type.equals("number")) {
+            return new Encoder(name) {
+                Object encode(Object value) throws JiraException {
+                    if (value == null) //Non mandatory number fields can be set to null
+                        return JSONNull.getInstance();
+                    else if (!(value instanceof Integer) && !(value instanceof Double) &&
+                            !(value instanceof Float) && !(value instanceof Long))
+                        throw new JiraException("Field '" + name + "' expects a Numeric value");
+
+                    return value;
+                }
+            };
+        } else if (m.type.equals("any")) {
+            return new Encoder(name) {
+                Object encode(Object value) {
+                    if (value == null)
+                        return JSONNull.getInstance();
+                    else if (value instanceof List)
+                        return Field.toJsonMap((List)value);
+                    else if (value instanceof Field.ValueTuple)
+                        return tupleJson((Field.ValueTuple)value);
+                    else if (value instanceof TimeTracking)
+                        return ((TimeTracking)value).toJsonObject();
+
+                    return value;
+                }
+            };
+        }
+
+        return new Encoder(name) {
+            Object encode(Object value) {
+                throw new UnsupportedOperationException(m.type + " is not a supported field type");
+            }
+        };
+    }
+
+    private static Encoder failing(String name, final String message) {
+        return new Encoder(name) {
+            Object encode(Object value) throws JiraException {
+                throw new JiraException(message);
+            }
+        };
+    }
+
+    private static String tupleJson(Field.ValueTuple tuple) {
+        JSONObject json = new JSONObject();
+        json.put(tuple.type, tuple.value.toString());
+        return json.toString();
+    }
+
+    private static Encoder referenceEncoder(String name, final Field.ValueType byDefault) {
+        return new Encoder(name) {
+            Object encode(Object value) {
+                if (value == null)
+                    return JSONNull.getInstance();
+                else if (value instanceof Field.ValueTuple)
+                    return tupleJson((Field.ValueTuple)value);
+
+                JSONObject json = new JSONObject();
+                json.put(byDefault.toString(), value.toString());
+                return json.toString();
+            }
+        };
+    }
+
+    private static Item itemKind(String type, String custom) {
+        if (type.equals("component") || type.equals("group") ||
+                type.equals("user") || type.equals("version"))
+            return Item.OBJECT;
+        else if (type.equals("option") || (type.equals("string") && custom != null &&
+                (custom.equals(MULTICHECKBOXES) || custom.equals(MULTISELECT))))
+            return Item.VALUE;
+        else if (type.equals("string"))
+            return Item.STRING;
+
+        return Item.NONE;
+    }
+
+    /**
+     * Gets the attribute identifying the items of an array field: "name"
+     * for components, versions, users and groups, "value" for options, an
+     * empty string for plain strings, or null if items aren't comparable.
+     */
+    static String itemKey(Field.Meta m) {
+        if (m.items == null)
+            return null;
+
+        switch (itemKind(m.items, m.custom)) {
+            case OBJECT:
+                return Field.ValueType.NAME.toString();
+            case VALUE:
+                return Field.ValueType.VALUE.toString();
+            case STRING:
+                return "";
+            default:
+                return null;
+        }
+    }
+
+    private static Encoder arrayEncoder(final String name, final String items, String custom) {
+        final Item kind = items != null ? itemKind(items, custom) : null;
+
+        return new Encoder(name) {
+            Object encode(Object value) throws JiraException {
+                if (value == null)
+                    value = new ArrayList();
+                else if (!(value instanceof Iterable))
+                    throw new JiraException("Field '" + name + "' expects an Iterable value");
+
+                if (kind == null)
+                    throw new JiraException("Array field metadata is missing item type");
+
+                return toArray((Iterable)value, kind);
+            }
+        };
+    }
+
+    /**
+     * Converts an iterable to a JSON array of items of the given kind.
+     */
+    static JSONArray toArray(Iterable iter, String type, String custom) throws JiraException {
+        if (type == null)
+            throw new JiraException("Array field metadata is missing item type");
+
+        return toArray(iter, itemKind(type, custom));
+    }
+
+    private static JSONArray toArray(Iterable iter, Item kind) {
+        JSONArray results = new JSONArray();
+
+        for (Object val : iter) {
+            Field.Operation oper = null;
+            Object realValue = val;
+            Object realResult = null;
+
+            if (val instanceof Field.Operation) {
+                oper = (Field.Operation)val;
+                realValue = oper.value;
+            }
+
+            switch (kind) {
+                case OBJECT:
+                    JSONObject itemMap = new JSONObject();
+
+                    if (realValue instanceof Field.ValueTuple) {
+                        Field.ValueTuple tuple = (Field.ValueTuple)realValue;
+                        itemMap.put(tuple.type, tuple.value.toString());
+                    } else
+                        itemMap.put(Field.ValueType.NAME.toString(), realValue.toString());
+
+                    realResult = itemMap;
+                    break;
+                case VALUE:
+                    JSONObject valueMap = new JSONObject();
+                    valueMap.put(Field.ValueType.VALUE.toString(), realValue.toString());
+                    realResult = valueMap;
+                    break;
+                case STRING:
+                    realResult = realValue.toString();
+                    break;
+                default:
+                    break;
+            }
+
+            if (oper != null) {
+                JSONObject operMap = new JSONObject();
+                operMap.put(oper.name, realResult);
+                results.add(operMap);
+            } else
+                results.add(realResult);
+        }
+
+        return results;
+    }
+}
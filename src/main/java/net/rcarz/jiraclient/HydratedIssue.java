@@ -0,0 +1,193 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient;
+
+import net.rcarz.utils.BoundedExecutor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An issue together with the sub-resources that need requests of their own.
+ *
+ * The issue and every requested part are fetched at the same time, so
+ * loading takes about as long as the slowest request. All of them share
+ * one deadline, and the first failure or the deadline cancels the rest.
+ */
+public final class HydratedIssue {
+
+    public static final long DEFAULT_TIMEOUT = 30000;
+
+    /**
+     * Sub-resources that can be loaded with an issue.
+     */
+    public enum Part {
+        WORKLOGS, REMOTE_LINKS, TRANSITIONS, VOTES, WATCHES
+    }
+
+    private final Issue issue;
+    private final Set<Part> parts;
+    private final List<WorkLog> workLogs;
+    private final List<RemoteLink> remoteLinks;
+    private final List<Transition> transitions;
+    private final Votes votes;
+    private final Watches watches;
+
+    @SuppressWarnings("unchecked")
+    private HydratedIssue(Set<Part> parts, Object[] loaded) {
+        this.issue = (Issue)loaded[0];
+        this.parts = parts;
+        this.workLogs = (List<WorkLog>)loaded[Part.WORKLOGS.ordinal() + 1];
+        this.remoteLinks = (List<RemoteLink>)loaded[Part.REMOTE_LINKS.ordinal() + 1];
+        this.transitions = (List<Transition>)loaded[Part.TRANSITIONS.ordinal() + 1];
+        this.votes = (Votes)loaded[Part.VOTES.ordinal() + 1];
+        this.watches = (Watches)loaded[Part.WATCHES.ordinal() + 1];
+    }
+
+    private static Callable<Object> loader(final RestClient restclient, final String key, final Part part) {
+        return new Callable<Object>() {
+            public Object call() throws JiraException {
+                switch (part) {
+                    case WORKLOGS:
+                        return Issue.getAllWorkLogs(restclient, key);
+                    case REMOTE_LINKS:
+                        return Issue.getRemoteLinks(restclient, key);
+                    case TRANSITIONS:
+                        return Issue.getTransitions(restclient, key);
+                    case VOTES:
+                        return Votes.get(restclient, key);
+                    case WATCHES:
+                        return Watches.get(restclient, key);
+                    default:
+                        throw new JiraException("Unknown issue part " + part);
+                }
+            }
+        };
+    }
+
+    /**
+     * Retrieves an issue and the given parts concurrently.
+     *
+     * @param restclient REST client instance
+     * @param key Issue key (PROJECT-123)
+     * @param timeout Time to wait for all requests in milliseconds
+     * @param parts Parts to load with the issue
+     *
+     * @return the issue with its parts
+     *
+     * @throws JiraException when any request fails or the deadline passes
+     */
+    public static HydratedIssue get(final RestClient restclient, final String key, long timeout,
+        Part... parts) throws JiraException {
+
+        Set<Part> wanted = parts.length > 0 ?
+            EnumSet.copyOf(Arrays.asList(parts)) : EnumSet.noneOf(Part.class);
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+
+        tasks.add(new Callable<Object>() {
+            public Object call() throws JiraException {
+                return Issue.get(restclient, key);
+            }
+        });
+
+        for (Part part : wanted)
+            tasks.add(loader(restclient, key, part));
+
+        List<Object> results;
+
+        try {
+            results = BoundedExecutor.invokeAll(tasks, tasks.size(), timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Interrupted while retrieving issue " + key, ex);
+        } catch (TimeoutException ex) {
+            throw new JiraException("Timed out retrieving issue " + key, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof JiraException)
+                throw (JiraException)ex.getCause();
+
+            throw new JiraException("Failed to retrieve issue " + key, ex.getCause());
+        }
+
+        Object[] loaded = new Object[Part.values().length + 1];
+        int i = 0;
+        loaded[0] = results.get(i++);
+
+        for (Part part : wanted)
+            loaded[part.ordinal() + 1] = results.get(i++);
+
+        return new HydratedIssue(wanted, loaded);
+    }
+
+    /**
+     * @param part Part to check
+     *
+     * @return true if the part was loaded
+     */
+    public boolean has(Part part) {
+        return parts.contains(part);
+    }
+
+    public Issue getIssue() {
+        return issue;
+    }
+
+    /**
+     * @return the work logs, or null if they weren't requested
+     */
+    public List<WorkLog> getWorkLogs() {
+        return workLogs;
+    }
+
+    /**
+     * @return the remote links, or null if they weren't requested
+     */
+    public List<RemoteLink> getRemoteLinks() {
+        return remoteLinks;
+    }
+
+    /**
+     * @return the transitions, or null if they weren't requested
+     */
+    public List<Transition> getTransitions() {
+        return transitions;
+    }
+
+    /**
+     * @return the votes, or null if they weren't requested
+     */
+    public Votes getVotes() {
+        return votes;
+    }
+
+    /**
+     * @return the watches, or null if they weren't requested
+     */
+    public Watches getWatches() {
+        return watches;
+    }
+}
@@ -47,12 +47,18 @@ public class Issue extends Resource {
         Map<String, Object> fields = new HashMap<String, Object>();
         RestClient restclient = null;
         JSONObject createmeta = null;
+        FieldSerializer serializer = null;
 
-        private FluentCreate(RestClient restclient, JSONObject createmeta) {
+        FluentCreate(RestClient restclient, JSONObject createmeta) {
             this.restclient = restclient;
             this.createmeta = createmeta;
         }
 
+        FluentCreate(RestClient restclient, FieldSerializer serializer) {
+            this.restclient = restclient;
+            this.serializer = serializer;
+        }
+
         /**
          * Executes the create action (issue includes all fields).
          *
@@ -97,20 +103,7 @@ public class Issue extends Resource {
          * @throws JiraException when the create fails
          */
         private Issue executeCreate(String includedFields) throws JiraException {
-            JSONObject fieldmap = new JSONObject();
-
-            if (fields.size() == 0) {
-                throw new JiraException("No fields were given for create");
-            }
-
-            for (Map.Entry<String, Object> ent : fields.entrySet()) {
-                Object newval = Field.toJson(ent.getKey(), ent.getValue(), createmeta);
-                fieldmap.put(ent.getKey(), newval);
-            }
-
-            JSONObject req = new JSONObject();
-            req.put("fields", fieldmap);
-
+            JSONObject req = toRequest();
             JSON result = null;
 
             try {
@@ -131,6 +124,30 @@ public class Issue extends Resource {
             }
         }
 
+        /**
+         * Serialises the fields into a create request.
+         *
+         * @throws JiraException when no fields were given or a value is bad
+         */
+        JSONObject toRequest() throws JiraException {
+            JSONObject fieldmap = new JSONObject();
+
+            if (fields.size() == 0) {
+                throw new JiraException("No fields were given for create");
+            }
+
+            for (Map.Entry<String, Object> ent : fields.entrySet()) {
+                Object newval = serializer != null ?
+                    serializer.toJson(ent.getKey(), ent.getValue()) :
+                    Field.toJson(ent.getKey(), ent.getValue(), createmeta);
+                fieldmap.put(ent.getKey(), newval);
+            }
+
+            JSONObject req = new JSONObject();
+            req.put("fields", fieldmap);
+            return req;
+        }
+
         /**
          * Appends a field to the update action.
          *
@@ -350,29 +367,7 @@ public class Issue extends Resource {
          * @throws JiraException when the update fails
          */
         public void execute() throws JiraException {
-            JSONObject fieldmap = new JSONObject();
-            JSONObject updatemap = new JSONObject();
-
-            if (fields.size() == 0 && fieldOpers.size() == 0)
-                throw new JiraException("No fields were given for update");
-
-            for (Map.Entry<String, Object> ent : fields.entrySet()) {
-                Object newval = Field.toJson(ent.getKey(), ent.getValue(), editmeta);
-                fieldmap.put(ent.getKey(), newval);
-            }
-
-            for (Map.Entry<String, List> ent : fieldOpers.entrySet()) {
-                Object newval = Field.toJson(ent.getKey(), ent.getValue(), editmeta);
-                updatemap.put(ent.getKey(), newval);
-            }
-
-            JSONObject req = new JSONObject();
-
-            if (fieldmap.size() > 0)
-                req.put("fields", fieldmap);
-
-            if (updatemap.size() > 0)
-                req.put("update", updatemap);
+            JSONObject req = toUpdateRequest(fields, fieldOpers, editmeta);
 
             try {
                 restclient.put(getRestUri(key), req);
@@ -434,11 +429,16 @@ public class Issue extends Resource {
 
         Map<String, Object> fields = new HashMap<String, Object>();
         List<Transition> transitions = null;
+        TransitionResolver resolver = null;
 
         private FluentTransition(List<Transition> transitions) {
             this.transitions = transitions;
         }
 
+        private FluentTransition(TransitionResolver resolver) {
+            this.resolver = resolver;
+        }
+
         private Transition getTransition(String id, boolean isName) throws JiraException {
             Transition result = null;
 
@@ -462,21 +462,7 @@ public class Issue extends Resource {
             if (trans == null || trans.getFields() == null)
                 throw new JiraException("Transition is missing fields");
 
-            JSONObject fieldmap = new JSONObject();
-
-            for (Map.Entry<String, Object> ent : fields.entrySet()) {
-                fieldmap.put(ent.getKey(), ent.getValue());
-            }
-
-            JSONObject req = new JSONObject();
-
-            if (fieldmap.size() > 0)
-                req.put("fields", fieldmap);
-
-            JSONObject t = new JSONObject();
-            t.put("id", Field.getString(trans.getId()));
-
-            req.put("transition", t);
+            JSONObject req = toTransitionRequest(trans.getId(), fields);
 
             try {
                 restclient.post(getRestUri(key) + "/transitions", req);
@@ -493,7 +479,10 @@ public class Issue extends Resource {
          * @throws JiraException when the transition fails
          */
         public void execute(int id) throws JiraException {
-            realExecute(getTransition(Integer.toString(id), false));
+            if (resolver != null)
+                resolver.transition(Issue.this, id, fields);
+            else
+                realExecute(getTransition(Integer.toString(id), false));
         }
 
         /**
@@ -515,7 +504,10 @@ public class Issue extends Resource {
          * @throws JiraException when the transition fails
          */
         public void execute(String name) throws JiraException {
-            realExecute(getTransition(name, true));
+            if (resolver != null)
+                resolver.transition(Issue.this, name, fields);
+            else
+                realExecute(getTransition(name, true));
         }
 
         /**
@@ -545,12 +537,14 @@ public class Issue extends Resource {
         private String jql;
         private String includedFields;
         private String expandFields;
+        private boolean validateQuery;
         private Integer startAt;
         private List<Issue> issues;
         private int total;
         
         public IssueIterator(RestClient restclient, String jql, String includedFields,
-                             String expandFields, Integer maxResults, Integer startAt)
+                             String expandFields, Integer maxResults, Integer startAt,
+                             boolean validateQuery)
                              throws JiraException {
             this.restclient = restclient;
             this.jql = jql;
@@ -558,6 +552,7 @@ public class Issue extends Resource {
             this.expandFields = expandFields;
             this.maxResults = maxResults;
             this.startAt = startAt;
+            this.validateQuery = validateQuery;
         }
         
         @Override
@@ -640,8 +635,13 @@ public class Issue extends Resource {
 
             try {
                 URI searchUri = createSearchURI(restclient, jql, includedFields,
-                        expandFields, maxResults, startAt);
-                result = restclient.get(searchUri);
+                        expandFields, maxResults, startAt, validateQuery);
+
+                if (searchUri.toString().length() > MAX_SEARCH_URI_LENGTH) {
+                    result = restclient.post(getBaseUri() + "search", createSearchRequest(
+                        jql, includedFields, expandFields, maxResults, startAt, validateQuery));
+                } else
+                    result = restclient.get(searchUri);
             } catch (Exception ex) {
                 throw new JiraException("Failed to search issues", ex);
             }
@@ -685,13 +685,21 @@ public class Issue extends Resource {
         public SearchResult(RestClient restclient, String jql, String includedFields, 
                             String expandFields, Integer maxResults, Integer startAt)
                             throws JiraException {
+            this(restclient, jql, includedFields, expandFields, maxResults, startAt, true);
+        }
+
+        public SearchResult(RestClient restclient, String jql, String includedFields,
+                            String expandFields, Integer maxResults, Integer startAt,
+                            boolean validateQuery)
+                            throws JiraException {
             this.issueIterator = new IssueIterator(
                 restclient,
                 jql,
                 includedFields,
                 expandFields,
                 maxResults,
-                startAt
+                startAt,
+                validateQuery
             );
             /* backwards compatibility shim - first page only */
             this.issueIterator.hasNext();
@@ -762,7 +770,18 @@ public class Issue extends Resource {
 
     }
 
+    /**
+     * Searches whose GET URI would be longer than this are POSTed instead.
+     */
+    public static final int MAX_SEARCH_URI_LENGTH = 2000;
+
+    /**
+     * Number of keys asked for by the first search of {@link #get(RestClient, Collection, String)}.
+     */
+    static final int MAX_KEYS_PER_SEARCH = 1000;
+
     private String key = null;
+    private JSONObject json = null;
     private Map fields = null;
 
     /* system fields */
@@ -813,6 +832,7 @@ public class Issue extends Resource {
     private void deserialise(JSONObject json) {
         Map map = json;
 
+        this.json = json;
         id = Field.getString(map.get("id"));
         self = Field.getString(map.get("self"));
         key = Field.getString(map.get("key"));
@@ -898,7 +918,106 @@ public class Issue extends Resource {
         return projects.get(0).getIssueTypes().get(0).getFields();
     }
 
+    /**
+     * Serialises field values and operations into an edit request.
+     *
+     * @throws JiraException when no fields were given or a value is bad
+     */
+    static JSONObject toUpdateRequest(Map<String, Object> fields, Map<String, List> fieldOpers,
+        JSONObject editmeta) throws JiraException {
+
+        JSONObject fieldmap = new JSONObject();
+        JSONObject updatemap = new JSONObject();
+
+        if (fields.size() == 0 && fieldOpers.size() == 0)
+            throw new JiraException("No fields were given for update");
+
+        for (Map.Entry<String, Object> ent : fields.entrySet()) {
+            Object newval = Field.toJson(ent.getKey(), ent.getValue(), editmeta);
+            fieldmap.put(ent.getKey(), newval);
+        }
+
+        for (Map.Entry<String, List> ent : fieldOpers.entrySet()) {
+            Object newval = Field.toJson(ent.getKey(), ent.getValue(), editmeta);
+            updatemap.put(ent.getKey(), newval);
+        }
+
+        return updateRequest(fieldmap, updatemap);
+    }
+
+    /**
+     * Serialises field values and operations into an edit request with
+     * precompiled encoders.
+     *
+     * @throws JiraException when no fields were given or a value is bad
+     */
+    static JSONObject toUpdateRequest(Map<String, Object> fields, Map<String, List> fieldOpers,
+        FieldSerializer serializer) throws JiraException {
+
+        JSONObject fieldmap = new JSONObject();
+        JSONObject updatemap = new JSONObject();
+
+        if (fields.size() == 0 && fieldOpers.size() == 0)
+            throw new JiraException("No fields were given for update");
+
+        for (Map.Entry<String, Object> ent : fields.entrySet())
+            fieldmap.put(ent.getKey(), serializer.toJson(ent.getKey(), ent.getValue()));
+
+        for (Map.Entry<String, List> ent : fieldOpers.entrySet())
+            updatemap.put(ent.getKey(), serializer.toJson(ent.getKey(), ent.getValue()));
+
+        return updateRequest(fieldmap, updatemap);
+    }
+
+    private static JSONObject updateRequest(JSONObject fieldmap, JSONObject updatemap) {
+        JSONObject req = new JSONObject();
+
+        if (fieldmap.size() > 0)
+            req.put("fields", fieldmap);
+
+        if (updatemap.size() > 0)
+            req.put("update", updatemap);
+
+        return req;
+    }
+
+    /**
+     * Builds a transition request.
+     */
+    static JSONObject toTransitionRequest(String id, Map<String, Object> fields) {
+        JSONObject fieldmap = new JSONObject();
+
+        for (Map.Entry<String, Object> ent : fields.entrySet()) {
+            fieldmap.put(ent.getKey(), ent.getValue());
+        }
+
+        JSONObject req = new JSONObject();
+
+        if (fieldmap.size() > 0)
+            req.put("fields", fieldmap);
+
+        JSONObject t = new JSONObject();
+        t.put("id", Field.getString(id));
+
+        req.put("transition", t);
+        return req;
+    }
+
     private JSONObject getEditMetadata() throws JiraException {
+        return getEditMetadata(restclient, key);
+    }
+
+    /**
+     * Retrieves the edit metadata of an issue.
+     *
+     * @param restclient REST client instance
+     * @param key Issue key
+     *
+     * @return the field metadata
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    static JSONObject getEditMetadata(RestClient restclient, String key) throws JiraException {
         JSON result = null;
 
         try {
@@ -920,6 +1039,20 @@ public class Issue extends Resource {
     }
 
     public List<Transition> getTransitions() throws JiraException {
+        return getTransitions(restclient, key);
+    }
+
+    /**
+     * Retrieves the transitions available to an issue, with their fields.
+     *
+     * @param restclient REST client instance
+     * @param key Issue key
+     *
+     * @return the transitions
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    static List<Transition> getTransitions(RestClient restclient, String key) throws JiraException {
         JSON result = null;
 
         try {
@@ -932,8 +1065,20 @@ public class Issue extends Resource {
             throw new JiraException("Failed to retrieve transitions", ex);
         }
 
-        JSONObject jo = (JSONObject)result;
+        return toTransitions(restclient, (JSONObject)result);
+    }
 
+    /**
+     * Reads the transitions of a transitions or expanded issue response.
+     *
+     * @param restclient REST client instance
+     * @param jo Response holding a transitions array
+     *
+     * @return the transitions
+     *
+     * @throws JiraException when the transitions are missing
+     */
+    static List<Transition> toTransitions(RestClient restclient, JSONObject jo) throws JiraException {
         if (jo.isNullObject() || !jo.containsKey("transitions") ||
                 !(jo.get("transitions") instanceof JSONArray))
             throw new JiraException("Transition metadata is missing.");
@@ -1201,9 +1346,45 @@ public class Issue extends Resource {
     public static FluentCreate create(RestClient restclient, String project, String issueType)
         throws JiraException {
 
-        FluentCreate fc = new FluentCreate(
-            restclient,
+        return create(restclient, project, issueType,
             getCreateMetadata(restclient, project, issueType));
+    }
+
+    /**
+     * Creates a new JIRA issue using previously retrieved metadata.
+     *
+     * @param restclient REST client instance
+     * @param project Key of the project to create the issue in
+     * @param issueType Name of the issue type to create
+     * @param createmeta Metadata from {@link #getCreateMetadata}
+     *
+     * @return a fluent create instance
+     */
+    static FluentCreate create(RestClient restclient, String project, String issueType,
+        JSONObject createmeta) {
+
+        FluentCreate fc = new FluentCreate(restclient, createmeta);
+
+        return fc
+            .field(Field.PROJECT, project)
+            .field(Field.ISSUE_TYPE, issueType);
+    }
+
+    /**
+     * Creates a new JIRA issue using a serializer compiled from previously
+     * retrieved metadata.
+     *
+     * @param restclient REST client instance
+     * @param project Key of the project to create the issue in
+     * @param issueType Name of the issue type to create
+     * @param serializer Serializer compiled from {@link #getCreateMetadata}
+     *
+     * @return a fluent create instance
+     */
+    static FluentCreate create(RestClient restclient, String project, String issueType,
+        FieldSerializer serializer) {
+
+        FluentCreate fc = new FluentCreate(restclient, serializer);
 
         return fc
             .field(Field.PROJECT, project)
@@ -1356,13 +1537,42 @@ public class Issue extends Resource {
             String includedFields, String expandFields, Integer maxResults,
             Integer startAt) throws JiraException {
 
+        return search(restclient, jql, includedFields, expandFields, maxResults, startAt, true);
+    }
+
+    /**
+     * Search for issues with the given query, optionally without query
+     * validation. When the query isn't validated, values that don't exist
+     * (such as the keys of deleted issues in a <code>key in (...)</code>
+     * clause) match nothing instead of failing the whole search.
+     *
+     * @param restclient REST client instance
+     * @param jql JQL statement
+     * @param includedFields Specifies which issue fields will be included in
+     * the result, or null for navigable fields
+     * @param expandFields fields to expand when obtaining the issue
+     * @param maxResults if non-<code>null</code>, defines the maximum number of
+     * results that can be returned
+     * @param startAt if non-<code>null</code>, defines the first issue to
+     * return
+     * @param validateQuery false to have the server ignore unknown values
+     *
+     * @return a search result structure with results
+     *
+     * @throws JiraException when the search fails
+     */
+    public static SearchResult search(RestClient restclient, String jql,
+            String includedFields, String expandFields, Integer maxResults,
+            Integer startAt, boolean validateQuery) throws JiraException {
+
         return new SearchResult(
             restclient,
             jql,
             includedFields,
             expandFields,
             maxResults,
-            startAt
+            startAt,
+            validateQuery
         );
     }
 
@@ -1375,12 +1585,13 @@ public class Issue extends Resource {
      * @param expandFields
      * @param maxResults
      * @param startAt
+     * @param validateQuery
      * @return the URI to execute a jql search.
      * @throws URISyntaxException
      */
     private static URI createSearchURI(RestClient restclient, String jql,
             String includedFields, String expandFields, Integer maxResults,
-            Integer startAt) throws URISyntaxException {
+            Integer startAt, boolean validateQuery) throws URISyntaxException {
         Map<String, String> queryParams = new HashMap<String, String>();
         queryParams.put("jql", jql);
         if(maxResults != null){
@@ -1395,11 +1606,122 @@ public class Issue extends Resource {
         if (startAt != null) {
             queryParams.put("startAt", String.valueOf(startAt));
         }
+        if (!validateQuery) {
+            queryParams.put("validateQuery", "false");
+        }
 
         URI searchUri = restclient.buildURI(getBaseUri() + "search", queryParams);
         return searchUri;
     }
 
+    /**
+     * Creates the JSON body to execute a jql search with POST.
+     */
+    private static JSONObject createSearchRequest(String jql, String includedFields,
+            String expandFields, Integer maxResults, Integer startAt, boolean validateQuery) {
+
+        JSONObject req = new JSONObject();
+        req.put("jql", jql);
+        if (startAt != null) {
+            req.put("startAt", startAt);
+        }
+        if (maxResults != null) {
+            req.put("maxResults", maxResults);
+        }
+        if (includedFields != null) {
+            req.put("fields", splitList(includedFields));
+        }
+        if (expandFields != null) {
+            req.put("expand", splitList(expandFields));
+        }
+        if (!validateQuery) {
+            req.put("validateQuery", false);
+        }
+
+        return req;
+    }
+
+    private static JSONArray splitList(String list) {
+        JSONArray result = new JSONArray();
+
+        for (String item : list.split(",")) {
+            if (!item.trim().isEmpty())
+                result.add(item.trim());
+        }
+
+        return result;
+    }
+
+    /**
+     * Retrieves the given issues with as few searches as possible. Searches
+     * too long for a GET are POSTed, so the number of keys per search is
+     * only limited by the server's page size, which is learned from the
+     * first response. The searches aren't validated, so keys of deleted
+     * issues don't fail them.
+     *
+     * @param restclient REST client instance
+     * @param keys Issue keys (PROJECT-123)
+     * @param includedFields Specifies which issue fields will be included in
+     * the result, or null for navigable fields
+     *
+     * @return the issues found, in the order of the given keys; issues the
+     * server returns under another key (moved issues) come last and keys
+     * that don't exist are left out
+     *
+     * @throws JiraException when a search fails
+     */
+    public static List<Issue> get(RestClient restclient, Collection<String> keys,
+            String includedFields) throws JiraException {
+
+        List<String> wanted = new ArrayList<String>(new LinkedHashSet<String>(keys));
+        Map<String, Issue> found = new HashMap<String, Issue>();
+        List<Issue> others = new ArrayList<Issue>();
+        int pageSize = MAX_KEYS_PER_SEARCH;
+
+        for (int i = 0; i < wanted.size(); ) {
+            List<String> chunk = wanted.subList(i, Math.min(wanted.size(), i + pageSize));
+            StringBuilder jql = new StringBuilder("key in (");
+
+            for (int j = 0; j < chunk.size(); j++)
+                jql.append(j > 0 ? "," : "").append('"').append(chunk.get(j)).append('"');
+
+            jql.append(")");
+            int startAt = 0;
+
+            while (true) {
+                SearchResult result = search(
+                    restclient, jql.toString(), includedFields, null, chunk.size(), startAt, false);
+
+                for (Issue issue : result.issues) {
+                    if (chunk.contains(issue.getKey()))
+                        found.put(issue.getKey(), issue);
+                    else
+                        others.add(issue);
+                }
+
+                if (result.max > 0)
+                    pageSize = Math.min(pageSize, result.max);
+
+                startAt += result.issues.size();
+
+                if (result.issues.isEmpty() || startAt >= result.total)
+                    break;
+            }
+
+            i += chunk.size();
+        }
+
+        List<Issue> issues = new ArrayList<Issue>();
+
+        for (String key : wanted) {
+            if (found.containsKey(key))
+                issues.add(found.get(key));
+        }
+
+        issues.addAll(others);
+        return issues;
+    }
+
     /**
      * Reloads issue data from the JIRA server (issue includes all navigable
      * fields).
@@ -1447,6 +1769,15 @@ public class Issue extends Resource {
         return fields != null ? fields.get(name) : null;
     }
 
+    /**
+     * Gets the JSON payload this issue was decoded from.
+     *
+     * @return the raw issue JSON or null
+     */
+    public JSONObject getJson() {
+        return json;
+    }
+
     /**
      * Begins a transition field chain.
      *
@@ -1458,6 +1789,20 @@ public class Issue extends Resource {
         return new FluentTransition(getTransitions());
     }
 
+    /**
+     * Begins a transition field chain that looks up the transition through
+     * a shared resolver. Nothing is fetched until the transition executes,
+     * and then nothing but the POST when the resolver has seen the workflow
+     * state this issue was loaded in.
+     *
+     * @param resolver Resolver caching transitions by workflow state
+     *
+     * @return a fluent transition instance
+     */
+    public FluentTransition transition(TransitionResolver resolver) {
+        return new FluentTransition(resolver);
+    }
+
     /**
      * Begins an update field chain.
      *
@@ -1609,6 +1954,20 @@ public class Issue extends Resource {
     }
 
     public List<RemoteLink> getRemoteLinks() throws JiraException {
+        return getRemoteLinks(restclient, key);
+    }
+
+    /**
+     * Retrieves the remote links of an issue.
+     *
+     * @param restclient REST client instance
+     * @param key Issue key
+     *
+     * @return the remote links
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    static List<RemoteLink> getRemoteLinks(RestClient restclient, String key) throws JiraException {
         JSONArray obj;
         try {
             URI uri = restclient.buildURI(getRestUri(key) + "/remotelink");
@@ -1663,6 +2022,20 @@ public class Issue extends Resource {
     }
 
     public List<WorkLog> getAllWorkLogs() throws JiraException {
+        return getAllWorkLogs(restclient, key);
+    }
+
+    /**
+     * Retrieves all work logs of an issue.
+     *
+     * @param restclient REST client instance
+     * @param key Issue key
+     *
+     * @return the work logs
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    static List<WorkLog> getAllWorkLogs(RestClient restclient, String key) throws JiraException {
         JSONObject obj;
         try {
             URI uri = restclient.buildURI(getRestUri(key) + "/worklog");
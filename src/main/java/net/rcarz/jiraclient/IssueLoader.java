@@ -0,0 +1,470 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges issue lookups made close together into one search.
+ *
+ * Lookups are collected for a short window, or until a batch is full, and
+ * then fetched with a single <code>key in (...)</code> search asking for
+ * the union of the fields the callers requested. Callers may therefore
+ * get more fields than they asked for. Keys the search doesn't return,
+ * such as issues moved to another project, are retried one at a time so
+ * each caller gets the same result or error as {@link Issue#get}.
+ *
+ * A {@link Scope} adds per-key caching on top of the shared loader, meant
+ * to live for the duration of one request.
+ */
+public class IssueLoader implements Closeable {
+
+    public static final long DEFAULT_WINDOW = 5;
+    public static final int DEFAULT_MAX_BATCH = 50;
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    private static final String NAVIGABLE = "*navigable";
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private static final ThreadFactory FACTORY = new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "jira-loader-" + THREADS.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    };
+
+    private static final Callable<Issue> UNUSED = new Callable<Issue>() {
+        public Issue call() {
+            throw new IllegalStateException("loads are completed by the loader");
+        }
+    };
+
+    /**
+     * A lookup waiting for its batch.
+     */
+    private static final class Request extends FutureTask<Issue> {
+        private final String key;
+        private final String includedFields;
+
+        Request(String key, String includedFields) {
+            super(UNUSED);
+            this.key = key;
+            this.includedFields = includedFields;
+        }
+
+        @Override
+        public void set(Issue issue) {
+            super.set(issue);
+        }
+
+        @Override
+        public void setException(Throwable t) {
+            super.setException(t);
+        }
+    }
+
+    /**
+     * Caches lookups by key and fields for as long as the scope is kept.
+     */
+    public final class Scope {
+        private final ConcurrentMap<String, Future<Issue>> cache =
+            new ConcurrentHashMap<String, Future<Issue>>();
+
+        private Scope() {
+        }
+
+        /**
+         * Queues a lookup unless the same one was already made in this scope.
+         *
+         * @param key Issue key (PROJECT-123)
+         *
+         * @return the pending issue
+         */
+        public Future<Issue> load(String key) {
+            return load(key, null);
+        }
+
+        /**
+         * Queues a lookup unless the same one was already made in this scope.
+         *
+         * @param key Issue key (PROJECT-123)
+         * @param includedFields Fields to include, or null for navigable fields
+         *
+         * @return the pending issue
+         */
+        public Future<Issue> load(String key, String includedFields) {
+            String id = includedFields != null ? key + "?" + includedFields : key;
+            Future<Issue> future = cache.get(id);
+
+            if (future == null) {
+                Future<Issue> fresh = IssueLoader.this.load(key, includedFields);
+                future = cache.putIfAbsent(id, fresh);
+
+                if (future == null)
+                    future = fresh;
+            }
+
+            return future;
+        }
+
+        public Issue get(String key) throws JiraException {
+            return await(key, load(key));
+        }
+
+        public Issue get(String key, String includedFields) throws JiraException {
+            return await(key, load(key, includedFields));
+        }
+
+        /**
+         * Forgets every cached lookup of the given issue.
+         *
+         * @param key Issue key (PROJECT-123)
+         */
+        public void clear(String key) {
+            Iterator<String> iter = cache.keySet().iterator();
+
+            while (iter.hasNext()) {
+                String id = iter.next();
+
+                if (id.equals(key) || id.startsWith(key + "?"))
+                    iter.remove();
+            }
+        }
+
+        /**
+         * Forgets every cached lookup.
+         */
+        public void clearAll() {
+            cache.clear();
+        }
+    }
+
+    private final RestClient restclient;
+    private final long window;
+    private final int maxBatch;
+    private final ScheduledThreadPoolExecutor workers;
+    private List<Request> pending = new ArrayList<Request>();
+    private ScheduledFuture<?> timer = null;
+    private boolean closed = false;
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    private final Runnable flusher = new Runnable() {
+        public void run() {
+            List<Request> batch;
+
+            synchronized (IssueLoader.this) {
+                batch = pending;
+                pending = new ArrayList<Request>();
+                timer = null;
+            }
+
+            if (!batch.isEmpty())
+                dispatch(batch);
+        }
+    };
+
+    /**
+     * Creates a loader with the default window, batch size and concurrency.
+     *
+     * @param restclient REST client instance
+     */
+    public IssueLoader(RestClient restclient) {
+        this(restclient, DEFAULT_WINDOW, DEFAULT_MAX_BATCH, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Creates a loader.
+     *
+     * @param restclient REST client instance
+     * @param window Time to collect lookups before searching, in milliseconds
+     * @param maxBatch Number of queued lookups that triggers a search early
+     * @param concurrency Maximum number of searches in flight
+     */
+    public IssueLoader(RestClient restclient, long window, int maxBatch, int concurrency) {
+        this.restclient = restclient;
+        this.window = Math.max(window, 0);
+        this.maxBatch = Math.max(maxBatch, 1);
+
+        workers = new ScheduledThreadPoolExecutor(Math.max(concurrency, 1), FACTORY);
+        workers.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Queues a lookup of the issue's navigable fields.
+     *
+     * @param key Issue key (PROJECT-123)
+     *
+     * @return the pending issue
+     */
+    public Future<Issue> load(String key) {
+        return load(key, null);
+    }
+
+    /**
+     * Queues a lookup.
+     *
+     * @param key Issue key (PROJECT-123)
+     * @param includedFields Fields to include, or null for navigable fields
+     *
+     * @return the pending issue, failing with a JiraException
+     */
+    public Future<Issue> load(String key, String includedFields) {
+        Request req = new Request(key, includedFields);
+        List<Request> full = null;
+
+        synchronized (this) {
+            if (closed) {
+                req.setException(new JiraException("Issue loader is closed"));
+                return req;
+            }
+
+            requested.incrementAndGet();
+            pending.add(req);
+
+            if (pending.size() >= maxBatch) {
+                full = pending;
+                pending = new ArrayList<Request>();
+
+                if (timer != null) {
+                    timer.cancel(false);
+                    timer = null;
+                }
+            } else if (timer == null) {
+                timer = workers.schedule(flusher, window, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (full != null) {
+            final List<Request> batch = full;
+
+            workers.execute(new Runnable() {
+                public void run() {
+                    dispatch(batch);
+                }
+            });
+        }
+
+        return req;
+    }
+
+    /**
+     * Looks up an issue's navigable fields, waiting for its batch.
+     *
+     * @param key Issue key (PROJECT-123)
+     *
+     * @return an issue instance
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    public Issue get(String key) throws JiraException {
+        return await(key, load(key));
+    }
+
+    /**
+     * Looks up an issue, waiting for its batch.
+     *
+     * @param key Issue key (PROJECT-123)
+     * @param includedFields Fields to include, or null for navigable fields
+     *
+     * @return an issue instance
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    public Issue get(String key, String includedFields) throws JiraException {
+        return await(key, load(key, includedFields));
+    }
+
+    /**
+     * Starts a request scope caching lookups by key.
+     *
+     * @return a new scope
+     */
+    public Scope newScope() {
+        return new Scope();
+    }
+
+    private static Issue await(String key, Future<Issue> future) throws JiraException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Interrupted while retrieving issue " + key, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof JiraException)
+                throw (JiraException)ex.getCause();
+
+            throw new JiraException("Failed to retrieve issue " + key, ex.getCause());
+        }
+    }
+
+    /**
+     * Builds the field list covering every request in the batch.
+     */
+    static String unionFields(Iterable<String> includedFields) {
+        Set<String> union = new LinkedHashSet<String>();
+
+        for (String fields : includedFields) {
+            if (fields == null) {
+                union.add(NAVIGABLE);
+                continue;
+            }
+
+            for (String f : fields.split(",")) {
+                if (!f.trim().isEmpty())
+                    union.add(f.trim());
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for (String f : union)
+            sb.append(sb.length() > 0 ? "," : "").append(f);
+
+        return sb.toString();
+    }
+
+    private void dispatch(List<Request> batch) {
+        Map<String, List<Request>> byKey = new LinkedHashMap<String, List<Request>>();
+        List<String> wanted = new ArrayList<String>();
+
+        for (Request req : batch) {
+            List<Request> reqs = byKey.get(req.key);
+
+            if (reqs == null) {
+                reqs = new ArrayList<Request>();
+                byKey.put(req.key, reqs);
+            }
+
+            reqs.add(req);
+            wanted.add(req.includedFields);
+        }
+
+        String fields = unionFields(wanted);
+        StringBuilder jql = new StringBuilder("key in (");
+        int n = 0;
+
+        for (String key : byKey.keySet())
+            jql.append(n++ > 0 ? "," : "").append('"').append(key).append('"');
+
+        batches.incrementAndGet();
+
+        try {
+            /* first page only, anything cut off by the server falls back below */
+            Issue.SearchResult result = Issue.search(
+                restclient, jql.append(")").toString(), fields, null, byKey.size(), null, false);
+
+            for (Issue found : result.issues) {
+                List<Request> reqs = byKey.remove(found.getKey());
+
+                if (reqs == null)
+                    continue;
+
+                for (Request req : reqs)
+                    req.set(new Issue(restclient, found.getJson()));
+            }
+        } catch (Exception ex) {
+            /* the keys are looked up one by one below, so each caller gets its own answer */
+        }
+
+        /* not found by key, maybe moved, or the search failed; let a plain GET decide */
+        for (Map.Entry<String, List<Request>> e : byKey.entrySet()) {
+            fallbacks.incrementAndGet();
+
+            try {
+                Issue issue = Issue.get(restclient, e.getKey(), fields);
+
+                for (Request req : e.getValue())
+                    req.set(new Issue(restclient, issue.getJson()));
+            } catch (JiraException ex) {
+                for (Request req : e.getValue())
+                    req.setException(ex);
+            }
+        }
+    }
+
+    /**
+     * Sends any collected lookups and stops the loader. Lookups queued
+     * afterwards fail.
+     */
+    public void close() {
+        List<Request> batch;
+
+        synchronized (this) {
+            if (closed)
+                return;
+
+            closed = true;
+            batch = pending;
+            pending = new ArrayList<Request>();
+
+            if (timer != null)
+                timer.cancel(false);
+        }
+
+        if (!batch.isEmpty())
+            dispatch(batch);
+
+        workers.shutdown();
+    }
+
+    /**
+     * @return number of lookups queued
+     */
+    public long getRequested() {
+        return requested.get();
+    }
+
+    /**
+     * @return number of searches made for batches
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * @return number of keys fetched one at a time after the search missed them
+     */
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+}
@@ -19,14 +19,19 @@
 
 package net.rcarz.jiraclient;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import net.rcarz.jiraclient.mirror.IssueMirror;
+import net.rcarz.jiraclient.outbox.Outbox;
+
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.PoolingClientConnectionManager;
@@ -42,6 +47,9 @@ public class JiraClient {
 
     private RestClient restclient = null;
     private String username = null;
+    private IssueMirror mirror = null;
+    private long mirrorMaxAge = 0;
+    private TransitionResolver transitionResolver = null;
 
     /**
      * Creates a JIRA client.
@@ -81,6 +89,7 @@ public class JiraClient {
         }
 
         restclient = new RestClient(httpClient, creds, URI.create(uri));
+        transitionResolver = new TransitionResolver(restclient);
 
         if (creds != null) {
             username = creds.getLogonName();
@@ -105,6 +114,103 @@ public class JiraClient {
         return Issue.create(restclient, project, issueType);
     }
 
+    /**
+     * Starts a bulk creation of issues.
+     *
+     * @return an empty bulk create to add issues to
+     */
+    public BulkCreate createIssues() {
+        return new BulkCreate(restclient);
+    }
+
+    /**
+     * Starts a bulk edit or transition of issues.
+     *
+     * @return an empty bulk edit to select issues and changes on
+     */
+    public BulkEdit bulkEdit() {
+        return new BulkEdit(restclient, transitionResolver);
+    }
+
+    /**
+     * Opens a write-behind outbox for comments, work logs and updates.
+     *
+     * @param journal Journal file, created if it doesn't exist
+     *
+     * @return the outbox, which must be closed when done
+     *
+     * @throws JiraException when the journal cannot be opened
+     */
+    public Outbox openOutbox(File journal) throws JiraException {
+        return new Outbox(restclient, journal);
+    }
+
+    /**
+     * Opens a loader that merges issue lookups made close together into
+     * one search. Share it between the threads making the lookups.
+     *
+     * @return the loader, which should be closed when done
+     */
+    public IssueLoader openIssueLoader() {
+        return new IssueLoader(restclient);
+    }
+
+    /**
+     * Starts updating issues with only the fields that changed.
+     *
+     * @return a diff update, reusable for many issues
+     */
+    public DiffUpdate diffUpdate() {
+        return new DiffUpdate(restclient);
+    }
+
+    /**
+     * Gets the transition cache shared by this client's bulk edits. Pass it
+     * to {@link Issue#transition(TransitionResolver)} to transition single
+     * issues. Once the workflow state an issue was loaded in has been seen,
+     * a transition sends only its POST. An issue loaded without its project,
+     * issue type or status costs an extra GET.
+     *
+     * @return the transition resolver
+     */
+    public TransitionResolver getTransitionResolver() {
+        return transitionResolver;
+    }
+
+    /**
+     * Retrieves an issue and some of its sub-resources concurrently, waiting
+     * at most {@link HydratedIssue#DEFAULT_TIMEOUT} milliseconds.
+     *
+     * @param key Issue key (PROJECT-123)
+     * @param parts Sub-resources to load with the issue
+     *
+     * @return the issue with its parts
+     *
+     * @throws JiraException when any request fails or takes too long
+     */
+    public HydratedIssue getIssueHydrated(String key, HydratedIssue.Part... parts)
+            throws JiraException {
+
+        return HydratedIssue.get(restclient, key, HydratedIssue.DEFAULT_TIMEOUT, parts);
+    }
+
+    /**
+     * Retrieves an issue and some of its sub-resources concurrently.
+     *
+     * @param key Issue key (PROJECT-123)
+     * @param timeout Time to wait for all requests in milliseconds
+     * @param parts Sub-resources to load with the issue
+     *
+     * @return the issue with its parts
+     *
+     * @throws JiraException when any request fails or takes too long
+     */
+    public HydratedIssue getIssueHydrated(String key, long timeout, HydratedIssue.Part... parts)
+            throws JiraException {
+
+        return HydratedIssue.get(restclient, key, timeout, parts);
+    }
+
     /**
      * Retreives the issue with the given key.
      *
@@ -115,7 +221,17 @@ public class JiraClient {
      * @throws JiraException when something goes wrong
      */
     public Issue getIssue(String key) throws JiraException {
-        return Issue.get(restclient, key);
+        if (mirror == null)
+            return Issue.get(restclient, key);
+
+        Issue issue = mirror.getCompleteIssue(key, mirrorMaxAge, restclient);
+
+        if (issue == null) {
+            issue = Issue.get(restclient, key);
+            mirror.putComplete(issue);
+        }
+
+        return issue;
     }
 
     /**
@@ -167,6 +283,38 @@ public class JiraClient {
         return Issue.get(restclient, key, includedFields, expand);
     }
 
+    /**
+     * Retreives the issues with the given keys using as few searches as
+     * possible.
+     *
+     * @param keys Issue keys (PROJECT-123)
+     *
+     * @return the issues found, in the order of the given keys
+     *
+     * @throws JiraException when something goes wrong
+     */
+    public List<Issue> getIssues(Collection<String> keys) throws JiraException {
+        return Issue.get(restclient, keys, null);
+    }
+
+    /**
+     * Retreives the issues with the given keys using as few searches as
+     * possible.
+     *
+     * @param keys Issue keys (PROJECT-123)
+     * @param includedFields Specifies which issue fields will be included in
+     * the result, see {@link #getIssue(String, String)}
+     *
+     * @return the issues found, in the order of the given keys
+     *
+     * @throws JiraException when something goes wrong
+     */
+    public List<Issue> getIssues(Collection<String> keys, String includedFields)
+            throws JiraException {
+
+        return Issue.get(restclient, keys, includedFields);
+    }
+
     /**
      * count issues with the given query.
      *
@@ -364,7 +512,7 @@ public class JiraClient {
                                            String expandFields, Integer maxResults,
                                            Integer startAt) throws JiraException {
 
-        return Issue.search(
+        Issue.SearchResult result = Issue.search(
             restclient,
             jql,
             includedFields,
@@ -372,6 +520,12 @@ public class JiraClient {
             maxResults,
             startAt
         );
+
+        /* navigable fields only, so stored as partial and never served by getIssue */
+        if (mirror != null && includedFields == null)
+            mirror.accept(result.issues);
+
+        return result;
     }
 
     /**
@@ -454,6 +608,26 @@ public class JiraClient {
         return restclient;
     }
 
+    /**
+     * Enables read-through mode. {@link #getIssue(String)} is served from the
+     * mirror when the mirrored copy was fetched with all fields and is
+     * younger than the given age, otherwise the issue is fetched and stored.
+     * Searches that fetch all navigable fields also feed the mirror, for
+     * local queries, but their copies lack the non-navigable fields and are
+     * never served by getIssue.
+     *
+     * @param mirror Issue mirror, or null to disable read-through mode
+     * @param maxAge Maximum age of a mirrored issue in milliseconds
+     */
+    public void setIssueMirror(IssueMirror mirror, long maxAge) {
+        this.mirror = mirror;
+        this.mirrorMaxAge = maxAge;
+    }
+
+    public IssueMirror getIssueMirror() {
+        return mirror;
+    }
+
     public String getSelf() {
         return username;
     }
@@ -21,6 +21,8 @@ package net.rcarz.jiraclient;
 
 import org.apache.http.Header;
 
+import java.io.IOException;
+
 /**
  * An exception for JIRA REST errors.
  */
@@ -53,4 +55,26 @@ public class RestException extends Exception {
     public String getMessage() {
         return String.format("%s %s: %s", Integer.toString(status), super.getMessage(), result);
     }
+
+    /**
+     * Checks whether a failure is worth retrying: connection trouble, rate
+     * limiting (429) or a server error (5xx) anywhere in the cause chain.
+     *
+     * @param t Failure to check
+     *
+     * @return true if the request may succeed when repeated
+     */
+    public static boolean isTransient(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof IOException)
+                return true;
+
+            if (t instanceof RestException) {
+                int status = ((RestException)t).getHttpStatusCode();
+                return status == 429 || status >= 500;
+            }
+        }
+
+        return false;
+    }
 }
@@ -0,0 +1,359 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Caches the transitions available in a workflow state.
+ *
+ * Issues of the same project and issue type in the same status normally
+ * share their transitions, so the transitions and their field metadata
+ * are looked up once per (project, issue type, status). The entry is
+ * picked by the state the given {@link Issue} was loaded in, so once a
+ * state has been seen a transition sends only its POST. An issue that
+ * changed state since it was loaded may resolve against the wrong entry:
+ * a transition missing from the entry is looked up again against the
+ * issue's current state, and when the server rejects a cached transition
+ * the entry is dropped and the transition is resolved again. Conditions
+ * that depend on the issue itself aren't captured either way. Issues
+ * without a known project, issue type or status cost an extra GET, for
+ * their current state and its transitions, every time.
+ */
+public class TransitionResolver {
+
+    private static final String STATE_FIELDS =
+        Field.PROJECT + "," + Field.ISSUE_TYPE + "," + Field.STATUS;
+
+    /**
+     * Transitions of an issue with the workflow state they were fetched in.
+     */
+    private static final class State {
+        final String cacheKey;
+        final List<Transition> transitions;
+
+        State(String cacheKey, List<Transition> transitions) {
+            this.cacheKey = cacheKey;
+            this.transitions = transitions;
+        }
+    }
+
+    private RestClient restclient = null;
+    private ConcurrentMap<String, FutureTask<State>> cache =
+        new ConcurrentHashMap<String, FutureTask<State>>();
+
+    /**
+     * Creates an empty resolver.
+     *
+     * @param restclient REST client instance
+     */
+    public TransitionResolver(RestClient restclient) {
+        this.restclient = restclient;
+    }
+
+    private static String cacheKey(Issue issue) {
+        if (issue.getProject() == null || issue.getIssueType() == null || issue.getStatus() == null)
+            return null;
+
+        return issue.getProject().getKey() + "/" + issue.getIssueType().getId() + "/" +
+            issue.getStatus().getId();
+    }
+
+    /**
+     * Fetches the current workflow state of an issue with its transitions.
+     */
+    private State load(String key) throws JiraException {
+        JSON result = null;
+
+        try {
+            Map<String, String> params = new HashMap<String, String>();
+            params.put("fields", STATE_FIELDS);
+            params.put("expand", "transitions.fields");
+
+            result = restclient.get(restclient.buildURI(Resource.getBaseUri() + "issue/" + key, params));
+        } catch (Exception ex) {
+            throw new JiraException("Failed to retrieve issue " + key, ex);
+        }
+
+        if (!(result instanceof JSONObject))
+            throw new JiraException("JSON payload is malformed");
+
+        JSONObject json = (JSONObject)result;
+        return new State(cacheKey(new Issue(restclient, json)), Issue.toTransitions(restclient, json));
+    }
+
+    private static FutureTask<State> done(final State state) {
+        FutureTask<State> task = new FutureTask<State>(
+            new Callable<State>() {
+                public State call() {
+                    return state;
+                }
+            });
+        task.run();
+        return task;
+    }
+
+    /**
+     * Loads the current state of an issue and caches it, replacing what
+     * was cached for that state.
+     */
+    private State reload(String key) throws JiraException {
+        State state = load(key);
+
+        if (state.cacheKey != null)
+            cache.put(state.cacheKey, done(state));
+
+        return state;
+    }
+
+    private State lookup(final Issue issue) throws JiraException {
+        String cacheKey = cacheKey(issue);
+
+        if (cacheKey == null)
+            return reload(issue.getKey());
+
+        FutureTask<State> task = new FutureTask<State>(
+            new Callable<State>() {
+                public State call() throws JiraException {
+                    return load(issue.getKey());
+                }
+            });
+        FutureTask<State> existing = cache.putIfAbsent(cacheKey, task);
+
+        if (existing == null) {
+            existing = task;
+            task.run();
+        }
+
+        State state = null;
+
+        try {
+            state = existing.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Interrupted while retrieving transitions", ex);
+        } catch (ExecutionException ex) {
+            cache.remove(cacheKey, existing);
+
+            if (ex.getCause() instanceof JiraException)
+                throw (JiraException)ex.getCause();
+
+            throw new JiraException("Failed to retrieve transitions", ex.getCause());
+        }
+
+        if (existing == task && !cacheKey.equals(state.cacheKey)) {
+            /* the issue changed state since it was loaded, so the
+               transitions belong to its current state */
+            cache.remove(cacheKey, existing);
+
+            if (state.cacheKey != null)
+                cache.put(state.cacheKey, existing);
+        }
+
+        return state;
+    }
+
+    /**
+     * Gets the transitions available to an issue in the state it was loaded
+     * in.
+     *
+     * @param issue Issue to look up, its project, issue type and status pick
+     * the cached entry
+     *
+     * @return the transitions, including their fields
+     *
+     * @throws JiraException when the lookup fails
+     */
+    public List<Transition> getTransitions(Issue issue) throws JiraException {
+        return lookup(issue).transitions;
+    }
+
+    private static Transition find(List<Transition> transitions, String value, boolean isName) {
+        for (Transition t : transitions) {
+            if (value.equals(isName ? t.getName() : t.getId()))
+                return t;
+        }
+
+        return null;
+    }
+
+    private static Transition require(List<Transition> transitions, String value, boolean isName)
+        throws JiraException {
+
+        Transition t = find(transitions, value, isName);
+
+        if (t == null)
+            throw new JiraException("Transition '" + value + "' was not found. Known transitions are:" +
+                Arrays.toString(transitions.toArray()));
+
+        return t;
+    }
+
+    /**
+     * Finds a transition in the cached entry of an issue, or else in the
+     * issue's current state.
+     */
+    private Transition find(Issue issue, String value, boolean isName) throws JiraException {
+        Transition t = find(lookup(issue).transitions, value, isName);
+        return t != null ? t : require(reload(issue.getKey()).transitions, value, isName);
+    }
+
+    /**
+     * Finds a transition of an issue by name.
+     *
+     * @param issue Issue to look up
+     * @param name Transition name
+     *
+     * @return the transition
+     *
+     * @throws JiraException when the lookup fails or there's no such transition
+     */
+    public Transition resolve(Issue issue, String name) throws JiraException {
+        return find(issue, name, true);
+    }
+
+    /**
+     * Finds a transition of an issue by ID.
+     *
+     * @param issue Issue to look up
+     * @param id Internal transition ID
+     *
+     * @return the transition
+     *
+     * @throws JiraException when the lookup fails or there's no such transition
+     */
+    public Transition resolve(Issue issue, int id) throws JiraException {
+        return find(issue, Integer.toString(id), false);
+    }
+
+    private void post(Issue issue, Transition trans, Map<String, Object> fields) throws RestException, JiraException {
+        try {
+            restclient.post(
+                Resource.getBaseUri() + "issue/" + issue.getKey() + "/transitions",
+                Issue.toTransitionRequest(trans.getId(), fields));
+        } catch (RestException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new JiraException("Failed to transition issue " + issue.getKey(), ex);
+        }
+    }
+
+    private void transition(Issue issue, String value, boolean isName, Map<String, Object> fields)
+        throws JiraException {
+
+        Transition trans = find(issue, value, isName);
+
+        try {
+            post(issue, trans, fields);
+        } catch (RestException ex) {
+            if (ex.getHttpStatusCode() != 400 && ex.getHttpStatusCode() != 404)
+                throw new JiraException("Failed to transition issue " + issue.getKey(), ex);
+
+            invalidate(issue);
+
+            State fresh = reload(issue.getKey());
+            Transition retry = require(fresh.transitions, value, isName);
+
+            if (retry.getId().equals(trans.getId()))
+                throw new JiraException("Failed to transition issue " + issue.getKey(), ex);
+
+            try {
+                post(issue, retry, fields);
+            } catch (RestException ex2) {
+                if (fresh.cacheKey != null)
+                    cache.remove(fresh.cacheKey);
+
+                throw new JiraException("Failed to transition issue " + issue.getKey(), ex2);
+            }
+        }
+    }
+
+    /**
+     * Transitions an issue by transition name. Once the issue's workflow
+     * state is cached this sends only the POST. A rejected transition
+     * invalidates the cached entry and, when the issue's current state
+     * yields a different transition, is retried once.
+     *
+     * @param issue Issue to transition
+     * @param name Transition name
+     * @param fields Fields to set on the transition screen
+     *
+     * @throws JiraException when the transition fails
+     */
+    public void transition(Issue issue, String name, Map<String, Object> fields)
+        throws JiraException {
+
+        transition(issue, name, true, fields);
+    }
+
+    /**
+     * Transitions an issue by transition ID, retried like
+     * {@link #transition(Issue, String, Map)}.
+     *
+     * @param issue Issue to transition
+     * @param id Internal transition ID
+     * @param fields Fields to set on the transition screen
+     *
+     * @throws JiraException when the transition fails
+     */
+    public void transition(Issue issue, int id, Map<String, Object> fields)
+        throws JiraException {
+
+        transition(issue, Integer.toString(id), false, fields);
+    }
+
+    /**
+     * Drops the cached transitions of the workflow state an issue was
+     * loaded in.
+     *
+     * @param issue Issue whose entry is dropped
+     */
+    public void invalidate(Issue issue) {
+        String cacheKey = cacheKey(issue);
+
+        if (cacheKey != null)
+            cache.remove(cacheKey);
+    }
+
+    /**
+     * Drops all cached transitions, e.g. after a workflow was changed.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * @return the number of cached workflow states
+     */
+    public int size() {
+        return cache.size();
+    }
+}
@@ -23,6 +23,7 @@ import net.rcarz.jiraclient.JiraClient;
 import net.rcarz.jiraclient.JiraException;
 import net.rcarz.jiraclient.RestClient;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -109,6 +110,49 @@ public class AgileClient {
         return Epic.get(restclient, id);
     }
 
+    /**
+     * Moves issues into a sprint.
+     *
+     * @param sprintId Sprint ID
+     * @param keys     Keys of the issues to move
+     * @throws JiraException when something goes wrong
+     */
+    public void moveIssuesToSprint(long sprintId, Collection<String> keys) throws JiraException {
+        Sprint.moveIssues(restclient, sprintId, keys);
+    }
+
+    /**
+     * Moves issues to the backlog.
+     *
+     * @param keys Keys of the issues to move
+     * @throws JiraException when something goes wrong
+     */
+    public void moveIssuesToBacklog(Collection<String> keys) throws JiraException {
+        Issue.moveToBacklog(restclient, keys);
+    }
+
+    /**
+     * Ranks issues before another issue, keeping their given order.
+     *
+     * @param keys Keys of the issues to rank, highest first
+     * @param key  Key of the issue to rank them before
+     * @throws JiraException when something goes wrong
+     */
+    public void rankIssuesBefore(Collection<String> keys, String key) throws JiraException {
+        Issue.rankBefore(restclient, keys, key);
+    }
+
+    /**
+     * Ranks issues after another issue, keeping their given order.
+     *
+     * @param keys Keys of the issues to rank, highest first
+     * @param key  Key of the issue to rank them after
+     * @throws JiraException when something goes wrong
+     */
+    public void rankIssuesAfter(Collection<String> keys, String key) throws JiraException {
+        Issue.rankAfter(restclient, keys, key);
+    }
+
     public RestClient getRestclient() {
         return restclient;
     }
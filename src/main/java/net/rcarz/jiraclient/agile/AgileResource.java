@@ -21,15 +21,31 @@ package net.rcarz.jiraclient.agile;
 
 import net.rcarz.jiraclient.Field;
 import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.ResourceFactory;
 import net.rcarz.jiraclient.RestClient;
+import net.rcarz.utils.BoundedExecutor;
 import net.sf.json.JSON;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
+import net.sf.json.util.JSONUtils;
 import org.apache.commons.lang.math.NumberUtils;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 /**
  * A base class for Agile resources.
@@ -45,11 +61,115 @@ public abstract class AgileResource {
 
     public static final String RESOURCE_URI = "/rest/agile/1.0/";
 
+    /**
+     * Maximum number of pages of a list fetched at the same time.
+     */
+    static final int PAGE_CONCURRENCY = 4;
+
+    /**
+     * Which attributes of its JSON payload a resource keeps for
+     * {@link #getAttribute(String)}.
+     */
+    public enum AttributeRetention {
+        /**
+         * Keep no attributes, getAttribute always returns null.
+         */
+        NONE,
+        /**
+         * Keep only the attributes not decoded into typed fields, as compact
+         * JSON text decoded on the first lookup.
+         */
+        UNKNOWN,
+        /**
+         * Keep every attribute, as a read-only view of the payload.
+         */
+        ALL
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Set<String> KNOWN_ATTRIBUTES = knownAttributes();
+
+    private static volatile AttributeRetention attributeRetention = AttributeRetention.ALL;
+
+    private static final Map<Class<?>, ResourceFactory<?>> FACTORIES =
+            new ConcurrentHashMap<Class<?>, ResourceFactory<?>>();
+
+    static {
+        FACTORIES.put(Board.class, new ResourceFactory<Board>() {
+            public Board create(RestClient restclient, JSONObject json) throws JiraException {
+                return new Board(restclient, json);
+            }
+        });
+        FACTORIES.put(Comment.class, new ResourceFactory<Comment>() {
+            public Comment create(RestClient restclient, JSONObject json) throws JiraException {
+                return new Comment(restclient, json);
+            }
+        });
+        FACTORIES.put(Epic.class, new ResourceFactory<Epic>() {
+            public Epic create(RestClient restclient, JSONObject json) throws JiraException {
+                return new Epic(restclient, json);
+            }
+        });
+        FACTORIES.put(Issue.class, new ResourceFactory<Issue>() {
+            public Issue create(RestClient restclient, JSONObject json) throws JiraException {
+                return new Issue(restclient, json);
+            }
+        });
+        FACTORIES.put(IssueType.class, new ResourceFactory<IssueType>() {
+            public IssueType create(RestClient restclient, JSONObject json) throws JiraException {
+                return new IssueType(restclient, json);
+            }
+        });
+        FACTORIES.put(Priority.class, new ResourceFactory<Priority>() {
+            public Priority create(RestClient restclient, JSONObject json) throws JiraException {
+                return new Priority(restclient, json);
+            }
+        });
+        FACTORIES.put(Project.class, new ResourceFactory<Project>() {
+            public Project create(RestClient restclient, JSONObject json) throws JiraException {
+                return new Project(restclient, json);
+            }
+        });
+        FACTORIES.put(Resolution.class, new ResourceFactory<Resolution>() {
+            public Resolution create(RestClient restclient, JSONObject json) throws JiraException {
+                return new Resolution(restclient, json);
+            }
+        });
+        FACTORIES.put(Sprint.class, new ResourceFactory<Sprint>() {
+            public Sprint create(RestClient restclient, JSONObject json) throws JiraException {
+                return new Sprint(restclient, json);
+            }
+        });
+        FACTORIES.put(Status.class, new ResourceFactory<Status>() {
+            public Status create(RestClient restclient, JSONObject json) throws JiraException {
+                return new Status(restclient, json);
+            }
+        });
+        FACTORIES.put(TimeTracking.class, new ResourceFactory<TimeTracking>() {
+            public TimeTracking create(RestClient restclient, JSONObject json) throws JiraException {
+                return new TimeTracking(restclient, json);
+            }
+        });
+        FACTORIES.put(User.class, new ResourceFactory<User>() {
+            public User create(RestClient restclient, JSONObject json) throws JiraException {
+                return new User(restclient, json);
+            }
+        });
+        FACTORIES.put(Worklog.class, new ResourceFactory<Worklog>() {
+            public Worklog create(RestClient restclient, JSONObject json) throws JiraException {
+                return new Worklog(restclient, json);
+            }
+        });
+    }
+
     private RestClient restclient = null;
     private long id = 0;
     private String name;
     private String self;
-    private JSONObject attributes = new JSONObject();
+    private AttributeRetention retention;
+    private List<JSONObject> attributeSources = null;
+    private byte[] compactAttributes = null;
+    private JSONObject decodedAttributes = null;
 
     /**
      * Creates a new Agile resource.
@@ -60,11 +180,53 @@ public abstract class AgileResource {
      */
     public AgileResource(RestClient restclient, JSONObject json) throws JiraException {
         this.restclient = restclient;
+        this.retention = attributeRetention;
         if (json != null) {
             deserialize(json);
+            compactAttributes();
         }
     }
 
+    /**
+     * Sets which attributes resources created from now on keep. Keeping
+     * fewer saves heap on large listings, at the cost of getAttribute
+     * returning null for what was dropped.
+     *
+     * @param retention The retention policy, ALL by default.
+     */
+    public static void setAttributeRetention(AttributeRetention retention) {
+        attributeRetention = retention;
+    }
+
+    /**
+     * @return The retention policy applied to new resources.
+     */
+    public static AttributeRetention getAttributeRetention() {
+        return attributeRetention;
+    }
+
+    /**
+     * Builds the set of attribute names a resource decodes into typed fields.
+     *
+     * @param names The names decoded by the resource, besides id, name and self.
+     * @return The names, including id, name and self.
+     */
+    static Set<String> knownAttributes(String... names) {
+        Set<String> known = new HashSet<String>(Arrays.asList(names));
+        known.add("id");
+        known.add("name");
+        known.add("self");
+        return Collections.unmodifiableSet(known);
+    }
+
+    /**
+     * @return The attribute names this resource decodes into typed fields,
+     * left out when only unknown attributes are kept.
+     */
+    Set<String> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+
     /**
      * Gets an Agile resource from the given object.
      *
@@ -85,8 +247,9 @@ public abstract class AgileResource {
 
         if (!((JSONObject) r).isNullObject()) {
             try {
-                Constructor<T> constructor = type.getDeclaredConstructor(RestClient.class, JSONObject.class);
-                result = constructor.newInstance(restclient, r);
+                result = type.cast(getFactory(type).create(restclient, (JSONObject) r));
+            } catch (JiraException e) {
+                throw e;
             } catch (Exception e) {
                 throw new JiraException("Failed to deserialize object.", e);
             }
@@ -95,6 +258,57 @@ public abstract class AgileResource {
         return result;
     }
 
+    /**
+     * Registers the factory used to decode resources of the given type,
+     * replacing the built-in one. The registry is static, so the factory
+     * applies to every client in the JVM.
+     *
+     * @param type    Resource data type
+     * @param factory Factory creating the resources, or a subclass of them
+     * @param <T>     The type of Agile resource.
+     */
+    public static <T extends AgileResource> void registerResourceFactory(
+            Class<T> type, ResourceFactory<? extends T> factory) {
+        FACTORIES.put(type, factory);
+    }
+
+    /**
+     * Gets the factory of a type. Types without a registered factory get
+     * one calling their (RestClient, JSONObject) constructor, which is
+     * looked up once and kept.
+     */
+    private static ResourceFactory<?> getFactory(Class<?> type) throws JiraException {
+        ResourceFactory<?> factory = FACTORIES.get(type);
+
+        if (factory == null) {
+            final Constructor<?> constructor;
+            try {
+                constructor = type.getDeclaredConstructor(RestClient.class, JSONObject.class);
+                constructor.setAccessible(true);
+            } catch (Exception e) {
+                throw new JiraException("Failed to deserialize object.", e);
+            }
+
+            factory = new ResourceFactory<Object>() {
+                public Object create(RestClient restclient, JSONObject json) throws JiraException {
+                    try {
+                        return constructor.newInstance(restclient, json);
+                    } catch (InvocationTargetException e) {
+                        if (e.getCause() instanceof JiraException) {
+                            throw (JiraException) e.getCause();
+                        }
+                        throw new JiraException("Failed to deserialize object.", e.getCause());
+                    } catch (Exception e) {
+                        throw new JiraException("Failed to deserialize object.", e);
+                    }
+                }
+            };
+            FACTORIES.put(type, factory);
+        }
+
+        return factory;
+    }
+
     /**
      * Gets a list of GreenHopper resources from the given object.
      *
@@ -154,21 +368,241 @@ public abstract class AgileResource {
      * @throws JiraException when the retrieval fails
      */
     static <T extends AgileResource> List<T> list(
-            RestClient restclient, Class<T> type, String url, String listName) throws JiraException {
+            RestClient restclient, Class<T> type, String url, String listName)
+            throws JiraException {
+        return list(restclient, type, url, listName, null);
+    }
+
+    /**
+     * Retrieves every item of a paged list.
+     *
+     * @param restclient REST client instance
+     * @param type       The type of the object to deserialize.
+     * @param url        The URL to call.
+     * @param listName   The name of the list of items in the JSON response.
+     * @param query      Extra query parameters sent with every page, or null.
+     * @return the items of every page
+     * @throws JiraException when the retrieval fails
+     */
+    static <T extends AgileResource> List<T> list(
+            final RestClient restclient, final Class<T> type, final String url, final String listName,
+            final Map<String, String> query) throws JiraException {
+
+        JSONObject first = getPage(restclient, type, url, query, null, null);
+        List<T> results = getResourceArray(type, first, restclient, listName);
+        int size = ((JSONArray) first.get(listName)).size();
+        int next = Field.getInteger(first.get("startAt")) + size;
+        final int pageSize = Math.max(Field.getInteger(first.get("maxResults")), size);
+
+        if (isLastPage(first, size, next))
+            return results;
+
+        if (!first.containsKey("total")) {
+            /* no way to tell how many pages are left, walk them in order */
+            Iterator<T> iter = new PageIterator<T>(restclient, type, url, listName, query, next);
+
+            while (iter.hasNext())
+                results.add(iter.next());
+
+            return results;
+        }
+
+        List<Callable<List<T>>> tasks = new ArrayList<Callable<List<T>>>();
+        int total = Field.getInteger(first.get("total"));
+
+        for (int startAt = next; startAt < total; startAt += pageSize) {
+            final int pageStart = startAt;
+
+            tasks.add(new Callable<List<T>>() {
+                public List<T> call() throws JiraException {
+                    JSONObject page = getPage(restclient, type, url, query, pageStart, pageSize);
+                    return getResourceArray(type, page, restclient, listName);
+                }
+            });
+        }
+
+        try {
+            for (List<T> page : BoundedExecutor.invokeAll(tasks, PAGE_CONCURRENCY))
+                results.addAll(page);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Interrupted while retrieving a list of " + type.getSimpleName(), ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof JiraException)
+                throw (JiraException) ex.getCause();
+
+            throw new JiraException("Failed to retrieve a list of " + type.getSimpleName() + " : " + url,
+                    ex.getCause());
+        }
+
+        return results;
+    }
+
+    /**
+     * Iterates over every item of a list, fetching one page at a time as the
+     * items are consumed.
+     *
+     * @param restclient REST client instance
+     * @param type       The type of the object to deserialize.
+     * @param url        The URL to call.
+     * @param listName   The name of the list of items in the JSON response.
+     * @return a lazy view of the list
+     */
+    static <T extends AgileResource> Iterable<T> iterate(
+            RestClient restclient, Class<T> type, String url, String listName) {
+        return iterate(restclient, type, url, listName, null);
+    }
+
+    /**
+     * Iterates over every item of a list, fetching one page at a time as the
+     * items are consumed.
+     *
+     * @param restclient REST client instance
+     * @param type       The type of the object to deserialize.
+     * @param url        The URL to call.
+     * @param listName   The name of the list of items in the JSON response.
+     * @param query      Extra query parameters sent with every page, or null.
+     * @return a lazy view of the list
+     */
+    static <T extends AgileResource> Iterable<T> iterate(
+            final RestClient restclient, final Class<T> type, final String url, final String listName,
+            final Map<String, String> query) {
 
+        return new Iterable<T>() {
+            public Iterator<T> iterator() {
+                return new PageIterator<T>(restclient, type, url, listName, query, 0);
+            }
+        };
+    }
+
+    /**
+     * Builds the query parameters for an issue listing. The agile API takes
+     * the same jql, fields and expand parameters as a search.
+     *
+     * @param jql            JQL narrowing the issues, or null
+     * @param includedFields Comma separated fields to return, or null for all
+     * @param expand         Comma separated fields to expand, or null
+     * @return the parameters, or null if none are set
+     */
+    static Map<String, String> issueQuery(String jql, String includedFields, String expand) {
+        Map<String, String> query = new HashMap<String, String>();
+        if (jql != null) {
+            query.put("jql", jql);
+        }
+        if (includedFields != null) {
+            query.put("fields", includedFields);
+        }
+        if (expand != null) {
+            query.put("expand", expand);
+        }
+        return query.isEmpty() ? null : query;
+    }
+
+    /**
+     * Retrieves one page of a list. The first page is asked for without
+     * paging parameters, letting the server pick the page size.
+     */
+    private static JSONObject getPage(RestClient restclient, Class<?> type, String url,
+                                      Map<String, String> query, Integer startAt, Integer maxResults)
+            throws JiraException {
         JSON result;
         try {
-            result = restclient.get(url);
+            if (startAt == null && query == null) {
+                result = restclient.get(url);
+            } else {
+                Map<String, String> params = new HashMap<String, String>();
+                if (query != null) {
+                    params.putAll(query);
+                }
+                if (startAt != null) {
+                    params.put("startAt", String.valueOf(startAt));
+                }
+                if (maxResults != null) {
+                    params.put("maxResults", String.valueOf(maxResults));
+                }
+                result = restclient.get(url, params);
+            }
         } catch (Exception ex) {
             throw new JiraException("Failed to retrieve a list of " + type.getSimpleName() + " : " + url, ex);
         }
 
-        return getResourceArray(
-                type,
-                result,
-                restclient,
-                listName
-        );
+        if (!(result instanceof JSONObject)) {
+            throw new JiraException("JSON payload is malformed");
+        }
+
+        return (JSONObject) result;
+    }
+
+    /**
+     * Tells if nothing follows a page, going by isLast when the server sends
+     * it and by total otherwise.
+     */
+    private static boolean isLastPage(JSONObject page, int size, int next) {
+        if (size == 0) {
+            return true;
+        }
+        if (page.containsKey("isLast")) {
+            return Field.getBoolean(page.get("isLast"));
+        }
+        return !page.containsKey("total") || next >= Field.getInteger(page.get("total"));
+    }
+
+    /**
+     * Walks a paged list, holding only the current page.
+     */
+    private static class PageIterator<T extends AgileResource> implements Iterator<T> {
+        private final RestClient restclient;
+        private final Class<T> type;
+        private final String url;
+        private final String listName;
+        private final Map<String, String> query;
+        private Iterator<T> currentPage = null;
+        private int next;
+        private boolean last = false;
+
+        PageIterator(RestClient restclient, Class<T> type, String url, String listName,
+                     Map<String, String> query, int startAt) {
+            this.restclient = restclient;
+            this.type = type;
+            this.url = url;
+            this.listName = listName;
+            this.query = query;
+            this.next = startAt;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (currentPage == null || !currentPage.hasNext()) {
+                if (last) {
+                    return false;
+                }
+                try {
+                    JSONObject page = getPage(restclient, type, url, query, next > 0 ? next : null, null);
+                    List<T> items = getResourceArray(type, page, restclient, listName);
+                    int size = ((JSONArray) page.get(listName)).size();
+                    next = (page.containsKey("startAt") ? Field.getInteger(page.get("startAt")) : next) + size;
+                    last = isLastPage(page, size, next);
+                    currentPage = items.iterator();
+                } catch (JiraException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return currentPage.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Method remove() not support for class " +
+                    this.getClass().getName());
+        }
     }
 
     /**
@@ -260,6 +694,13 @@ public abstract class AgileResource {
         return self;
     }
 
+    /**
+     * @return The retention policy this resource was created with.
+     */
+    AttributeRetention getRetention() {
+        return retention;
+    }
+
     /**
      * @return The REST client used to access the current resource.
      */
@@ -274,7 +715,25 @@ public abstract class AgileResource {
      * @return The value of the attribute.
      */
     public Object getAttribute(String name) {
-        return attributes.get(name);
+        if (attributeSources != null) {
+            for (int i = attributeSources.size() - 1; i >= 0; i--) {
+                if (attributeSources.get(i).containsKey(name)) {
+                    return attributeSources.get(i).get(name);
+                }
+            }
+            return null;
+        }
+
+        JSONObject attributes = getDecodedAttributes();
+        return attributes != null ? attributes.get(name) : null;
+    }
+
+    private synchronized JSONObject getDecodedAttributes() {
+        if (decodedAttributes == null && compactAttributes != null) {
+            decodedAttributes = JSONObject.fromObject(new String(compactAttributes, UTF8));
+            compactAttributes = null;
+        }
+        return decodedAttributes;
     }
 
     /**
@@ -297,7 +756,49 @@ public abstract class AgileResource {
      * @param json The json object to extract attributes from.
      */
     void addAttributes(JSONObject json) {
-        attributes.putAll(json);
+        if (retention == AttributeRetention.NONE) {
+            return;
+        }
+        if (attributeSources == null) {
+            attributeSources = new ArrayList<JSONObject>(2);
+        }
+        attributeSources.add(json);
+    }
+
+    /**
+     * Reduces the attributes gathered while deserializing to what the
+     * retention policy keeps. With UNKNOWN the remaining attributes are
+     * written out as JSON text, so the payload tree can be collected.
+     */
+    private void compactAttributes() {
+        if (attributeSources == null || retention != AttributeRetention.UNKNOWN) {
+            return;
+        }
+
+        Set<String> known = getKnownAttributes();
+        Set<String> written = new HashSet<String>();
+        StringBuilder sb = new StringBuilder("{");
+
+        /* later sources override earlier ones, as they did when merged */
+        for (int i = attributeSources.size() - 1; i >= 0; i--) {
+            for (Object o : attributeSources.get(i).entrySet()) {
+                Map.Entry entry = (Map.Entry) o;
+                String key = (String) entry.getKey();
+
+                if (known.contains(key) || !written.add(key)) {
+                    continue;
+                }
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append(JSONUtils.quote(key)).append(':').append(JSONUtils.valueToString(entry.getValue()));
+            }
+        }
+
+        attributeSources = null;
+        if (!written.isEmpty()) {
+            compactAttributes = sb.append('}').toString().getBytes(UTF8);
+        }
     }
 
     long getLong(Object o) {
@@ -25,6 +25,7 @@ import net.rcarz.jiraclient.RestClient;
 import net.sf.json.JSONObject;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * Represents an Agile Board.
@@ -33,6 +34,8 @@ import java.util.List;
  */
 public class Board extends AgileResource {
 
+    private static final Set<String> KNOWN_ATTRIBUTES = knownAttributes("type");
+
     private String type;
 
     /**
@@ -68,12 +71,28 @@ public class Board extends AgileResource {
         return AgileResource.list(restclient, Board.class, RESOURCE_URI + "board");
     }
 
+    /**
+     * Iterates over all boards visible to the session user, fetching one
+     * page at a time.
+     *
+     * @param restclient REST client instance
+     * @return a lazy view of the boards
+     */
+    public static Iterable<Board> iterateAll(RestClient restclient) {
+        return AgileResource.iterate(restclient, Board.class, RESOURCE_URI + "board", "values");
+    }
+
     @Override
     protected void deserialize(JSONObject json) throws JiraException {
         super.deserialize(json);
         type = Field.getString(json.get("type"));
     }
 
+    @Override
+    Set<String> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+
     /**
      * @return The board type.
      */
@@ -97,6 +116,39 @@ public class Board extends AgileResource {
         return AgileResource.list(getRestclient(), Issue.class, RESOURCE_URI + "board/" + getId() + "/backlog", "issues");
     }
 
+    /**
+     * @param jql            JQL narrowing the issues, or null
+     * @param includedFields Comma separated fields to return, or null for all
+     * @param expand         Comma separated fields to expand, or null
+     * @return All issues in the Board backlog, limited to the given JQL and fields.
+     * @throws JiraException when the retrieval fails
+     */
+    public List<Issue> getBacklog(String jql, String includedFields, String expand) throws JiraException {
+        return AgileResource.list(getRestclient(), Issue.class, RESOURCE_URI + "board/" + getId() + "/backlog", "issues",
+                issueQuery(jql, includedFields, expand));
+    }
+
+    /**
+     * @return All issues in the Board backlog, fetched one page at a time as
+     * they are consumed.
+     */
+    public Iterable<Issue> iterateBacklog() {
+        return AgileResource.iterate(getRestclient(), Issue.class, RESOURCE_URI + "board/" + getId() + "/backlog", "issues");
+    }
+
+    /**
+     * @param jql            JQL narrowing the issues, or null
+     * @param includedFields Comma separated fields to return, or null for all
+     * @param expand         Comma separated fields to expand, or null
+     * @return All issues in the Board backlog,
+     * limited to the given JQL and fields, fetched one page at a time as
+     * they are consumed.
+     */
+    public Iterable<Issue> iterateBacklog(String jql, String includedFields, String expand) {
+        return AgileResource.iterate(getRestclient(), Issue.class, RESOURCE_URI + "board/" + getId() + "/backlog", "issues",
+                issueQuery(jql, includedFields, expand));
+    }
+
     /**
      * @return All issues without epic in the Board .
      * @throws JiraException when the retrieval fails
@@ -105,6 +157,18 @@ public class Board extends AgileResource {
         return AgileResource.list(getRestclient(), Issue.class, RESOURCE_URI + "board/" + getId() + "/epic/none/issue", "issues");
     }
 
+    /**
+     * @param jql            JQL narrowing the issues, or null
+     * @param includedFields Comma separated fields to return, or null for all
+     * @param expand         Comma separated fields to expand, or null
+     * @return All issues without epic in the Board, limited to the given JQL and fields.
+     * @throws JiraException when the retrieval fails
+     */
+    public List<Issue> getIssuesWithoutEpic(String jql, String includedFields, String expand) throws JiraException {
+        return AgileResource.list(getRestclient(), Issue.class, RESOURCE_URI + "board/" + getId() + "/epic/none/issue", "issues",
+                issueQuery(jql, includedFields, expand));
+    }
+
     /**
      * @return All epics associated to the Board.
      * @throws JiraException when the retrieval fails
@@ -112,5 +176,28 @@ public class Board extends AgileResource {
     public List<Epic> getEpics() throws JiraException {
         return AgileResource.list(getRestclient(), Epic.class, RESOURCE_URI + "board/" + getId() + "/epic");
     }
-}
 
+    /**
+     * Loads the sprints with their issues, the backlog, the epics and the
+     * issues without epic of this board concurrently. Only scrum boards
+     * have sprints.
+     *
+     * @return An immutable snapshot of the board.
+     * @throws JiraException when the retrieval fails
+     */
+    public BoardSnapshot snapshot() throws JiraException {
+        return snapshot(BoardSnapshot.DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Loads the sprints with their issues, the backlog, the epics and the
+     * issues without epic of this board concurrently.
+     *
+     * @param concurrency Maximum number of lists loaded at once
+     * @return An immutable snapshot of the board.
+     * @throws JiraException when the retrieval fails
+     */
+    public BoardSnapshot snapshot(int concurrency) throws JiraException {
+        return BoardSnapshot.load(this, concurrency);
+    }
+}
@@ -0,0 +1,263 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.agile;
+
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.utils.BoundedExecutor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * An immutable view of a board: its sprints with their issues, the
+ * backlog, the epics and the issues without epic, loaded concurrently.
+ * Only scrum boards have sprints; on other boards the list is empty.
+ * An issue that appears in several lists is the same instance in each.
+ */
+public class BoardSnapshot {
+
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    private final Board board;
+    private final List<Sprint> sprints;
+    private final Map<Long, List<Issue>> sprintIssues;
+    private final List<Issue> backlog;
+    private final List<Epic> epics;
+    private final List<Issue> issuesWithoutEpic;
+    private final Map<Long, Issue> issues;
+
+    private BoardSnapshot(Board board, List<Sprint> sprints, List<List<Issue>> sprintIssues,
+            List<Issue> backlog, List<Epic> epics, List<Issue> issuesWithoutEpic) {
+
+        Map<Long, Issue> unique = new LinkedHashMap<Long, Issue>();
+        Map<Long, List<Issue>> bySprint = new LinkedHashMap<Long, List<Issue>>();
+
+        for (int i = 0; i < sprints.size(); i++)
+            bySprint.put(sprints.get(i).getId(), dedup(unique, sprintIssues.get(i)));
+
+        this.board = board;
+        this.sprints = Collections.unmodifiableList(new ArrayList<Sprint>(sprints));
+        this.sprintIssues = Collections.unmodifiableMap(bySprint);
+        this.backlog = dedup(unique, backlog);
+        this.epics = Collections.unmodifiableList(new ArrayList<Epic>(epics));
+        this.issuesWithoutEpic = dedup(unique, issuesWithoutEpic);
+        this.issues = Collections.unmodifiableMap(unique);
+    }
+
+    private static List<Issue> dedup(Map<Long, Issue> unique, List<Issue> list) {
+        List<Issue> result = new ArrayList<Issue>(list.size());
+
+        for (Issue issue : list) {
+            Issue known = unique.get(issue.getId());
+
+            if (known == null)
+                unique.put(issue.getId(), known = issue);
+
+            result.add(known);
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Runs a list call once one of the shared permits is free.
+     */
+    private static <T> T limited(Semaphore permits, Callable<T> call) throws Exception {
+        permits.acquire();
+        try {
+            return call.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Loads a snapshot of the given board. The sprint issues are requested
+     * as soon as the sprints are known, alongside the other lists, so the
+     * load takes about as long as the slowest chain of calls. Kanban boards
+     * have no sprints and skip that chain.
+     *
+     * All lists share one bound, so at most <code>concurrency</code> lists
+     * load at once. A list may fetch {@link AgileResource#PAGE_CONCURRENCY}
+     * pages at a time, so up to <code>concurrency * PAGE_CONCURRENCY</code>
+     * requests can be in flight.
+     *
+     * @param board       Board to load
+     * @param concurrency Maximum number of lists loaded at once
+     * @return the snapshot
+     * @throws JiraException when any retrieval fails
+     */
+    @SuppressWarnings("unchecked")
+    static BoardSnapshot load(final Board board, final int concurrency) throws JiraException {
+        final Semaphore permits = new Semaphore(Math.max(1, concurrency));
+        final List<List<Issue>> sprintIssues = new ArrayList<List<Issue>>();
+        List<Callable<List<?>>> tasks = new ArrayList<Callable<List<?>>>();
+
+        tasks.add(new Callable<List<?>>() {
+            public List<?> call() throws Exception {
+                if (!"scrum".equals(board.getType()))
+                    return Collections.<Sprint>emptyList();
+
+                List<Sprint> sprints = limited(permits, new Callable<List<Sprint>>() {
+                    public List<Sprint> call() throws JiraException {
+                        return board.getSprints();
+                    }
+                });
+                List<Callable<List<Issue>>> issueTasks = new ArrayList<Callable<List<Issue>>>();
+
+                for (final Sprint sprint : sprints) {
+                    issueTasks.add(new Callable<List<Issue>>() {
+                        public List<Issue> call() throws Exception {
+                            return limited(permits, new Callable<List<Issue>>() {
+                                public List<Issue> call() throws JiraException {
+                                    return sprint.getIssues();
+                                }
+                            });
+                        }
+                    });
+                }
+
+                sprintIssues.addAll(BoundedExecutor.invokeAll(issueTasks, concurrency));
+                return sprints;
+            }
+        });
+        tasks.add(new Callable<List<?>>() {
+            public List<?> call() throws Exception {
+                return limited(permits, new Callable<List<Issue>>() {
+                    public List<Issue> call() throws JiraException {
+                        return board.getBacklog();
+                    }
+                });
+            }
+        });
+        tasks.add(new Callable<List<?>>() {
+            public List<?> call() throws Exception {
+                return limited(permits, new Callable<List<Epic>>() {
+                    public List<Epic> call() throws JiraException {
+                        return board.getEpics();
+                    }
+                });
+            }
+        });
+        tasks.add(new Callable<List<?>>() {
+            public List<?> call() throws Exception {
+                return limited(permits, new Callable<List<Issue>>() {
+                    public List<Issue> call() throws JiraException {
+                        return board.getIssuesWithoutEpic();
+                    }
+                });
+            }
+        });
+
+        List<List<?>> results;
+
+        try {
+            /* the permits bound the lists, the sprint task only waits */
+            results = BoundedExecutor.invokeAll(tasks, concurrency > 1 ? tasks.size() : 1);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Interrupted while loading board " + board.getId(), ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+
+            /* failures of the sprint issues come wrapped once more */
+            if (cause instanceof ExecutionException)
+                cause = cause.getCause();
+
+            if (cause instanceof JiraException)
+                throw (JiraException) cause;
+
+            throw new JiraException("Failed to load board " + board.getId(), cause);
+        }
+
+        return new BoardSnapshot(
+                board,
+                (List<Sprint>) results.get(0),
+                sprintIssues,
+                (List<Issue>) results.get(1),
+                (List<Epic>) results.get(2),
+                (List<Issue>) results.get(3));
+    }
+
+    /**
+     * @return The board this snapshot was taken of.
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * @return The sprints of the board.
+     */
+    public List<Sprint> getSprints() {
+        return sprints;
+    }
+
+    /**
+     * @param sprintId The sprint ID.
+     * @return The issues of the sprint, or null if the sprint isn't on the board.
+     */
+    public List<Issue> getSprintIssues(long sprintId) {
+        return sprintIssues.get(sprintId);
+    }
+
+    /**
+     * @return The issues in the board backlog.
+     */
+    public List<Issue> getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * @return The epics of the board.
+     */
+    public List<Epic> getEpics() {
+        return epics;
+    }
+
+    /**
+     * @return The issues of the board without epic.
+     */
+    public List<Issue> getIssuesWithoutEpic() {
+        return issuesWithoutEpic;
+    }
+
+    /**
+     * @return Every distinct issue of the snapshot.
+     */
+    public Collection<Issue> getIssues() {
+        return issues.values();
+    }
+
+    /**
+     * @param id The issue ID.
+     * @return The issue, or null if it isn't part of the snapshot.
+     */
+    public Issue getIssue(long id) {
+        return issues.get(id);
+    }
+}
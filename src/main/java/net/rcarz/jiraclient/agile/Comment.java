@@ -25,6 +25,7 @@ import net.rcarz.jiraclient.RestClient;
 import net.sf.json.JSONObject;
 
 import java.util.Date;
+import java.util.Set;
 
 /**
  * Represents an Agile Comment.
@@ -33,6 +34,9 @@ import java.util.Date;
  */
 public class Comment extends AgileResource {
 
+    private static final Set<String> KNOWN_ATTRIBUTES = knownAttributes(
+            "author", "body", "updateAuthor", "created", "updated");
+
     private User author;
     private String body;
     private User updateAuthor;
@@ -66,6 +70,11 @@ public class Comment extends AgileResource {
         this.updated = Field.getDateTime(json.get("updated"));
     }
 
+    @Override
+    Set<String> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+
     @Override
     public String toString() {
         return String.format("%s{id=%s, body='%s'}", getClass().getSimpleName(), getId(), getBody());
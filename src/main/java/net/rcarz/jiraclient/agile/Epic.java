@@ -25,6 +25,7 @@ import net.rcarz.jiraclient.RestClient;
 import net.sf.json.JSONObject;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * Represents an Agile Epic.
@@ -33,6 +34,8 @@ import java.util.List;
  */
 public class Epic extends AgileResource {
 
+    private static final Set<String> KNOWN_ATTRIBUTES = knownAttributes("key", "summary", "done");
+
     private Issue issue;
     private String key;
     private String summary;
@@ -80,6 +83,39 @@ public class Epic extends AgileResource {
         return AgileResource.list(getRestclient(), Issue.class, RESOURCE_URI + "epic/" + getId() + "/issue", "issues");
     }
 
+    /**
+     * @param jql            JQL narrowing the issues, or null
+     * @param includedFields Comma separated fields to return, or null for all
+     * @param expand         Comma separated fields to expand, or null
+     * @return All issues in the Epic, limited to the given JQL and fields.
+     * @throws JiraException when the retrieval fails
+     */
+    public List<Issue> getIssues(String jql, String includedFields, String expand) throws JiraException {
+        return AgileResource.list(getRestclient(), Issue.class, RESOURCE_URI + "epic/" + getId() + "/issue", "issues",
+                issueQuery(jql, includedFields, expand));
+    }
+
+    /**
+     * @return All issues in the Epic, fetched one page at a time as they are
+     * consumed.
+     */
+    public Iterable<Issue> iterateIssues() {
+        return AgileResource.iterate(getRestclient(), Issue.class, RESOURCE_URI + "epic/" + getId() + "/issue", "issues");
+    }
+
+    /**
+     * @param jql            JQL narrowing the issues, or null
+     * @param includedFields Comma separated fields to return, or null for all
+     * @param expand         Comma separated fields to expand, or null
+     * @return All issues in the Epic,
+     * limited to the given JQL and fields, fetched one page at a time as
+     * they are consumed.
+     */
+    public Iterable<Issue> iterateIssues(String jql, String includedFields, String expand) {
+        return AgileResource.iterate(getRestclient(), Issue.class, RESOURCE_URI + "epic/" + getId() + "/issue", "issues",
+                issueQuery(jql, includedFields, expand));
+    }
+
     /**
      * Deserialize the json to extract standard attributes and keep a reference of
      * other attributes.
@@ -95,6 +131,11 @@ public class Epic extends AgileResource {
         this.done = Field.getBoolean(json.get("done"));
     }
 
+    @Override
+    Set<String> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+
     public String getKey() {
         return key;
     }
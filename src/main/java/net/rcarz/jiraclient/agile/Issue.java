@@ -23,37 +23,50 @@ import net.rcarz.jiraclient.Field;
 import net.rcarz.jiraclient.JiraException;
 import net.rcarz.jiraclient.RestClient;
 import net.sf.json.JSONObject;
+import net.sf.json.util.JSONUtils;
 
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents an Agile Issue.
  *
+ * Plain fields are read when the issue is created. Nested resources such as
+ * the comments, worklogs and sprints are only decoded when first asked for,
+ * so issues listed for a few fields don't pay for the rest. Unless every
+ * attribute is retained, the nested resources not decoded yet are kept as
+ * compact JSON text and the rest of the payload can be collected.
+ *
  * @author pldupont
  */
 public class Issue extends AgileResource {
 
+    private static final Set<String> KNOWN_ATTRIBUTES = knownAttributes(
+            "key", "fields", "summary", "flagged", "sprint", "closedSprint", "description",
+            "project", "comment", "epic", "worklog", "timetracking", "environment", "issuetype",
+            "status", "resolution", "created", "updated", "priority", "assignee", "creator",
+            "reporter");
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final List<String> NESTED = Arrays.asList(
+            "sprint", "closedSprint", "project", "comment", "epic", "worklog", "timetracking",
+            "issuetype", "status", "resolution", "priority", "assignee", "creator", "reporter");
+
     private String key;
     private boolean flagged;
-    private Sprint sprint;
-    private List<Sprint> closedSprints;
     private String description;
-    private Project project;
-    private List<Comment> comments;
-    private Epic epic;
-    private List<Worklog> worklogs;
-    private TimeTracking timeTracking;
-    private IssueType issueType;
-    private Status status;
-    private Resolution resolution;
     private Date created;
     private Date updated;
-    private Priority priority;
-    private User assignee;
-    private User creator;
-    private User reporter;
     private String environment;
+    private JSONObject fields;
+    private Map<String, byte[]> pending;
+    private final Map<String, Object> decoded = new HashMap<String, Object>();
 
 
     /**
@@ -100,29 +113,102 @@ public class Issue extends AgileResource {
             JSONObject fields = (JSONObject) json.get("fields");
             setName(Field.getString(fields.get("summary")));
             this.flagged = Field.getBoolean(fields.get("flagged"));
-            this.sprint = getSubResource(Sprint.class, fields, "sprint");
-            this.closedSprints = getSubResourceArray(Sprint.class, fields, "closedSprint");
             this.description = Field.getString(fields.get("description"));
-            this.project = getSubResource(Project.class, fields, "project");
-            this.comments = getSubResourceArray(Comment.class, fields, "comment");
-            this.epic = getSubResource(Epic.class, fields, "epic");
-            this.worklogs = getSubResourceArray(Worklog.class, fields, "worklog");
-            this.timeTracking = getSubResource(TimeTracking.class, fields, "timetracking");
             this.environment = Field.getString(fields.get("environment"));
-            this.issueType = getSubResource(IssueType.class, fields, "issuetype");
-            this.status = getSubResource(Status.class, fields, "status");
-            this.resolution = getSubResource(Resolution.class, fields, "resolution");
             this.created = Field.getDateTime(fields.get("created"));
             this.updated = Field.getDateTime(fields.get("updated"));
-            this.priority = getSubResource(Priority.class, fields, "priority");
-            this.assignee = getSubResource(User.class, fields, "assignee");
-            this.creator = getSubResource(User.class, fields, "creator");
-            this.reporter = getSubResource(User.class, fields, "reporter");
+
+            if (getRetention() == AttributeRetention.ALL) {
+                /* the attributes keep the payload anyway */
+                this.fields = fields;
+            } else {
+                this.pending = compactNested(fields);
+            }
 
             addAttributes(fields);
         }
     }
 
+    @Override
+    Set<String> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+
+    /**
+     * Writes out the nested resources as one-entry JSON objects, so only
+     * they outlive the payload.
+     */
+    private static Map<String, byte[]> compactNested(JSONObject fields) {
+        Map<String, byte[]> result = new HashMap<String, byte[]>();
+
+        for (String name : NESTED) {
+            if (fields.containsKey(name)) {
+                String text = "{" + JSONUtils.quote(name) + ":" + JSONUtils.valueToString(fields.get(name)) + "}";
+                result.put(name, text.getBytes(UTF8));
+            }
+        }
+
+        return result.isEmpty() ? null : result;
+    }
+
+    /**
+     * @return a JSON object holding the nested resource, if present.
+     */
+    private JSONObject nested(String name) {
+        if (fields != null) {
+            return fields;
+        }
+        byte[] text = pending != null ? pending.get(name) : null;
+        return text != null ? JSONObject.fromObject(new String(text, UTF8)) : new JSONObject();
+    }
+
+    /**
+     * Drops the text of a nested resource once it has been decoded.
+     */
+    private void forget(String name) {
+        if (pending != null) {
+            pending.remove(name);
+            if (pending.isEmpty()) {
+                pending = null;
+            }
+        }
+    }
+
+    /**
+     * Decodes a nested resource the first time it is asked for.
+     *
+     * @throws IllegalStateException when the resource is malformed
+     */
+    private synchronized <T extends AgileResource> T resource(Class<T> type, String name) {
+        if (!decoded.containsKey(name)) {
+            try {
+                decoded.put(name, getSubResource(type, nested(name), name));
+                forget(name);
+            } catch (JiraException ex) {
+                throw new IllegalStateException("Failed to decode " + name + " of " + key, ex);
+            }
+        }
+        return type.cast(decoded.get(name));
+    }
+
+    /**
+     * Decodes a nested list of resources the first time it is asked for.
+     *
+     * @throws IllegalStateException when the list is malformed
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized <T extends AgileResource> List<T> resourceArray(Class<T> type, String name) {
+        if (!decoded.containsKey(name)) {
+            try {
+                decoded.put(name, getSubResourceArray(type, nested(name), name));
+                forget(name);
+            } catch (JiraException ex) {
+                throw new IllegalStateException("Failed to decode " + name + " of " + key, ex);
+            }
+        }
+        return (List<T>) decoded.get(name);
+    }
+
     public String getKey() {
         return key;
     }
@@ -132,11 +218,11 @@ public class Issue extends AgileResource {
     }
 
     public Sprint getSprint() {
-        return sprint;
+        return resource(Sprint.class, "sprint");
     }
 
     public List<Sprint> getClosedSprints() {
-        return closedSprints;
+        return resourceArray(Sprint.class, "closedSprint");
     }
 
     public String getDescription() {
@@ -144,35 +230,35 @@ public class Issue extends AgileResource {
     }
 
     public Project getProject() {
-        return project;
+        return resource(Project.class, "project");
     }
 
     public List<Comment> getComments() {
-        return comments;
+        return resourceArray(Comment.class, "comment");
     }
 
     public Epic getEpic() {
-        return epic;
+        return resource(Epic.class, "epic");
     }
 
     public List<Worklog> getWorklogs() {
-        return worklogs;
+        return resourceArray(Worklog.class, "worklog");
     }
 
     public TimeTracking getTimeTracking() {
-        return timeTracking;
+        return resource(TimeTracking.class, "timetracking");
     }
 
     public IssueType getIssueType() {
-        return issueType;
+        return resource(IssueType.class, "issuetype");
     }
 
     public Status getStatus() {
-        return status;
+        return resource(Status.class, "status");
     }
 
     public Resolution getResolution() {
-        return resolution;
+        return resource(Resolution.class, "resolution");
     }
 
     public Date getCreated() {
@@ -184,22 +270,62 @@ public class Issue extends AgileResource {
     }
 
     public Priority getPriority() {
-        return priority;
+        return resource(Priority.class, "priority");
     }
 
     public User getAssignee() {
-        return assignee;
+        return resource(User.class, "assignee");
     }
 
     public User getCreator() {
-        return creator;
+        return resource(User.class, "creator");
     }
 
     public User getReporter() {
-        return reporter;
+        return resource(User.class, "reporter");
     }
 
     public String getEnvironment() {
         return environment;
     }
+
+    /**
+     * Moves issues to the backlog, removing them from their sprints, 50 at
+     * a time with the batches sent concurrently.
+     *
+     * @param restclient REST client instance
+     * @param keys       Keys of the issues to move.
+     * @throws JiraException when the move fails
+     */
+    public static void moveToBacklog(RestClient restclient, Collection<String> keys) throws JiraException {
+        IssueBatches.move(restclient, RESOURCE_URI + "backlog/issue", keys);
+    }
+
+    /**
+     * Ranks issues before another issue, keeping their given order. The
+     * issues are sent 50 at a time, one batch after the other.
+     *
+     * @param restclient REST client instance
+     * @param keys       Keys of the issues to rank, highest first.
+     * @param key        Key of the issue to rank them before.
+     * @throws JiraException when the ranking fails
+     */
+    public static void rankBefore(RestClient restclient, Collection<String> keys, String key)
+            throws JiraException {
+        IssueBatches.rank(restclient, keys, key, null, 0);
+    }
+
+    /**
+     * Ranks issues after another issue, keeping their given order. The
+     * issues are sent 50 at a time, one batch after the other.
+     *
+     * @param restclient REST client instance
+     * @param keys       Keys of the issues to rank, highest first.
+     * @param key        Key of the issue to rank them after.
+     * @throws JiraException when the ranking fails
+     */
+    public static void rankAfter(RestClient restclient, Collection<String> keys, String key)
+            throws JiraException {
+        IssueBatches.rank(restclient, keys, null, key, 0);
+    }
 }
@@ -0,0 +1,182 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ * <p>
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * <p>
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.agile;
+
+import net.rcarz.jiraclient.Field;
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.RestClient;
+import net.rcarz.utils.BoundedExecutor;
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Sends issue moves and rank changes in batches of the size the agile API
+ * accepts.
+ */
+final class IssueBatches {
+
+    /**
+     * Maximum number of issues the agile API takes in one move or rank request.
+     */
+    static final int MAX_ISSUES = 50;
+
+    /**
+     * Maximum number of move requests sent at the same time.
+     */
+    static final int CONCURRENCY = 4;
+
+    private IssueBatches() {
+    }
+
+    /**
+     * Splits the keys into batches, dropping duplicates and keeping order.
+     */
+    static List<List<String>> split(Collection<String> keys) {
+        List<String> unique = new ArrayList<String>(new LinkedHashSet<String>(keys));
+        List<List<String>> batches = new ArrayList<List<String>>();
+
+        for (int i = 0; i < unique.size(); i += MAX_ISSUES) {
+            batches.add(unique.subList(i, Math.min(unique.size(), i + MAX_ISSUES)));
+        }
+
+        return batches;
+    }
+
+    /**
+     * POSTs the keys to a move endpoint. The batches don't depend on each
+     * other and are sent concurrently.
+     *
+     * @param restclient REST client instance
+     * @param url        The move endpoint.
+     * @param keys       Keys of the issues to move.
+     * @throws JiraException when a batch fails
+     */
+    static void move(final RestClient restclient, final String url, Collection<String> keys)
+            throws JiraException {
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+        for (final List<String> batch : split(keys)) {
+            tasks.add(new Callable<Void>() {
+                public Void call() throws JiraException {
+                    JSONObject payload = new JSONObject();
+                    payload.put("issues", batch);
+
+                    try {
+                        restclient.post(url, payload);
+                    } catch (Exception ex) {
+                        throw new JiraException("Failed to move issues " + batch + " : " + url, ex);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try {
+            BoundedExecutor.invokeAll(tasks, CONCURRENCY);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Interrupted while moving issues : " + url, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof JiraException) {
+                throw (JiraException) ex.getCause();
+            }
+            throw new JiraException("Failed to move issues : " + url, ex.getCause());
+        }
+    }
+
+    /**
+     * Ranks the keys, in the given order, before or after another issue.
+     * Each batch after the first is ranked after the last issue of the
+     * previous one, so the batches are sent one after the other.
+     *
+     * @param restclient        REST client instance
+     * @param keys              Keys of the issues to rank, highest first.
+     * @param before            Key of the issue to rank before, or null.
+     * @param after             Key of the issue to rank after, or null.
+     * @param rankCustomFieldId ID of the rank field, or 0 for the default.
+     * @throws JiraException when a batch fails
+     */
+    static void rank(RestClient restclient, Collection<String> keys, String before, String after,
+                     int rankCustomFieldId) throws JiraException {
+
+        String url = AgileResource.RESOURCE_URI + "issue/rank";
+
+        for (List<String> batch : split(keys)) {
+            JSONObject payload = new JSONObject();
+            payload.put("issues", batch);
+            if (before != null) {
+                payload.put("rankBeforeIssue", before);
+            } else {
+                payload.put("rankAfterIssue", after);
+            }
+            if (rankCustomFieldId > 0) {
+                payload.put("rankCustomFieldId", rankCustomFieldId);
+            }
+
+            JSON result;
+            try {
+                result = restclient.put(url, payload);
+            } catch (Exception ex) {
+                throw new JiraException("Failed to rank issues " + batch, ex);
+            }
+
+            checkEntries(result, batch);
+
+            before = null;
+            after = batch.get(batch.size() - 1);
+        }
+    }
+
+    /**
+     * Checks a multi-status (207) answer, which lists every issue with its
+     * own status when some of them failed.
+     */
+    private static void checkEntries(JSON result, List<String> batch) throws JiraException {
+        if (!(result instanceof JSONObject) || !(((JSONObject) result).get("entries") instanceof JSONArray)) {
+            return;
+        }
+
+        List<String> failed = new ArrayList<String>();
+
+        for (Object o : (JSONArray) ((JSONObject) result).get("entries")) {
+            if (!(o instanceof JSONObject)) {
+                continue;
+            }
+
+            JSONObject entry = (JSONObject) o;
+            if (Field.getInteger(entry.get("status")) >= 300) {
+                failed.add(Field.getString(entry.get("issueKey")) + " " + entry.get("errors"));
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            throw new JiraException("Failed to rank issues " + failed + " of " + batch);
+        }
+    }
+}
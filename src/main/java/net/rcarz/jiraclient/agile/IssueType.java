@@ -24,6 +24,8 @@ import net.rcarz.jiraclient.JiraException;
 import net.rcarz.jiraclient.RestClient;
 import net.sf.json.JSONObject;
 
+import java.util.Set;
+
 /**
  * Represents an Agile IssueType.
  *
@@ -31,6 +33,8 @@ import net.sf.json.JSONObject;
  */
 public class IssueType extends AgileResource {
 
+    private static final Set<String> KNOWN_ATTRIBUTES = knownAttributes("description", "subtask");
+
     private String description;
     private boolean subTask;
 
@@ -58,6 +62,11 @@ public class IssueType extends AgileResource {
         this.subTask = Field.getBoolean(json.get("subtask"));
     }
 
+    @Override
+    Set<String> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+
     public String getDescription() {
         return description;
     }
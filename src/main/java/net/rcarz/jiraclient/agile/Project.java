@@ -24,6 +24,8 @@ import net.rcarz.jiraclient.JiraException;
 import net.rcarz.jiraclient.RestClient;
 import net.sf.json.JSONObject;
 
+import java.util.Set;
+
 /**
  * Represents an Agile Project.
  *
@@ -31,6 +33,8 @@ import net.sf.json.JSONObject;
  */
 public class Project extends AgileResource {
 
+    private static final Set<String> KNOWN_ATTRIBUTES = knownAttributes("key");
+
     private String key;
 
     /**
@@ -56,6 +60,11 @@ public class Project extends AgileResource {
         this.key = Field.getString(json.get("key"));
     }
 
+    @Override
+    Set<String> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+
     public String getKey() {
         return key;
     }
@@ -24,6 +24,8 @@ import net.rcarz.jiraclient.JiraException;
 import net.rcarz.jiraclient.RestClient;
 import net.sf.json.JSONObject;
 
+import java.util.Set;
+
 /**
  * Represents an Agile Resolution.
  *
@@ -31,6 +33,8 @@ import net.sf.json.JSONObject;
  */
 public class Resolution extends AgileResource {
 
+    private static final Set<String> KNOWN_ATTRIBUTES = knownAttributes("description");
+
     private String description;
 
     /**
@@ -56,6 +60,11 @@ public class Resolution extends AgileResource {
         this.description = Field.getString(json.get("description"));
     }
 
+    @Override
+    Set<String> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+
     public String getDescription() {
         return description;
     }
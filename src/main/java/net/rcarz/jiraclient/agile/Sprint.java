@@ -24,8 +24,10 @@ import net.rcarz.jiraclient.JiraException;
 import net.rcarz.jiraclient.RestClient;
 import net.sf.json.JSONObject;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Represents an Agile Sprint.
@@ -34,6 +36,9 @@ import java.util.List;
  */
 public class Sprint extends AgileResource {
 
+    private static final Set<String> KNOWN_ATTRIBUTES = knownAttributes(
+            "state", "originBoardId", "startDate", "endDate", "completeDate");
+
     private String state;
     private long originBoardId;
     private Date startDate;
@@ -82,6 +87,39 @@ public class Sprint extends AgileResource {
         return AgileResource.list(getRestclient(), Issue.class, RESOURCE_URI + "sprint/" + getId() + "/issue", "issues");
     }
 
+    /**
+     * @param jql            JQL narrowing the issues, or null
+     * @param includedFields Comma separated fields to return, or null for all
+     * @param expand         Comma separated fields to expand, or null
+     * @return All issues in the Sprint, limited to the given JQL and fields.
+     * @throws JiraException when the retrieval fails
+     */
+    public List<Issue> getIssues(String jql, String includedFields, String expand) throws JiraException {
+        return AgileResource.list(getRestclient(), Issue.class, RESOURCE_URI + "sprint/" + getId() + "/issue", "issues",
+                issueQuery(jql, includedFields, expand));
+    }
+
+    /**
+     * @return All issues in the Sprint, fetched one page at a time as they
+     * are consumed.
+     */
+    public Iterable<Issue> iterateIssues() {
+        return AgileResource.iterate(getRestclient(), Issue.class, RESOURCE_URI + "sprint/" + getId() + "/issue", "issues");
+    }
+
+    /**
+     * @param jql            JQL narrowing the issues, or null
+     * @param includedFields Comma separated fields to return, or null for all
+     * @param expand         Comma separated fields to expand, or null
+     * @return All issues in the Sprint,
+     * limited to the given JQL and fields, fetched one page at a time as
+     * they are consumed.
+     */
+    public Iterable<Issue> iterateIssues(String jql, String includedFields, String expand) {
+        return AgileResource.iterate(getRestclient(), Issue.class, RESOURCE_URI + "sprint/" + getId() + "/issue", "issues",
+                issueQuery(jql, includedFields, expand));
+    }
+
     @Override
     protected void deserialize(JSONObject json) throws JiraException {
         super.deserialize(json);
@@ -92,6 +130,11 @@ public class Sprint extends AgileResource {
         completeDate = Field.getDateTime(json.get("completeDate"));
     }
 
+    @Override
+    Set<String> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+
     public String getState() {
         return state;
     }
@@ -111,5 +154,28 @@ public class Sprint extends AgileResource {
     public Date getCompleteDate() {
         return completeDate;
     }
-}
 
+    /**
+     * Moves issues into the given sprint, 50 at a time with the batches sent
+     * concurrently.
+     *
+     * @param restclient REST client instance
+     * @param sprintId   The Internal JIRA sprint ID.
+     * @param keys       Keys of the issues to move.
+     * @throws JiraException when the move fails
+     */
+    public static void moveIssues(RestClient restclient, long sprintId, Collection<String> keys)
+            throws JiraException {
+        IssueBatches.move(restclient, RESOURCE_URI + "sprint/" + sprintId + "/issue", keys);
+    }
+
+    /**
+     * Moves issues into this sprint.
+     *
+     * @param keys Keys of the issues to move.
+     * @throws JiraException when the move fails
+     */
+    public void moveIssues(Collection<String> keys) throws JiraException {
+        moveIssues(getRestclient(), getId(), keys);
+    }
+}
@@ -24,6 +24,8 @@ import net.rcarz.jiraclient.JiraException;
 import net.rcarz.jiraclient.RestClient;
 import net.sf.json.JSONObject;
 
+import java.util.Set;
+
 /**
  * Represents an Agile TimeTracking.
  *
@@ -31,6 +33,10 @@ import net.sf.json.JSONObject;
  */
 public class TimeTracking extends AgileResource {
 
+    private static final Set<String> KNOWN_ATTRIBUTES = knownAttributes(
+            "originalEstimate", "remainingEstimate", "timeSpent", "originalEstimateSeconds",
+            "remainingEstimateSeconds", "timeSpentSeconds");
+
     private String originalEstimate;
     private String remainingEstimate;
     private String timeSpent;
@@ -65,6 +71,11 @@ public class TimeTracking extends AgileResource {
         this.timeSpentSeconds = Field.getLong(json.get("timeSpentSeconds"));
     }
 
+    @Override
+    Set<String> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+
     @Override
     public String toString() {
         return String.format("%s{original='%s', remaining='%s', timeSpent='%s'}",
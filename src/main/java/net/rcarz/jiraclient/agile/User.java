@@ -24,6 +24,8 @@ import net.rcarz.jiraclient.JiraException;
 import net.rcarz.jiraclient.RestClient;
 import net.sf.json.JSONObject;
 
+import java.util.Set;
+
 /**
  * Represents an Agile User.
  *
@@ -31,6 +33,9 @@ import net.sf.json.JSONObject;
  */
 public class User extends AgileResource {
 
+    private static final Set<String> KNOWN_ATTRIBUTES = knownAttributes(
+            "emailAddress", "displayName", "active", "timeZone");
+
     private String emailAddress;
     private String displayName;
     private boolean active;
@@ -61,6 +66,11 @@ public class User extends AgileResource {
         this.timeZone = Field.getString(json.get("timeZone"));
     }
 
+    @Override
+    Set<String> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+
     @Override
     public String toString() {
         return String.format("%s{name='%s', Display Name='%s'}", getClass().getSimpleName(), getName(), getDisplayName());
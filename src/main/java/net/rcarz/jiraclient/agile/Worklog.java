@@ -25,6 +25,7 @@ import net.rcarz.jiraclient.RestClient;
 import net.sf.json.JSONObject;
 
 import java.util.Date;
+import java.util.Set;
 
 /**
  * Represents an Agile Worklog.
@@ -33,6 +34,10 @@ import java.util.Date;
  */
 public class Worklog extends AgileResource {
 
+    private static final Set<String> KNOWN_ATTRIBUTES = knownAttributes(
+            "author", "comment", "created", "updated", "updateAuthor", "started", "timeSpent",
+            "timeSpentSeconds");
+
     private User author;
     private String comment;
     private Date created;
@@ -71,6 +76,11 @@ public class Worklog extends AgileResource {
         this.timeSpentSeconds = Field.getLong(json.get("timeSpentSeconds"));
     }
 
+    @Override
+    Set<String> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+
     @Override
     public String toString() {
         return String.format("%s{id=%s, comment='%s'}", getClass().getSimpleName(), getId(), getComment());
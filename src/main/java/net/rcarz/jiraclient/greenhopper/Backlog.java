@@ -20,6 +20,7 @@
 package net.rcarz.jiraclient.greenhopper;
 
 import net.rcarz.jiraclient.Field;
+import net.rcarz.jiraclient.Issue;
 import net.rcarz.jiraclient.JiraException;
 import net.rcarz.jiraclient.RestClient;
 
@@ -159,7 +160,22 @@ public class Backlog {
     public static Backlog get(RestClient restclient, RapidView rv)
         throws JiraException {
 
-        final int rvId = rv.getId();
+        return new Backlog(restclient, getContents(restclient, rv.getId()));
+    }
+
+    /**
+     * Retrieves the raw backlog data for the given rapid view.
+     *
+     * @param restclient REST client instance
+     * @param rvId Rapid View ID
+     *
+     * @return the backlog data
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    static JSONObject getContents(RestClient restclient, final int rvId)
+        throws JiraException {
+
         JSON result = null;
 
         try {
@@ -176,7 +192,22 @@ public class Backlog {
         if (!(result instanceof JSONObject))
             throw new JiraException("JSON payload is malformed");
 
-        return new Backlog(restclient, (JSONObject)result);
+        return (JSONObject)result;
+    }
+
+    /**
+     * Retrieves the full JIRA issues of the backlog in bulk.
+     *
+     * @param includedFields Specifies which issue fields will be included in
+     * the result, or null for navigable fields
+     *
+     * @return the JIRA issues, in the order of {@link #getIssues()}; null
+     * where an issue wasn't found
+     *
+     * @throws JiraException when a search fails
+     */
+    public List<Issue> getJiraIssues(String includedFields) throws JiraException {
+        return GreenHopperIssue.getJiraIssues(restclient, issues, includedFields);
     }
 
     public List<SprintIssue> getIssues() {
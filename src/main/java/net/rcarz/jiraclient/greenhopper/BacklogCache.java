@@ -0,0 +1,173 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.greenhopper;
+
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.RestClient;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.json.JSONObject;
+
+/**
+ * Keeps the last backlog snapshot of each rapid view and tells listeners
+ * what changed when it is refreshed.
+ *
+ * A refresh that receives the same payload as last time skips decoding
+ * and diffing altogether, so polling an idle board costs one request and
+ * a string comparison. Listeners are only called when something changed.
+ *
+ * Refreshes of the same rapid view run one at a time, so each is compared
+ * to the one before it, while different rapid views refresh in parallel.
+ * Listeners are called after the snapshot is stored, outside the lock, so
+ * a slow listener doesn't hold up other refreshes; if refreshes of one
+ * rapid view overlap, their changes may reach listeners out of order.
+ */
+public class BacklogCache {
+
+    private static class Snapshot {
+        final String payload;
+        final Backlog backlog;
+
+        Snapshot(String payload, Backlog backlog) {
+            this.payload = payload;
+            this.backlog = backlog;
+        }
+    }
+
+    private final Map<Integer, Snapshot> snapshots = new ConcurrentHashMap<Integer, Snapshot>();
+    private final ConcurrentMap<Integer, Object> locks = new ConcurrentHashMap<Integer, Object>();
+    private final List<BacklogListener> listeners = new CopyOnWriteArrayList<BacklogListener>();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+
+    private Object lockFor(int rapidViewId) {
+        Object lock = new Object();
+        Object existing = locks.putIfAbsent(rapidViewId, lock);
+        return existing != null ? existing : lock;
+    }
+
+    /**
+     * Gets the last snapshot of the given rapid view's backlog, fetching it
+     * if there is none yet.
+     *
+     * @param restclient REST client instance
+     * @param rv Rapid View instance
+     *
+     * @return the backlog
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    public Backlog get(RestClient restclient, RapidView rv) throws JiraException {
+        Snapshot snapshot = snapshots.get(rv.getId());
+
+        if (snapshot != null)
+            return snapshot.backlog;
+
+        return refresh(restclient, rv).getCurrent();
+    }
+
+    /**
+     * Fetches the backlog of the given rapid view and compares it to the
+     * last snapshot. Listeners receive the changes, if any, before this
+     * method returns. The first refresh of a rapid view reports every
+     * issue and sprint as added.
+     *
+     * @param restclient REST client instance
+     * @param rv Rapid View instance
+     *
+     * @return the changes, empty if the backlog is the same
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    public BacklogDiff refresh(RestClient restclient, RapidView rv)
+        throws JiraException {
+
+        BacklogDiff diff = null;
+
+        synchronized (lockFor(rv.getId())) {
+            JSONObject contents = Backlog.getContents(restclient, rv.getId());
+            String payload = contents.toString();
+            Snapshot last = snapshots.get(rv.getId());
+            refreshes.incrementAndGet();
+
+            if (last != null && last.payload.equals(payload)) {
+                unchanged.incrementAndGet();
+                return new BacklogDiff(last.backlog, last.backlog);
+            }
+
+            Backlog backlog = new Backlog(restclient, contents);
+            diff = new BacklogDiff(last != null ? last.backlog : null, backlog);
+            snapshots.put(rv.getId(), new Snapshot(payload, backlog));
+        }
+
+        if (!diff.isEmpty()) {
+            for (BacklogListener listener : listeners)
+                listener.backlogChanged(rv, diff);
+        }
+
+        return diff;
+    }
+
+    /**
+     * Drops the snapshot of the given rapid view. The next refresh reports
+     * everything as added again.
+     *
+     * @param rv Rapid View instance
+     */
+    public void invalidate(RapidView rv) {
+        snapshots.remove(rv.getId());
+    }
+
+    /**
+     * Registers a listener for changes to any backlog in this cache.
+     *
+     * @param listener Listener to call
+     */
+    public void subscribe(BacklogListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener Listener to stop calling
+     */
+    public void unsubscribe(BacklogListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return number of refreshes done
+     */
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    /**
+     * @return number of refreshes that found the payload unchanged
+     */
+    public long getUnchanged() {
+        return unchanged.get();
+    }
+}
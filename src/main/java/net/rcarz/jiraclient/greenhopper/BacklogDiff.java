@@ -0,0 +1,223 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.greenhopper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The changes between two snapshots of a backlog.
+ *
+ * Issues are matched by key and sprints by ID. An issue counts as re-ranked
+ * when it moved relative to the other issues present in both snapshots;
+ * issues that merely shifted because others moved around them are left out.
+ */
+public class BacklogDiff {
+
+    private Backlog previous = null;
+    private Backlog current = null;
+    private List<SprintIssue> added = new ArrayList<SprintIssue>();
+    private List<SprintIssue> removed = new ArrayList<SprintIssue>();
+    private List<SprintIssue> reranked = new ArrayList<SprintIssue>();
+    private List<Sprint> addedSprints = new ArrayList<Sprint>();
+    private List<Sprint> removedSprints = new ArrayList<Sprint>();
+    private List<Sprint> changedSprints = new ArrayList<Sprint>();
+
+    /**
+     * Computes the changes between two backlogs.
+     *
+     * @param previous Previous snapshot, or null when there is none
+     * @param current Current snapshot
+     */
+    protected BacklogDiff(Backlog previous, Backlog current) {
+        this.previous = previous;
+        this.current = current;
+
+        if (previous != current) {
+            diffIssues(
+                previous != null ? previous.getIssues() : Collections.<SprintIssue>emptyList(),
+                current.getIssues());
+            diffSprints(
+                previous != null ? previous.getSprints() : Collections.<Sprint>emptyList(),
+                current.getSprints());
+        }
+    }
+
+    private void diffIssues(List<SprintIssue> before, List<SprintIssue> after) {
+        Map<String, Integer> rank = new HashMap<String, Integer>();
+        for (int i = 0; i < before.size(); i++)
+            rank.put(before.get(i).getKey(), i);
+
+        Map<String, SprintIssue> kept = new HashMap<String, SprintIssue>();
+        List<SprintIssue> common = new ArrayList<SprintIssue>();
+        List<Integer> ranks = new ArrayList<Integer>();
+
+        for (SprintIssue issue : after) {
+            Integer r = rank.get(issue.getKey());
+
+            if (r == null) {
+                added.add(issue);
+            } else {
+                kept.put(issue.getKey(), issue);
+                common.add(issue);
+                ranks.add(r);
+            }
+        }
+
+        for (SprintIssue issue : before) {
+            if (!kept.containsKey(issue.getKey()))
+                removed.add(issue);
+        }
+
+        boolean[] stayed = longestIncreasing(ranks);
+        for (int i = 0; i < common.size(); i++) {
+            if (!stayed[i])
+                reranked.add(common.get(i));
+        }
+    }
+
+    /**
+     * Marks a longest increasing subsequence of the given values, which is
+     * the largest set of issues that kept their relative order.
+     */
+    private static boolean[] longestIncreasing(List<Integer> values) {
+        int n = values.size();
+        int[] tails = new int[n];
+        int[] prev = new int[n];
+        int length = 0;
+
+        for (int i = 0; i < n; i++) {
+            int lo = 0;
+            int hi = length;
+
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+
+                if (values.get(tails[mid]) < values.get(i))
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+
+            prev[i] = lo > 0 ? tails[lo - 1] : -1;
+            tails[lo] = i;
+
+            if (lo == length)
+                length++;
+        }
+
+        boolean[] marked = new boolean[n];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = prev[i])
+            marked[i] = true;
+
+        return marked;
+    }
+
+    private void diffSprints(List<Sprint> before, List<Sprint> after) {
+        Map<Integer, Sprint> old = new HashMap<Integer, Sprint>();
+        for (Sprint sprint : before)
+            old.put(sprint.getId(), sprint);
+
+        for (Sprint sprint : after) {
+            Sprint was = old.remove(sprint.getId());
+
+            if (was == null)
+                addedSprints.add(sprint);
+            else if (!same(was, sprint))
+                changedSprints.add(sprint);
+        }
+
+        for (Sprint sprint : before) {
+            if (old.containsKey(sprint.getId()))
+                removedSprints.add(sprint);
+        }
+    }
+
+    private static boolean same(Sprint a, Sprint b) {
+        return equal(a.getName(), b.getName()) &&
+            a.isClosed().equals(b.isClosed()) &&
+            equal(a.getStartDate(), b.getStartDate()) &&
+            equal(a.getEndDate(), b.getEndDate()) &&
+            equal(a.getCompleteDate(), b.getCompleteDate()) &&
+            equal(a.getIssuesIds(), b.getIssuesIds());
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * @return true if nothing changed
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && reranked.isEmpty() &&
+            addedSprints.isEmpty() && removedSprints.isEmpty() && changedSprints.isEmpty();
+    }
+
+    /**
+     * @return the previous snapshot, or null if this is the first one
+     */
+    public Backlog getPrevious() {
+        return previous;
+    }
+
+    public Backlog getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return issues new to the backlog, in rank order
+     */
+    public List<SprintIssue> getAddedIssues() {
+        return added;
+    }
+
+    /**
+     * @return issues gone from the backlog, as they were last seen
+     */
+    public List<SprintIssue> getRemovedIssues() {
+        return removed;
+    }
+
+    /**
+     * @return issues that moved relative to the others, in rank order
+     */
+    public List<SprintIssue> getRerankedIssues() {
+        return reranked;
+    }
+
+    public List<Sprint> getAddedSprints() {
+        return addedSprints;
+    }
+
+    public List<Sprint> getRemovedSprints() {
+        return removedSprints;
+    }
+
+    /**
+     * @return sprints whose name, state, dates or issues changed
+     */
+    public List<Sprint> getChangedSprints() {
+        return changedSprints;
+    }
+}
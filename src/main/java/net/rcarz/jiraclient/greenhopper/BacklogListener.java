@@ -0,0 +1,34 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.greenhopper;
+
+/**
+ * Receives the changes of backlogs watched through a {@link BacklogCache}.
+ */
+public interface BacklogListener {
+
+    /**
+     * Called after a refresh found the backlog of a rapid view changed.
+     *
+     * @param rv Rapid View whose backlog changed
+     * @param diff What changed since the previous snapshot
+     */
+    void backlogChanged(RapidView rv, BacklogDiff diff);
+}
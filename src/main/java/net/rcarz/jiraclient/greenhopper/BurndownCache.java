@@ -0,0 +1,134 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.greenhopper;
+
+import net.rcarz.jiraclient.Field;
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.RestClient;
+
+import java.io.File;
+
+import net.sf.json.JSONObject;
+
+/**
+ * A cache of scope change burndowns.
+ *
+ * The chart of a completed sprint never changes, so it is kept for good,
+ * in memory and as a file in the cache directory where it survives
+ * restarts. Charts of sprints still running are kept in memory only and
+ * fetched again once they are older than the time to live.
+ */
+public class BurndownCache {
+
+    public static final long DEFAULT_TTL = 60000;
+
+    private final ChartCache charts;
+
+    /**
+     * Opens or creates a cache in the given directory.
+     *
+     * @param directory Directory holding the completed sprint charts
+     *
+     * @throws JiraException when the directory cannot be created
+     */
+    public BurndownCache(File directory) throws JiraException {
+        this(directory, DEFAULT_TTL);
+    }
+
+    /**
+     * Opens or creates a cache in the given directory.
+     *
+     * @param directory Directory holding the completed sprint charts
+     * @param ttl Time to keep charts of running sprints in milliseconds
+     *
+     * @throws JiraException when the directory cannot be created
+     */
+    public BurndownCache(File directory, long ttl) throws JiraException {
+        charts = new ChartCache(directory, "scopechange", ttl) {
+            JSONObject fetch(RestClient restclient, int rvId, int sprintId) throws JiraException {
+                return ScopeChangeBurndown.getContents(restclient, rvId, sprintId);
+            }
+
+            boolean isFinal(JSONObject contents) {
+                return Field.getLong(contents.get("completeTime")) > 0;
+            }
+        };
+    }
+
+    /**
+     * Gets the burndown of the given sprint, fetching it when it isn't
+     * cached.
+     *
+     * @param restclient REST client instance
+     * @param rv Rapid View instance
+     * @param sprint Sprint instance
+     *
+     * @return the burndown
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    public ScopeChangeBurndown get(RestClient restclient, RapidView rv, Sprint sprint)
+        throws JiraException {
+
+        return new ScopeChangeBurndown(charts.get(restclient, rv.getId(), sprint.getId()));
+    }
+
+    /**
+     * Drops the cached chart of the given sprint, on disk too.
+     *
+     * @param rv Rapid View instance
+     * @param sprint Sprint instance
+     */
+    public void invalidate(RapidView rv, Sprint sprint) {
+        charts.invalidate(rv.getId(), sprint.getId());
+    }
+
+    /**
+     * Drops the charts of running sprints, keeping completed ones.
+     */
+    public void clearActive() {
+        charts.clearActive();
+    }
+
+    /**
+     * @param ttl Time to keep charts of running sprints in milliseconds
+     */
+    public void setTtl(long ttl) {
+        charts.setTtl(ttl);
+    }
+
+    /**
+     * @return number of lookups answered from the cache
+     */
+    public long getHits() {
+        return charts.getHits();
+    }
+
+    /**
+     * @return number of charts fetched from the server
+     */
+    public long getMisses() {
+        return charts.getMisses();
+    }
+
+    public File getDirectory() {
+        return charts.getDirectory();
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.greenhopper;
+
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.RestClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+/**
+ * A cache of per-sprint chart data.
+ *
+ * Data that can no longer change is kept for good, in memory and as a file
+ * in the cache directory where it survives restarts. Other data is kept in
+ * memory only and fetched again once it is older than the time to live.
+ * Concurrent lookups of the same data share one request.
+ */
+abstract class ChartCache {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Data that may still change and when it was fetched.
+     */
+    private static final class Entry {
+        final JSONObject contents;
+        final long fetchedAt;
+
+        Entry(JSONObject contents, long fetchedAt) {
+            this.contents = contents;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private final File directory;
+    private final String prefix;
+    private volatile long ttl;
+    private final ConcurrentMap<String, JSONObject> permanent =
+        new ConcurrentHashMap<String, JSONObject>();
+    private final ConcurrentMap<String, Entry> active =
+        new ConcurrentHashMap<String, Entry>();
+    private final ConcurrentMap<String, FutureTask<JSONObject>> inflight =
+        new ConcurrentHashMap<String, FutureTask<JSONObject>>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param directory Directory holding the permanent data
+     * @param prefix File name prefix of this kind of data
+     * @param ttl Time to keep other data in milliseconds
+     */
+    ChartCache(File directory, String prefix, long ttl) throws JiraException {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.ttl = ttl;
+
+        if (!directory.exists() && !directory.mkdirs())
+            throw new JiraException("Cannot create chart cache " + directory);
+    }
+
+    /**
+     * Fetches the data from the server.
+     */
+    abstract JSONObject fetch(RestClient restclient, int rvId, int sprintId) throws JiraException;
+
+    /**
+     * Tells if the data can no longer change.
+     */
+    abstract boolean isFinal(JSONObject contents);
+
+    private static String id(int rvId, int sprintId) {
+        return rvId + "-" + sprintId;
+    }
+
+    private File fileOf(String id) {
+        return new File(directory, prefix + "-" + id + ".json");
+    }
+
+    /**
+     * Gets the data, fetching it when it isn't cached.
+     */
+    JSONObject get(final RestClient restclient, final int rvId, final int sprintId)
+        throws JiraException {
+
+        final String id = id(rvId, sprintId);
+        JSONObject contents = lookup(id);
+
+        if (contents != null) {
+            hits.incrementAndGet();
+            return contents;
+        }
+
+        FutureTask<JSONObject> task = new FutureTask<JSONObject>(new Callable<JSONObject>() {
+            public JSONObject call() throws JiraException {
+                JSONObject fetched = fetch(restclient, rvId, sprintId);
+                store(id, fetched);
+                return fetched;
+            }
+        });
+
+        FutureTask<JSONObject> existing = inflight.putIfAbsent(id, task);
+
+        if (existing == null) {
+            misses.incrementAndGet();
+            existing = task;
+
+            try {
+                task.run();
+            } finally {
+                inflight.remove(id, task);
+            }
+        }
+
+        try {
+            return existing.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Interrupted while retrieving " + prefix, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof JiraException)
+                throw (JiraException)ex.getCause();
+
+            throw new JiraException("Failed to retrieve " + prefix, ex.getCause());
+        }
+    }
+
+    private JSONObject lookup(String id) throws JiraException {
+        JSONObject contents = permanent.get(id);
+
+        if (contents != null)
+            return contents;
+
+        Entry entry = active.get(id);
+
+        if (entry != null) {
+            if (System.currentTimeMillis() - entry.fetchedAt < ttl)
+                return entry.contents;
+
+            active.remove(id, entry);
+        }
+
+        File file = fileOf(id);
+
+        if (!file.exists())
+            return null;
+
+        try {
+            contents = JSONObject.fromObject(new String(Files.readAllBytes(file.toPath()), UTF8));
+        } catch (IOException ex) {
+            throw new JiraException("Failed to read cached " + prefix + " " + file, ex);
+        } catch (JSONException ex) {
+            /* unreadable, fetch it again */
+            file.delete();
+            return null;
+        }
+
+        permanent.putIfAbsent(id, contents);
+        return contents;
+    }
+
+    private void store(String id, JSONObject contents) throws JiraException {
+        if (!isFinal(contents)) {
+            active.put(id, new Entry(contents, System.currentTimeMillis()));
+            return;
+        }
+
+        File file = fileOf(id);
+        File tmp = new File(directory, file.getName() + ".tmp");
+
+        try {
+            Files.write(tmp.toPath(), contents.toString().getBytes(UTF8));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new JiraException("Failed to cache " + prefix + " " + file, ex);
+        }
+
+        active.remove(id);
+        permanent.put(id, contents);
+    }
+
+    void invalidate(int rvId, int sprintId) {
+        String id = id(rvId, sprintId);
+
+        active.remove(id);
+        permanent.remove(id);
+        fileOf(id).delete();
+    }
+
+    void clearActive() {
+        active.clear();
+    }
+
+    void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    File getDirectory() {
+        return directory;
+    }
+}
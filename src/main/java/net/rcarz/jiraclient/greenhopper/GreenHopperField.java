@@ -19,10 +19,14 @@
 
 package net.rcarz.jiraclient.greenhopper;
 
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.ResourceFactory;
 import net.rcarz.jiraclient.RestClient;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
@@ -121,6 +125,56 @@ public final class GreenHopperField {
         return results;
     }
 
+    private static final Map<Class<?>, ResourceFactory<?>> FACTORIES =
+        new ConcurrentHashMap<Class<?>, ResourceFactory<?>>();
+
+    static {
+        FACTORIES.put(Epic.class, new ResourceFactory<Epic>() {
+            public Epic create(RestClient restclient, JSONObject json) {
+                return new Epic(restclient, json);
+            }
+        });
+        FACTORIES.put(Marker.class, new ResourceFactory<Marker>() {
+            public Marker create(RestClient restclient, JSONObject json) {
+                return new Marker(restclient, json);
+            }
+        });
+        FACTORIES.put(RapidView.class, new ResourceFactory<RapidView>() {
+            public RapidView create(RestClient restclient, JSONObject json) {
+                return new RapidView(restclient, json);
+            }
+        });
+        FACTORIES.put(RapidViewProject.class, new ResourceFactory<RapidViewProject>() {
+            public RapidViewProject create(RestClient restclient, JSONObject json) {
+                return new RapidViewProject(restclient, json);
+            }
+        });
+        FACTORIES.put(Sprint.class, new ResourceFactory<Sprint>() {
+            public Sprint create(RestClient restclient, JSONObject json) {
+                return new Sprint(restclient, json);
+            }
+        });
+        FACTORIES.put(SprintIssue.class, new ResourceFactory<SprintIssue>() {
+            public SprintIssue create(RestClient restclient, JSONObject json) {
+                return new SprintIssue(restclient, json);
+            }
+        });
+    }
+
+    /**
+     * Registers the factory used to decode resources of the given type,
+     * replacing the built-in one. The registry is static, so the factory
+     * applies to every client in the JVM.
+     *
+     * @param type Resource data type
+     * @param factory Factory creating the resources, or a subclass of them
+     */
+    public static <T extends GreenHopperResource> void registerResourceFactory(
+        Class<T> type, ResourceFactory<? extends T> factory) {
+
+        FACTORIES.put(type, factory);
+    }
+
     /**
      * Gets a GreenHopper resource from the given object.
      *
@@ -136,18 +190,16 @@ public final class GreenHopperField {
         T result = null;
 
         if (r instanceof JSONObject && !((JSONObject)r).isNullObject()) {
-            if (type == Epic.class)
-                result = (T)new Epic(restclient, (JSONObject)r);
-            else if (type == Marker.class)
-                result = (T)new Marker(restclient, (JSONObject)r);
-            else if (type == RapidView.class)
-                result = (T)new RapidView(restclient, (JSONObject)r);
-            else if (type == RapidViewProject.class)
-                result = (T)new RapidViewProject(restclient, (JSONObject)r);
-            else if (type == Sprint.class)
-                result = (T)new Sprint(restclient, (JSONObject)r);
-            else if (type == SprintIssue.class)
-                result = (T)new SprintIssue(restclient, (JSONObject)r);
+            ResourceFactory<?> factory = FACTORIES.get(type);
+
+            if (factory != null) {
+                try {
+                    result = (T)factory.create(restclient, (JSONObject)r);
+                } catch (JiraException ex) {
+                    throw new IllegalArgumentException(
+                        "Failed to deserialize " + type.getSimpleName(), ex);
+                }
+            }
         }
 
         return result;
@@ -23,9 +23,15 @@ import net.rcarz.jiraclient.Field;
 import net.rcarz.jiraclient.Issue;
 import net.rcarz.jiraclient.JiraException;
 import net.rcarz.jiraclient.RestClient;
+import net.rcarz.utils.BoundedExecutor;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import net.sf.json.JSONObject;
 
@@ -34,6 +40,9 @@ import net.sf.json.JSONObject;
  */
 public abstract class GreenHopperIssue extends GreenHopperResource {
 
+    public static final int KEYS_PER_SEARCH = 100;
+    public static final int DEFAULT_CONCURRENCY = 4;
+
     private String key = null;
     private boolean hidden = false;
     private String summary = null;
@@ -101,6 +110,106 @@ public abstract class GreenHopperIssue extends GreenHopperResource {
         return Issue.get(restclient, key);
     }
 
+    /**
+     * Retrieves the full JIRA issues of the given GreenHopper issues. The
+     * keys are looked up in chunks with one search each, running
+     * concurrently, instead of one request per issue.
+     *
+     * @param restclient REST client instance
+     * @param issues GreenHopper issues to resolve
+     * @param includedFields Specifies which issue fields will be included in
+     * the result, or null for navigable fields
+     *
+     * @return the JIRA issues, in the order of the given issues; null where
+     * an issue wasn't found, as the searches don't validate the keys. An
+     * issue moved since the GreenHopper data was read is matched by its ID
+     * and comes back under its new key.
+     *
+     * @throws JiraException when a search fails
+     */
+    public static List<Issue> getJiraIssues(RestClient restclient,
+        List<? extends GreenHopperIssue> issues, String includedFields)
+        throws JiraException {
+
+        return getJiraIssues(restclient, issues, includedFields, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Retrieves the full JIRA issues of the given GreenHopper issues. The
+     * keys are looked up in chunks with one search each, running
+     * concurrently, instead of one request per issue.
+     *
+     * @param restclient REST client instance
+     * @param issues GreenHopper issues to resolve
+     * @param includedFields Specifies which issue fields will be included in
+     * the result, or null for navigable fields
+     * @param concurrency Maximum number of searches in flight
+     *
+     * @return the JIRA issues, in the order of the given issues; null where
+     * an issue wasn't found, as the searches don't validate the keys. An
+     * issue moved since the GreenHopper data was read is matched by its ID
+     * and comes back under its new key.
+     *
+     * @throws JiraException when a search fails
+     */
+    public static List<Issue> getJiraIssues(final RestClient restclient,
+        List<? extends GreenHopperIssue> issues, final String includedFields,
+        int concurrency) throws JiraException {
+
+        LinkedHashSet<String> unique = new LinkedHashSet<String>();
+        for (GreenHopperIssue issue : issues)
+            unique.add(issue.getKey());
+
+        List<String> keys = new ArrayList<String>(unique);
+        List<Callable<List<Issue>>> tasks = new ArrayList<Callable<List<Issue>>>();
+
+        for (int i = 0; i < keys.size(); i += KEYS_PER_SEARCH) {
+            final List<String> chunk = keys.subList(i, Math.min(keys.size(), i + KEYS_PER_SEARCH));
+
+            tasks.add(new Callable<List<Issue>>() {
+                public List<Issue> call() throws JiraException {
+                    return Issue.get(restclient, chunk, includedFields);
+                }
+            });
+        }
+
+        List<List<Issue>> chunks = null;
+
+        try {
+            chunks = BoundedExecutor.invokeAll(tasks, concurrency);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Interrupted while retrieving issues", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof JiraException)
+                throw (JiraException)ex.getCause();
+
+            throw new JiraException("Failed to retrieve issues", ex.getCause());
+        }
+
+        Map<String, Issue> found = new HashMap<String, Issue>();
+        Map<String, Issue> foundById = new HashMap<String, Issue>();
+        for (List<Issue> chunk : chunks) {
+            for (Issue issue : chunk) {
+                found.put(issue.getKey(), issue);
+                foundById.put(issue.getId(), issue);
+            }
+        }
+
+        List<Issue> results = new ArrayList<Issue>(issues.size());
+        for (GreenHopperIssue issue : issues) {
+            Issue result = found.get(issue.getKey());
+
+            /* the search returns moved issues under their new key */
+            if (result == null && issue.getId() != 0)
+                result = foundById.get(Integer.toString(issue.getId()));
+
+            results.add(result);
+        }
+
+        return results;
+    }
+
     @Override
     public String toString() {
         return key;
@@ -167,6 +167,94 @@ public class RapidView extends GreenHopperResource {
         return SprintReport.get(restclient, this, sprint);
     }
 
+    /**
+     * Retrieves the sprint report for the given sprint through a cache.
+     *
+     * @param sprint Sprint to lookup
+     * @param cache Sprint report cache
+     *
+     * @return the sprint report
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    public SprintReport getSprintReport(Sprint sprint, SprintReportCache cache)
+        throws JiraException {
+
+        return cache.get(restclient, this, sprint);
+    }
+
+    /**
+     * Retrieves the sprint reports for the given sprints concurrently.
+     *
+     * @param sprints Sprints to lookup
+     *
+     * @return the sprint reports, in the order of the sprints
+     *
+     * @throws JiraException when any retrieval fails
+     */
+    public List<SprintReport> getSprintReports(List<Sprint> sprints) throws JiraException {
+        return SprintReport.getAll(restclient, this, sprints, null);
+    }
+
+    /**
+     * Retrieves the sprint reports for the given sprints through a cache,
+     * fetching the missing ones concurrently.
+     *
+     * @param sprints Sprints to lookup
+     * @param cache Sprint report cache
+     *
+     * @return the sprint reports, in the order of the sprints
+     *
+     * @throws JiraException when any retrieval fails
+     */
+    public List<SprintReport> getSprintReports(List<Sprint> sprints, SprintReportCache cache)
+        throws JiraException {
+
+        return SprintReport.getAll(restclient, this, sprints, cache);
+    }
+
+    /**
+     * Retrieves the scope change burndown of the given sprint.
+     *
+     * @param sprint Sprint to lookup
+     *
+     * @return the burndown
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    public ScopeChangeBurndown getScopeChangeBurndown(Sprint sprint) throws JiraException {
+        return ScopeChangeBurndown.get(restclient, this, sprint);
+    }
+
+    /**
+     * Retrieves the scope change burndown of the given sprint through a
+     * cache.
+     *
+     * @param sprint Sprint to lookup
+     * @param cache Burndown cache
+     *
+     * @return the burndown
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    public ScopeChangeBurndown getScopeChangeBurndown(Sprint sprint, BurndownCache cache)
+        throws JiraException {
+
+        return cache.get(restclient, this, sprint);
+    }
+
+    /**
+     * Retrieves the velocity chart of this rapid view, with the estimated
+     * and completed values of the recent sprints in one request.
+     *
+     * @return the velocity chart
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    public Velocity getVelocity() throws JiraException {
+        return Velocity.get(restclient, this);
+    }
+
     /**
      * Retrieves the backlog data for this rapid view.
      *
@@ -178,6 +266,19 @@ public class RapidView extends GreenHopperResource {
         return Backlog.get(restclient, this);
     }
 
+    /**
+     * Refreshes the backlog snapshot of this rapid view in the given cache.
+     *
+     * @param cache Cache holding the previous snapshot
+     *
+     * @return the changes since the previous snapshot
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    public BacklogDiff refreshBacklogData(BacklogCache cache) throws JiraException {
+        return cache.refresh(restclient, this);
+    }
+
     @Override
     public String toString() {
         return name;
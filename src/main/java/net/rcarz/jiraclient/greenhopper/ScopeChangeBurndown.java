@@ -0,0 +1,456 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.greenhopper;
+
+import net.rcarz.jiraclient.Field;
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.RestClient;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * GreenHopper scope change burndown of a sprint.
+ *
+ * The chart's change log is decoded into a time series of events, each
+ * holding a timestamp, the issue it concerns and how much it moved the
+ * sprint scope and the completed work, in units of the board's estimation
+ * statistic. The series is kept in primitive arrays, sorted by time, with
+ * running totals so the scope, completed and remaining work at any time
+ * are found by binary search.
+ */
+public class ScopeChangeBurndown {
+
+    public static final long DAY = 24L * 60 * 60 * 1000;
+
+    /**
+     * Estimate and state of an issue while decoding.
+     */
+    private static final class IssueState {
+        final int index;
+        double estimate = 0;
+        boolean inScope = false;
+        boolean done = false;
+
+        IssueState(int index) {
+            this.index = index;
+        }
+    }
+
+    private long startTime = 0;
+    private long endTime = 0;
+    private long completeTime = 0;
+    private long now = 0;
+    private String[] keys = new String[0];
+    private int size = 0;
+    private long[] times = new long[16];
+    private int[] issues = new int[16];
+    private double[] scopeDeltas = new double[16];
+    private double[] doneDeltas = new double[16];
+    private double[] scopeTotals = null;
+    private double[] doneTotals = null;
+
+    /**
+     * Creates a burndown from a JSON payload.
+     *
+     * @param json JSON payload
+     */
+    protected ScopeChangeBurndown(JSONObject json) {
+        if (json != null)
+            deserialise(json);
+    }
+
+    private static double number(Object o) {
+        return o instanceof Number ? ((Number)o).doubleValue() : 0;
+    }
+
+    private void deserialise(JSONObject json) {
+        Map map = json;
+
+        startTime = Field.getLong(map.get("startTime"));
+        endTime = Field.getLong(map.get("endTime"));
+        completeTime = Field.getLong(map.get("completeTime"));
+        now = Field.getLong(map.get("now"));
+
+        Object changes = map.get("changes");
+        List<Long> stamps = new ArrayList<Long>();
+
+        if (changes instanceof JSONObject) {
+            for (Object k : ((JSONObject)changes).keySet())
+                stamps.add(Long.valueOf((String)k));
+        }
+
+        Collections.sort(stamps);
+
+        Map<String, IssueState> states = new HashMap<String, IssueState>();
+        List<String> keyList = new ArrayList<String>();
+
+        for (Long stamp : stamps) {
+            Object list = ((JSONObject)changes).get(stamp.toString());
+
+            if (!(list instanceof JSONArray))
+                continue;
+
+            for (Object c : (JSONArray)list) {
+                if (!(c instanceof JSONObject))
+                    continue;
+
+                JSONObject change = (JSONObject)c;
+                String key = Field.getString(change.get("key"));
+
+                if (key == null)
+                    continue;
+
+                IssueState state = states.get(key);
+
+                if (state == null) {
+                    state = new IssueState(keyList.size());
+                    states.put(key, state);
+                    keyList.add(key);
+                }
+
+                apply(stamp, state, change);
+            }
+        }
+
+        keys = keyList.toArray(new String[keyList.size()]);
+        times = Arrays.copyOf(times, size);
+        issues = Arrays.copyOf(issues, size);
+        scopeDeltas = Arrays.copyOf(scopeDeltas, size);
+        doneDeltas = Arrays.copyOf(doneDeltas, size);
+        scopeTotals = new double[size];
+        doneTotals = new double[size];
+
+        double scope = 0;
+        double done = 0;
+
+        for (int i = 0; i < size; i++) {
+            scope += scopeDeltas[i];
+            done += doneDeltas[i];
+            scopeTotals[i] = scope;
+            doneTotals[i] = done;
+        }
+    }
+
+    /**
+     * Applies one change, an estimate change first, then a scope change
+     * and then a status change.
+     */
+    private void apply(long time, IssueState state, JSONObject change) {
+        if (change.get("statC") instanceof JSONObject) {
+            double estimate = number(((JSONObject)change.get("statC")).get("newValue"));
+            double delta = estimate - state.estimate;
+            state.estimate = estimate;
+
+            if (state.inScope)
+                add(time, state.index, delta, state.done ? delta : 0);
+        }
+
+        if (change.containsKey("added")) {
+            boolean added = Field.getBoolean(change.get("added"));
+
+            if (added != state.inScope) {
+                state.inScope = added;
+                double delta = added ? state.estimate : -state.estimate;
+                add(time, state.index, delta, state.done ? delta : 0);
+            }
+        }
+
+        if (change.get("column") instanceof JSONObject &&
+                ((JSONObject)change.get("column")).containsKey("notDone")) {
+            boolean done = !Field.getBoolean(((JSONObject)change.get("column")).get("notDone"));
+
+            if (done != state.done) {
+                state.done = done;
+
+                if (state.inScope)
+                    add(time, state.index, 0, done ? state.estimate : -state.estimate);
+            }
+        }
+    }
+
+    private void add(long time, int issue, double scopeDelta, double doneDelta) {
+        if (scopeDelta == 0 && doneDelta == 0)
+            return;
+
+        if (size == times.length) {
+            int capacity = size * 2;
+            times = Arrays.copyOf(times, capacity);
+            issues = Arrays.copyOf(issues, capacity);
+            scopeDeltas = Arrays.copyOf(scopeDeltas, capacity);
+            doneDeltas = Arrays.copyOf(doneDeltas, capacity);
+        }
+
+        times[size] = time;
+        issues[size] = issue;
+        scopeDeltas[size] = scopeDelta;
+        doneDeltas[size] = doneDelta;
+        size++;
+    }
+
+    /**
+     * Retrieves the scope change burndown of the given sprint.
+     *
+     * @param restclient REST client instance
+     * @param rv Rapid View instance
+     * @param sprint Sprint instance
+     *
+     * @return the burndown
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    public static ScopeChangeBurndown get(RestClient restclient, RapidView rv, Sprint sprint)
+        throws JiraException {
+
+        return new ScopeChangeBurndown(getContents(restclient, rv.getId(), sprint.getId()));
+    }
+
+    /**
+     * Retrieves the raw burndown chart data.
+     *
+     * @param restclient REST client instance
+     * @param rvId Rapid View ID
+     * @param sprintId Sprint ID
+     *
+     * @return the chart data
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    static JSONObject getContents(RestClient restclient, final int rvId, final int sprintId)
+        throws JiraException {
+
+        JSON result = null;
+
+        try {
+            URI charturi = restclient.buildURI(
+                GreenHopperResource.RESOURCE_URI + "rapid/charts/scopechangeburndownchart",
+                new HashMap<String, String>() {{
+                    put("rapidViewId", Integer.toString(rvId));
+                    put("sprintId", Integer.toString(sprintId));
+                }});
+            result = restclient.get(charturi);
+        } catch (Exception ex) {
+            throw new JiraException("Failed to retrieve scope change burndown", ex);
+        }
+
+        if (!(result instanceof JSONObject))
+            throw new JiraException("JSON payload is malformed");
+
+        JSONObject jo = (JSONObject)result;
+
+        if (!(jo.get("changes") instanceof JSONObject))
+            throw new JiraException("Scope change burndown content is malformed");
+
+        return jo;
+    }
+
+    /**
+     * Finds the last event at or before the given time.
+     *
+     * @return the event index, or -1 if none
+     */
+    private int indexAt(long time) {
+        int lo = 0;
+        int hi = size - 1;
+        int found = -1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if (times[mid] <= time) {
+                found = mid;
+                lo = mid + 1;
+            } else
+                hi = mid - 1;
+        }
+
+        return found;
+    }
+
+    /**
+     * @param time Time in milliseconds since the epoch
+     *
+     * @return the sprint scope at the given time
+     */
+    public double getScope(long time) {
+        int i = indexAt(time);
+        return i >= 0 ? scopeTotals[i] : 0;
+    }
+
+    /**
+     * @param time Time in milliseconds since the epoch
+     *
+     * @return the completed work at the given time
+     */
+    public double getCompleted(long time) {
+        int i = indexAt(time);
+        return i >= 0 ? doneTotals[i] : 0;
+    }
+
+    /**
+     * @param time Time in milliseconds since the epoch
+     *
+     * @return the work left at the given time
+     */
+    public double getRemaining(long time) {
+        int i = indexAt(time);
+        return i >= 0 ? scopeTotals[i] - doneTotals[i] : 0;
+    }
+
+    private double[] sample(long from, long to, long step, boolean scope, boolean done) {
+        if (step <= 0 || to < from)
+            return new double[0];
+
+        double[] result = new double[(int)((to - from) / step) + 1];
+        int i = indexAt(from);
+
+        for (int n = 0; n < result.length; n++) {
+            long t = from + n * step;
+
+            while (i + 1 < size && times[i + 1] <= t)
+                i++;
+
+            double value = 0;
+
+            if (i >= 0) {
+                if (scope)
+                    value += scopeTotals[i];
+                if (done)
+                    value += scope ? -doneTotals[i] : doneTotals[i];
+            }
+
+            result[n] = value;
+        }
+
+        return result;
+    }
+
+    /**
+     * Samples the work left.
+     *
+     * @param from First sample time
+     * @param to Time after which sampling stops
+     * @param step Time between samples in milliseconds
+     *
+     * @return the work left at each sample time
+     */
+    public double[] getBurndown(long from, long to, long step) {
+        return sample(from, to, step, true, true);
+    }
+
+    /**
+     * Samples the completed work.
+     *
+     * @param from First sample time
+     * @param to Time after which sampling stops
+     * @param step Time between samples in milliseconds
+     *
+     * @return the completed work at each sample time
+     */
+    public double[] getBurnup(long from, long to, long step) {
+        return sample(from, to, step, false, true);
+    }
+
+    /**
+     * Samples the sprint scope.
+     *
+     * @param from First sample time
+     * @param to Time after which sampling stops
+     * @param step Time between samples in milliseconds
+     *
+     * @return the scope at each sample time
+     */
+    public double[] getScope(long from, long to, long step) {
+        return sample(from, to, step, true, false);
+    }
+
+    /**
+     * @return the time the chart ends: completion for a finished sprint,
+     * otherwise the earlier of the planned end and the server's clock
+     */
+    public long getLastTime() {
+        if (completeTime > 0)
+            return completeTime;
+
+        return now > 0 && now < endTime ? now : endTime;
+    }
+
+    /**
+     * @return the work left at the start of each day of the sprint
+     */
+    public double[] getDailyBurndown() {
+        return getBurndown(startTime, getLastTime(), DAY);
+    }
+
+    /**
+     * @return the completed work at the start of each day of the sprint
+     */
+    public double[] getDailyBurnup() {
+        return getBurnup(startTime, getLastTime(), DAY);
+    }
+
+    /**
+     * @return number of events
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getTime(int event) {
+        return times[event];
+    }
+
+    public String getIssueKey(int event) {
+        return keys[issues[event]];
+    }
+
+    public double getScopeDelta(int event) {
+        return scopeDeltas[event];
+    }
+
+    public double getCompletedDelta(int event) {
+        return doneDeltas[event];
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public long getCompleteTime() {
+        return completeTime;
+    }
+
+    public boolean isCompleted() {
+        return completeTime > 0;
+    }
+}
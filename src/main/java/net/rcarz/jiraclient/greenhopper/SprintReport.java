@@ -23,11 +23,15 @@ import net.rcarz.jiraclient.Field;
 import net.rcarz.jiraclient.Issue;
 import net.rcarz.jiraclient.JiraException;
 import net.rcarz.jiraclient.RestClient;
+import net.rcarz.utils.BoundedExecutor;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import net.sf.json.JSON;
 import net.sf.json.JSONObject;
@@ -37,6 +41,11 @@ import net.sf.json.JSONObject;
  */
 public class SprintReport {
 
+    /**
+     * Maximum number of reports fetched at the same time by {@link #getAll}.
+     */
+    public static final int DEFAULT_CONCURRENCY = 4;
+
     private RestClient restclient = null;
     private Sprint sprint = null;
     private List<SprintIssue> completedIssues = null;
@@ -103,8 +112,63 @@ public class SprintReport {
     public static SprintReport get(RestClient restclient, RapidView rv, Sprint sprint)
         throws JiraException {
 
-        final int rvId = rv.getId();
-        final int sprintId = sprint.getId();
+        return new SprintReport(restclient, getContents(restclient, rv.getId(), sprint.getId()));
+    }
+
+    /**
+     * Retrieves the sprint reports for the given rapid view and sprints,
+     * fetching those not in the cache concurrently.
+     *
+     * @param restclient REST client instance
+     * @param rv Rapid View instance
+     * @param sprints Sprints to lookup
+     * @param cache Cache to use, or null to fetch every report
+     *
+     * @return the sprint reports, in the order of the sprints
+     *
+     * @throws JiraException when any retrieval fails
+     */
+    public static List<SprintReport> getAll(final RestClient restclient, final RapidView rv,
+        List<Sprint> sprints, final SprintReportCache cache) throws JiraException {
+
+        List<Callable<SprintReport>> tasks = new ArrayList<Callable<SprintReport>>();
+
+        for (final Sprint sprint : sprints) {
+            tasks.add(new Callable<SprintReport>() {
+                public SprintReport call() throws JiraException {
+                    return cache != null ?
+                        cache.get(restclient, rv, sprint) : get(restclient, rv, sprint);
+                }
+            });
+        }
+
+        try {
+            return BoundedExecutor.invokeAll(tasks, DEFAULT_CONCURRENCY);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JiraException("Interrupted while retrieving sprint reports", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof JiraException)
+                throw (JiraException)ex.getCause();
+
+            throw new JiraException("Failed to retrieve sprint reports", ex.getCause());
+        }
+    }
+
+    /**
+     * Retrieves the raw contents of a sprint report.
+     *
+     * @param restclient REST client instance
+     * @param rvId Rapid View ID
+     * @param sprintId Sprint ID
+     *
+     * @return the report contents
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    static JSONObject getContents(RestClient restclient, final int rvId, final int sprintId)
+        throws JiraException {
+
         JSON result = null;
 
         try {
@@ -127,7 +191,7 @@ public class SprintReport {
         if (!jo.containsKey("contents") || !(jo.get("contents") instanceof JSONObject))
             throw new JiraException("Sprint report content is malformed");
 
-        return new SprintReport(restclient, (JSONObject)jo.get("contents"));
+        return (JSONObject)jo.get("contents");
     }
 
     public Sprint getSprint() {
@@ -0,0 +1,137 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.greenhopper;
+
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.RestClient;
+
+import java.io.File;
+
+import net.sf.json.JSONObject;
+
+/**
+ * A cache of sprint reports.
+ *
+ * The report of a closed sprint never changes, so it is kept for good, in
+ * memory and as a file in the cache directory where it survives restarts.
+ * Reports of sprints still running are kept in memory only and fetched
+ * again once they are older than the time to live. A sprint counts as
+ * closed when the fetched report says so.
+ *
+ * Concurrent lookups of the same report share one request.
+ */
+public class SprintReportCache {
+
+    public static final long DEFAULT_TTL = 60000;
+
+    private final ChartCache reports;
+
+    /**
+     * Opens or creates a cache in the given directory.
+     *
+     * @param directory Directory holding the closed sprint reports
+     *
+     * @throws JiraException when the directory cannot be created
+     */
+    public SprintReportCache(File directory) throws JiraException {
+        this(directory, DEFAULT_TTL);
+    }
+
+    /**
+     * Opens or creates a cache in the given directory.
+     *
+     * @param directory Directory holding the closed sprint reports
+     * @param ttl Time to keep reports of running sprints in milliseconds
+     *
+     * @throws JiraException when the directory cannot be created
+     */
+    public SprintReportCache(File directory, long ttl) throws JiraException {
+        reports = new ChartCache(directory, "sprintreport", ttl) {
+            JSONObject fetch(RestClient restclient, int rvId, int sprintId) throws JiraException {
+                return SprintReport.getContents(restclient, rvId, sprintId);
+            }
+
+            boolean isFinal(JSONObject contents) {
+                Sprint sprint = GreenHopperField.getResource(Sprint.class, contents.get("sprint"), null);
+                return sprint != null && sprint.isClosed();
+            }
+        };
+    }
+
+    /**
+     * Gets the sprint report for the given rapid view and sprint, fetching
+     * it when it isn't cached.
+     *
+     * @param restclient REST client instance
+     * @param rv Rapid View instance
+     * @param sprint Sprint instance
+     *
+     * @return the sprint report
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    public SprintReport get(RestClient restclient, RapidView rv, Sprint sprint)
+        throws JiraException {
+
+        return new SprintReport(restclient, reports.get(restclient, rv.getId(), sprint.getId()));
+    }
+
+    /**
+     * Drops the cached report of the given sprint, on disk too.
+     *
+     * @param rv Rapid View instance
+     * @param sprint Sprint instance
+     */
+    public void invalidate(RapidView rv, Sprint sprint) {
+        reports.invalidate(rv.getId(), sprint.getId());
+    }
+
+    /**
+     * Drops the reports of running sprints, keeping closed ones.
+     */
+    public void clearActive() {
+        reports.clearActive();
+    }
+
+    /**
+     * @param ttl Time to keep reports of running sprints in milliseconds
+     */
+    public void setTtl(long ttl) {
+        reports.setTtl(ttl);
+    }
+
+    /**
+     * @return number of lookups answered from the cache
+     */
+    public long getHits() {
+        return reports.getHits();
+    }
+
+    /**
+     * @return number of reports fetched from the server
+     */
+    public long getMisses() {
+        return reports.getMisses();
+    }
+
+    public File getDirectory() {
+        return reports.getDirectory();
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.greenhopper;
+
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.RestClient;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * GreenHopper velocity chart: the estimated and completed values of the
+ * recent sprints of a rapid view.
+ */
+public class Velocity {
+
+    /**
+     * Velocity of one sprint.
+     */
+    public static class Entry {
+        private Sprint sprint = null;
+        private EstimateSum estimated = null;
+        private EstimateSum completed = null;
+
+        protected Entry(Sprint sprint, JSONObject json) {
+            Map map = json;
+
+            this.sprint = sprint;
+            estimated = GreenHopperField.getEstimateSum(map.get("estimated"));
+            completed = GreenHopperField.getEstimateSum(map.get("completed"));
+        }
+
+        public Sprint getSprint() {
+            return sprint;
+        }
+
+        public EstimateSum getEstimated() {
+            return estimated;
+        }
+
+        public EstimateSum getCompleted() {
+            return completed;
+        }
+    }
+
+    private List<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * Creates a velocity chart from a JSON payload.
+     *
+     * @param restclient REST client instance
+     * @param json JSON payload
+     */
+    protected Velocity(RestClient restclient, JSONObject json) {
+        if (json != null)
+            deserialise(restclient, json);
+    }
+
+    private void deserialise(RestClient restclient, JSONObject json) {
+        Map map = json;
+        List<Sprint> sprints = GreenHopperField.getResourceArray(
+            Sprint.class,
+            map.get("sprints"),
+            restclient);
+        Object stats = map.get("velocityStatEntries");
+
+        for (Sprint sprint : sprints) {
+            Object entry = stats instanceof JSONObject ?
+                ((JSONObject)stats).get(Integer.toString(sprint.getId())) : null;
+
+            if (entry instanceof JSONObject && !((JSONObject)entry).isNullObject())
+                entries.add(new Entry(sprint, (JSONObject)entry));
+        }
+    }
+
+    /**
+     * Retrieves the velocity chart of the given rapid view.
+     *
+     * @param restclient REST client instance
+     * @param rv Rapid View instance
+     *
+     * @return the velocity chart
+     *
+     * @throws JiraException when the retrieval fails
+     */
+    public static Velocity get(RestClient restclient, RapidView rv)
+        throws JiraException {
+
+        final int rvId = rv.getId();
+        JSON result = null;
+
+        try {
+            URI velocityuri = restclient.buildURI(
+                GreenHopperResource.RESOURCE_URI + "rapid/charts/velocity",
+                new HashMap<String, String>() {{
+                    put("rapidViewId", Integer.toString(rvId));
+                }});
+            result = restclient.get(velocityuri);
+        } catch (Exception ex) {
+            throw new JiraException("Failed to retrieve velocity", ex);
+        }
+
+        if (!(result instanceof JSONObject))
+            throw new JiraException("JSON payload is malformed");
+
+        JSONObject jo = (JSONObject)result;
+
+        if (!(jo.get("sprints") instanceof JSONArray) ||
+            !(jo.get("velocityStatEntries") instanceof JSONObject))
+            throw new JiraException("Velocity content is malformed");
+
+        return new Velocity(restclient, jo);
+    }
+
+    /**
+     * @return the sprints and their values, in the order the server lists them
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Gets the velocity of a sprint.
+     *
+     * @param sprintId Sprint ID
+     *
+     * @return the entry, or null if the sprint isn't on the chart
+     */
+    public Entry getEntry(int sprintId) {
+        for (Entry e : entries) {
+            if (e.getSprint().getId() == sprintId)
+                return e;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the average completed value over the closed sprints, or 0 if
+     * there are none
+     */
+    public double getAverageCompleted() {
+        double sum = 0;
+        int count = 0;
+
+        for (Entry e : entries) {
+            if (!e.getSprint().isClosed())
+                continue;
+
+            if (e.getCompleted() != null && e.getCompleted().getValue() != null)
+                sum += e.getCompleted().getValue();
+
+            count++;
+        }
+
+        return count > 0 ? sum / count : 0;
+    }
+}
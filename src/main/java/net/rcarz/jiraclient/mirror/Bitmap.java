@@ -0,0 +1,471 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.mirror;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of non-negative integers.
+ *
+ * Values are grouped into chunks of 65536 by their upper 16 bits. A chunk
+ * holding up to 4096 values keeps the lower 16 bits in a sorted array; a
+ * fuller chunk switches to a plain 8KB bit set. Set operations work chunk
+ * by chunk and skip chunks that cannot contribute to the result.
+ *
+ * Set operations always return a new bitmap. Only the owning
+ * {@link IssueIndex} can add or remove values.
+ */
+public final class Bitmap {
+
+    static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    /**
+     * The lower 16 bits of the values in one chunk.
+     */
+    private static final class Container {
+        char[] array;
+        long[] words;
+        int cardinality;
+
+        Container(char[] array, long[] words, int cardinality) {
+            this.array = array;
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        Container copy() {
+            return new Container(
+                array != null ? array.clone() : null,
+                words != null ? words.clone() : null,
+                cardinality);
+        }
+
+        boolean contains(char v) {
+            if (words != null)
+                return (words[v >>> 6] & (1L << v)) != 0;
+
+            return Arrays.binarySearch(array, 0, cardinality, v) >= 0;
+        }
+
+        boolean add(char v) {
+            if (words != null) {
+                long before = words[v >>> 6];
+                words[v >>> 6] |= 1L << v;
+
+                if (before == words[v >>> 6])
+                    return false;
+
+                cardinality++;
+                return true;
+            }
+
+            int idx = Arrays.binarySearch(array, 0, cardinality, v);
+
+            if (idx >= 0)
+                return false;
+
+            if (cardinality == ARRAY_MAX) {
+                toWords();
+                return add(v);
+            }
+
+            if (cardinality == array.length)
+                array = Arrays.copyOf(array, Math.min(ARRAY_MAX, array.length * 2));
+
+            idx = -idx - 1;
+            System.arraycopy(array, idx, array, idx + 1, cardinality - idx);
+            array[idx] = v;
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(char v) {
+            if (words != null) {
+                long before = words[v >>> 6];
+                words[v >>> 6] &= ~(1L << v);
+
+                if (before == words[v >>> 6])
+                    return false;
+
+                if (--cardinality <= ARRAY_MAX)
+                    toArray();
+
+                return true;
+            }
+
+            int idx = Arrays.binarySearch(array, 0, cardinality, v);
+
+            if (idx < 0)
+                return false;
+
+            System.arraycopy(array, idx + 1, array, idx, cardinality - idx - 1);
+            cardinality--;
+            return true;
+        }
+
+        void toWords() {
+            long[] w = new long[WORDS];
+
+            for (int i = 0; i < cardinality; i++)
+                w[array[i] >>> 6] |= 1L << array[i];
+
+            words = w;
+            array = null;
+        }
+
+        void toArray() {
+            char[] a = new char[Math.max(cardinality, 4)];
+            int n = 0;
+
+            for (int i = 0; i < WORDS; i++) {
+                for (long w = words[i]; w != 0; w &= w - 1)
+                    a[n++] = (char)(i * 64 + Long.numberOfTrailingZeros(w));
+            }
+
+            array = a;
+            words = null;
+        }
+
+        long[] bits() {
+            if (words != null)
+                return words.clone();
+
+            long[] w = new long[WORDS];
+
+            for (int i = 0; i < cardinality; i++)
+                w[array[i] >>> 6] |= 1L << array[i];
+
+            return w;
+        }
+
+        int write(int[] out, int pos, int high) {
+            if (words == null) {
+                for (int i = 0; i < cardinality; i++)
+                    out[pos++] = high | array[i];
+
+                return pos;
+            }
+
+            for (int i = 0; i < WORDS; i++) {
+                for (long w = words[i]; w != 0; w &= w - 1)
+                    out[pos++] = high | (i * 64 + Long.numberOfTrailingZeros(w));
+            }
+
+            return pos;
+        }
+
+        static Container fromBits(long[] w) {
+            int card = 0;
+
+            for (long word : w)
+                card += Long.bitCount(word);
+
+            if (card == 0)
+                return null;
+
+            Container c = new Container(null, w, card);
+
+            if (card <= ARRAY_MAX)
+                c.toArray();
+
+            return c;
+        }
+
+        static Container filter(Container src, Container other, boolean keep) {
+            char[] out = new char[src.cardinality];
+            int n = 0;
+
+            for (int i = 0; i < src.cardinality; i++) {
+                if (other.contains(src.array[i]) == keep)
+                    out[n++] = src.array[i];
+            }
+
+            return n > 0 ? new Container(out, null, n) : null;
+        }
+
+        static Container and(Container a, Container b) {
+            if (a.words == null)
+                return filter(a, b, true);
+            if (b.words == null)
+                return filter(b, a, true);
+
+            long[] w = new long[WORDS];
+
+            for (int i = 0; i < WORDS; i++)
+                w[i] = a.words[i] & b.words[i];
+
+            return fromBits(w);
+        }
+
+        static Container or(Container a, Container b) {
+            if (a.words == null && b.words == null && a.cardinality + b.cardinality <= ARRAY_MAX) {
+                char[] out = new char[a.cardinality + b.cardinality];
+                int i = 0, j = 0, n = 0;
+
+                while (i < a.cardinality && j < b.cardinality) {
+                    if (a.array[i] < b.array[j])
+                        out[n++] = a.array[i++];
+                    else if (a.array[i] > b.array[j])
+                        out[n++] = b.array[j++];
+                    else {
+                        out[n++] = a.array[i++];
+                        j++;
+                    }
+                }
+
+                while (i < a.cardinality)
+                    out[n++] = a.array[i++];
+                while (j < b.cardinality)
+                    out[n++] = b.array[j++];
+
+                return new Container(out, null, n);
+            }
+
+            long[] w = a.bits();
+
+            if (b.words != null) {
+                for (int i = 0; i < WORDS; i++)
+                    w[i] |= b.words[i];
+            } else {
+                for (int i = 0; i < b.cardinality; i++)
+                    w[b.array[i] >>> 6] |= 1L << b.array[i];
+            }
+
+            return fromBits(w);
+        }
+
+        static Container andNot(Container a, Container b) {
+            if (a.words == null)
+                return filter(a, b, false);
+
+            long[] w = a.words.clone();
+
+            if (b.words != null) {
+                for (int i = 0; i < WORDS; i++)
+                    w[i] &= ~b.words[i];
+            } else {
+                for (int i = 0; i < b.cardinality; i++)
+                    w[b.array[i] >>> 6] &= ~(1L << b.array[i]);
+            }
+
+            return fromBits(w);
+        }
+    }
+
+    private char[] keys = null;
+    private Container[] chunks = null;
+    private int size = 0;
+
+    Bitmap() {
+        this(4);
+    }
+
+    private Bitmap(int capacity) {
+        keys = new char[Math.max(capacity, 1)];
+        chunks = new Container[keys.length];
+    }
+
+    private void insert(int idx, char key, Container c) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            chunks = Arrays.copyOf(chunks, size * 2);
+        }
+
+        System.arraycopy(keys, idx, keys, idx + 1, size - idx);
+        System.arraycopy(chunks, idx, chunks, idx + 1, size - idx);
+        keys[idx] = key;
+        chunks[idx] = c;
+        size++;
+    }
+
+    private void append(char key, Container c) {
+        if (c != null)
+            insert(size, key, c);
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @return true if the value was not present before
+     */
+    boolean add(int value) {
+        char high = (char)(value >>> 16);
+        int idx = Arrays.binarySearch(keys, 0, size, high);
+
+        if (idx < 0) {
+            idx = -idx - 1;
+            insert(idx, high, new Container(new char[4], null, 0));
+        }
+
+        return chunks[idx].add((char)value);
+    }
+
+    /**
+     * Removes a value.
+     *
+     * @return true if the value was present
+     */
+    boolean remove(int value) {
+        int idx = Arrays.binarySearch(keys, 0, size, (char)(value >>> 16));
+
+        if (idx < 0 || !chunks[idx].remove((char)value))
+            return false;
+
+        if (chunks[idx].cardinality == 0) {
+            System.arraycopy(keys, idx + 1, keys, idx, size - idx - 1);
+            System.arraycopy(chunks, idx + 1, chunks, idx, size - idx - 1);
+            chunks[--size] = null;
+        }
+
+        return true;
+    }
+
+    Bitmap copy() {
+        Bitmap result = new Bitmap(size);
+
+        for (int i = 0; i < size; i++)
+            result.append(keys[i], chunks[i].copy());
+
+        return result;
+    }
+
+    /**
+     * Checks whether a value is in the set.
+     *
+     * @param value Value to look for
+     *
+     * @return true if the value is present
+     */
+    public boolean contains(int value) {
+        int idx = Arrays.binarySearch(keys, 0, size, (char)(value >>> 16));
+        return idx >= 0 && chunks[idx].contains((char)value);
+    }
+
+    /**
+     * Intersects this set with another.
+     *
+     * @param other Another bitmap
+     *
+     * @return a new bitmap holding the values present in both
+     */
+    public Bitmap and(Bitmap other) {
+        Bitmap result = new Bitmap(Math.min(size, other.size));
+        int i = 0, j = 0;
+
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j])
+                i++;
+            else if (keys[i] > other.keys[j])
+                j++;
+            else {
+                result.append(keys[i], Container.and(chunks[i], other.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Unites this set with another.
+     *
+     * @param other Another bitmap
+     *
+     * @return a new bitmap holding the values present in either
+     */
+    public Bitmap or(Bitmap other) {
+        Bitmap result = new Bitmap(size + other.size);
+        int i = 0, j = 0;
+
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j]))
+                result.append(keys[i], chunks[i++].copy());
+            else if (i == size || keys[i] > other.keys[j])
+                result.append(other.keys[j], other.chunks[j++].copy());
+            else {
+                result.append(keys[i], Container.or(chunks[i], other.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Subtracts another set from this one.
+     *
+     * @param other Another bitmap
+     *
+     * @return a new bitmap holding the values of this set missing from the other
+     */
+    public Bitmap andNot(Bitmap other) {
+        Bitmap result = new Bitmap(size);
+        int j = 0;
+
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i])
+                j++;
+
+            if (j < other.size && other.keys[j] == keys[i])
+                result.append(keys[i], Container.andNot(chunks[i], other.chunks[j]));
+            else
+                result.append(keys[i], chunks[i].copy());
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the number of values in the set
+     */
+    public int cardinality() {
+        int count = 0;
+
+        for (int i = 0; i < size; i++)
+            count += chunks[i].cardinality;
+
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the values in ascending order
+     */
+    public int[] toArray() {
+        int[] out = new int[cardinality()];
+        int pos = 0;
+
+        for (int i = 0; i < size; i++)
+            pos = chunks[i].write(out, pos, keys[i] << 16);
+
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
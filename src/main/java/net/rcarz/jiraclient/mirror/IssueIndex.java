@@ -0,0 +1,496 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.mirror;
+
+import net.rcarz.jiraclient.Component;
+import net.rcarz.jiraclient.Field;
+import net.rcarz.jiraclient.Issue;
+import net.rcarz.jiraclient.Resource;
+import net.rcarz.jiraclient.Version;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Secondary indexes over mirrored issues.
+ *
+ * Every indexed issue is given a dense ordinal, and every value of an
+ * indexed field maps to a {@link Bitmap} of the ordinals having that
+ * value. Filters are evaluated by combining bitmaps and counts come from
+ * their cardinality, so no issue has to be read or decoded to answer them.
+ * Ordinals of removed issues are reused. The created, updated, resolved
+ * and due dates are kept per ordinal so results can be sorted.
+ *
+ * Values are matched case-insensitively. Resources are indexed by both ID
+ * and name (projects also by key, users by user name), and an issue
+ * without a value for a field is indexed under {@link #EMPTY}.
+ */
+public class IssueIndex {
+
+    /**
+     * Pseudo field for the sprints of an issue, read from the Agile sprint
+     * custom field.
+     */
+    public static final String SPRINT = "sprint";
+
+    /**
+     * Value matched by issues that have no value for a field.
+     */
+    public static final String EMPTY = "";
+
+    /**
+     * The fields indexed.
+     */
+    public static final List<String> FIELDS = Arrays.asList(
+        Field.PROJECT, Field.ISSUE_TYPE, Field.STATUS, Field.PRIORITY, Field.RESOLUTION,
+        Field.ASSIGNEE, Field.REPORTER, Field.FIX_VERSIONS, Field.VERSIONS, Field.COMPONENTS,
+        Field.LABELS, SPRINT);
+
+    /**
+     * The date fields kept per issue for sorting.
+     */
+    public static final List<String> TIME_FIELDS = Arrays.asList(
+        Field.CREATED_DATE, Field.UPDATED_DATE, Field.RESOLUTION_DATE, Field.DUE_DATE);
+
+    /**
+     * Returned by {@link #getTime(String, int)} when a date is not set.
+     */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final String LEGACY_SPRINT = "com.atlassian.greenhopper.service.sprint.Sprint@";
+    private static final Pattern LEGACY_SPRINT_ID = Pattern.compile("[\\[,]id=([0-9]+)");
+    private static final Pattern LEGACY_SPRINT_NAME = Pattern.compile(",name=([^,\\]]*)");
+
+    private Map<String, Map<String, Bitmap>> postings = new HashMap<String, Map<String, Bitmap>>();
+    private Map<String, Integer> ordinals = new HashMap<String, Integer>();
+    private List<String> keys = new ArrayList<String>();
+    private List<String[]> entries = new ArrayList<String[]>();
+    private List<long[]> times = new ArrayList<long[]>();
+    private Deque<Integer> free = new ArrayDeque<Integer>();
+    private Bitmap live = new Bitmap();
+    private String sprintField = null;
+
+    /**
+     * Creates an empty index. The sprint field is detected from the issues.
+     */
+    public IssueIndex() {
+        for (String field : FIELDS)
+            postings.put(field, new HashMap<String, Bitmap>());
+    }
+
+    /**
+     * Creates an empty index.
+     *
+     * @param sprintField ID of the sprint custom field, e.g. customfield_10007
+     */
+    public IssueIndex(String sprintField) {
+        this();
+        this.sprintField = sprintField;
+    }
+
+    private static String normalise(String value) {
+        return value.trim().toLowerCase(Locale.ENGLISH);
+    }
+
+    private static void add(List<String> out, String field, String value) {
+        if (value != null && !value.trim().isEmpty()) {
+            out.add(field);
+            out.add(normalise(value));
+        }
+    }
+
+    private static void addResource(List<String> out, String field, Resource res, String name) {
+        if (res == null)
+            return;
+
+        add(out, field, res.getId());
+        add(out, field, name);
+    }
+
+    private static void addSprint(List<String> out, Object value) {
+        if (value instanceof JSONArray) {
+            for (Object item : (JSONArray)value)
+                addSprint(out, item);
+        } else if (value instanceof JSONObject) {
+            JSONObject json = (JSONObject)value;
+            add(out, SPRINT, Field.getString(json.get("id")));
+            add(out, SPRINT, Field.getString(json.get("name")));
+        } else if (value instanceof String) {
+            String s = (String)value;
+            Matcher m = LEGACY_SPRINT_ID.matcher(s);
+
+            if (m.find())
+                add(out, SPRINT, m.group(1));
+
+            m = LEGACY_SPRINT_NAME.matcher(s);
+
+            if (m.find())
+                add(out, SPRINT, m.group(1));
+        }
+    }
+
+    private static boolean looksLikeSprint(Object value) {
+        if (!(value instanceof JSONArray) || ((JSONArray)value).isEmpty())
+            return false;
+
+        Object first = ((JSONArray)value).get(0);
+
+        if (first instanceof String)
+            return ((String)first).startsWith(LEGACY_SPRINT);
+
+        return first instanceof JSONObject &&
+            ((JSONObject)first).containsKey("boardId") &&
+            ((JSONObject)first).containsKey("state");
+    }
+
+    private void addSprints(List<String> out, Issue issue) {
+        if (issue.getJson() == null || !(issue.getJson().get("fields") instanceof JSONObject))
+            return;
+
+        JSONObject fields = issue.getJson().getJSONObject("fields");
+
+        if (sprintField != null) {
+            addSprint(out, fields.get(sprintField));
+            return;
+        }
+
+        for (Object k : fields.keySet()) {
+            String name = (String)k;
+
+            if (name.startsWith("customfield_") && looksLikeSprint(fields.get(name))) {
+                sprintField = name;
+                addSprint(out, fields.get(name));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Collects the field and value pairs of an issue.
+     */
+    private String[] extract(Issue issue) {
+        List<String> out = new ArrayList<String>();
+
+        if (issue.getProject() != null) {
+            addResource(out, Field.PROJECT, issue.getProject(), issue.getProject().getName());
+            add(out, Field.PROJECT, issue.getProject().getKey());
+        }
+
+        if (issue.getIssueType() != null)
+            addResource(out, Field.ISSUE_TYPE, issue.getIssueType(), issue.getIssueType().getName());
+        if (issue.getStatus() != null)
+            addResource(out, Field.STATUS, issue.getStatus(), issue.getStatus().getName());
+        if (issue.getPriority() != null)
+            addResource(out, Field.PRIORITY, issue.getPriority(), issue.getPriority().getName());
+        if (issue.getResolution() != null)
+            addResource(out, Field.RESOLUTION, issue.getResolution(), issue.getResolution().getName());
+
+        if (issue.getAssignee() != null)
+            add(out, Field.ASSIGNEE, issue.getAssignee().getName());
+        if (issue.getReporter() != null)
+            add(out, Field.REPORTER, issue.getReporter().getName());
+
+        if (issue.getFixVersions() != null) {
+            for (Version v : issue.getFixVersions())
+                addResource(out, Field.FIX_VERSIONS, v, v.getName());
+        }
+
+        if (issue.getVersions() != null) {
+            for (Version v : issue.getVersions())
+                addResource(out, Field.VERSIONS, v, v.getName());
+        }
+
+        if (issue.getComponents() != null) {
+            for (Component c : issue.getComponents())
+                addResource(out, Field.COMPONENTS, c, c.getName());
+        }
+
+        if (issue.getLabels() != null) {
+            for (String label : issue.getLabels())
+                add(out, Field.LABELS, label);
+        }
+
+        addSprints(out, issue);
+
+        Set<String> present = new HashSet<String>();
+
+        for (int i = 0; i < out.size(); i += 2)
+            present.add(out.get(i));
+
+        /* fields without any value are indexed as empty */
+        for (String field : FIELDS) {
+            if (!present.contains(field)) {
+                out.add(field);
+                out.add(EMPTY);
+            }
+        }
+
+        return out.toArray(new String[out.size()]);
+    }
+
+    private static long[] times(Issue issue) {
+        Date[] dates = {
+            issue.getCreatedDate(), issue.getUpdatedDate(), issue.getResolutionDate(), issue.getDueDate()
+        };
+        long[] result = new long[dates.length];
+
+        for (int i = 0; i < dates.length; i++)
+            result[i] = dates[i] != null ? dates[i].getTime() : NO_TIME;
+
+        return result;
+    }
+
+    private void post(int ordinal, String[] pairs, boolean add) {
+        for (int i = 0; i < pairs.length; i += 2) {
+            Map<String, Bitmap> values = postings.get(pairs[i]);
+            Bitmap bm = values.get(pairs[i + 1]);
+
+            if (add) {
+                if (bm == null) {
+                    bm = new Bitmap();
+                    values.put(pairs[i + 1], bm);
+                }
+
+                bm.add(ordinal);
+            } else if (bm != null) {
+                bm.remove(ordinal);
+
+                if (bm.isEmpty())
+                    values.remove(pairs[i + 1]);
+            }
+        }
+    }
+
+    /**
+     * Adds an issue or replaces its previous entries.
+     *
+     * @param issue Issue to index
+     */
+    public synchronized void update(Issue issue) {
+        String[] pairs = extract(issue);
+        Integer ordinal = ordinals.get(issue.getKey());
+
+        if (ordinal != null) {
+            post(ordinal, entries.get(ordinal), false);
+        } else if (!free.isEmpty()) {
+            ordinal = free.pop();
+            ordinals.put(issue.getKey(), ordinal);
+            keys.set(ordinal, issue.getKey());
+        } else {
+            ordinal = keys.size();
+            ordinals.put(issue.getKey(), ordinal);
+            keys.add(issue.getKey());
+            entries.add(null);
+            times.add(null);
+        }
+
+        entries.set(ordinal, pairs);
+        times.set(ordinal, times(issue));
+        post(ordinal, pairs, true);
+        live.add(ordinal);
+    }
+
+    /**
+     * Removes an issue from the index.
+     *
+     * @param key Issue key
+     *
+     * @return true if the issue was indexed
+     */
+    public synchronized boolean remove(String key) {
+        Integer ordinal = ordinals.remove(key);
+
+        if (ordinal == null)
+            return false;
+
+        post(ordinal, entries.get(ordinal), false);
+        entries.set(ordinal, null);
+        times.set(ordinal, null);
+        keys.set(ordinal, null);
+        live.remove(ordinal);
+        free.push(ordinal);
+        return true;
+    }
+
+    /**
+     * Removes all issues.
+     */
+    public synchronized void clear() {
+        for (Map<String, Bitmap> values : postings.values())
+            values.clear();
+
+        ordinals.clear();
+        keys.clear();
+        entries.clear();
+        times.clear();
+        free.clear();
+        live = new Bitmap();
+    }
+
+    /**
+     * Gets the issues having a field value.
+     *
+     * @param field One of {@link #FIELDS}
+     * @param value ID or name to match, or {@link #EMPTY}
+     *
+     * @return a bitmap of issue ordinals
+     */
+    public synchronized Bitmap get(String field, String value) {
+        Map<String, Bitmap> values = postings.get(field);
+
+        if (values == null)
+            throw new IllegalArgumentException("Field " + field + " is not indexed");
+
+        Bitmap bm = values.get(normalise(value));
+        return bm != null ? bm.copy() : new Bitmap();
+    }
+
+    /**
+     * Gets the issues having any of the given field values.
+     *
+     * @param field One of {@link #FIELDS}
+     * @param values IDs or names to match
+     *
+     * @return a bitmap of issue ordinals
+     */
+    public synchronized Bitmap any(String field, Collection<String> values) {
+        Bitmap result = new Bitmap();
+
+        for (String value : values)
+            result = result.or(get(field, value));
+
+        return result;
+    }
+
+    /**
+     * @return a bitmap of all indexed issues, the base for negations
+     */
+    public synchronized Bitmap all() {
+        return live.copy();
+    }
+
+    /**
+     * Counts the issues having a field value.
+     *
+     * @param field One of {@link #FIELDS}
+     * @param value ID or name to match, or {@link #EMPTY}
+     *
+     * @return the number of issues
+     */
+    public synchronized int count(String field, String value) {
+        Map<String, Bitmap> values = postings.get(field);
+        Bitmap bm = values != null ? values.get(normalise(value)) : null;
+        return bm != null ? bm.cardinality() : 0;
+    }
+
+    /**
+     * Gets the distinct values of a field, lower-cased.
+     *
+     * @param field One of {@link #FIELDS}
+     *
+     * @return the values in ascending order
+     */
+    public synchronized Set<String> getValues(String field) {
+        Map<String, Bitmap> values = postings.get(field);
+        return values != null ? new TreeSet<String>(values.keySet()) : new TreeSet<String>();
+    }
+
+    /**
+     * Resolves a bitmap to issue keys.
+     *
+     * @param bitmap Result of a lookup
+     *
+     * @return the issue keys in ordinal order
+     */
+    public synchronized List<String> keys(Bitmap bitmap) {
+        List<String> result = new ArrayList<String>(bitmap.cardinality());
+
+        for (int ordinal : bitmap.toArray()) {
+            String key = ordinal < keys.size() ? keys.get(ordinal) : null;
+
+            if (key != null)
+                result.add(key);
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets a date of an indexed issue.
+     *
+     * @param field One of {@link #TIME_FIELDS}
+     * @param ordinal Issue ordinal
+     *
+     * @return milliseconds since the epoch or {@link #NO_TIME}
+     */
+    public synchronized long getTime(String field, int ordinal) {
+        int idx = TIME_FIELDS.indexOf(field);
+
+        if (idx < 0)
+            throw new IllegalArgumentException("Field " + field + " is not kept for sorting");
+
+        long[] t = ordinal < times.size() ? times.get(ordinal) : null;
+        return t != null ? t[idx] : NO_TIME;
+    }
+
+    /**
+     * @return the key of the issue with the given ordinal, null if unused
+     */
+    public synchronized String getKey(int ordinal) {
+        return ordinal < keys.size() ? keys.get(ordinal) : null;
+    }
+
+    /**
+     * @return the ordinal of an issue or -1 if it isn't indexed
+     */
+    public synchronized int getOrdinal(String key) {
+        Integer ordinal = ordinals.get(key);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    /**
+     * @return the ID of the sprint custom field, null if not known yet
+     */
+    public synchronized String getSprintField() {
+        return sprintField;
+    }
+
+    /**
+     * @return the number of indexed issues
+     */
+    public synchronized int size() {
+        return ordinals.size();
+    }
+}
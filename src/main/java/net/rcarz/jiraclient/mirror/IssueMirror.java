@@ -0,0 +1,638 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.mirror;
+
+import net.rcarz.jiraclient.Field;
+import net.rcarz.jiraclient.Issue;
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.RestClient;
+import net.rcarz.jiraclient.sync.IssueSink;
+import net.sf.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A local on-disk copy of JIRA issues.
+ *
+ * Issue JSON is appended to a log of segment files and located through an
+ * in-memory key to offset index, which is rebuilt from the segments when
+ * the mirror is opened. Reads go through memory-mapped segments. Updating
+ * or removing an issue leaves the old record behind as garbage until the
+ * next compaction rewrites the live records and drops the old segments.
+ *
+ * The mirror can be fed from searches, refreshes or an
+ * {@link net.rcarz.jiraclient.sync.IssueSync}, and can back
+ * {@link net.rcarz.jiraclient.JiraClient#getIssue(String)}. Secondary
+ * and full-text indexes are built on first use of {@link #getIndex()} and
+ * {@link #getTextIndex()} and kept up to date as issues are stored and
+ * removed.
+ */
+public class IssueMirror implements IssueSink, Closeable {
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    public static final double DEFAULT_COMPACTION_RATIO = 0.5;
+
+    /**
+     * Location of the current record of an issue.
+     */
+    private static final class Location {
+        final Segment segment;
+        final long offset;
+        final int length;
+        final long storedAt;
+        final boolean complete;
+
+        Location(Segment segment, long offset, int length, long storedAt, boolean complete) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.storedAt = storedAt;
+            this.complete = complete;
+        }
+    }
+
+    private File directory = null;
+    private long segmentSize = DEFAULT_SEGMENT_SIZE;
+    private double compactionRatio = DEFAULT_COMPACTION_RATIO;
+    private TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+    private Map<String, Location> index = new HashMap<String, Location>();
+    private Segment active = null;
+    private long liveBytes = 0;
+    private long garbageBytes = 0;
+    private IssueIndex issueIndex = null;
+    private TextIndex textIndex = null;
+
+    /**
+     * Opens or creates a mirror in the given directory.
+     *
+     * @param directory Directory holding the segment files
+     *
+     * @throws JiraException when the mirror cannot be opened
+     */
+    public IssueMirror(File directory) throws JiraException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens or creates a mirror in the given directory.
+     *
+     * @param directory Directory holding the segment files
+     * @param segmentSize Size at which a new segment is started
+     *
+     * @throws JiraException when the mirror cannot be opened
+     */
+    public IssueMirror(File directory, long segmentSize) throws JiraException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        try {
+            if (!directory.exists() && !directory.mkdirs())
+                throw new IOException("Cannot create directory " + directory);
+
+            load();
+        } catch (IOException ex) {
+            throw new JiraException("Failed to open issue mirror " + directory, ex);
+        }
+    }
+
+    private void load() throws IOException {
+        File[] files = directory.listFiles();
+        List<Integer> ids = new ArrayList<Integer>();
+
+        for (File f : files != null ? files : new File[0]) {
+            int id = Segment.parseId(f.getName());
+            if (id >= 0)
+                ids.add(id);
+        }
+
+        Collections.sort(ids);
+
+        for (int id : ids) {
+            Segment seg = Segment.open(directory, id);
+            segments.put(id, seg);
+            replay(seg);
+        }
+
+        if (segments.isEmpty())
+            roll();
+        else
+            active = segments.lastEntry().getValue();
+    }
+
+    private void replay(Segment seg) throws IOException {
+        long offset = 0;
+
+        while (offset < seg.getSize()) {
+            Segment.Record rec = seg.read(offset, false);
+
+            if (rec == null) {
+                /* torn write from a crash, drop the tail */
+                seg.truncate(offset);
+                break;
+            }
+
+            if (rec.isDelete())
+                release(index.remove(rec.key));
+            else
+                track(rec.key, new Location(seg, offset, rec.length, rec.storedAt, rec.complete));
+
+            garbageBytes += rec.isDelete() ? rec.length : 0;
+            offset += rec.length;
+        }
+    }
+
+    private void track(String key, Location loc) {
+        release(index.put(key, loc));
+        liveBytes += loc.length;
+    }
+
+    private void release(Location loc) {
+        if (loc == null)
+            return;
+
+        liveBytes -= loc.length;
+        garbageBytes += loc.length;
+    }
+
+    private void roll() throws IOException {
+        int id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+
+        if (active != null)
+            active.flush();
+
+        active = Segment.open(directory, id);
+        segments.put(id, active);
+    }
+
+    private Location append(String key, long storedAt, byte[] payload, boolean complete)
+        throws IOException {
+
+        ByteBuffer rec = Segment.encode(key, storedAt, payload, complete);
+
+        if (active.getSize() > 0 && active.getSize() + rec.remaining() > segmentSize)
+            roll();
+
+        int length = rec.remaining();
+        long offset = active.append(rec);
+        return new Location(active, offset, length, storedAt, complete);
+    }
+
+    /**
+     * Stores an issue.
+     *
+     * @param issue Issue to store
+     *
+     * @throws JiraException when the issue cannot be written
+     */
+    public void put(Issue issue) throws JiraException {
+        if (issue.getJson() == null)
+            throw new JiraException("Issue " + issue.getKey() + " has no JSON payload");
+
+        store(issue.getJson(), issue, false);
+    }
+
+    /**
+     * Stores an issue fetched with all its fields, which
+     * {@link #getCompleteIssue(String, long, RestClient)} may then serve.
+     *
+     * @param issue Issue to store
+     *
+     * @throws JiraException when the issue cannot be written
+     */
+    public void putComplete(Issue issue) throws JiraException {
+        if (issue.getJson() == null)
+            throw new JiraException("Issue " + issue.getKey() + " has no JSON payload");
+
+        store(issue.getJson(), issue, true);
+    }
+
+    /**
+     * Stores the JSON payload of an issue.
+     *
+     * @param json Issue JSON as returned by the issue or search resources
+     *
+     * @throws JiraException when the issue cannot be written
+     */
+    public void put(JSONObject json) throws JiraException {
+        store(json, null, false);
+    }
+
+    private synchronized void store(JSONObject json, Issue issue, boolean complete) throws JiraException {
+        String key = Field.getString(json.get("key"));
+
+        if (key == null)
+            throw new JiraException("Issue JSON is missing a key");
+
+        try {
+            Location loc = append(key, System.currentTimeMillis(), json.toString().getBytes(Segment.UTF8), complete);
+            track(key, loc);
+        } catch (IOException ex) {
+            throw new JiraException("Failed to write issue " + key + " to mirror", ex);
+        }
+
+        if (issueIndex == null && textIndex == null)
+            return;
+
+        if (issue == null)
+            issue = Field.getResource(Issue.class, json, null);
+
+        if (issueIndex != null)
+            issueIndex.update(issue);
+        if (textIndex != null)
+            textIndex.update(issue);
+    }
+
+    /**
+     * Removes an issue.
+     *
+     * @param key Issue key
+     *
+     * @return true if the issue was present
+     *
+     * @throws JiraException when the removal cannot be written
+     */
+    public synchronized boolean remove(String key) throws JiraException {
+        if (!index.containsKey(key))
+            return false;
+
+        try {
+            Location loc = append(key, System.currentTimeMillis(), null, false);
+            release(index.remove(key));
+            garbageBytes += loc.length;
+        } catch (IOException ex) {
+            throw new JiraException("Failed to remove issue " + key + " from mirror", ex);
+        }
+
+        if (issueIndex != null)
+            issueIndex.remove(key);
+        if (textIndex != null)
+            textIndex.remove(key);
+
+        return true;
+    }
+
+    /**
+     * Gets the stored JSON of an issue.
+     *
+     * @param key Issue key
+     *
+     * @return the issue JSON or null if the issue isn't mirrored
+     *
+     * @throws JiraException when the record cannot be read
+     */
+    public synchronized JSONObject getJson(String key) throws JiraException {
+        Location loc = index.get(key);
+
+        if (loc == null)
+            return null;
+
+        try {
+            Segment.Record rec = loc.segment.read(loc.offset, true);
+
+            if (rec == null || rec.isDelete())
+                throw new IOException("Corrupt record at " + loc.offset + " in " + loc.segment.getFile());
+
+            return JSONObject.fromObject(new String(rec.payload, Segment.UTF8));
+        } catch (IOException ex) {
+            throw new JiraException("Failed to read issue " + key + " from mirror", ex);
+        }
+    }
+
+    /**
+     * Gets a mirrored issue.
+     *
+     * @param key Issue key
+     * @param restclient REST client the issue will use for further calls
+     *
+     * @return the issue or null if the issue isn't mirrored
+     *
+     * @throws JiraException when the record cannot be read
+     */
+    public Issue getIssue(String key, RestClient restclient) throws JiraException {
+        JSONObject json = getJson(key);
+        return json != null ? Field.getResource(Issue.class, json, restclient) : null;
+    }
+
+    /**
+     * Gets a mirrored issue if it was stored recently enough.
+     *
+     * @param key Issue key
+     * @param maxAge Maximum age of the entry in milliseconds
+     * @param restclient REST client the issue will use for further calls
+     *
+     * @return the issue or null if it isn't mirrored or is stale
+     *
+     * @throws JiraException when the record cannot be read
+     */
+    public Issue getFreshIssue(String key, long maxAge, RestClient restclient)
+        throws JiraException {
+
+        return isFresh(key, maxAge) ? getIssue(key, restclient) : null;
+    }
+
+    /**
+     * Gets a mirrored issue if it was stored recently enough with all its
+     * fields, i.e. through {@link #putComplete(Issue)}. Issues stored from
+     * searches only hold the fields the search asked for.
+     *
+     * @param key Issue key
+     * @param maxAge Maximum age of the entry in milliseconds
+     * @param restclient REST client the issue will use for further calls
+     *
+     * @return the issue or null if it isn't mirrored, is stale or partial
+     *
+     * @throws JiraException when the record cannot be read
+     */
+    public synchronized Issue getCompleteIssue(String key, long maxAge, RestClient restclient)
+        throws JiraException {
+
+        Location loc = index.get(key);
+
+        if (loc == null || !loc.complete || System.currentTimeMillis() - loc.storedAt > maxAge)
+            return null;
+
+        return getIssue(key, restclient);
+    }
+
+    /**
+     * Checks whether an issue was stored within the given age.
+     *
+     * @param key Issue key
+     * @param maxAge Maximum age of the entry in milliseconds
+     *
+     * @return true if the issue is mirrored and fresh
+     */
+    public synchronized boolean isFresh(String key, long maxAge) {
+        Location loc = index.get(key);
+        return loc != null && System.currentTimeMillis() - loc.storedAt <= maxAge;
+    }
+
+    /**
+     * Gets the time an issue was last stored.
+     *
+     * @param key Issue key
+     *
+     * @return local time in milliseconds or zero if the issue isn't mirrored
+     */
+    public synchronized long getStoredAt(String key) {
+        Location loc = index.get(key);
+        return loc != null ? loc.storedAt : 0;
+    }
+
+    /**
+     * Gets the secondary indexes, building them from the stored issues on
+     * first use.
+     *
+     * @return the index, kept in step with later puts and removals
+     *
+     * @throws JiraException when a record cannot be read
+     */
+    public synchronized IssueIndex getIndex() throws JiraException {
+        if (issueIndex == null) {
+            IssueIndex idx = new IssueIndex();
+
+            for (String key : index.keySet())
+                idx.update(getIssue(key, null));
+
+            issueIndex = idx;
+        }
+
+        return issueIndex;
+    }
+
+    /**
+     * Gets the full-text index, building it from the stored issues on first
+     * use.
+     *
+     * @return the index, kept in step with later puts and removals
+     *
+     * @throws JiraException when a record cannot be read
+     */
+    public synchronized TextIndex getTextIndex() throws JiraException {
+        if (textIndex == null) {
+            TextIndex idx = new TextIndex();
+
+            for (String key : index.keySet())
+                idx.update(getIssue(key, null));
+
+            textIndex = idx;
+        }
+
+        return textIndex;
+    }
+
+    /**
+     * Stores a batch of issues, so the mirror can be fed by an IssueSync.
+     *
+     * @param issues Issues to store
+     *
+     * @throws JiraException when an issue cannot be written
+     */
+    public void accept(List<Issue> issues) throws JiraException {
+        for (Issue issue : issues)
+            put(issue);
+    }
+
+    /**
+     * Stores every issue of a search, following the result across pages.
+     *
+     * @param result Search result
+     *
+     * @return the number of issues stored
+     *
+     * @throws JiraException when an issue cannot be written
+     */
+    public int ingest(Issue.SearchResult result) throws JiraException {
+        int count = 0;
+        Iterator<Issue> iter = result.iterator();
+
+        while (iter.hasNext()) {
+            put(iter.next());
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Reloads an issue from JIRA and stores the new version.
+     *
+     * @param issue Issue to refresh
+     *
+     * @throws JiraException when the refresh or the write fails
+     */
+    public void refresh(Issue issue) throws JiraException {
+        issue.refresh();
+        put(issue);
+    }
+
+    /**
+     * Rewrites all live records into new segments and deletes the old ones.
+     *
+     * @throws JiraException when the compaction fails
+     */
+    public synchronized void compact() throws JiraException {
+        try {
+            List<Segment> old = new ArrayList<Segment>(segments.values());
+            List<Map.Entry<String, Location>> live =
+                new ArrayList<Map.Entry<String, Location>>(index.entrySet());
+
+            /* copy in file order so the old segments are read sequentially */
+            Collections.sort(live, new Comparator<Map.Entry<String, Location>>() {
+                public int compare(Map.Entry<String, Location> a, Map.Entry<String, Location> b) {
+                    Location x = a.getValue();
+                    Location y = b.getValue();
+
+                    if (x.segment.getId() != y.segment.getId())
+                        return x.segment.getId() < y.segment.getId() ? -1 : 1;
+
+                    return x.offset < y.offset ? -1 : (x.offset == y.offset ? 0 : 1);
+                }
+            });
+
+            roll();
+
+            for (Map.Entry<String, Location> ent : live) {
+                Location loc = ent.getValue();
+                ByteBuffer raw = loc.segment.copy(loc.offset, loc.length);
+
+                if (active.getSize() > 0 && active.getSize() + loc.length > segmentSize)
+                    roll();
+
+                long offset = active.append(raw);
+                ent.setValue(new Location(active, offset, loc.length, loc.storedAt, loc.complete));
+            }
+
+            active.flush();
+
+            /* delete oldest first, so a crash never resurrects removed issues */
+            for (Segment seg : old) {
+                segments.remove(seg.getId());
+                seg.delete();
+            }
+
+            garbageBytes = 0;
+        } catch (IOException ex) {
+            throw new JiraException("Failed to compact issue mirror " + directory, ex);
+        }
+    }
+
+    /**
+     * Compacts the mirror when the share of garbage exceeds the compaction
+     * ratio. Intended to be called periodically.
+     *
+     * @return true if a compaction was performed
+     *
+     * @throws JiraException when the compaction fails
+     */
+    public synchronized boolean compactIfNeeded() throws JiraException {
+        long total = liveBytes + garbageBytes;
+
+        if (total == 0 || (double)garbageBytes / total < compactionRatio)
+            return false;
+
+        compact();
+        return true;
+    }
+
+    /**
+     * Forces pending writes to disk.
+     *
+     * @throws JiraException when the flush fails
+     */
+    public synchronized void flush() throws JiraException {
+        try {
+            active.flush();
+        } catch (IOException ex) {
+            throw new JiraException("Failed to flush issue mirror " + directory, ex);
+        }
+    }
+
+    /**
+     * Flushes and closes all segment files.
+     *
+     * @throws IOException when a segment cannot be closed
+     */
+    public synchronized void close() throws IOException {
+        active.flush();
+
+        for (Segment seg : segments.values())
+            seg.close();
+
+        segments.clear();
+        index.clear();
+        issueIndex = null;
+        textIndex = null;
+    }
+
+    /**
+     * @return the keys of all mirrored issues
+     */
+    public synchronized Set<String> keys() {
+        return new LinkedHashSet<String>(index.keySet());
+    }
+
+    /**
+     * @return the number of mirrored issues
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the number of segment files
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return bytes held by superseded or removed records
+     */
+    public synchronized long getGarbageBytes() {
+        return garbageBytes;
+    }
+
+    /**
+     * Sets the share of garbage at which {@link #compactIfNeeded()} compacts.
+     *
+     * @param compactionRatio Ratio between 0 and 1
+     */
+    public void setCompactionRatio(double compactionRatio) {
+        this.compactionRatio = compactionRatio;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+}
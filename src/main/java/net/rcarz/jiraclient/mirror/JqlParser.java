@@ -0,0 +1,532 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.mirror;
+
+import net.rcarz.jiraclient.Field;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parser for the subset of JQL that can be answered from an
+ * {@link IssueIndex}.
+ *
+ * Supported are AND, OR and parentheses over clauses on the indexed fields
+ * and the issue key using =, !=, IN, NOT IN, IS EMPTY and IS NOT EMPTY,
+ * followed by an ORDER BY on key or the created, updated, resolved and due
+ * dates. {@code text ~ "..."} is answered from a {@link TextIndex}.
+ * Anything else raises {@link Unsupported} with the reason.
+ */
+final class JqlParser {
+
+    /**
+     * Raised for JQL outside the supported subset.
+     */
+    static final class Unsupported extends Exception {
+        Unsupported(String reason) {
+            super(reason);
+        }
+    }
+
+    /**
+     * A condition evaluated to a bitmap of issue ordinals.
+     */
+    interface Node {
+        Bitmap eval(IssueIndex index, TextIndex text) throws Unsupported;
+    }
+
+    /**
+     * One ORDER BY term.
+     */
+    static final class Sort {
+        final String field;
+        final boolean ascending;
+
+        Sort(String field, boolean ascending) {
+            this.field = field;
+            this.ascending = ascending;
+        }
+
+        @Override
+        public String toString() {
+            return field + (ascending ? " ASC" : " DESC");
+        }
+    }
+
+    /**
+     * A parsed query. A null condition matches every issue.
+     */
+    static final class Query {
+        final Node where;
+        final List<Sort> order;
+        final boolean usesText;
+
+        Query(Node where, List<Sort> order, boolean usesText) {
+            this.where = where;
+            this.order = order;
+            this.usesText = usesText;
+        }
+
+        @Override
+        public String toString() {
+            String s = where != null ? where.toString() : "all issues";
+            return order.isEmpty() ? s : s + " ORDER BY " + order.toString().replaceAll("[\\[\\]]", "");
+        }
+    }
+
+    static final String KEY = "key";
+    static final String TEXT = "text";
+
+    private static final Map<String, String> FIELDS = new HashMap<String, String>();
+    private static final Map<String, String> SORTS = new HashMap<String, String>();
+
+    static {
+        FIELDS.put("project", Field.PROJECT);
+        FIELDS.put("issuetype", Field.ISSUE_TYPE);
+        FIELDS.put("type", Field.ISSUE_TYPE);
+        FIELDS.put("status", Field.STATUS);
+        FIELDS.put("priority", Field.PRIORITY);
+        FIELDS.put("resolution", Field.RESOLUTION);
+        FIELDS.put("assignee", Field.ASSIGNEE);
+        FIELDS.put("reporter", Field.REPORTER);
+        FIELDS.put("fixversion", Field.FIX_VERSIONS);
+        FIELDS.put("affectedversion", Field.VERSIONS);
+        FIELDS.put("component", Field.COMPONENTS);
+        FIELDS.put("labels", Field.LABELS);
+        FIELDS.put("sprint", IssueIndex.SPRINT);
+        FIELDS.put("key", KEY);
+        FIELDS.put("issuekey", KEY);
+        FIELDS.put("text", TEXT);
+
+        SORTS.put("key", KEY);
+        SORTS.put("issuekey", KEY);
+        SORTS.put("created", Field.CREATED_DATE);
+        SORTS.put("createddate", Field.CREATED_DATE);
+        SORTS.put("updated", Field.UPDATED_DATE);
+        SORTS.put("updateddate", Field.UPDATED_DATE);
+        SORTS.put("resolved", Field.RESOLUTION_DATE);
+        SORTS.put("resolutiondate", Field.RESOLUTION_DATE);
+        SORTS.put("due", Field.DUE_DATE);
+        SORTS.put("duedate", Field.DUE_DATE);
+    }
+
+    private static final int IS = 0;
+    private static final int IS_NOT = 1;
+    private static final int EQUALS = 2;
+    private static final int NOT_EQUALS = 3;
+
+    /**
+     * A single field condition.
+     */
+    private static final class Clause implements Node {
+        final String field;
+        final int op;
+        final List<String> values;
+
+        Clause(String field, int op, List<String> values) {
+            this.field = field;
+            this.op = op;
+            this.values = values;
+        }
+
+        public Bitmap eval(IssueIndex index, TextIndex text) throws Unsupported {
+            Bitmap matches;
+
+            if (KEY.equals(field)) {
+                if (values.contains(IssueIndex.EMPTY))
+                    throw new Unsupported("issue key cannot be empty");
+
+                matches = new Bitmap();
+
+                for (String key : values) {
+                    int ordinal = index.getOrdinal(key.toUpperCase(Locale.ENGLISH));
+
+                    /* the server may know the issue even though the mirror doesn't */
+                    if (ordinal < 0)
+                        throw new Unsupported("issue " + key + " is not mirrored");
+
+                    matches.add(ordinal);
+                }
+            } else if (op == IS || op == IS_NOT) {
+                matches = index.get(field, IssueIndex.EMPTY);
+            } else {
+                matches = index.any(field, values);
+            }
+
+            if (op == IS || op == EQUALS)
+                return matches;
+
+            /* != and NOT IN never match issues without a value */
+            Bitmap result = index.all().andNot(matches);
+            return KEY.equals(field) ? result : result.andNot(index.get(field, IssueIndex.EMPTY));
+        }
+
+        @Override
+        public String toString() {
+            switch (op) {
+                case IS:
+                    return field + " IS EMPTY";
+                case IS_NOT:
+                    return field + " IS NOT EMPTY";
+                case EQUALS:
+                    return field + " IN " + values;
+                default:
+                    return field + " NOT IN " + values;
+            }
+        }
+    }
+
+    /**
+     * AND or OR of two conditions.
+     */
+    private static final class Junction implements Node {
+        final boolean and;
+        final Node left;
+        final Node right;
+
+        Junction(boolean and, Node left, Node right) {
+            this.and = and;
+            this.left = left;
+            this.right = right;
+        }
+
+        public Bitmap eval(IssueIndex index, TextIndex text) throws Unsupported {
+            Bitmap l = left.eval(index, text);
+
+            if (and && l.isEmpty())
+                return l;
+
+            Bitmap r = right.eval(index, text);
+            return and ? l.and(r) : l.or(r);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + (and ? " AND " : " OR ") + right + ")";
+        }
+    }
+
+    /**
+     * A full-text condition.
+     */
+    private static final class TextMatch implements Node {
+        final String query;
+
+        TextMatch(String query) {
+            this.query = query;
+        }
+
+        public Bitmap eval(IssueIndex index, TextIndex text) throws Unsupported {
+            Bitmap result = new Bitmap();
+
+            for (TextIndex.Hit hit : text.search(query, Integer.MAX_VALUE)) {
+                int ordinal = index.getOrdinal(hit.getKey());
+
+                if (ordinal >= 0)
+                    result.add(ordinal);
+            }
+
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "text ~ \"" + query + "\"";
+        }
+    }
+
+    /**
+     * A lexical token. Quoted strings keep their quotes out of the text.
+     */
+    private static final class Token {
+        final String text;
+        final boolean quoted;
+
+        Token(String text, boolean quoted) {
+            this.text = text;
+            this.quoted = quoted;
+        }
+
+        boolean is(String word) {
+            return !quoted && text.equalsIgnoreCase(word);
+        }
+    }
+
+    private static final String SYMBOLS = "()=!,<>~";
+
+    private final List<Token> tokens;
+    private int pos = 0;
+    private boolean usesText = false;
+
+    private JqlParser(List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Parses a JQL query.
+     *
+     * @param jql JQL query
+     *
+     * @return the parsed query
+     *
+     * @throws Unsupported when the query is outside the supported subset
+     */
+    static Query parse(String jql) throws Unsupported {
+        return new JqlParser(tokenize(jql != null ? jql : "")).query();
+    }
+
+    private static List<Token> tokenize(String jql) throws Unsupported {
+        List<Token> result = new ArrayList<Token>();
+        int i = 0;
+
+        while (i < jql.length()) {
+            char c = jql.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"' || c == '\'') {
+                StringBuilder sb = new StringBuilder();
+                int j = i + 1;
+
+                for (; j < jql.length() && jql.charAt(j) != c; j++) {
+                    if (jql.charAt(j) == '\\' && j + 1 < jql.length())
+                        j++;
+
+                    sb.append(jql.charAt(j));
+                }
+
+                if (j == jql.length())
+                    throw new Unsupported("unterminated string");
+
+                result.add(new Token(sb.toString(), true));
+                i = j + 1;
+            } else if (c == '!' && i + 1 < jql.length() && SYMBOLS.indexOf(jql.charAt(i + 1)) >= 0) {
+                result.add(new Token(jql.substring(i, i + 2), false));
+                i += 2;
+            } else if ((c == '<' || c == '>') && i + 1 < jql.length() && jql.charAt(i + 1) == '=') {
+                result.add(new Token(jql.substring(i, i + 2), false));
+                i += 2;
+            } else if (SYMBOLS.indexOf(c) >= 0) {
+                result.add(new Token(String.valueOf(c), false));
+                i++;
+            } else {
+                int j = i;
+
+                while (j < jql.length() && !Character.isWhitespace(jql.charAt(j)) &&
+                        SYMBOLS.indexOf(jql.charAt(j)) < 0 && "\"'".indexOf(jql.charAt(j)) < 0)
+                    j++;
+
+                result.add(new Token(jql.substring(i, j), false));
+                i = j;
+            }
+        }
+
+        return result;
+    }
+
+    private Token peek() {
+        return pos < tokens.size() ? tokens.get(pos) : null;
+    }
+
+    private boolean accept(String word) {
+        Token t = peek();
+
+        if (t == null || !t.is(word))
+            return false;
+
+        pos++;
+        return true;
+    }
+
+    private Token next(String expected) throws Unsupported {
+        Token t = peek();
+
+        if (t == null)
+            throw new Unsupported("expected " + expected + " at end of query");
+
+        pos++;
+        return t;
+    }
+
+    private void expect(String word) throws Unsupported {
+        Token t = next(word);
+
+        if (!t.is(word))
+            throw new Unsupported("expected " + word + " but found " + t.text);
+    }
+
+    private Query query() throws Unsupported {
+        Node where = null;
+        List<Sort> order = new ArrayList<Sort>();
+
+        if (peek() != null && !peek().is("order"))
+            where = or();
+
+        if (accept("order")) {
+            expect("by");
+
+            do {
+                Token t = next("sort field");
+                String field = t.quoted ? null : SORTS.get(t.text.toLowerCase(Locale.ENGLISH));
+
+                if (field == null)
+                    throw new Unsupported("cannot sort by " + t.text + " locally");
+
+                /* JIRA sorts the system date fields newest first by default */
+                boolean ascending = KEY.equals(field) || field.equals(Field.DUE_DATE);
+
+                if (accept("asc"))
+                    ascending = true;
+                else if (accept("desc"))
+                    ascending = false;
+
+                order.add(new Sort(field, ascending));
+            } while (accept(","));
+        }
+
+        if (peek() != null)
+            throw new Unsupported("unexpected " + peek().text);
+
+        return new Query(where, order, usesText);
+    }
+
+    private Node or() throws Unsupported {
+        Node left = and();
+
+        while (accept("or"))
+            left = new Junction(false, left, and());
+
+        return left;
+    }
+
+    private Node and() throws Unsupported {
+        Node left = term();
+
+        while (accept("and"))
+            left = new Junction(true, left, term());
+
+        return left;
+    }
+
+    private Node term() throws Unsupported {
+        if (accept("not"))
+            throw new Unsupported("NOT is not evaluated locally");
+
+        if (accept("(")) {
+            Node node = or();
+            expect(")");
+            return node;
+        }
+
+        return clause();
+    }
+
+    private Node clause() throws Unsupported {
+        Token t = next("field");
+        String field = t.quoted ? null : FIELDS.get(t.text.toLowerCase(Locale.ENGLISH));
+
+        if (field == null)
+            throw new Unsupported("field " + t.text + " is not indexed");
+
+        if (TEXT.equals(field))
+            return textMatch();
+
+        List<String> values = new ArrayList<String>();
+
+        if (accept("is")) {
+            int op = accept("not") ? IS_NOT : IS;
+            Token v = next("EMPTY");
+
+            if (!v.is("empty") && !v.is("null"))
+                throw new Unsupported("expected EMPTY but found " + v.text);
+
+            return new Clause(field, op, values);
+        }
+
+        int op;
+        boolean list = false;
+
+        if (accept("=")) {
+            op = EQUALS;
+        } else if (accept("!=")) {
+            op = NOT_EQUALS;
+        } else if (accept("in")) {
+            op = EQUALS;
+            list = true;
+        } else if (accept("not") && accept("in")) {
+            op = NOT_EQUALS;
+            list = true;
+        } else {
+            throw new Unsupported("operator " + (peek() != null ? peek().text : "") + " is not evaluated locally");
+        }
+
+        if (list) {
+            expect("(");
+
+            do {
+                values.add(value(field));
+            } while (accept(","));
+
+            expect(")");
+        } else {
+            values.add(value(field));
+        }
+
+        return new Clause(field, op, values);
+    }
+
+    private Node textMatch() throws Unsupported {
+        if (!accept("~"))
+            throw new Unsupported("only text ~ is evaluated locally");
+
+        Token t = next("text");
+
+        for (String word : t.text.split("\\s+")) {
+            /* Lucene query syntax beyond words and phrases */
+            if (word.matches(".*[*?~^\\\\].*|^[+-].*|AND|OR|NOT"))
+                throw new Unsupported("text query " + t.text + " needs the server");
+        }
+
+        usesText = true;
+        return new TextMatch(t.text);
+    }
+
+    private String value(String field) throws Unsupported {
+        Token t = next("value");
+
+        if (!t.quoted && (SYMBOLS.indexOf(t.text.charAt(0)) >= 0))
+            throw new Unsupported("expected a value but found " + t.text);
+
+        if (peek() != null && peek().is("("))
+            throw new Unsupported("function " + t.text + "() is not evaluated locally");
+
+        if (!t.quoted && (t.is("empty") || t.is("null")))
+            return IssueIndex.EMPTY;
+
+        /* resolution = Unresolved means no resolution */
+        if (field.equals(Field.RESOLUTION) && t.text.equalsIgnoreCase("unresolved"))
+            return IssueIndex.EMPTY;
+
+        return t.text;
+    }
+}
@@ -0,0 +1,319 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.mirror;
+
+import net.rcarz.jiraclient.Issue;
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.RestClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Answers JQL searches from an {@link IssueMirror} where possible.
+ *
+ * Queries made of AND, OR and parentheses over =, !=, IN, NOT IN and
+ * IS [NOT] EMPTY clauses on the fields of the {@link IssueIndex}, and of
+ * {@code text ~} clauses answered by the {@link TextIndex}, are evaluated
+ * against the indexes, ordered as the server would by key or by
+ * the created, updated, resolved or due date, and decoded from the mirror
+ * page by page. Everything else, including queries without an ORDER BY
+ * whose server order is unspecified, is sent to JIRA through
+ * {@link Issue#search}. Each result carries the {@link Plan} that was used.
+ *
+ * Local answers are only as complete and as fresh as the mirror, so the
+ * mirror should cover the projects being queried, e.g. by keeping it fed
+ * with an {@link net.rcarz.jiraclient.sync.IssueSync}.
+ */
+public class LocalSearch {
+
+    public static final int DEFAULT_MAX_RESULTS = 50;
+
+    /**
+     * How a query was or would be answered.
+     */
+    public static final class Plan {
+        private final String jql;
+        private final boolean local;
+        private final String detail;
+
+        private Plan(String jql, boolean local, String detail) {
+            this.jql = jql;
+            this.local = local;
+            this.detail = detail;
+        }
+
+        @Override
+        public String toString() {
+            return (local ? "local: " : "remote: ") + detail;
+        }
+
+        public String getJql() {
+            return jql;
+        }
+
+        /**
+         * @return true if the query is answered from the mirror
+         */
+        public boolean isLocal() {
+            return local;
+        }
+
+        /**
+         * @return the evaluated query when local, otherwise why it wasn't
+         */
+        public String getDetail() {
+            return detail;
+        }
+    }
+
+    /**
+     * Issues found by a search, in the layout of {@link Issue.SearchResult}.
+     */
+    public static class Result {
+        public int start = 0;
+        public int max = 0;
+        public int total = 0;
+        public List<Issue> issues = null;
+        public Plan plan = null;
+        private Iterator<Issue> iterator = null;
+
+        /**
+         * All issues found, from the start position onwards.
+         *
+         * @return All issues found.
+         */
+        public Iterator<Issue> iterator() {
+            return iterator;
+        }
+    }
+
+    private IssueMirror mirror = null;
+    private RestClient restclient = null;
+
+    /**
+     * Creates a local search.
+     *
+     * @param mirror Mirror queried locally
+     * @param restclient REST client used for fallback searches and by the
+     *                   returned issues
+     */
+    public LocalSearch(IssueMirror mirror, RestClient restclient) {
+        this.mirror = mirror;
+        this.restclient = restclient;
+    }
+
+    private static int compareKeys(String a, String b) {
+        if (a == null || b == null)
+            return a == null ? (b == null ? 0 : 1) : -1;
+
+        int ia = a.lastIndexOf('-');
+        int ib = b.lastIndexOf('-');
+        int result = a.substring(0, Math.max(ia, 0)).compareTo(b.substring(0, Math.max(ib, 0)));
+
+        if (result != 0)
+            return result;
+
+        try {
+            long na = Long.parseLong(a.substring(ia + 1));
+            long nb = Long.parseLong(b.substring(ib + 1));
+            return na < nb ? -1 : (na == nb ? 0 : 1);
+        } catch (NumberFormatException ex) {
+            return a.compareTo(b);
+        }
+    }
+
+    /**
+     * Orders ordinals like the server. Empty dates sort as the latest, and
+     * remaining ties are broken by key.
+     */
+    private static Comparator<Integer> comparator(final IssueIndex index,
+            final List<JqlParser.Sort> order) {
+
+        return new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                for (JqlParser.Sort sort : order) {
+                    int result;
+
+                    if (sort.field.equals(JqlParser.KEY)) {
+                        result = compareKeys(index.getKey(a), index.getKey(b));
+                    } else {
+                        long ta = index.getTime(sort.field, a);
+                        long tb = index.getTime(sort.field, b);
+                        ta = ta == IssueIndex.NO_TIME ? Long.MAX_VALUE : ta;
+                        tb = tb == IssueIndex.NO_TIME ? Long.MAX_VALUE : tb;
+                        result = ta < tb ? -1 : (ta == tb ? 0 : 1);
+                    }
+
+                    if (result != 0)
+                        return sort.ascending ? result : -result;
+                }
+
+                return compareKeys(index.getKey(a), index.getKey(b));
+            }
+        };
+    }
+
+    /**
+     * Evaluates a query against the index.
+     *
+     * @return the matching ordinals in result order, or null if the query
+     *         must go to the server, in which case plan[0] says why
+     */
+    private Integer[] evaluate(String jql, Plan[] plan) throws JiraException {
+        try {
+            JqlParser.Query query = JqlParser.parse(jql);
+
+            if (query.order.isEmpty())
+                throw new JqlParser.Unsupported("no ORDER BY, server order is unspecified");
+
+            IssueIndex index = mirror.getIndex();
+            TextIndex text = query.usesText ? mirror.getTextIndex() : null;
+            Bitmap matches = query.where != null ? query.where.eval(index, text) : index.all();
+
+            int[] ords = matches.toArray();
+            Integer[] sorted = new Integer[ords.length];
+
+            for (int i = 0; i < ords.length; i++)
+                sorted[i] = ords[i];
+
+            Arrays.sort(sorted, comparator(index, query.order));
+            plan[0] = new Plan(jql, true, query.toString());
+            return sorted;
+        } catch (JqlParser.Unsupported ex) {
+            plan[0] = new Plan(jql, false, ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reports how a query would be answered without fetching any issues.
+     *
+     * @param jql JQL query
+     *
+     * @return the plan
+     *
+     * @throws JiraException when the mirror index cannot be read
+     */
+    public Plan explain(String jql) throws JiraException {
+        Plan[] plan = new Plan[1];
+        evaluate(jql, plan);
+        return plan[0];
+    }
+
+    /**
+     * Searches for issues, returning the first page of up to 50.
+     *
+     * @param jql JQL query
+     *
+     * @return the search result
+     *
+     * @throws JiraException when the search fails
+     */
+    public Result search(String jql) throws JiraException {
+        return search(jql, null, null);
+    }
+
+    /**
+     * Searches for issues, locally when possible.
+     *
+     * @param jql JQL query
+     * @param maxResults Page size, 50 if null
+     * @param startAt Index of the first issue, 0 if null
+     *
+     * @return the search result
+     *
+     * @throws JiraException when the search fails
+     */
+    public Result search(String jql, Integer maxResults, Integer startAt) throws JiraException {
+        Plan[] plan = new Plan[1];
+        final Integer[] ordinals = evaluate(jql, plan);
+        Result result = new Result();
+        result.plan = plan[0];
+
+        if (ordinals == null) {
+            Issue.SearchResult sr = Issue.search(restclient, jql, null, null, maxResults, startAt);
+            result.start = sr.start;
+            result.max = sr.max;
+            result.total = sr.total;
+            result.issues = sr.issues;
+            result.iterator = sr.iterator();
+            return result;
+        }
+
+        final IssueIndex index = mirror.getIndex();
+        result.start = startAt != null ? startAt : 0;
+        result.max = maxResults != null ? maxResults : DEFAULT_MAX_RESULTS;
+        result.total = ordinals.length;
+        result.issues = new ArrayList<Issue>();
+
+        for (int i = result.start; i < ordinals.length && result.issues.size() < result.max; i++) {
+            Issue issue = load(index, ordinals[i]);
+
+            if (issue != null)
+                result.issues.add(issue);
+        }
+
+        final int first = result.start;
+
+        result.iterator = new Iterator<Issue>() {
+            private int pos = first;
+            private Issue next = null;
+
+            public boolean hasNext() {
+                try {
+                    while (next == null && pos < ordinals.length)
+                        next = load(index, ordinals[pos++]);
+                } catch (JiraException ex) {
+                    throw new RuntimeException(ex);
+                }
+
+                return next != null;
+            }
+
+            public Issue next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+
+                Issue issue = next;
+                next = null;
+                return issue;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException("Method remove() not supported");
+            }
+        };
+
+        return result;
+    }
+
+    /**
+     * Decodes an issue, skipping one removed since the query was evaluated.
+     */
+    private Issue load(IssueIndex index, int ordinal) throws JiraException {
+        String key = index.getKey(ordinal);
+        return key != null ? mirror.getIssue(key, restclient) : null;
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.mirror;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * One append-only segment file of the issue mirror.
+ *
+ * Each record is laid out as follows:
+ * <pre>
+ * int    length of the remainder of the record
+ * int    CRC32 of the remainder after this field
+ * long   time the record was stored (local clock, milliseconds)
+ * byte   0 for a put, 1 for a delete, 2 for a put of an issue with all fields
+ * short  key length
+ * byte[] key (UTF-8)
+ * byte[] issue JSON (UTF-8), empty for a delete
+ * </pre>
+ * Writes go through a file channel; reads go through a read-only memory
+ * mapping that is extended when the file has grown past it.
+ */
+final class Segment {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    static final String SUFFIX = ".log";
+
+    private static final int HEADER = 4 + 4 + 8 + 1 + 2;
+    private static final byte PUT = 0;
+    private static final byte DELETE = 1;
+    private static final byte PUT_COMPLETE = 2;
+
+    /**
+     * A decoded record.
+     */
+    static final class Record {
+        final String key;
+        final long storedAt;
+        final long offset;
+        final int length;
+        final byte[] payload;
+        final boolean complete;
+
+        Record(String key, long storedAt, long offset, int length, byte[] payload, boolean complete) {
+            this.key = key;
+            this.storedAt = storedAt;
+            this.offset = offset;
+            this.length = length;
+            this.payload = payload;
+            this.complete = complete;
+        }
+
+        boolean isDelete() {
+            return payload == null;
+        }
+    }
+
+    private final int id;
+    private final File file;
+    private RandomAccessFile raf = null;
+    private FileChannel channel = null;
+    private MappedByteBuffer map = null;
+    private long size = 0;
+
+    private Segment(int id, File file) throws IOException {
+        this.id = id;
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        this.size = channel.size();
+    }
+
+    /**
+     * Opens or creates the segment with the given number.
+     */
+    static Segment open(File dir, int id) throws IOException {
+        return new Segment(id, new File(dir, String.format("%010d%s", id, SUFFIX)));
+    }
+
+    /**
+     * Parses the segment number from a file name.
+     *
+     * @return the segment number or -1 if the file isn't a segment
+     */
+    static int parseId(String name) {
+        if (!name.endsWith(SUFFIX))
+            return -1;
+
+        try {
+            return Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Encodes a record. A null payload encodes a delete; complete marks an
+     * issue fetched with all its fields.
+     */
+    static ByteBuffer encode(String key, long storedAt, byte[] payload, boolean complete) {
+        byte[] k = key.getBytes(UTF8);
+        int plen = payload != null ? payload.length : 0;
+        ByteBuffer buf = ByteBuffer.allocate(HEADER + k.length + plen);
+
+        buf.putInt(buf.capacity() - 4);
+        buf.putInt(0);
+        buf.putLong(storedAt);
+        buf.put(payload == null ? DELETE : (complete ? PUT_COMPLETE : PUT));
+        buf.putShort((short)k.length);
+        buf.put(k);
+
+        if (payload != null)
+            buf.put(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 8, buf.capacity() - 8);
+        buf.putInt(4, (int)crc.getValue());
+
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * Appends an encoded record.
+     *
+     * @return the offset of the record
+     */
+    long append(ByteBuffer record) throws IOException {
+        long offset = size;
+
+        while (record.hasRemaining())
+            size += channel.write(record, size);
+
+        return offset;
+    }
+
+    /**
+     * Reads the record at the given offset.
+     *
+     * @param withPayload Whether to copy the JSON payload
+     *
+     * @return the record or null if there's no valid record at the offset
+     */
+    Record read(long offset, boolean withPayload) throws IOException {
+        if (offset + 4 > size)
+            return null;
+
+        ByteBuffer buf = mapped(offset + 4);
+        buf.position((int)offset);
+        int len = buf.getInt();
+
+        if (len < HEADER - 4 || offset + 4 + len > size)
+            return null;
+
+        buf = mapped(offset + 4 + len);
+        buf.position((int)offset + 4);
+        int crcValue = buf.getInt();
+
+        CRC32 crc = new CRC32();
+        byte[] body = new byte[len - 4];
+        buf.get(body);
+        crc.update(body, 0, body.length);
+
+        if ((int)crc.getValue() != crcValue)
+            return null;
+
+        ByteBuffer b = ByteBuffer.wrap(body);
+        long storedAt = b.getLong();
+        byte kind = b.get();
+        int klen = b.getShort() & 0xffff;
+
+        if (klen > b.remaining())
+            return null;
+
+        String key = new String(body, b.position(), klen, UTF8);
+        b.position(b.position() + klen);
+
+        byte[] payload = null;
+
+        if (kind == PUT || kind == PUT_COMPLETE) {
+            payload = new byte[withPayload ? b.remaining() : 0];
+            b.get(payload);
+        }
+
+        return new Record(key, storedAt, offset, len + 4, payload, kind == PUT_COMPLETE);
+    }
+
+    /**
+     * Copies the raw bytes of a record, used to move it during compaction.
+     */
+    ByteBuffer copy(long offset, int length) throws IOException {
+        ByteBuffer buf = mapped(offset + length);
+        buf.position((int)offset);
+        buf.limit((int)offset + length);
+
+        ByteBuffer result = ByteBuffer.allocate(length);
+        result.put(buf);
+        result.flip();
+        return result;
+    }
+
+    /**
+     * Drops everything past the given offset, used to discard a torn write.
+     */
+    void truncate(long offset) throws IOException {
+        channel.truncate(offset);
+        size = offset;
+        map = null;
+    }
+
+    void flush() throws IOException {
+        channel.force(false);
+    }
+
+    void close() throws IOException {
+        map = null;
+        channel.close();
+        raf.close();
+    }
+
+    void delete() throws IOException {
+        close();
+
+        if (!file.delete())
+            throw new IOException("Cannot delete " + file);
+    }
+
+    private ByteBuffer mapped(long end) throws IOException {
+        if (map == null || map.limit() < end)
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+        return map.duplicate();
+    }
+
+    int getId() {
+        return id;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    File getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,533 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.mirror;
+
+import net.rcarz.jiraclient.Comment;
+import net.rcarz.jiraclient.Issue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Full-text index over the summary, description and comments of issues.
+ *
+ * Text is split on anything that isn't a letter or digit, lower-cased and
+ * stripped of common English stop words. Each term maps to a posting list
+ * of variable-length encoded document number deltas, term frequencies and
+ * position deltas. Queries match issues containing every word, with quoted
+ * parts matched as phrases, and are ranked with BM25.
+ *
+ * Re-indexing an issue marks its old document deleted and appends a new
+ * one, so updates never rewrite posting lists. Deleted documents are
+ * purged once they make up too large a share of the index.
+ */
+public class TextIndex {
+
+    public static final double K1 = 1.2;
+    public static final double B = 0.75;
+    public static final double DEFAULT_PURGE_RATIO = 0.5;
+
+    /* keeps phrases from matching across field boundaries */
+    private static final int FIELD_GAP = 16;
+
+    private static final Set<String> STOP_WORDS = new HashSet<String>(Arrays.asList(
+        "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "into",
+        "is", "it", "no", "not", "of", "on", "or", "such", "that", "the", "their", "then",
+        "there", "these", "they", "this", "to", "was", "will", "with"));
+
+    /**
+     * A ranked search result.
+     */
+    public static final class Hit {
+        private final String key;
+        private final double score;
+
+        Hit(String key, double score) {
+            this.key = key;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%.3f)", key, score);
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Compressed postings of one term, appended in document order.
+     */
+    private static final class Postings {
+        byte[] data = new byte[16];
+        int length = 0;
+        int lastDoc = -1;
+
+        void append(int doc, int[] positions, int count) {
+            write(doc - lastDoc);
+            write(count);
+
+            for (int i = 0, last = 0; i < count; last = positions[i++])
+                write(positions[i] - last);
+
+            lastDoc = doc;
+        }
+
+        private void write(int v) {
+            if (length + 5 > data.length)
+                data = Arrays.copyOf(data, data.length * 2);
+
+            while ((v & ~0x7f) != 0) {
+                data[length++] = (byte)((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+
+            data[length++] = (byte)v;
+        }
+    }
+
+    /**
+     * Sequential decoder of a posting list.
+     */
+    private static final class Reader {
+        final Postings postings;
+        int pos = 0;
+        int doc = -1;
+        int freq = 0;
+        int[] positions = new int[8];
+
+        Reader(Postings postings) {
+            this.postings = postings;
+        }
+
+        boolean next() {
+            if (pos >= postings.length)
+                return false;
+
+            doc += read();
+            freq = read();
+
+            if (freq > positions.length)
+                positions = new int[Math.max(freq, positions.length * 2)];
+
+            for (int i = 0, last = 0; i < freq; i++)
+                positions[i] = last += read();
+
+            return true;
+        }
+
+        private int read() {
+            int v = 0;
+
+            for (int shift = 0; ; shift += 7) {
+                byte b = postings.data[pos++];
+                v |= (b & 0x7f) << shift;
+
+                if (b >= 0)
+                    return v;
+            }
+        }
+    }
+
+    /**
+     * The live documents of one query term.
+     */
+    private static final class Matches {
+        int[] docs;
+        int[] freqs;
+        int[][] positions;
+        int size = 0;
+
+        int find(int doc) {
+            return Arrays.binarySearch(docs, 0, size, doc);
+        }
+    }
+
+    private Map<String, Postings> terms = new HashMap<String, Postings>();
+    private Map<String, Integer> docs = new HashMap<String, Integer>();
+    private List<String> keys = new ArrayList<String>();
+    private int[] lengths = new int[64];
+    private Bitmap deleted = new Bitmap();
+    private int deletedCount = 0;
+    private long totalLength = 0;
+    private double purgeRatio = DEFAULT_PURGE_RATIO;
+
+    /**
+     * Splits text into terms.
+     *
+     * @param text Text to analyse, may be null
+     * @param position Position of the first token
+     * @param terms Receives the terms
+     * @param positions Receives the term positions
+     *
+     * @return the position after the last token; stop words take a position
+     */
+    static int analyze(String text, int position, List<String> terms, List<Integer> positions) {
+        if (text == null)
+            return position;
+
+        int i = 0;
+
+        while (i < text.length()) {
+            while (i < text.length() && !Character.isLetterOrDigit(text.charAt(i)))
+                i++;
+
+            int start = i;
+
+            while (i < text.length() && Character.isLetterOrDigit(text.charAt(i)))
+                i++;
+
+            if (i > start) {
+                String term = text.substring(start, i).toLowerCase(Locale.ENGLISH);
+
+                if (!STOP_WORDS.contains(term)) {
+                    terms.add(term);
+                    positions.add(position);
+                }
+
+                position++;
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Adds an issue or replaces its previous document.
+     *
+     * @param issue Issue to index
+     */
+    public synchronized void update(Issue issue) {
+        remove(issue.getKey());
+
+        List<String> words = new ArrayList<String>();
+        List<Integer> positions = new ArrayList<Integer>();
+        int pos = analyze(issue.getSummary(), 0, words, positions) + FIELD_GAP;
+        pos = analyze(issue.getDescription(), pos, words, positions) + FIELD_GAP;
+
+        if (issue.getComments() != null) {
+            for (Comment c : issue.getComments())
+                pos = analyze(c.getBody(), pos, words, positions) + FIELD_GAP;
+        }
+
+        Map<String, List<Integer>> doc = new LinkedHashMap<String, List<Integer>>();
+
+        for (int i = 0; i < words.size(); i++) {
+            List<Integer> p = doc.get(words.get(i));
+
+            if (p == null) {
+                p = new ArrayList<Integer>();
+                doc.put(words.get(i), p);
+            }
+
+            p.add(positions.get(i));
+        }
+
+        int id = keys.size();
+        keys.add(issue.getKey());
+        docs.put(issue.getKey(), id);
+
+        if (id == lengths.length)
+            lengths = Arrays.copyOf(lengths, id * 2);
+
+        lengths[id] = words.size();
+        totalLength += words.size();
+
+        for (Map.Entry<String, List<Integer>> ent : doc.entrySet()) {
+            Postings p = terms.get(ent.getKey());
+
+            if (p == null) {
+                p = new Postings();
+                terms.put(ent.getKey(), p);
+            }
+
+            int[] pp = new int[ent.getValue().size()];
+
+            for (int i = 0; i < pp.length; i++)
+                pp[i] = ent.getValue().get(i);
+
+            p.append(id, pp, pp.length);
+        }
+    }
+
+    /**
+     * Removes an issue.
+     *
+     * @param key Issue key
+     *
+     * @return true if the issue was indexed
+     */
+    public synchronized boolean remove(String key) {
+        Integer id = docs.remove(key);
+
+        if (id == null)
+            return false;
+
+        keys.set(id, null);
+        deleted.add(id);
+        deletedCount++;
+        totalLength -= lengths[id];
+
+        if (deletedCount > 64 && deletedCount > docs.size() * purgeRatio)
+            purge();
+
+        return true;
+    }
+
+    /**
+     * Rewrites the posting lists without deleted documents and renumbers
+     * the remaining ones.
+     */
+    public synchronized void purge() {
+        int[] remap = new int[keys.size()];
+        List<String> newKeys = new ArrayList<String>(docs.size());
+        int[] newLengths = new int[Math.max(docs.size(), 64)];
+
+        for (int id = 0; id < keys.size(); id++) {
+            if (keys.get(id) == null) {
+                remap[id] = -1;
+                continue;
+            }
+
+            remap[id] = newKeys.size();
+            newLengths[newKeys.size()] = lengths[id];
+            docs.put(keys.get(id), newKeys.size());
+            newKeys.add(keys.get(id));
+        }
+
+        Map<String, Postings> newTerms = new HashMap<String, Postings>();
+
+        for (Map.Entry<String, Postings> ent : terms.entrySet()) {
+            Reader r = new Reader(ent.getValue());
+            Postings p = new Postings();
+
+            while (r.next()) {
+                if (remap[r.doc] >= 0)
+                    p.append(remap[r.doc], r.positions, r.freq);
+            }
+
+            if (p.length > 0)
+                newTerms.put(ent.getKey(), p);
+        }
+
+        terms = newTerms;
+        keys = newKeys;
+        lengths = newLengths;
+        deleted = new Bitmap();
+        deletedCount = 0;
+    }
+
+    private Matches decode(String term) {
+        Postings p = terms.get(term);
+        Matches m = new Matches();
+
+        if (p == null)
+            return m;
+
+        m.docs = new int[16];
+        m.freqs = new int[16];
+        m.positions = new int[16][];
+        Reader r = new Reader(p);
+
+        while (r.next()) {
+            if (deletedCount > 0 && deleted.contains(r.doc))
+                continue;
+
+            if (m.size == m.docs.length) {
+                m.docs = Arrays.copyOf(m.docs, m.size * 2);
+                m.freqs = Arrays.copyOf(m.freqs, m.size * 2);
+                m.positions = Arrays.copyOf(m.positions, m.size * 2);
+            }
+
+            m.docs[m.size] = r.doc;
+            m.freqs[m.size] = r.freq;
+            m.positions[m.size] = Arrays.copyOf(r.positions, r.freq);
+            m.size++;
+        }
+
+        return m;
+    }
+
+    /**
+     * Splits a query into phrases. Unquoted words are one-term phrases.
+     */
+    private static List<List<String>> phrases(String query, List<List<Integer>> offsets) {
+        List<List<String>> result = new ArrayList<List<String>>();
+        String[] parts = query.split("\"", -1);
+
+        for (int i = 0; i < parts.length; i++) {
+            List<String> words = new ArrayList<String>();
+            List<Integer> positions = new ArrayList<Integer>();
+            analyze(parts[i], 0, words, positions);
+
+            if (i % 2 == 1 && !words.isEmpty()) {
+                result.add(words);
+                offsets.add(positions);
+                continue;
+            }
+
+            for (int j = 0; j < words.size(); j++) {
+                result.add(Collections.singletonList(words.get(j)));
+                offsets.add(Collections.singletonList(0));
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean hasPhrase(List<String> phrase, List<Integer> offsets,
+            Map<String, Matches> matches, int doc) {
+
+        Matches first = matches.get(phrase.get(0));
+        int[] starts = first.positions[first.find(doc)];
+
+        for (int start : starts) {
+            boolean found = true;
+
+            for (int i = 1; i < phrase.size() && found; i++) {
+                Matches m = matches.get(phrase.get(i));
+                int want = start + offsets.get(i) - offsets.get(0);
+                found = Arrays.binarySearch(m.positions[m.find(doc)], want) >= 0;
+            }
+
+            if (found)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Searches the index.
+     *
+     * @param query Words that must all occur; quoted parts must occur as a phrase
+     * @param limit Maximum number of hits
+     *
+     * @return hits in descending score order
+     */
+    public synchronized List<Hit> search(String query, int limit) {
+        List<List<Integer>> offsets = new ArrayList<List<Integer>>();
+        List<List<String>> phrases = phrases(query, offsets);
+        Map<String, Matches> matches = new LinkedHashMap<String, Matches>();
+
+        for (List<String> phrase : phrases) {
+            for (String term : phrase) {
+                if (!matches.containsKey(term))
+                    matches.put(term, decode(term));
+            }
+        }
+
+        Matches rarest = null;
+
+        for (Matches m : matches.values()) {
+            if (rarest == null || m.size < rarest.size)
+                rarest = m;
+        }
+
+        if (rarest == null || rarest.size == 0)
+            return new ArrayList<Hit>();
+
+        int n = docs.size();
+        double avgdl = n > 0 ? (double)totalLength / n : 0;
+        List<Hit> hits = new ArrayList<Hit>();
+
+        candidates:
+        for (int i = 0; i < rarest.size; i++) {
+            int doc = rarest.docs[i];
+            double score = 0;
+
+            for (Matches m : matches.values()) {
+                int idx = m.find(doc);
+
+                if (idx < 0)
+                    continue candidates;
+
+                double idf = Math.log(1 + (n - m.size + 0.5) / (m.size + 0.5));
+                double tf = m.freqs[idx];
+                double norm = avgdl > 0 ? 1 - B + B * lengths[doc] / avgdl : 1;
+                score += idf * tf * (K1 + 1) / (tf + K1 * norm);
+            }
+
+            for (int p = 0; p < phrases.size(); p++) {
+                if (phrases.get(p).size() > 1 && !hasPhrase(phrases.get(p), offsets.get(p), matches, doc))
+                    continue candidates;
+            }
+
+            hits.add(new Hit(keys.get(doc), score));
+        }
+
+        Collections.sort(hits, new Comparator<Hit>() {
+            public int compare(Hit a, Hit b) {
+                return Double.compare(b.score, a.score);
+            }
+        });
+
+        return hits.size() > limit ? new ArrayList<Hit>(hits.subList(0, limit)) : hits;
+    }
+
+    /**
+     * Counts the issues matching a query.
+     *
+     * @param query Words that must all occur; quoted parts must occur as a phrase
+     *
+     * @return the number of matching issues
+     */
+    public int count(String query) {
+        return search(query, Integer.MAX_VALUE).size();
+    }
+
+    /**
+     * Sets the share of deleted documents at which the index is purged.
+     *
+     * @param purgeRatio Ratio of deleted to live documents
+     */
+    public void setPurgeRatio(double purgeRatio) {
+        this.purgeRatio = purgeRatio;
+    }
+
+    /**
+     * @return the number of distinct terms
+     */
+    public synchronized int getTermCount() {
+        return terms.size();
+    }
+
+    /**
+     * @return the number of indexed issues
+     */
+    public synchronized int size() {
+        return docs.size();
+    }
+}
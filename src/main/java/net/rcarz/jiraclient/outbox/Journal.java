@@ -0,0 +1,231 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.outbox;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The append-only file behind an {@link Outbox}.
+ *
+ * Each record is laid out as follows:
+ * <pre>
+ * int    length of the remainder of the record
+ * int    CRC32 of the remainder after this field
+ * byte   0 for an enqueued write, 1 for a finished one
+ * long   write id
+ * long   time the write was enqueued (local clock, milliseconds)
+ * byte[] write JSON (UTF-8), empty for a finished write
+ * </pre>
+ * A torn record at the tail, left by a crash mid-append, is dropped when
+ * the journal is opened.
+ */
+final class Journal {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    static final byte ENQUEUE = 0;
+    static final byte DONE = 1;
+
+    private static final int HEADER = 4 + 4 + 1 + 8 + 8;
+
+    /**
+     * A decoded record.
+     */
+    static final class Record {
+        final byte type;
+        final long id;
+        final long createdAt;
+        final byte[] payload;
+
+        Record(byte type, long id, long createdAt, byte[] payload) {
+            this.type = type;
+            this.id = id;
+            this.createdAt = createdAt;
+            this.payload = payload;
+        }
+    }
+
+    private final File file;
+    private RandomAccessFile raf = null;
+    private FileChannel channel = null;
+    private long size = 0;
+
+    Journal(File file) throws IOException {
+        this.file = file;
+        open();
+    }
+
+    private void open() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        size = channel.size();
+    }
+
+    private static ByteBuffer encode(byte type, long id, long createdAt, byte[] payload) {
+        int plen = payload != null ? payload.length : 0;
+        ByteBuffer buf = ByteBuffer.allocate(HEADER + plen);
+
+        buf.putInt(buf.capacity() - 4);
+        buf.putInt(0);
+        buf.put(type);
+        buf.putLong(id);
+        buf.putLong(createdAt);
+
+        if (payload != null)
+            buf.put(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 8, buf.capacity() - 8);
+        buf.putInt(4, (int)crc.getValue());
+
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * Reads every valid record, truncating a torn tail.
+     */
+    List<Record> replay() throws IOException {
+        List<Record> records = new ArrayList<Record>();
+        ByteBuffer head = ByteBuffer.allocate(8);
+        long offset = 0;
+
+        while (offset < size) {
+            head.clear();
+
+            if (!readFully(head, offset))
+                break;
+
+            head.flip();
+            int len = head.getInt();
+            int crcValue = head.getInt();
+
+            if (len < HEADER - 4 || offset + 4 + len > size)
+                break;
+
+            ByteBuffer body = ByteBuffer.allocate(len - 4);
+
+            if (!readFully(body, offset + 8))
+                break;
+
+            CRC32 crc = new CRC32();
+            crc.update(body.array(), 0, body.capacity());
+
+            if ((int)crc.getValue() != crcValue)
+                break;
+
+            body.flip();
+            byte type = body.get();
+            long id = body.getLong();
+            long createdAt = body.getLong();
+            byte[] payload = new byte[body.remaining()];
+            body.get(payload);
+
+            records.add(new Record(type, id, createdAt, payload));
+            offset += 4 + len;
+        }
+
+        if (offset < size) {
+            /* torn write from a crash, drop the tail */
+            channel.truncate(offset);
+            size = offset;
+        }
+
+        return records;
+    }
+
+    private boolean readFully(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, pos + buf.position());
+
+            if (n <= 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Appends a record. A null payload is used for finished writes.
+     */
+    void append(byte type, long id, long createdAt, byte[] payload) throws IOException {
+        ByteBuffer rec = encode(type, id, createdAt, payload);
+
+        while (rec.hasRemaining())
+            size += channel.write(rec, size);
+    }
+
+    /**
+     * Replaces the journal with just the given enqueued writes.
+     */
+    void rewrite(Collection<Record> pending) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+
+        try {
+            FileChannel ch = out.getChannel();
+            ch.truncate(0);
+            long pos = 0;
+
+            for (Record r : pending) {
+                ByteBuffer rec = encode(ENQUEUE, r.id, r.createdAt, r.payload);
+
+                while (rec.hasRemaining())
+                    pos += ch.write(rec, pos);
+            }
+
+            ch.force(false);
+        } finally {
+            out.close();
+        }
+
+        close();
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    void close() throws IOException {
+        channel.close();
+        raf.close();
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    File getFile() {
+        return file;
+    }
+}
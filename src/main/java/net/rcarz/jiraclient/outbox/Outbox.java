@@ -0,0 +1,708 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.outbox;
+
+import net.rcarz.jiraclient.Field;
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.Resource;
+import net.rcarz.jiraclient.RestClient;
+import net.rcarz.jiraclient.RestException;
+import net.rcarz.utils.WorklogUtils;
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A durable write-behind queue for comments, work logs and field updates.
+ *
+ * Writes are appended to a journal file and the call returns without
+ * waiting for JIRA. Background workers send them with a bounded number in
+ * flight, one at a time per issue and in the order they were queued.
+ * Writes failing with a transient error (connection trouble, 429 or 5xx)
+ * are retried with exponential back-off; writes that are rejected or run
+ * out of retries are dropped and listed by {@link #getFailed()}. A field
+ * update queued right behind another update of the same issue that hasn't
+ * been sent yet is merged into it, later values winning.
+ *
+ * Writes not yet confirmed are sent again when the outbox is reopened on
+ * the same journal, so a write that was in flight during a crash may be
+ * applied twice.
+ */
+public class Outbox implements Closeable {
+
+    public static final int DEFAULT_CONCURRENCY = 4;
+    public static final int DEFAULT_MAX_RETRIES = 5;
+    public static final long DEFAULT_RETRY_DELAY = 1000;
+    public static final long DEFAULT_COMPACT_SIZE = 1024 * 1024;
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private static final ThreadFactory FACTORY = new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "jira-outbox-" + THREADS.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    };
+
+    /**
+     * Kinds of queued writes.
+     */
+    public enum Kind {
+        COMMENT, WORKLOG, UPDATE
+    }
+
+    /**
+     * A queued write.
+     */
+    public static final class Write {
+        private final long id;
+        private final String issueKey;
+        private final Kind kind;
+        private final JSONObject data;
+        private final long createdAt;
+        private final byte[] payload;
+        private int attempts = 0;
+        private boolean inFlight = false;
+        private String error = null;
+
+        private Write(long id, String issueKey, Kind kind, JSONObject data, long createdAt) {
+            this.id = id;
+            this.issueKey = issueKey;
+            this.kind = kind;
+            this.data = data;
+            this.createdAt = createdAt;
+
+            JSONObject json = new JSONObject();
+            json.put("issue", issueKey);
+            json.put("kind", kind.name());
+            json.put("data", data);
+            this.payload = json.toString().getBytes(Journal.UTF8);
+        }
+
+        private static Write decode(Journal.Record rec) {
+            JSONObject json = JSONObject.fromObject(new String(rec.payload, Journal.UTF8));
+            return new Write(rec.id, json.getString("issue"), Kind.valueOf(json.getString("kind")),
+                json.getJSONObject("data"), rec.createdAt);
+        }
+
+        @Override
+        public String toString() {
+            return issueKey + " " + kind + " #" + id + (error != null ? ": " + error : "");
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getIssueKey() {
+            return issueKey;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the request body that is sent
+         */
+        public JSONObject getData() {
+            return JSONObject.fromObject(data);
+        }
+
+        /**
+         * @return when the write was queued (local clock, milliseconds)
+         */
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        /**
+         * @return the number of attempts made so far
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * @return why the write was dropped, null if it wasn't
+         */
+        public String getError() {
+            return error;
+        }
+    }
+
+    private RestClient restclient = null;
+    private Journal journal = null;
+    private ScheduledThreadPoolExecutor workers = null;
+    private Map<String, ArrayDeque<Write>> queues = new LinkedHashMap<String, ArrayDeque<Write>>();
+    private Map<String, Boolean> scheduled = new HashMap<String, Boolean>();
+    private List<Write> failed = new ArrayList<Write>();
+    private long nextId = 0;
+    private int depth = 0;
+    private long sent = 0;
+    private long retries = 0;
+    private long coalesced = 0;
+    private boolean closed = false;
+    private boolean forceWrites = false;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+    private long compactSize = DEFAULT_COMPACT_SIZE;
+
+    /**
+     * Opens or creates an outbox and starts sending the writes left in it.
+     *
+     * @param restclient REST client instance
+     * @param file Journal file
+     *
+     * @throws JiraException when the journal cannot be opened
+     */
+    public Outbox(RestClient restclient, File file) throws JiraException {
+        this(restclient, file, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Opens or creates an outbox and starts sending the writes left in it.
+     *
+     * @param restclient REST client instance
+     * @param file Journal file
+     * @param concurrency Maximum number of writes in flight
+     *
+     * @throws JiraException when the journal cannot be opened
+     */
+    public Outbox(RestClient restclient, File file, int concurrency) throws JiraException {
+        this.restclient = restclient;
+
+        workers = new ScheduledThreadPoolExecutor(Math.max(concurrency, 1), FACTORY);
+        workers.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        try {
+            journal = new Journal(file);
+            replay();
+        } catch (IOException ex) {
+            abandon();
+            throw new JiraException("Failed to open outbox " + file, ex);
+        } catch (JSONException ex) {
+            abandon();
+            throw new JiraException("Outbox journal " + file + " is malformed", ex);
+        }
+    }
+
+    /**
+     * Releases the workers and the journal of an outbox that failed to open.
+     */
+    private void abandon() {
+        workers.shutdownNow();
+
+        if (journal == null)
+            return;
+
+        try {
+            journal.close();
+        } catch (IOException ex) {
+            /* the open failure is the one worth reporting */
+        }
+    }
+
+    private synchronized void replay() throws IOException {
+        Map<Long, Journal.Record> pending = new LinkedHashMap<Long, Journal.Record>();
+        boolean finished = false;
+
+        for (Journal.Record rec : journal.replay()) {
+            nextId = Math.max(nextId, rec.id + 1);
+
+            if (rec.type == Journal.ENQUEUE)
+                pending.put(rec.id, rec);
+            else
+                finished |= pending.remove(rec.id) != null;
+        }
+
+        if (finished)
+            journal.rewrite(pending.values());
+
+        for (Journal.Record rec : pending.values())
+            queue(Write.decode(rec));
+
+        for (String key : queues.keySet())
+            schedule(key, 0);
+    }
+
+    private void queue(Write w) {
+        ArrayDeque<Write> q = queues.get(w.issueKey);
+
+        if (q == null) {
+            q = new ArrayDeque<Write>();
+            queues.put(w.issueKey, q);
+        }
+
+        q.addLast(w);
+        depth++;
+    }
+
+    private void schedule(final String key, long delay) {
+        scheduled.put(key, Boolean.TRUE);
+
+        Runnable task = new Runnable() {
+            public void run() {
+                drain(key);
+            }
+        };
+
+        if (delay > 0)
+            workers.schedule(task, delay, TimeUnit.MILLISECONDS);
+        else
+            workers.execute(task);
+    }
+
+    private synchronized void enqueue(String key, Kind kind, JSONObject data) throws JiraException {
+        if (closed)
+            throw new JiraException("Outbox is closed");
+
+        ArrayDeque<Write> q = queues.get(key);
+        Write last = q != null ? q.peekLast() : null;
+
+        try {
+            if (kind == Kind.UPDATE && last != null && last.kind == Kind.UPDATE && !last.inFlight) {
+                JSONObject fields = JSONObject.fromObject(last.data.getJSONObject("fields"));
+                fields.putAll(data.getJSONObject("fields"));
+
+                JSONObject merged = new JSONObject();
+                merged.put("fields", fields);
+
+                /* the merged write goes in first so a crash in between only repeats fields */
+                Write w = new Write(nextId++, key, kind, merged, last.createdAt);
+                w.attempts = last.attempts;
+                journal.append(Journal.ENQUEUE, w.id, w.createdAt, w.payload);
+                journal.append(Journal.DONE, last.id, last.createdAt, null);
+
+                if (forceWrites)
+                    journal.force();
+
+                q.pollLast();
+                q.addLast(w);
+                coalesced++;
+                return;
+            }
+
+            Write w = new Write(nextId++, key, kind, data, System.currentTimeMillis());
+            journal.append(Journal.ENQUEUE, w.id, w.createdAt, w.payload);
+
+            if (forceWrites)
+                journal.force();
+
+            queue(w);
+        } catch (IOException ex) {
+            throw new JiraException("Failed to journal write to issue " + key, ex);
+        }
+
+        if (!scheduled.containsKey(key))
+            schedule(key, 0);
+    }
+
+    private void send(Write w) throws Exception {
+        String uri = Resource.getBaseUri() + "issue/" + w.issueKey;
+
+        switch (w.kind) {
+            case COMMENT:
+                restclient.post(uri + "/comment", w.data);
+                break;
+            case WORKLOG:
+                restclient.post(uri + "/worklog", w.data);
+                break;
+            case UPDATE:
+                restclient.put(uri, w.data);
+                break;
+        }
+    }
+
+    /**
+     * Sends the next write of an issue. Only one drain per issue is
+     * scheduled at a time, which keeps the writes of an issue in order.
+     */
+    private void drain(String key) {
+        Write w;
+
+        synchronized (this) {
+            ArrayDeque<Write> q = queues.get(key);
+            w = q != null ? q.peekFirst() : null;
+
+            if (closed || w == null) {
+                scheduled.remove(key);
+                notifyAll();
+                return;
+            }
+
+            w.inFlight = true;
+        }
+
+        Exception failure = null;
+
+        try {
+            send(w);
+        } catch (Exception ex) {
+            failure = ex;
+        }
+
+        synchronized (this) {
+            w.inFlight = false;
+            w.attempts++;
+
+            if (failure != null && w.attempts <= maxRetries && RestException.isTransient(failure)) {
+                retries++;
+                schedule(key, retryDelay << (w.attempts - 1));
+                return;
+            }
+
+            if (failure != null) {
+                w.error = failure.getMessage();
+                failed.add(w);
+            } else
+                sent++;
+
+            ArrayDeque<Write> q = queues.get(key);
+            q.pollFirst();
+            depth--;
+
+            if (q.isEmpty())
+                queues.remove(key);
+
+            finish(w);
+
+            if (queues.containsKey(key) && !closed)
+                schedule(key, 0);
+            else
+                scheduled.remove(key);
+
+            notifyAll();
+        }
+    }
+
+    /**
+     * Records a write as finished and compacts the journal once it's large.
+     */
+    private void finish(Write w) {
+        try {
+            journal.append(Journal.DONE, w.id, w.createdAt, null);
+
+            if (journal.getSize() > compactSize) {
+                List<Journal.Record> pending = new ArrayList<Journal.Record>();
+
+                for (ArrayDeque<Write> q : queues.values()) {
+                    for (Write p : q)
+                        pending.add(new Journal.Record(Journal.ENQUEUE, p.id, p.createdAt, p.payload));
+                }
+
+                journal.rewrite(pending);
+            }
+        } catch (IOException ex) {
+            /* the write is sent again after a restart, which is no worse than a crash */
+        }
+    }
+
+    /**
+     * Queues a comment.
+     *
+     * @param key Issue key
+     * @param body Comment text
+     *
+     * @throws JiraException when the write cannot be journaled
+     */
+    public void addComment(String key, String body) throws JiraException {
+        addComment(key, body, null, null);
+    }
+
+    /**
+     * Queues a comment with restricted visibility.
+     *
+     * @param key Issue key
+     * @param body Comment text
+     * @param visType Target audience type (role or group)
+     * @param visName Name of the role or group to limit visibility to
+     *
+     * @throws JiraException when the write cannot be journaled
+     */
+    public void addComment(String key, String body, String visType, String visName)
+        throws JiraException {
+
+        JSONObject req = new JSONObject();
+        req.put("body", body);
+
+        if (visType != null && visName != null) {
+            JSONObject vis = new JSONObject();
+            vis.put("type", visType);
+            vis.put("value", visName);
+
+            req.put("visibility", vis);
+        }
+
+        enqueue(key, Kind.COMMENT, req);
+    }
+
+    /**
+     * Queues a work log.
+     *
+     * @param key Issue key
+     * @param comment Work log comment
+     * @param startDate When the work started
+     * @param timeSpentSeconds Time spent, at least a minute
+     *
+     * @throws JiraException when the write cannot be journaled
+     */
+    public void addWorkLog(String key, String comment, DateTime startDate, long timeSpentSeconds)
+        throws JiraException {
+
+        if (comment == null)
+            throw new IllegalArgumentException("Invalid comment.");
+        if (startDate == null)
+            throw new IllegalArgumentException("Invalid start time.");
+        if (timeSpentSeconds < 60)
+            throw new IllegalArgumentException("Time spent cannot be lower than 1 minute.");
+
+        JSONObject req = new JSONObject();
+        req.put("comment", comment);
+        req.put("started", DateTimeFormat.forPattern(Field.DATETIME_FORMAT).print(startDate.getMillis()));
+        req.put("timeSpent", WorklogUtils.formatDurationFromSeconds(timeSpentSeconds));
+
+        enqueue(key, Kind.WORKLOG, req);
+    }
+
+    private static Object toJsonValue(String name, Object value) {
+        if (value == null)
+            return JSONNull.getInstance();
+        else if (value instanceof Field.ValueTuple) {
+            Field.ValueTuple tuple = (Field.ValueTuple)value;
+            JSONObject json = new JSONObject();
+            json.put(tuple.type, tuple.value.toString());
+            return json;
+        } else if (value instanceof String || value instanceof Number ||
+                value instanceof Boolean || value instanceof JSON)
+            return value;
+        else if (value instanceof Collection) {
+            JSONArray json = new JSONArray();
+
+            for (Object item : (Collection)value)
+                json.add(toJsonValue(name, item));
+
+            return json;
+        } else if (value instanceof Map)
+            return JSONObject.fromObject(value);
+
+        throw new IllegalArgumentException("Field '" + name + "' needs a JSON value, not " +
+            value.getClass().getName());
+    }
+
+    /**
+     * Queues a field update.
+     *
+     * Values are sent without consulting the edit metadata, so they must be
+     * in the JSON form of the REST API: text and numbers as they are, and
+     * references as objects such as {@code Field.valueByName("Major")} or a
+     * map of "name" to "Major".
+     *
+     * @param key Issue key
+     * @param name Field name
+     * @param value Field value
+     *
+     * @throws JiraException when the write cannot be journaled
+     */
+    public void update(String key, String name, Object value) throws JiraException {
+        update(key, Collections.singletonMap(name, value));
+    }
+
+    /**
+     * Queues an update of several fields.
+     *
+     * @param key Issue key
+     * @param values Field name to value, see {@link #update(String, String, Object)}
+     *
+     * @throws JiraException when the write cannot be journaled
+     */
+    public void update(String key, Map<String, Object> values) throws JiraException {
+        JSONObject fields = new JSONObject();
+
+        for (Map.Entry<String, Object> ent : values.entrySet())
+            fields.put(ent.getKey(), toJsonValue(ent.getKey(), ent.getValue()));
+
+        JSONObject req = new JSONObject();
+        req.put("fields", fields);
+
+        enqueue(key, Kind.UPDATE, req);
+    }
+
+    /**
+     * Waits until every queued write has been sent or dropped.
+     *
+     * @param timeout Maximum time to wait in milliseconds
+     *
+     * @return true if the outbox is empty
+     *
+     * @throws InterruptedException when the caller is interrupted
+     */
+    public synchronized boolean awaitEmpty(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        while (depth > 0) {
+            long left = deadline - System.currentTimeMillis();
+
+            if (left <= 0)
+                return false;
+
+            wait(left);
+        }
+
+        return true;
+    }
+
+    /**
+     * Stops the workers after the writes in flight. Writes not sent yet stay
+     * in the journal for the next time it's opened.
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return;
+
+            closed = true;
+        }
+
+        workers.shutdown();
+
+        try {
+            if (!workers.awaitTermination(60, TimeUnit.SECONDS))
+                workers.shutdownNow();
+        } catch (InterruptedException ex) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            journal.close();
+        }
+    }
+
+    /**
+     * @return the number of writes waiting to be sent, including retries
+     */
+    public synchronized int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return milliseconds since the oldest waiting write was queued, 0 if
+     *         the outbox is empty
+     */
+    public synchronized long getLag() {
+        long oldest = Long.MAX_VALUE;
+
+        for (ArrayDeque<Write> q : queues.values())
+            oldest = Math.min(oldest, q.peekFirst().createdAt);
+
+        return oldest == Long.MAX_VALUE ? 0 : Math.max(System.currentTimeMillis() - oldest, 0);
+    }
+
+    /**
+     * @return the number of writes sent since the outbox was opened
+     */
+    public synchronized long getSent() {
+        return sent;
+    }
+
+    /**
+     * @return the number of retried attempts since the outbox was opened
+     */
+    public synchronized long getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return the number of updates merged into a queued update
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * @return writes dropped since the outbox was opened, with their errors
+     */
+    public synchronized List<Write> getFailed() {
+        return new ArrayList<Write>(failed);
+    }
+
+    /**
+     * @return the journal file
+     */
+    public File getFile() {
+        return journal.getFile();
+    }
+
+    /**
+     * Makes every queued write reach the disk before the call returns, not
+     * just the operating system. Off by default; writes survive a crash of
+     * the process either way.
+     *
+     * @param forceWrites Whether to sync the journal on every write
+     */
+    public synchronized void setForceWrites(boolean forceWrites) {
+        this.forceWrites = forceWrites;
+    }
+
+    /**
+     * @param maxRetries Retries of a write failing with a transient error
+     */
+    public synchronized void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * @param retryDelay Delay before the first retry in milliseconds,
+     *                   doubled for every further retry
+     */
+    public synchronized void setRetryDelay(long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * @param compactSize Journal size in bytes past which finished writes
+     *                    are dropped from it
+     */
+    public synchronized void setCompactSize(long compactSize) {
+        this.compactSize = compactSize;
+    }
+}
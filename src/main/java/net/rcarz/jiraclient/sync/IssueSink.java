@@ -0,0 +1,43 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.sync;
+
+import net.rcarz.jiraclient.Issue;
+import net.rcarz.jiraclient.JiraException;
+
+import java.util.List;
+
+/**
+ * Receives issues that changed since the last synchronisation.
+ */
+public interface IssueSink {
+
+    /**
+     * Accepts a batch of changed issues.
+     *
+     * The watermark is only advanced after this method returns, so a sink
+     * that throws will see the same issues again on the next run.
+     *
+     * @param issues Issues in ascending order of their updated date
+     *
+     * @throws JiraException when the sink fails to store the issues
+     */
+    void accept(List<Issue> issues) throws JiraException;
+}
@@ -0,0 +1,241 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.sync;
+
+import net.rcarz.jiraclient.Field;
+import net.rcarz.jiraclient.Issue;
+import net.rcarz.jiraclient.JiraClient;
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.RestClient;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Incremental issue synchronisation.
+ *
+ * Each run searches for issues with <code>updated &gt;= watermark ORDER BY
+ * updated ASC</code> and hands the changed issues to a sink. The query starts
+ * a little before the watermark (the overlap window) to cover JQL's
+ * minute granularity, time zone differences and late index commits.
+ * Issues that were already delivered with the same updated date are dropped.
+ *
+ * Paging restarts from the updated date of the last issue on each page
+ * instead of using a growing offset, so issues that move to the end of
+ * the result while a run is in progress are not skipped.
+ */
+public class IssueSync {
+
+    public static final long DEFAULT_OVERLAP = 5 * 60 * 1000L;
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    private static final String JQL_DATE_FORMAT = "yyyy/MM/dd HH:mm";
+    private static final long MINUTE = 60 * 1000L;
+
+    private RestClient restclient = null;
+    private String jql = null;
+    private IssueSink sink = null;
+    private Watermark watermark = null;
+    private String includedFields = null;
+    private long overlap = DEFAULT_OVERLAP;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private TimeZone timeZone = TimeZone.getDefault();
+
+    /**
+     * Creates a synchronisation engine.
+     *
+     * @param jira JIRA client
+     * @param jql JQL restricting the synchronised issues (without ORDER BY),
+     * may be empty to synchronise everything visible
+     * @param state File the watermark is persisted to
+     * @param sink Receiver of changed issues
+     *
+     * @throws JiraException when the watermark cannot be loaded
+     */
+    public IssueSync(JiraClient jira, String jql, File state, IssueSink sink)
+        throws JiraException {
+
+        this(jira.getRestClient(), jql, Watermark.load(state), sink);
+    }
+
+    /**
+     * Creates a synchronisation engine.
+     *
+     * @param restclient REST client instance
+     * @param jql JQL restricting the synchronised issues (without ORDER BY)
+     * @param watermark Synchronisation state
+     * @param sink Receiver of changed issues
+     */
+    public IssueSync(RestClient restclient, String jql, Watermark watermark, IssueSink sink) {
+        if (jql != null && jql.toLowerCase().contains("order by"))
+            throw new IllegalArgumentException("JQL may not contain an ORDER BY clause");
+
+        this.restclient = restclient;
+        this.jql = jql != null ? jql.trim() : "";
+        this.watermark = watermark;
+        this.sink = sink;
+    }
+
+    /**
+     * Runs one synchronisation pass.
+     *
+     * @return the number of issues handed to the sink
+     *
+     * @throws JiraException when the search or the sink fails
+     */
+    public int run() throws JiraException {
+        long since = watermark.getUpdated() > 0 ? watermark.getUpdated() - overlap : 0;
+        int startAt = 0;
+        int delivered = 0;
+
+        while (true) {
+            Issue.SearchResult sr = Issue.search(
+                restclient,
+                buildJql(since),
+                getFields(),
+                null,
+                pageSize,
+                startAt);
+
+            if (sr.issues == null || sr.issues.isEmpty())
+                break;
+
+            List<Issue> changed = new ArrayList<Issue>();
+            long last = 0;
+
+            for (Issue issue : sr.issues) {
+                long updated = getUpdated(issue);
+                last = Math.max(last, updated);
+
+                if (watermark.isNew(issue.getKey(), updated))
+                    changed.add(issue);
+            }
+
+            if (!changed.isEmpty()) {
+                sink.accept(changed);
+
+                for (Issue issue : changed)
+                    watermark.mark(issue.getKey(), getUpdated(issue));
+
+                watermark.prune(watermark.getUpdated() - overlap - MINUTE);
+                watermark.save();
+                delivered += changed.size();
+            }
+
+            if (sr.start + sr.issues.size() >= sr.total)
+                break;
+
+            /* JQL dates have minute precision, so restart from the minute of
+               the last issue. If the whole page shares that minute we have to
+               fall back to an offset to make progress. */
+            long next = last - (last % MINUTE);
+
+            if (next > since) {
+                since = next;
+                startAt = 0;
+            } else
+                startAt += sr.issues.size();
+        }
+
+        return delivered;
+    }
+
+    private String buildJql(long since) {
+        StringBuilder sb = new StringBuilder();
+
+        if (jql.length() > 0)
+            sb.append("(").append(jql).append(")");
+
+        if (since > 0) {
+            SimpleDateFormat df = new SimpleDateFormat(JQL_DATE_FORMAT);
+            df.setTimeZone(timeZone);
+
+            if (sb.length() > 0)
+                sb.append(" AND ");
+
+            sb.append("updated >= \"").append(df.format(new Date(since))).append("\"");
+        }
+
+        sb.append(" ORDER BY updated ASC");
+        return sb.toString().trim();
+    }
+
+    private String getFields() {
+        if (includedFields == null || includedFields.contains("*all") ||
+                includedFields.contains("*navigable"))
+            return includedFields;
+
+        return includedFields + "," + Field.UPDATED_DATE;
+    }
+
+    private static long getUpdated(Issue issue) {
+        return issue.getUpdatedDate() != null ? issue.getUpdatedDate().getTime() : 0;
+    }
+
+    /**
+     * Specifies which fields are fetched. The updated field is always added.
+     *
+     * @param includedFields Comma-separated field list or null for all
+     * navigable fields
+     */
+    public void setIncludedFields(String includedFields) {
+        this.includedFields = includedFields;
+    }
+
+    /**
+     * Sets how far before the watermark each query starts.
+     *
+     * @param overlap Overlap window in milliseconds
+     */
+    public void setOverlap(long overlap) {
+        this.overlap = overlap;
+    }
+
+    /**
+     * Sets the number of issues requested per search.
+     *
+     * @param pageSize Maximum results per page
+     */
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Sets the time zone used to format JQL dates. This should match the
+     * time zone of the JIRA user the client is authenticated as.
+     *
+     * @param timeZone Time zone of the JIRA user
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    public Watermark getWatermark() {
+        return watermark;
+    }
+
+    public String getJql() {
+        return jql;
+    }
+}
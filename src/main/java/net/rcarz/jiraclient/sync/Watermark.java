@@ -0,0 +1,217 @@
+/**
+ * jira-client - a simple JIRA REST client
+ * Copyright (c) 2013 Bob Carroll (bob.carroll@alum.rit.edu)
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.rcarz.jiraclient.sync;
+
+import net.rcarz.jiraclient.JiraException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Persistent synchronisation state.
+ *
+ * Holds the updated date of the newest issue delivered so far, along with
+ * the keys and updated dates of recently delivered issues. The latter is
+ * used to drop duplicates returned by the overlapping query window. All
+ * times come from the JIRA server, so the local clock never matters.
+ */
+public class Watermark {
+
+    private static final String UPDATED = "updated";
+    private static final String SEEN_PREFIX = "seen.";
+
+    private File file = null;
+    private long updated = 0;
+    private Map<String, Long> seen = new HashMap<String, Long>();
+
+    private Watermark(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the watermark from the given file. A missing file yields an
+     * empty watermark, which makes the next run a full synchronisation.
+     *
+     * @param file State file
+     *
+     * @return the watermark
+     *
+     * @throws JiraException when the file cannot be read
+     */
+    public static Watermark load(File file) throws JiraException {
+        Watermark wm = new Watermark(file);
+
+        if (!file.exists())
+            return wm;
+
+        Properties props = new Properties();
+        InputStream in = null;
+
+        try {
+            in = new FileInputStream(file);
+            props.load(in);
+        } catch (IOException ex) {
+            throw new JiraException("Failed to read watermark " + file, ex);
+        } finally {
+            closeQuietly(in);
+        }
+
+        for (String name : props.stringPropertyNames()) {
+            long value = parseLong(props.getProperty(name));
+
+            if (name.equals(UPDATED))
+                wm.updated = value;
+            else if (name.startsWith(SEEN_PREFIX))
+                wm.seen.put(name.substring(SEEN_PREFIX.length()), value);
+        }
+
+        return wm;
+    }
+
+    /**
+     * Writes the watermark to disk. The state is written to a temporary file
+     * first and then renamed, so a crash never leaves a truncated file behind.
+     *
+     * @throws JiraException when the file cannot be written
+     */
+    public void save() throws JiraException {
+        Properties props = new Properties();
+        props.setProperty(UPDATED, Long.toString(updated));
+
+        for (Map.Entry<String, Long> ent : seen.entrySet())
+            props.setProperty(SEEN_PREFIX + ent.getKey(), Long.toString(ent.getValue()));
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        File tmp = new File(parent, file.getName() + ".tmp");
+        OutputStream out = null;
+
+        try {
+            if (parent != null && !parent.exists() && !parent.mkdirs())
+                throw new IOException("Cannot create directory " + parent);
+
+            out = new FileOutputStream(tmp);
+            props.store(out, "jira-client sync watermark");
+            out.close();
+            out = null;
+
+            if (!tmp.renameTo(file)) {
+                if (!file.delete() || !tmp.renameTo(file))
+                    throw new IOException("Cannot replace " + file);
+            }
+        } catch (IOException ex) {
+            throw new JiraException("Failed to write watermark " + file, ex);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Checks whether the given issue version has not been delivered yet.
+     *
+     * @param key Issue key
+     * @param updated Updated date of the issue in milliseconds
+     *
+     * @return true if the issue should be handed to the sink
+     */
+    public boolean isNew(String key, long updated) {
+        Long last = seen.get(key);
+        return last == null || last.longValue() < updated;
+    }
+
+    /**
+     * Records a delivered issue and advances the watermark.
+     *
+     * @param key Issue key
+     * @param updated Updated date of the issue in milliseconds
+     */
+    public void mark(String key, long updated) {
+        seen.put(key, updated);
+
+        if (updated > this.updated)
+            this.updated = updated;
+    }
+
+    /**
+     * Forgets delivered issues that are older than the given time.
+     *
+     * @param before Cut-off time in milliseconds
+     */
+    public void prune(long before) {
+        Iterator<Map.Entry<String, Long>> iter = seen.entrySet().iterator();
+
+        while (iter.hasNext()) {
+            if (iter.next().getValue() < before)
+                iter.remove();
+        }
+    }
+
+    /**
+     * Resets the watermark so the next run is a full synchronisation.
+     */
+    public void reset() {
+        updated = 0;
+        seen.clear();
+    }
+
+    /**
+     * @return the updated date of the newest delivered issue, or zero
+     */
+    public long getUpdated() {
+        return updated;
+    }
+
+    /**
+     * @return the number of recently delivered issues being tracked
+     */
+    public int getSeenCount() {
+        return seen.size();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private static long parseLong(String s) {
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable c) {
+        if (c == null)
+            return;
+
+        try {
+            c.close();
+        } catch (IOException ex) {
+            /* nothing to do */
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package net.rcarz.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a batch of tasks with at most a given number in flight, for fanning
+ * out REST calls without flooding the server or the connection pool.
+ */
+public class BoundedExecutor {
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private static final ThreadFactory FACTORY = new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "jira-client-worker-" + THREADS.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    };
+
+    /**
+     * Runs all tasks and waits for them.
+     * A single task or a concurrency of one runs on the calling thread.
+     *
+     * @param tasks tasks to run
+     * @param concurrency maximum number of tasks running at once
+     * @return the task results, in task order
+     * @throws ExecutionException with the first task failure, after which
+     *         tasks that haven't finished are cancelled
+     * @throws InterruptedException when the caller is interrupted
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int concurrency)
+            throws ExecutionException, InterruptedException {
+
+        if (tasks.size() <= 1 || concurrency <= 1) {
+            List<T> results = new ArrayList<T>(tasks.size());
+
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (Exception ex) {
+                    throw new ExecutionException(ex);
+                }
+            }
+
+            return results;
+        }
+
+        try {
+            return invokeAll(tasks, concurrency, 0, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            /* can't happen without a timeout */
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Runs all tasks on pool threads and waits for them until a deadline.
+     * The first failure or the deadline cancels the tasks that haven't
+     * finished, without waiting for those before it.
+     *
+     * @param tasks tasks to run
+     * @param concurrency maximum number of tasks running at once
+     * @param timeout time to wait for all tasks, 0 to wait indefinitely
+     * @param unit unit of the timeout
+     * @return the task results, in task order
+     * @throws ExecutionException with the first task failure
+     * @throws InterruptedException when the caller is interrupted
+     * @throws TimeoutException when the tasks didn't finish in time
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int concurrency,
+            long timeout, TimeUnit unit)
+            throws ExecutionException, InterruptedException, TimeoutException {
+
+        List<T> results = new ArrayList<T>(Collections.<T>nCopies(tasks.size(), null));
+
+        if (tasks.isEmpty())
+            return results;
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        ExecutorService pool = Executors.newFixedThreadPool(
+            Math.max(Math.min(concurrency, tasks.size()), 1), FACTORY);
+        CompletionService<T> done = new ExecutorCompletionService<T>(pool);
+        Map<Future<T>, Integer> futures = new HashMap<Future<T>, Integer>();
+
+        try {
+            for (int i = 0; i < tasks.size(); i++)
+                futures.put(done.submit(tasks.get(i)), i);
+
+            for (int i = 0; i < tasks.size(); i++) {
+                Future<T> future;
+
+                if (timeout > 0) {
+                    future = done.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+                    if (future == null)
+                        throw new TimeoutException("Tasks didn't finish within " + timeout + " " + unit);
+                } else
+                    future = done.take();
+
+                results.set(futures.get(future), future.get());
+            }
+
+            return results;
+        } finally {
+            for (Future<T> future : futures.keySet())
+                future.cancel(true);
+
+            pool.shutdownNow();
+        }
+    }
+}
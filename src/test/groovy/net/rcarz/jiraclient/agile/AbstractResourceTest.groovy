@@ -2,13 +2,24 @@ package net.rcarz.jiraclient.agile
 
 import net.rcarz.jiraclient.JiraClient
 import net.rcarz.jiraclient.RestClient
+import net.sf.json.JSON
+import net.sf.json.JSONArray
 import net.sf.json.JSONObject
 import net.sf.json.JSONSerializer
 import org.hamcrest.core.IsEqual
 import org.hamcrest.core.IsNot
 import org.hamcrest.core.IsNull
+import org.mockito.invocation.InvocationOnMock
+import org.mockito.stubbing.Answer
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
 
 import static org.junit.Assert.assertThat
+import static org.mockito.Matchers.any
+import static org.mockito.Matchers.anyMapOf
+import static org.mockito.Matchers.anyString
+import static org.mockito.Matchers.eq
 import static org.mockito.Mockito.mock
 import static org.mockito.Mockito.when
 
@@ -19,6 +30,12 @@ import static org.mockito.Mockito.when
 class AbstractResourceTest {
     AgileClient agileClient;
     RestClient mockRestClient;
+    List<Map<String, String>> requests = new CopyOnWriteArrayList<>()
+    List<String> writes = new CopyOnWriteArrayList<>()
+    List<JSONObject> payloads = new CopyOnWriteArrayList<>()
+    AtomicInteger inFlight = new AtomicInteger()
+    AtomicInteger maxInFlight = new AtomicInteger()
+    long delay
 
     void "given an Agile Client"() {
         mockRestClient = mock RestClient.class
@@ -37,6 +54,92 @@ class AbstractResourceTest {
         return new Issue(mockRestClient, JSONSerializer.toJSON(JSONResources.ISSUE) as JSONObject)
     }
 
+    /**
+     * Serves the items as a paged list from the mocked REST client. The
+     * parameters of each request are recorded, null for a first page
+     * requested without any. Pass total: false or isLast: false to leave
+     * those out of the pages, and maxResults to cap the page size.
+     */
+    void "given a paged list"(String url, String listName, List<JSONObject> items, Map options = [:]) {
+        Answer<JSON> page = { InvocationOnMock invocation ->
+            Map<String, String> params = invocation.arguments.length > 1 ? invocation.arguments[1] as Map : null
+            requests.add(params)
+            serve {
+                int startAt = params?.startAt ? params.startAt as int : 0
+                int max = Math.min(options.maxResults ?: 50, params?.maxResults ? params.maxResults as int : 50)
+                def values = items.drop(startAt).take(max)
+
+                def result = [startAt: startAt, maxResults: max]
+                if (options.total != false)
+                    result.total = items.size()
+                if (options.isLast != false)
+                    result.isLast = startAt + values.size() >= items.size()
+                result[listName] = values
+                JSONObject.fromObject(result)
+            }
+        } as Answer<JSON>
+
+        when(mockRestClient.get(url)).thenAnswer(page)
+        when(mockRestClient.get(eq(url), anyMapOf(String.class, String.class))).thenAnswer(page)
+    }
+
+    /**
+     * Records every POST and PUT sent through the mocked REST client. Rank
+     * requests naming an unrankable issue are answered with a multi-status
+     * listing every issue, as JIRA does.
+     */
+    void "given recorded writes"(Collection<String> unrankable = []) {
+        when(mockRestClient.post(anyString(), (JSON) any(JSON.class))).thenAnswer({ InvocationOnMock invocation ->
+            recordWrite("POST", invocation.arguments[0] as String, invocation.arguments[1] as JSONObject)
+            null
+        } as Answer<JSON>)
+
+        when(mockRestClient.put(anyString(), (JSON) any(JSON.class))).thenAnswer({ InvocationOnMock invocation ->
+            JSONObject payload = invocation.arguments[1] as JSONObject
+            recordWrite("PUT", invocation.arguments[0] as String, payload)
+
+            def keys = payload.getJSONArray("issues")
+            if (!keys.any { unrankable.contains(it) })
+                return null
+
+            def entries = keys.collect { key ->
+                unrankable.contains(key) ?
+                        [issueKey: key, status: 400, errors: ["cannot rank"]] :
+                        [issueKey: key, status: 200]
+            }
+            JSONObject.fromObject([entries: JSONArray.fromObject(entries)])
+        } as Answer<JSON>)
+    }
+
+    static JSONObject "given an issue JSON"(int id, String summary) {
+        JSONObject.fromObject([id: id, key: "TEST-${id}".toString(), fields: [summary: summary]])
+    }
+
+    void recordWrite(String method, String url, JSONObject payload) {
+        synchronized (this) {
+            writes.add("${method} ${url}".toString())
+            payloads.add(payload)
+        }
+        serve { null }
+    }
+
+    /**
+     * Runs one request, counting how many are in flight and holding it
+     * for the configured delay.
+     */
+    def serve(Closure body) {
+        synchronized (this) {
+            maxInFlight.set(Math.max(maxInFlight.get(), inFlight.incrementAndGet()))
+        }
+        try {
+            if (delay > 0)
+                Thread.sleep(delay)
+            return body.call()
+        } finally {
+            inFlight.decrementAndGet()
+        }
+    }
+
     static void "Assert equals to Board"(Board board) {
         assertThat board, new IsNot<>(new IsNull())
         assertThat board.getId(), new IsEqual<Long>(JSONResources.BOARD_ID)
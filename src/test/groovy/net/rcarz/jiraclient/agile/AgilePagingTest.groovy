@@ -0,0 +1,143 @@
+package net.rcarz.jiraclient.agile
+
+import net.sf.json.JSONObject
+import org.hamcrest.core.IsEqual
+import org.hamcrest.core.IsNull
+import org.junit.Test
+
+import static org.junit.Assert.assertThat
+import static org.junit.Assert.assertTrue
+import static org.junit.Assert.fail
+
+/**
+ * Test for following the pages of agile lists.
+ */
+class AgilePagingTest extends AbstractResourceTest {
+
+    static final String BACKLOG = AgileResource.RESOURCE_URI + "board/1/backlog"
+    static final String SPRINT_ISSUES = AgileResource.RESOURCE_URI + "sprint/3/issue"
+
+    Board "given a Board with a backlog of"(int size, Map options = [:]) {
+        "given a REST Client"()
+        "given a paged list"(BACKLOG, "issues", (1..<size + 1).collect { "given an issue JSON"(it, "issue ${it}") }, options)
+        return new Board(mockRestClient, JSONObject.fromObject([id: 1, name: "Board"]))
+    }
+
+    Sprint "given a Sprint with issues"(int size, Map options = [:]) {
+        "given a REST Client"()
+        "given a paged list"(SPRINT_ISSUES, "issues", (1..<size + 1).collect { "given an issue JSON"(it, "issue ${it}") }, options)
+        return new Sprint(mockRestClient, JSONObject.fromObject([id: 3, name: "Sprint 3"]))
+    }
+
+    @Test
+    void "Given a backlog of many pages, when calling getBacklog(), then every page is fetched concurrently and kept in order."() {
+        Board board = "given a Board with a backlog of"(230)
+        delay = 20
+
+        List<Issue> issues = board.getBacklog()
+
+        assertThat issues.size(), new IsEqual<Integer>(230)
+        issues.eachWithIndex { Issue issue, int i ->
+            assertThat issue.getKey(), new IsEqual<String>("TEST-${i + 1}".toString())
+        }
+        assertThat requests.size(), new IsEqual<Integer>(5)
+        assertThat requests.get(0), new IsNull()
+        assertTrue maxInFlight.get() > 1
+        assertTrue maxInFlight.get() <= AgileResource.PAGE_CONCURRENCY
+    }
+
+    @Test
+    void "Given a backlog without a total, when calling getBacklog(), then the pages are walked in order."() {
+        Board board = "given a Board with a backlog of"(120, [total: false])
+
+        assertThat board.getBacklog().size(), new IsEqual<Integer>(120)
+        assertThat requests.size(), new IsEqual<Integer>(3)
+        assertThat maxInFlight.get(), new IsEqual<Integer>(1)
+    }
+
+    @Test
+    void "Given a backlog of one page, when calling getBacklog(), then one request is made."() {
+        Board board = "given a Board with a backlog of"(10, [isLast: false])
+
+        assertThat board.getBacklog().size(), new IsEqual<Integer>(10)
+        assertThat requests.size(), new IsEqual<Integer>(1)
+    }
+
+    @Test
+    void "Given a backlog of many pages, when iterating it, then each page is fetched as it is consumed."() {
+        Board board = "given a Board with a backlog of"(120)
+
+        Iterator<Issue> iter = board.iterateBacklog().iterator()
+        for (int i = 1; i <= 50; i++)
+            assertThat iter.next().getKey(), new IsEqual<String>("TEST-${i}".toString())
+        assertThat requests.size(), new IsEqual<Integer>(1)
+
+        int count = 50
+        while (iter.hasNext()) {
+            iter.next()
+            count++
+        }
+
+        assertThat count, new IsEqual<Integer>(120)
+        assertThat requests.size(), new IsEqual<Integer>(3)
+        assertThat iter.hasNext(), new IsEqual<Boolean>(false)
+    }
+
+    @Test
+    void "Given an empty backlog, when iterating it, then there is nothing to iterate."() {
+        Board board = "given a Board with a backlog of"(0)
+
+        assertThat board.iterateBacklog().iterator().hasNext(), new IsEqual<Boolean>(false)
+    }
+
+    @Test
+    void "Given a query and a projection, when calling getIssues(), then both are sent with every page."() {
+        Sprint sprint = "given a Sprint with issues"(5, [maxResults: 2])
+
+        List<Issue> issues = sprint.getIssues("status = Done", "key,status", null)
+
+        assertThat issues.size(), new IsEqual<Integer>(5)
+        assertThat requests.size(), new IsEqual<Integer>(3)
+        requests.each { Map<String, String> params ->
+            assertThat params.jql, new IsEqual<String>("status = Done")
+            assertThat params.fields, new IsEqual<String>("key,status")
+            assertThat params.expand, new IsNull()
+        }
+        assertThat requests.get(0).startAt, new IsNull()
+    }
+
+    @Test
+    void "Given a projection and an expansion, when iterating issues, then every page keeps them."() {
+        Sprint sprint = "given a Sprint with issues"(3, [maxResults: 2, total: false])
+
+        int count = 0
+        for (Issue issue : sprint.iterateIssues(null, "key", "changelog"))
+            count++
+
+        assertThat count, new IsEqual<Integer>(3)
+        assertThat requests.size(), new IsEqual<Integer>(2)
+        assertThat requests.get(1).expand, new IsEqual<String>("changelog")
+    }
+
+    @Test
+    void "Given an Issue with nested fields, when reading them, then they are decoded on demand."() {
+        JSONObject json = "given an issue JSON"(1, "one")
+        json.getJSONObject("fields").put("status", [id: 10001, name: "Done"])
+        json.getJSONObject("fields").put("comment", "not a comment list")
+
+        Issue issue = new Issue("given a REST Client"(), json)
+
+        assertThat issue.getKey(), new IsEqual<String>("TEST-1")
+        assertThat issue.getName(), new IsEqual<String>("one")
+        assertThat issue.getStatus().getName(), new IsEqual<String>("Done")
+        assertTrue issue.getStatus().is(issue.getStatus())
+        assertThat issue.getAssignee(), new IsNull()
+
+        try {
+            issue.getComments()
+            fail("expected IllegalStateException")
+        } catch (IllegalStateException ex) {
+            assertThat ex.getMessage(), new IsEqual<String>("Failed to decode comment of TEST-1")
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package net.rcarz.jiraclient.agile
+
+import net.sf.json.JSONObject
+import org.hamcrest.core.IsEqual
+import org.hamcrest.core.IsNull
+import org.junit.After
+import org.junit.Test
+
+import java.lang.ref.WeakReference
+
+import static org.junit.Assert.assertThat
+
+/**
+ * Test for the attributes an agile resource keeps after decoding.
+ */
+class AttributeRetentionTest extends AbstractResourceTest {
+
+    @After
+    void "restore the default retention"() {
+        AgileResource.setAttributeRetention(AgileResource.AttributeRetention.ALL)
+    }
+
+    Issue "given an Issue with custom fields"() {
+        JSONObject json = "given an issue JSON"(1, "one")
+        json.put("expand", "renderedFields")
+        json.getJSONObject("fields").put("customfield_10002", 5.0d)
+        json.getJSONObject("fields").put("labels", '["a","b"]')
+        json.getJSONObject("fields").put("status", [id: 3, name: "Done"])
+
+        return new Issue("given a REST Client"(), json)
+    }
+
+    @Test
+    void "Given the default retention, when calling getAttribute(), then every attribute is kept."() {
+        Issue issue = "given an Issue with custom fields"()
+
+        assertThat issue.getAttribute("key"), new IsEqual<Object>("TEST-1")
+        assertThat issue.getAttribute("summary"), new IsEqual<Object>("one")
+        assertThat issue.getAttribute("customfield_10002"), new IsEqual<Object>(5.0d)
+        assertThat issue.getAttribute("expand"), new IsEqual<Object>("renderedFields")
+        assertThat issue.getAttribute("missing"), new IsNull()
+    }
+
+    @Test
+    void "Given UNKNOWN retention, when calling getAttribute(), then only undecoded attributes are kept."() {
+        AgileResource.setAttributeRetention(AgileResource.AttributeRetention.UNKNOWN)
+        Issue issue = "given an Issue with custom fields"()
+
+        assertThat issue.getAttribute("key"), new IsNull()
+        assertThat issue.getAttribute("summary"), new IsNull()
+        assertThat issue.getAttribute("status"), new IsNull()
+        assertThat((issue.getAttribute("customfield_10002") as Number).doubleValue(), new IsEqual<Double>(5.0d))
+        assertThat issue.getAttribute("expand"), new IsEqual<Object>("renderedFields")
+        assertThat((issue.getAttribute("labels") as List).size(), new IsEqual<Integer>(2))
+
+        assertThat issue.getKey(), new IsEqual<String>("TEST-1")
+        assertThat issue.getStatus().getName(), new IsEqual<String>("Done")
+    }
+
+    @Test
+    void "Given NONE retention, when calling getAttribute(), then nothing is kept but the fields still decode."() {
+        AgileResource.setAttributeRetention(AgileResource.AttributeRetention.NONE)
+        Issue issue = "given an Issue with custom fields"()
+
+        assertThat issue.getAttribute("customfield_10002"), new IsNull()
+        assertThat issue.getName(), new IsEqual<String>("one")
+        assertThat issue.getStatus().getName(), new IsEqual<String>("Done")
+    }
+
+    @Test
+    void "Given NONE retention, when the payload is dropped, then the Issue does not keep it alive."() {
+        AgileResource.setAttributeRetention(AgileResource.AttributeRetention.NONE)
+        JSONObject json = "given an issue JSON"(1, "one")
+        json.getJSONObject("fields").put("status", [id: 3, name: "Done"])
+
+        Issue issue = new Issue("given a REST Client"(), json)
+        WeakReference<JSONObject> fields = new WeakReference<>(json.getJSONObject("fields"))
+
+        /* a retained tree would show the change */
+        json.getJSONObject("fields").getJSONObject("status").put("name", "Open")
+        json = null
+
+        for (int i = 0; i < 50 && fields.get() != null; i++) {
+            System.gc()
+            Thread.sleep(10)
+        }
+
+        assertThat fields.get(), new IsNull()
+        assertThat issue.getStatus().getName(), new IsEqual<String>("Done")
+        assertThat issue.getSprint(), new IsNull()
+    }
+}
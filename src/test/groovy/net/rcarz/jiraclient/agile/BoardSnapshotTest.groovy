@@ -0,0 +1,119 @@
+package net.rcarz.jiraclient.agile
+
+import net.rcarz.jiraclient.JiraException
+import net.rcarz.jiraclient.RestException
+import net.sf.json.JSONObject
+import org.hamcrest.core.IsEqual
+import org.hamcrest.core.IsNull
+import org.junit.Before
+import org.junit.Test
+
+import static org.junit.Assert.assertThat
+import static org.junit.Assert.assertTrue
+import static org.junit.Assert.fail
+import static org.mockito.Matchers.anyMapOf
+import static org.mockito.Matchers.eq
+import static org.mockito.Mockito.when
+
+/**
+ * Test for loading a whole board at once.
+ */
+class BoardSnapshotTest extends AbstractResourceTest {
+
+    static final String BOARD = AgileResource.RESOURCE_URI + "board/1"
+    static final String SPRINT = AgileResource.RESOURCE_URI + "sprint/"
+
+    Board board
+
+    @Before
+    void "given a scrum Board"() {
+        "given a REST Client"()
+        board = new Board(mockRestClient, JSONObject.fromObject([id: 1, name: "Board", type: "scrum"]))
+
+        "given a paged list"(BOARD + "/sprint", "values", [
+                JSONObject.fromObject([id: 10, name: "Sprint 10", state: "CLOSED"]),
+                JSONObject.fromObject([id: 11, name: "Sprint 11", state: "ACTIVE"])])
+        "given a paged list"(SPRINT + "10/issue", "issues", [
+                "given an issue JSON"(1, "one"),
+                "given an issue JSON"(2, "two")])
+        "given a paged list"(SPRINT + "11/issue", "issues", [
+                "given an issue JSON"(3, "three")])
+        "given a paged list"(BOARD + "/backlog", "issues", [
+                "given an issue JSON"(3, "three"),
+                "given an issue JSON"(4, "four")])
+        "given a paged list"(BOARD + "/epic", "values", [
+                JSONObject.fromObject([id: 50, key: "TEST-50", name: "Epic"])])
+        "given a paged list"(BOARD + "/epic/none/issue", "issues", [
+                "given an issue JSON"(4, "four"),
+                "given an issue JSON"(1, "one")])
+    }
+
+    @Test
+    void "Given a scrum Board, when calling snapshot(), then every list is loaded concurrently."() {
+        delay = 50
+
+        BoardSnapshot snapshot = board.snapshot()
+
+        assertThat requests.size(), new IsEqual<Integer>(6)
+        assertTrue maxInFlight.get() > 1
+        assertTrue maxInFlight.get() <= BoardSnapshot.DEFAULT_CONCURRENCY
+
+        assertThat snapshot.getSprints().size(), new IsEqual<Integer>(2)
+        assertThat snapshot.getSprintIssues(10).get(1).getKey(), new IsEqual<String>("TEST-2")
+        assertThat snapshot.getSprintIssues(11).size(), new IsEqual<Integer>(1)
+        assertThat snapshot.getSprintIssues(12), new IsNull()
+        assertThat snapshot.getEpics().size(), new IsEqual<Integer>(1)
+        assertThat snapshot.getIssues().size(), new IsEqual<Integer>(4)
+    }
+
+    @Test
+    void "Given an issue in several lists, when calling snapshot(), then every list holds the same Issue."() {
+        BoardSnapshot snapshot = board.snapshot()
+
+        assertTrue snapshot.getSprintIssues(11).get(0).is(snapshot.getBacklog().get(0))
+        assertTrue snapshot.getBacklog().get(1).is(snapshot.getIssuesWithoutEpic().get(0))
+        assertTrue snapshot.getSprintIssues(10).get(0).is(snapshot.getIssuesWithoutEpic().get(1))
+        assertTrue snapshot.getIssue(4).is(snapshot.getBacklog().get(1))
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    void "Given a snapshot, when changing a list, then throws an UnsupportedOperationException."() {
+        board.snapshot().getBacklog().clear()
+    }
+
+    @Test
+    void "Given a sprint that cannot be read, when calling snapshot(), then the failure names the sprint."() {
+        String url = SPRINT + "11/issue"
+        RestException notFound = new RestException("Not Found", 404, url, null)
+        when(mockRestClient.get(url)).thenThrow(notFound)
+        when(mockRestClient.get(eq(url), anyMapOf(String.class, String.class))).thenThrow(notFound)
+
+        try {
+            board.snapshot()
+            fail("expected JiraException")
+        } catch (JiraException ex) {
+            assertTrue ex.getMessage().contains("sprint/11/issue")
+        }
+    }
+
+    @Test
+    void "Given a concurrency of 2, when calling load(), then no more than 2 requests are in flight."() {
+        delay = 20
+
+        BoardSnapshot.load(board, 2)
+
+        assertThat requests.size(), new IsEqual<Integer>(6)
+        assertTrue maxInFlight.get() <= 2
+    }
+
+    @Test
+    void "Given a kanban Board, when calling snapshot(), then no sprints are requested."() {
+        Board kanban = new Board(mockRestClient, JSONObject.fromObject([id: 1, name: "Board", type: "kanban"]))
+
+        BoardSnapshot snapshot = kanban.snapshot()
+
+        assertThat requests.size(), new IsEqual<Integer>(3)
+        assertTrue snapshot.getSprints().isEmpty()
+        assertThat snapshot.getBacklog().size(), new IsEqual<Integer>(2)
+    }
+}
@@ -92,6 +92,9 @@ class BoardTest extends AbstractResourceTest {
         Board mockBoard = new Board(mockRestClient, JSONSerializer.toJSON(JSONResources.BOARD) as JSONObject)
         when(mockRestClient.get(AgileResource.RESOURCE_URI + "board/${JSONResources.BOARD_ID}/epic"))
                 .thenReturn(JSONSerializer.toJSON(JSONResources.LIST_OF_EPICS))
+        when(mockRestClient.get(AgileResource.RESOURCE_URI + "board/${JSONResources.BOARD_ID}/epic",
+                [startAt: "3", maxResults: "2"]))
+                .thenReturn(JSONSerializer.toJSON('{"startAt": 3, "maxResults": 2, "total": 5, "isLast": true, "values": []}'))
 
         List<Epic> epics = mockBoard.getEpics();
 
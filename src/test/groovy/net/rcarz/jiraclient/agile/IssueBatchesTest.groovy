@@ -0,0 +1,100 @@
+package net.rcarz.jiraclient.agile
+
+import net.rcarz.jiraclient.JiraException
+import net.sf.json.JSONObject
+import org.hamcrest.core.IsEqual
+import org.junit.Test
+
+import static org.junit.Assert.assertThat
+import static org.junit.Assert.assertTrue
+import static org.junit.Assert.fail
+
+/**
+ * Test for moving and ranking issues in batches.
+ */
+class IssueBatchesTest extends AbstractResourceTest {
+
+    static List<String> "given the keys"(int count) {
+        (1..count).collect { "TEST-${it}".toString() }
+    }
+
+    @Test
+    void "Given more keys than fit a batch, when calling moveIssues(), then the batches are sent concurrently."() {
+        "given a REST Client"()
+        "given recorded writes"()
+        delay = 30
+        List<String> keys = "given the keys"(180) + ["TEST-1"]
+
+        Sprint.moveIssues(mockRestClient, 9, keys)
+
+        assertThat writes.size(), new IsEqual<Integer>(4)
+        assertTrue maxInFlight.get() > 1
+
+        Set<Object> moved = new HashSet<>()
+        writes.eachWithIndex { String write, int i ->
+            assertThat write, new IsEqual<String>("POST " + AgileResource.RESOURCE_URI + "sprint/9/issue")
+            assertTrue payloads.get(i).getJSONArray("issues").size() <= IssueBatches.MAX_ISSUES
+            moved.addAll(payloads.get(i).getJSONArray("issues"))
+        }
+        assertThat moved.size(), new IsEqual<Integer>(180)
+    }
+
+    @Test
+    void "Given some keys, when calling moveToBacklog(), then they are posted to the backlog."() {
+        "given a REST Client"()
+        "given recorded writes"()
+
+        Issue.moveToBacklog(mockRestClient, "given the keys"(3))
+
+        assertThat writes.get(0), new IsEqual<String>("POST " + AgileResource.RESOURCE_URI + "backlog/issue")
+        assertThat payloads.get(0).getJSONArray("issues").toString(),
+                new IsEqual<String>('["TEST-1","TEST-2","TEST-3"]')
+    }
+
+    @Test
+    void "Given more keys than fit a batch, when calling rankBefore(), then the order is kept across batches."() {
+        "given a REST Client"()
+        "given recorded writes"()
+
+        Issue.rankBefore(mockRestClient, "given the keys"(120), "TEST-500")
+
+        assertThat writes.size(), new IsEqual<Integer>(3)
+        assertThat maxInFlight.get(), new IsEqual<Integer>(1)
+
+        JSONObject first = payloads.get(0)
+        assertThat first.getString("rankBeforeIssue"), new IsEqual<String>("TEST-500")
+        assertThat first.getJSONArray("issues").getString(0), new IsEqual<String>("TEST-1")
+
+        JSONObject second = payloads.get(1)
+        assertThat second.containsKey("rankBeforeIssue"), new IsEqual<Boolean>(false)
+        assertThat second.getString("rankAfterIssue"), new IsEqual<String>("TEST-50")
+        assertThat payloads.get(2).getString("rankAfterIssue"), new IsEqual<String>("TEST-100")
+        assertThat payloads.get(2).getJSONArray("issues").size(), new IsEqual<Integer>(20)
+    }
+
+    @Test
+    void "Given some keys, when calling rankAfter(), then they are ranked after the issue."() {
+        "given a REST Client"()
+        "given recorded writes"()
+
+        Issue.rankAfter(mockRestClient, "given the keys"(2), "TEST-500")
+
+        assertThat writes.get(0), new IsEqual<String>("PUT " + AgileResource.RESOURCE_URI + "issue/rank")
+        assertThat payloads.get(0).getString("rankAfterIssue"), new IsEqual<String>("TEST-500")
+    }
+
+    @Test
+    void "Given an unrankable issue, when calling rankBefore(), then the failure names it and later batches are not sent."() {
+        "given a REST Client"()
+        "given recorded writes"(["TEST-60"])
+
+        try {
+            Issue.rankBefore(mockRestClient, "given the keys"(120), "TEST-500")
+            fail("expected JiraException")
+        } catch (JiraException ex) {
+            assertTrue ex.getMessage().contains("TEST-60")
+        }
+
+        assertThat writes.size(), new IsEqual<Integer>(2)
+    }
+}
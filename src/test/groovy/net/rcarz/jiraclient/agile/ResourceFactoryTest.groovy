@@ -0,0 +1,80 @@
+package net.rcarz.jiraclient.agile
+
+import net.rcarz.jiraclient.JiraException
+import net.rcarz.jiraclient.ResourceFactory
+import net.rcarz.jiraclient.RestClient
+import net.sf.json.JSONObject
+import org.hamcrest.core.IsEqual
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.ExpectedException
+
+import static org.junit.Assert.assertThat
+
+/**
+ * Test for choosing how agile resources are created.
+ */
+class ResourceFactoryTest extends AbstractResourceTest {
+
+    static class TeamStatus extends Status {
+        TeamStatus(RestClient restclient, JSONObject json) throws JiraException {
+            super(restclient, json)
+        }
+    }
+
+    static class ColourStatus extends Status {
+        final String colour
+
+        ColourStatus(RestClient restclient, JSONObject json, String colour) throws JiraException {
+            super(restclient, json)
+            this.colour = colour
+        }
+    }
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    static JSONObject "given a page of statuses"(int size) {
+        JSONObject.fromObject([values: (1..size).collect { [id: it, name: "Status ${it}".toString()] }])
+    }
+
+    @Test
+    void "Given a built-in type, when calling getResourceArray(), then its own class is created."() {
+        List<Status> statuses = AgileResource.getResourceArray(Status.class, "given a page of statuses"(3), null, "values")
+
+        assertThat statuses.size(), new IsEqual<Integer>(3)
+        assertThat statuses.get(1).getName(), new IsEqual<String>("Status 2")
+        assertThat statuses.get(0).getClass(), new IsEqual<Class>(Status.class)
+    }
+
+    @Test
+    void "Given an unregistered subclass, when calling getResourceArray(), then its constructor is used."() {
+        List<TeamStatus> statuses = AgileResource.getResourceArray(TeamStatus.class, "given a page of statuses"(2), null, "values")
+
+        assertThat statuses.size(), new IsEqual<Integer>(2)
+        assertThat statuses.get(1).getId(), new IsEqual<Long>(2L)
+        assertThat statuses.get(1).getClass(), new IsEqual<Class>(TeamStatus.class)
+    }
+
+    @Test
+    void "Given a registered factory, when calling getResourceArray(), then the factory creates the resources."() {
+        AgileResource.registerResourceFactory(ColourStatus.class, new ResourceFactory<ColourStatus>() {
+            ColourStatus create(RestClient restclient, JSONObject json) throws JiraException {
+                return new ColourStatus(restclient, json, "green")
+            }
+        })
+
+        List<ColourStatus> statuses = AgileResource.getResourceArray(ColourStatus.class, "given a page of statuses"(2), null, "values")
+
+        assertThat statuses.get(0).colour, new IsEqual<String>("green")
+        assertThat statuses.get(0).getName(), new IsEqual<String>("Status 1")
+    }
+
+    @Test
+    void "Given a type without a REST constructor, when calling getResourceArray(), then throws a JiraException."() {
+        expectedException.expect(JiraException.class)
+        expectedException.expectMessage("Failed to deserialize")
+
+        AgileResource.getResourceArray(AgileResource.class, "given a page of statuses"(1), null, "values")
+    }
+}
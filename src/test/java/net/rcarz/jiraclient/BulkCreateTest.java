@@ -0,0 +1,141 @@
+package net.rcarz.jiraclient;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class BulkCreateTest {
+
+    private RestClient restclient;
+    private Utils.Overlap bulk;
+    private final Map<String, String> created = new ConcurrentHashMap<String, String>();
+    private final AtomicInteger nextKey = new AtomicInteger();
+
+    private static JSONObject fieldMeta(String type) {
+        JSONObject schema = new JSONObject();
+        schema.put("type", type);
+        JSONObject meta = new JSONObject();
+        meta.put("schema", schema);
+        return meta;
+    }
+
+    /**
+     * Creates the issues of a bulk request, rejecting those without a
+     * summary like the server does.
+     */
+    private final Answer<JSON> bulkCreate = new Answer<JSON>() {
+        public JSON answer(InvocationOnMock invocation) throws Throwable {
+            JSONArray updates = ((JSONObject)invocation.getArguments()[1]).getJSONArray("issueUpdates");
+            JSONArray issues = new JSONArray();
+            JSONArray errors = new JSONArray();
+
+            for (int i = 0; i < updates.size(); i++) {
+                String summary = updates.getJSONObject(i).getJSONObject("fields").optString(Field.SUMMARY, "");
+
+                if (summary.isEmpty()) {
+                    errors.add(JSONObject.fromObject("{\"status\":400,\"failedElementNumber\":" + i +
+                        ",\"elementErrors\":{\"errorMessages\":[],\"errors\":" +
+                        "{\"summary\":\"You must specify a summary of the issue.\"}}}"));
+                    continue;
+                }
+
+                String key = "TEST-" + nextKey.incrementAndGet();
+                created.put(key, summary);
+                issues.add(JSONObject.fromObject("{\"id\":\"" + nextKey.get() + "\",\"key\":\"" + key + "\"}"));
+            }
+
+            JSONObject result = new JSONObject();
+            result.put("issues", issues);
+            result.put("errors", errors);
+
+            if (issues.isEmpty())
+                throw new RestException("Bad Request", 400, result.toString(), null);
+
+            return result;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        JSONObject fields = new JSONObject();
+        fields.put(Field.PROJECT, fieldMeta("project"));
+        fields.put(Field.ISSUE_TYPE, fieldMeta("issuetype"));
+        fields.put(Field.SUMMARY, fieldMeta("string"));
+
+        restclient = Utils.getTestRestClient();
+        bulk = new Utils.Overlap(bulkCreate, 5);
+
+        doReturn(JSONObject.fromObject(
+            "{\"projects\":[{\"key\":\"TEST\",\"issuetypes\":[{\"name\":\"Task\",\"fields\":" + fields + "}]}]}"))
+            .when(restclient).get(Utils.withPath(Resource.getBaseUri() + "issue/createmeta"));
+        doAnswer(bulk).when(restclient).post(Utils.withPath(Resource.getBaseUri() + "issue/bulk"), any(JSON.class));
+    }
+
+    @Test
+    public void testBatchesAndResultsFollowInputOrder() throws Exception {
+        BulkCreate bulkCreate = new BulkCreate(restclient);
+        bulkCreate.setConcurrency(3);
+
+        for (int i = 0; i < 120; i++)
+            bulkCreate.add("TEST", "Task").field(Field.SUMMARY, i % 40 == 7 ? "" : "issue " + i);
+
+        List<BulkCreate.Result> results = bulkCreate.execute();
+
+        verify(restclient, times(1)).get(any(URI.class));
+        verify(restclient, times(3)).post(any(URI.class), any(JSON.class));
+        assertTrue(bulk.getMax() <= 3);
+        assertEquals(120, results.size());
+
+        for (BulkCreate.Result r : results) {
+            int i = r.getIndex();
+
+            if (i % 40 == 7) {
+                assertFalse(r.isSuccess());
+                assertTrue(r.getFieldErrors().containsKey(Field.SUMMARY));
+            } else {
+                assertTrue(r.toString(), r.isSuccess());
+                assertEquals("issue " + i, created.get(r.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void testBatchWhereEveryElementFails() throws Exception {
+        BulkCreate bulkCreate = new BulkCreate(restclient);
+        bulkCreate.setBatchSize(2);
+        bulkCreate.add("TEST", "Task").field(Field.SUMMARY, "");
+        bulkCreate.add("TEST", "Task").field(Field.SUMMARY, "");
+        bulkCreate.add("TEST", "Task").field(Field.SUMMARY, "kept");
+        bulkCreate.add("TEST", "Task").field("nosuchfield", "x");
+
+        List<BulkCreate.Result> results = bulkCreate.execute();
+
+        assertFalse(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(2).isSuccess());
+        assertNull(results.get(2).getError());
+        assertFalse(results.get(3).isSuccess());
+        assertTrue(results.get(3).getError().contains("nosuchfield"));
+        verify(restclient, times(2)).post(any(URI.class), any(JSON.class));
+    }
+}
@@ -0,0 +1,289 @@
+package net.rcarz.jiraclient;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class BulkEditTest {
+
+    private static final String ISSUE = Resource.getBaseUri() + "issue/";
+
+    private RestClient restclient;
+    private Utils.Overlap overlap;
+    private final Map<String, JSONObject> issues = new LinkedHashMap<String, JSONObject>();
+    private final AtomicInteger failures = new AtomicInteger();
+    private JSONObject editmeta;
+    private JSONArray transitions;
+
+    private static JSONObject named(String id, String name) {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("name", name);
+        return json;
+    }
+
+    private static String keyOf(URI uri) {
+        return uri.getPath().substring(ISSUE.length()).split("/")[0];
+    }
+
+    private synchronized JSONObject issue(String key) throws RestException {
+        JSONObject json = issues.get(key);
+
+        if (json == null)
+            throw new RestException("Not Found", 404, "", null);
+
+        return JSONObject.fromObject(json.toString());
+    }
+
+    /**
+     * Answers the key-in searches with the issues that exist, and any
+     * other search with every issue.
+     */
+    private final Answer<JSON> search = new Answer<JSON>() {
+        public JSON answer(InvocationOnMock invocation) throws Throwable {
+            Map<String, String> params = Utils.getQueryParams((URI)invocation.getArguments()[0]);
+            String jql = params.get("jql");
+            int startAt = params.containsKey("startAt") ? Integer.parseInt(params.get("startAt")) : 0;
+            JSONArray found = new JSONArray();
+
+            for (String key : issues.keySet()) {
+                if (!jql.startsWith("key in") || jql.contains("\"" + key + "\""))
+                    found.add(issue(key));
+            }
+
+            int total = found.size();
+            found = JSONArray.fromObject(found.subList(Math.min(startAt, total), total));
+
+            JSONObject result = new JSONObject();
+            result.put("startAt", startAt);
+            result.put("maxResults", 50);
+            result.put("total", total);
+            result.put("issues", found);
+            return result;
+        }
+    };
+
+    /**
+     * Answers issue GETs, with the edit metadata or the transitions when
+     * asked for.
+     */
+    private final Answer<JSON> read = new Answer<JSON>() {
+        public JSON answer(InvocationOnMock invocation) throws Throwable {
+            URI uri = (URI)invocation.getArguments()[0];
+            JSONObject json = issue(keyOf(uri));
+
+            if (uri.getPath().endsWith("/editmeta")) {
+                JSONObject result = new JSONObject();
+                result.put("fields", editmeta);
+                return result;
+            }
+
+            String expand = Utils.getQueryParams(uri).get("expand");
+            if (expand != null && expand.startsWith("transitions"))
+                json.put("transitions", transitions);
+
+            return json;
+        }
+    };
+
+    /**
+     * Applies field updates and transitions, failing the first writes with
+     * 503 when asked to.
+     */
+    private final Answer<JSON> write = new Answer<JSON>() {
+        public JSON answer(InvocationOnMock invocation) throws Throwable {
+            URI uri = (URI)invocation.getArguments()[0];
+            JSONObject payload = (JSONObject)invocation.getArguments()[1];
+
+            if (failures.getAndDecrement() > 0)
+                throw new RestException("Service Unavailable", 503, "", null);
+
+            issue(keyOf(uri));
+
+            synchronized (BulkEditTest.this) {
+                JSONObject fields = issues.get(keyOf(uri)).getJSONObject("fields");
+
+                if (!uri.getPath().endsWith("/transitions")) {
+                    if (payload.containsKey("fields"))
+                        fields.putAll(payload.getJSONObject("fields"));
+                    return null;
+                }
+
+                String id = payload.getJSONObject("transition").getString("id");
+
+                for (Object t : transitions) {
+                    if (((JSONObject)t).getString("id").equals(id)) {
+                        fields.put(Field.STATUS, ((JSONObject)t).get("to"));
+                        return null;
+                    }
+                }
+            }
+
+            throw new RestException("Bad Request", 400, "", null);
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 1; i <= 6; i++) {
+            JSONObject json = Utils.getTestIssue("TEST-" + i, "2016-01-01T10:00:00.000+0000", "issue " + i);
+            JSONObject fields = json.getJSONObject("fields");
+            JSONObject project = named("10000", "Test");
+            project.put("key", "TEST");
+            fields.put(Field.PROJECT, project);
+            fields.put(Field.ISSUE_TYPE, named(i % 2 == 0 ? "1" : "3", i % 2 == 0 ? "Bug" : "Task"));
+            fields.put(Field.STATUS, named("1", "Open"));
+            issues.put(json.getString("key"), json);
+        }
+
+        editmeta = JSONObject.fromObject("{\"summary\":{\"schema\":{\"type\":\"string\"}}}");
+
+        JSONObject close = named("31", "Close");
+        close.put("to", named("6", "Closed"));
+        close.put("fields", new JSONObject());
+        transitions = new JSONArray();
+        transitions.add(close);
+
+        overlap = new Utils.Overlap(write, 5);
+        restclient = Utils.getTestRestClient();
+        doAnswer(read).when(restclient).get(any(URI.class));
+        doAnswer(search).when(restclient).get(Utils.withPath(Resource.getBaseUri() + "search"));
+        doAnswer(overlap).when(restclient).put(any(URI.class), any(JSON.class));
+        doAnswer(overlap).when(restclient).post(any(URI.class), any(JSON.class));
+    }
+
+    private List<URI> requests() throws Exception {
+        ArgumentCaptor<URI> uris = ArgumentCaptor.forClass(URI.class);
+        verify(restclient, atLeast(0)).get(uris.capture());
+        verify(restclient, atLeast(0)).put(uris.capture(), any(JSON.class));
+        return new ArrayList<URI>(uris.getAllValues());
+    }
+
+    private int countRequests(String suffix) throws Exception {
+        int count = 0;
+
+        for (URI uri : requests()) {
+            if (uri.getPath().endsWith(suffix))
+                count++;
+        }
+
+        return count;
+    }
+
+    private int transitionFetches() throws Exception {
+        int count = 0;
+
+        for (URI uri : requests()) {
+            if (uri.getQuery() != null && uri.getQuery().contains("expand=transitions"))
+                count++;
+        }
+
+        return count;
+    }
+
+    private String status(String key) {
+        return issues.get(key).getJSONObject("fields").getJSONObject(Field.STATUS).getString("name");
+    }
+
+    @Test
+    public void testEditAndTransitionShareMetadataPerIssueType() throws Exception {
+        BulkEdit edit = new BulkEdit(restclient)
+            .issues("project = TEST")
+            .field(Field.SUMMARY, "renamed")
+            .transition("Close");
+        edit.setConcurrency(3);
+        edit.setNotifyUsers(false);
+
+        BulkEdit.Report report = edit.execute();
+
+        assertTrue(report.toString(), report.isSuccess());
+        assertEquals(6, report.getSucceeded().size());
+        assertEquals(2, countRequests("/editmeta"));
+        assertEquals(2, transitionFetches());
+        assertTrue(overlap.getMax() <= 3);
+
+        for (String key : issues.keySet()) {
+            assertEquals("renamed", issues.get(key).getJSONObject("fields").get(Field.SUMMARY));
+            assertEquals("Closed", status(key));
+        }
+
+        for (URI uri : requests()) {
+            /* the transition lookups read the workflow state */
+            if (uri.getPath().matches(".*/issue/TEST-[0-9]+") && !uri.getQuery().contains("fields="))
+                assertEquals("notifyUsers=false", uri.getQuery());
+        }
+    }
+
+    @Test
+    public void testTransientFailuresAreRetriedAndOthersReported() throws Exception {
+        failures.set(2);
+
+        BulkEdit edit = new BulkEdit(restclient)
+            .issues(Arrays.asList("TEST-1", "TEST-2", "TEST-99"))
+            .transition("Reopen");
+        edit.setRetryDelay(1);
+
+        BulkEdit.Report report = edit.execute();
+
+        assertFalse(report.isSuccess());
+        assertEquals(3, report.getFailed().size());
+        assertTrue(report.getFailed().get("TEST-99").getMessage().contains("not found"));
+        assertTrue(report.getFailed().get("TEST-1").getMessage().contains("Reopen"));
+
+        edit.transition("Close");
+        report = edit.execute();
+
+        assertEquals(Arrays.asList("TEST-1", "TEST-2"), report.getSucceeded());
+        assertEquals(2, report.getRetries());
+    }
+
+    @Test
+    public void testFailedTransitionDoesNotRepeatEdit() throws Exception {
+        final AtomicInteger failTransitions = new AtomicInteger(1);
+        doAnswer(new Answer<JSON>() {
+            public JSON answer(InvocationOnMock invocation) throws Throwable {
+                if (failTransitions.getAndDecrement() > 0)
+                    throw new RestException("Service Unavailable", 503, "", null);
+
+                return write.answer(invocation);
+            }
+        }).when(restclient).post(any(URI.class), any(JSON.class));
+        editmeta = JSONObject.fromObject(
+            "{\"labels\":{\"schema\":{\"type\":\"array\",\"items\":\"string\"}}}");
+
+        BulkEdit edit = new BulkEdit(restclient)
+            .issues(Arrays.asList("TEST-1"))
+            .fieldAdd(Field.LABELS, "bulk")
+            .transition("Close");
+        edit.setRetryDelay(1);
+
+        BulkEdit.Report report = edit.execute();
+
+        assertTrue(report.toString(), report.isSuccess());
+        assertEquals(1, report.getRetries());
+        verify(restclient, times(1)).put(Utils.withPath(ISSUE + "TEST-1"), any(JSON.class));
+        assertEquals("Closed", status("TEST-1"));
+    }
+}
@@ -0,0 +1,141 @@
+package net.rcarz.jiraclient;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class DiffUpdateTest {
+
+    private RestClient restclient;
+    private Issue snapshot;
+
+    private static JSONObject named(String id, String name) {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("name", name);
+        return json;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        restclient = Utils.getTestRestClient();
+
+        JSONObject json = Utils.getTestIssue("TEST-1", "2016-01-01T10:00:00.000+0000", "summary");
+        JSONObject fields = json.getJSONObject("fields");
+        JSONObject project = named("10000", "Test");
+        project.put("key", "TEST");
+        fields.put(Field.PROJECT, project);
+        fields.put(Field.ISSUE_TYPE, named("3", "Task"));
+        fields.put(Field.PRIORITY, named("3", "Major"));
+        fields.put(Field.DUE_DATE, "2016-03-04");
+        fields.put(Field.LABELS, JSONArray.fromObject("[\"a\",\"b\"]"));
+        fields.put(Field.COMPONENTS, JSONArray.fromObject("[{\"id\":\"1\",\"name\":\"Core\"}]"));
+        fields.put("customfield_1", 5);
+        fields.put(Field.DESCRIPTION, JSONNull.getInstance());
+
+        JSONObject editmeta = JSONObject.fromObject("{" +
+            "\"summary\":{\"schema\":{\"type\":\"string\"}}," +
+            "\"description\":{\"schema\":{\"type\":\"string\"}}," +
+            "\"priority\":{\"schema\":{\"type\":\"priority\"}}," +
+            "\"duedate\":{\"schema\":{\"type\":\"date\"}}," +
+            "\"labels\":{\"schema\":{\"type\":\"array\",\"items\":\"string\"}}," +
+            "\"components\":{\"schema\":{\"type\":\"array\",\"items\":\"component\"}}," +
+            "\"customfield_1\":{\"schema\":{\"type\":\"number\"}}," +
+            "\"environment\":{\"schema\":{\"type\":\"string\"}}}");
+        JSONObject meta = new JSONObject();
+        meta.put("fields", editmeta);
+
+        doReturn(meta).when(restclient).get(Utils.withPath(Resource.getBaseUri() + "issue/TEST-1/editmeta"));
+        doReturn(null).when(restclient).put(any(URI.class), any(JSON.class));
+
+        snapshot = new Issue(restclient, json);
+    }
+
+    private Map<String, Object> unchanged() {
+        Map<String, Object> desired = new LinkedHashMap<String, Object>();
+        desired.put(Field.SUMMARY, "summary");
+        desired.put(Field.DESCRIPTION, null);
+        desired.put(Field.PRIORITY, "Major");
+        desired.put(Field.DUE_DATE, "2016-03-04");
+        desired.put(Field.LABELS, Arrays.asList("b", "a"));
+        desired.put(Field.COMPONENTS, Arrays.asList(Field.valueById("1")));
+        desired.put("customfield_1", 5.0);
+        return desired;
+    }
+
+    @Test
+    public void testNothingChangedSkipsWrite() throws Exception {
+        DiffUpdate update = new DiffUpdate(restclient);
+        DiffUpdate.Diff diff = update.update(snapshot, unchanged());
+
+        assertTrue(diff.toString(), diff.isEmpty());
+        assertEquals(7, diff.getUnchanged().size());
+        verify(restclient, never()).put(any(URI.class), any(JSON.class));
+        assertEquals(1, update.getSkipped());
+        assertEquals(0, update.getUpdated());
+        assertEquals(7, update.getFieldsUnchanged());
+    }
+
+    @Test
+    public void testOnlyChangedFieldsAreWritten() throws Exception {
+        Map<String, Object> desired = unchanged();
+        desired.put(Field.PRIORITY, Field.valueById("2"));
+        desired.put(Field.LABELS, Arrays.asList("a", "c"));
+        desired.put(Field.COMPONENTS, Arrays.asList("UI"));
+        desired.put("environment", "prod");
+
+        DiffUpdate update = new DiffUpdate(restclient);
+        update.update(snapshot, desired);
+        update.update(snapshot, unchanged());
+
+        ArgumentCaptor<JSON> posted = ArgumentCaptor.forClass(JSON.class);
+        verify(restclient, times(1)).put(any(URI.class), posted.capture());
+        verify(restclient, times(1)).get(any(URI.class));
+        assertEquals(1, update.getUpdated());
+        assertEquals(1, update.getSkipped());
+        assertEquals(4, update.getFieldsWritten());
+
+        JSONObject req = (JSONObject)posted.getValue();
+        JSONObject fields = req.getJSONObject("fields");
+        assertEquals(2, fields.size());
+        assertEquals("prod", fields.get("environment"));
+        assertTrue(fields.getString(Field.PRIORITY).contains("\"id\":\"2\""));
+
+        JSONArray labels = req.getJSONObject("update").getJSONArray(Field.LABELS);
+        assertEquals("[{\"add\":\"c\"},{\"remove\":\"b\"}]", labels.toString());
+
+        JSONArray components = req.getJSONObject("update").getJSONArray(Field.COMPONENTS);
+        assertEquals("UI", components.getJSONObject(0).getJSONObject("add").get("name"));
+        assertEquals("Core", components.getJSONObject(1).getJSONObject("remove").get("name"));
+    }
+
+    @Test
+    public void testFieldsMissingFromSnapshotAreWritten() throws Exception {
+        Map<String, Object> desired = new LinkedHashMap<String, Object>();
+        desired.put("environment", null);
+
+        DiffUpdate.Diff diff = new DiffUpdate(restclient).diff(snapshot, desired);
+
+        assertFalse(diff.isEmpty());
+        assertTrue(diff.getFields().containsKey("environment"));
+        verify(restclient, never()).put(any(URI.class), any(JSON.class));
+    }
+}
@@ -0,0 +1,97 @@
+package net.rcarz.jiraclient;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FieldSerializerTest {
+
+    private static final JSONObject META = JSONObject.fromObject("{" +
+        "\"summary\":{\"name\":\"Summary\",\"schema\":{\"type\":\"string\"}}," +
+        "\"duedate\":{\"name\":\"Due\",\"schema\":{\"type\":\"date\"}}," +
+        "\"customfield_1\":{\"name\":\"When\",\"schema\":{\"type\":\"datetime\"}}," +
+        "\"priority\":{\"name\":\"Priority\",\"schema\":{\"type\":\"priority\"}}," +
+        "\"project\":{\"name\":\"Project\",\"schema\":{\"type\":\"project\"}}," +
+        "\"labels\":{\"name\":\"Labels\",\"schema\":{\"type\":\"array\",\"items\":\"string\"}}," +
+        "\"components\":{\"name\":\"Components\",\"schema\":{\"type\":\"array\",\"items\":\"component\"}}," +
+        "\"customfield_2\":{\"name\":\"Choices\",\"schema\":{\"type\":\"array\",\"items\":\"string\"," +
+            "\"custom\":\"com.atlassian.jira.plugin.system.customfieldtypes:multiselect\"}}," +
+        "\"customfield_3\":{\"name\":\"Points\",\"schema\":{\"type\":\"number\"}}," +
+        "\"broken\":{\"name\":\"Broken\"}}");
+
+    private static void assertSame(String name, Object value) throws JiraException {
+        assertEquals(name, Field.toJson(name, value, META),
+            FieldSerializer.compile(META).toJson(name, value));
+    }
+
+    @Test
+    public void testMatchesFieldToJson() throws Exception {
+        Calendar cal = new GregorianCalendar(2016, Calendar.MARCH, 4, 5, 6, 7);
+
+        assertSame("summary", "hello");
+        assertSame("summary", null);
+        assertSame("duedate", "2016-03-04");
+        assertSame("duedate", cal.getTime());
+        assertSame("customfield_1", new Timestamp(cal.getTimeInMillis()));
+        assertSame("priority", "Major");
+        assertSame("priority", Field.valueById("3"));
+        assertSame("project", "TEST");
+        assertSame("labels", Arrays.asList("a", "b"));
+        assertSame("components", Arrays.asList(new Field.Operation("add", "Core")));
+        assertSame("customfield_2", Arrays.asList("x"));
+        assertSame("customfield_3", 5);
+        assertSame("customfield_3", null);
+    }
+
+    @Test
+    public void testEncodings() throws Exception {
+        FieldSerializer serializer = FieldSerializer.compile(META);
+
+        assertEquals("2016-03-04", serializer.toJson("duedate", "2016-03-04"));
+        assertEquals(JSONNull.getInstance(), serializer.toJson("duedate", null));
+        assertEquals("{\"name\":\"Major\"}", serializer.toJson("priority", "Major"));
+        assertEquals("{\"key\":\"TEST\"}", serializer.toJson("project", "TEST"));
+
+        JSONArray components = (JSONArray)serializer.toJson("components",
+            Arrays.asList(new Field.Operation("add", "Core")));
+        assertEquals("Core", components.getJSONObject(0).getJSONObject("add").get("name"));
+
+        JSONArray choices = (JSONArray)serializer.toJson("customfield_2", Arrays.asList("x"));
+        assertEquals("x", choices.getJSONObject(0).get("value"));
+    }
+
+    @Test
+    public void testBadFieldsFailWhenWritten() throws Exception {
+        FieldSerializer serializer = FieldSerializer.compile(META);
+
+        assertTrue(serializer.contains("broken"));
+        assertFalse(serializer.contains("missing"));
+
+        for (String name : Arrays.asList("broken", "missing")) {
+            try {
+                serializer.toJson(name, "x");
+                fail("expected JiraException for " + name);
+            } catch (JiraException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains(name));
+            }
+        }
+
+        try {
+            serializer.toJson("customfield_3", "five");
+            fail("expected JiraException");
+        } catch (JiraException ex) {
+            assertEquals("Field 'customfield_3' expects a Numeric value", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package net.rcarz.jiraclient;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class HydratedIssueTest {
+
+    private static final String ISSUE = Resource.getBaseUri() + "issue/TEST-1";
+
+    private final Map<String, JSON> responses = new HashMap<String, JSON>();
+    private RestClient restclient;
+
+    /**
+     * Answers a GET with the response for its path.
+     */
+    private final Answer<JSON> byPath = new Answer<JSON>() {
+        public JSON answer(InvocationOnMock invocation) throws Throwable {
+            JSON json = responses.get(((URI)invocation.getArguments()[0]).getPath());
+
+            if (json == null)
+                throw new RestException("Not Found", 404, "", null);
+
+            return json;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        responses.put(ISSUE, Utils.getTestIssue("TEST-1", "2016-01-01T10:00:00.000+0000", "summary"));
+        responses.put(ISSUE + "/transitions", JSONObject.fromObject(
+            "{\"transitions\":[{\"id\":\"21\",\"name\":\"Start\",\"to\":{\"id\":\"3\",\"name\":\"In Progress\"}}]}"));
+        responses.put(ISSUE + "/worklog", JSONObject.fromObject(
+            "{\"worklogs\":[{\"id\":\"1\",\"comment\":\"done\",\"timeSpentSeconds\":60}]}"));
+        responses.put(ISSUE + "/remotelink", JSONArray.fromObject(
+            "[{\"id\":1,\"object\":{\"url\":\"http://example.com\",\"title\":\"Example\"}}]"));
+        responses.put(ISSUE + "/votes", JSONObject.fromObject(
+            "{\"votes\":2,\"hasVoted\":true}"));
+        responses.put(ISSUE + "/watchers", JSONObject.fromObject(
+            "{\"watchCount\":1,\"isWatching\":false,\"watchers\":[]}"));
+
+        restclient = Utils.getTestRestClient();
+        doAnswer(byPath).when(restclient).get(any(URI.class));
+    }
+
+    @Test
+    public void testLoadsRequestedParts() throws Exception {
+        HydratedIssue hydrated = HydratedIssue.get(restclient, "TEST-1", HydratedIssue.DEFAULT_TIMEOUT,
+            HydratedIssue.Part.WORKLOGS, HydratedIssue.Part.REMOTE_LINKS,
+            HydratedIssue.Part.TRANSITIONS, HydratedIssue.Part.VOTES, HydratedIssue.Part.WATCHES);
+
+        assertEquals("summary", hydrated.getIssue().getSummary());
+        assertEquals(1, hydrated.getWorkLogs().size());
+        assertEquals(1, hydrated.getRemoteLinks().size());
+        assertEquals("Start", hydrated.getTransitions().get(0).getName());
+        assertEquals(2, hydrated.getVotes().getVotes());
+        assertEquals(1, hydrated.getWatches().getWatchCount());
+        verify(restclient, times(6)).get(any(URI.class));
+    }
+
+    @Test
+    public void testUnrequestedPartsAreNotFetched() throws Exception {
+        HydratedIssue hydrated = HydratedIssue.get(restclient, "TEST-1", HydratedIssue.DEFAULT_TIMEOUT,
+            HydratedIssue.Part.VOTES);
+
+        assertTrue(hydrated.has(HydratedIssue.Part.VOTES));
+        assertFalse(hydrated.has(HydratedIssue.Part.WORKLOGS));
+        assertNull(hydrated.getWorkLogs());
+        assertNull(hydrated.getTransitions());
+        verify(restclient, times(2)).get(any(URI.class));
+    }
+
+    @Test
+    public void testPartsAreFetchedConcurrently() throws Exception {
+        doAnswer(new Utils.Overlap(byPath, 200)).when(restclient).get(any(URI.class));
+
+        long start = System.currentTimeMillis();
+        HydratedIssue.get(restclient, "TEST-1", HydratedIssue.DEFAULT_TIMEOUT,
+            HydratedIssue.Part.values());
+        long elapsed = System.currentTimeMillis() - start;
+
+        /* six sequential reads would take at least 1200ms */
+        assertTrue("took " + elapsed + "ms", elapsed < 1000);
+    }
+
+    @Test
+    public void testFailedPartFailsTheFetch() throws Exception {
+        responses.remove(ISSUE + "/votes");
+
+        try {
+            HydratedIssue.get(restclient, "TEST-1", HydratedIssue.DEFAULT_TIMEOUT,
+                HydratedIssue.Part.WORKLOGS, HydratedIssue.Part.VOTES);
+            fail("expected JiraException");
+        } catch (JiraException ex) {
+            assertEquals("Failed to retrieve votes for issue TEST-1", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testDeadlineIsShared() throws Exception {
+        doAnswer(new Utils.Overlap(byPath, 5000)).when(restclient).get(any(URI.class));
+
+        long start = System.currentTimeMillis();
+
+        try {
+            HydratedIssue.get(restclient, "TEST-1", 200, HydratedIssue.Part.TRANSITIONS);
+            fail("expected JiraException");
+        } catch (JiraException ex) {
+            assertEquals("Timed out retrieving issue TEST-1", ex.getMessage());
+        }
+
+        assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+}
@@ -0,0 +1,188 @@
+package net.rcarz.jiraclient;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class IssueGetManyTest {
+
+    private static final String SEARCH = Resource.getBaseUri() + "search";
+
+    private final Map<String, JSONObject> issues = new LinkedHashMap<String, JSONObject>();
+    private RestClient restclient;
+
+    /**
+     * Answers a key-in search, sent as a GET or a POST, in pages of at most
+     * 50. Like JIRA, a key that doesn't exist fails the whole search unless
+     * validateQuery is false.
+     */
+    private final Answer<JSON> search = new Answer<JSON>() {
+        public JSON answer(InvocationOnMock invocation) throws Throwable {
+            Object[] args = invocation.getArguments();
+            Map<String, String> params = new LinkedHashMap<String, String>();
+
+            if (args.length > 1) {
+                JSONObject body = (JSONObject)args[1];
+                for (Object k : body.keySet())
+                    params.put((String)k, body.getString((String)k));
+            } else
+                params = Utils.getQueryParams((URI)args[0]);
+
+            String jql = params.get("jql");
+            List<String> keys = new ArrayList<String>();
+
+            for (String k : jql.substring(jql.indexOf('(') + 1, jql.indexOf(')')).split(","))
+                keys.add(k.trim().replace("\"", ""));
+
+            if (!"false".equals(params.get("validateQuery"))) {
+                for (String k : keys) {
+                    if (!issues.containsKey(k))
+                        throw new RestException("Bad Request", 400, "An issue with key '" + k +
+                            "' does not exist for field 'key'.", null);
+                }
+            }
+
+            List<JSONObject> matches = new ArrayList<JSONObject>();
+
+            for (JSONObject json : issues.values()) {
+                if (keys.contains(json.getString("key")))
+                    matches.add(json);
+            }
+
+            int startAt = params.containsKey("startAt") ? Integer.parseInt(params.get("startAt")) : 0;
+            int max = params.containsKey("maxResults") ? Math.min(50, Integer.parseInt(params.get("maxResults"))) : 50;
+            JSONArray page = new JSONArray();
+
+            for (int i = startAt; i < matches.size() && page.size() < max; i++)
+                page.add(matches.get(i));
+
+            JSONObject result = new JSONObject();
+            result.put("startAt", startAt);
+            result.put("maxResults", max);
+            result.put("total", matches.size());
+            result.put("issues", page);
+            return result;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        addIssues(1, 300);
+
+        restclient = Utils.getTestRestClient();
+        doAnswer(search).when(restclient).get(Utils.withPath(SEARCH));
+        doAnswer(search).when(restclient).post(Utils.withPath(SEARCH), any(JSON.class));
+    }
+
+    private void addIssues(int from, int to) {
+        for (int i = from; i <= to; i++)
+            issues.put("TEST-" + i, Utils.getTestIssue("TEST-" + i, "2016-01-01T10:00:00.000+0000", "issue " + i));
+    }
+
+    private List<URI> searchGets() throws Exception {
+        ArgumentCaptor<URI> uris = ArgumentCaptor.forClass(URI.class);
+        verify(restclient, atLeast(0)).get(uris.capture());
+        return uris.getAllValues();
+    }
+
+    private List<JSON> searchPosts() throws Exception {
+        ArgumentCaptor<JSON> bodies = ArgumentCaptor.forClass(JSON.class);
+        verify(restclient, atLeast(0)).post(Utils.withPath(SEARCH), bodies.capture());
+        return bodies.getAllValues();
+    }
+
+    @Test
+    public void testShortSearchUsesGet() throws Exception {
+        List<Issue> found = Issue.get(restclient, Arrays.asList("TEST-2", "TEST-1", "NOPE-1"), null);
+
+        assertEquals(2, found.size());
+        assertEquals("TEST-2", found.get(0).getKey());
+        assertEquals("TEST-1", found.get(1).getKey());
+        assertEquals(1, searchGets().size());
+        verify(restclient, never()).post(any(URI.class), any(JSON.class));
+        assertEquals("false", Utils.getQueryParams(searchGets().get(0)).get("validateQuery"));
+    }
+
+    @Test
+    public void testValidatedSearchFailsOnMissingKey() throws Exception {
+        try {
+            Issue.search(restclient, "key in (TEST-1, NOPE-1)", null, null, null, null);
+            fail("expected the search to fail");
+        } catch (RuntimeException ex) {
+            /* the first page is fetched through the result iterator */
+            assertTrue(ex.getCause() instanceof JiraException);
+        }
+    }
+
+    @Test
+    public void testLongSearchIsPosted() throws Exception {
+        List<String> keys = new ArrayList<String>();
+
+        for (int i = 1; i <= 300; i++)
+            keys.add("TEST-" + i);
+
+        Collections.reverse(keys);
+        List<Issue> found = Issue.get(restclient, keys, "summary,labels");
+
+        assertEquals(300, found.size());
+
+        for (int i = 0; i < keys.size(); i++)
+            assertEquals(keys.get(i), found.get(i).getKey());
+
+        /* the server caps pages at 50 */
+        assertEquals(0, searchGets().size());
+        assertEquals(6, searchPosts().size());
+        verify(restclient, times(6)).post(any(URI.class), any(JSON.class));
+
+        JSONObject body = (JSONObject)searchPosts().get(1);
+        assertTrue(body.getString("jql").startsWith("key in (\"TEST-300\","));
+        assertEquals(50, body.getInt("startAt"));
+        assertEquals(300, body.getInt("maxResults"));
+        assertEquals("[\"summary\",\"labels\"]", body.getJSONArray("fields").toString());
+        assertTrue(!body.containsKey("expand"));
+        assertEquals(false, body.get("validateQuery"));
+    }
+
+    @Test
+    public void testLaterChunksFollowServerPageSize() throws Exception {
+        addIssues(301, 1100);
+
+        List<String> keys = new ArrayList<String>();
+
+        for (int i = 1; i <= 1100; i++)
+            keys.add("TEST-" + i);
+
+        List<Issue> found = Issue.get(restclient, keys, "summary");
+
+        assertEquals(1100, found.size());
+
+        /* 20 pages for the first 1000 keys, then 2 searches of 50 keys short enough to GET */
+        assertEquals(20, searchPosts().size());
+        List<URI> gets = searchGets();
+        assertEquals(2, gets.size());
+        assertEquals("50", Utils.getQueryParams(gets.get(gets.size() - 1)).get("maxResults"));
+    }
+}
@@ -0,0 +1,214 @@
+package net.rcarz.jiraclient;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+public class IssueLoaderTest {
+
+    private static final String SEARCH = Resource.getBaseUri() + "search";
+    private static final String ISSUE = Resource.getBaseUri() + "issue/";
+
+    private final Map<String, JSONObject> issues = new HashMap<String, JSONObject>();
+    private RestClient restclient;
+    private IssueLoader loader;
+
+    /**
+     * Answers key-in searches and single issue GETs from the fixtures.
+     */
+    private final Answer<JSON> server = new Answer<JSON>() {
+        public JSON answer(InvocationOnMock invocation) throws Throwable {
+            URI uri = (URI)invocation.getArguments()[0];
+
+            if (uri.getPath().equals(SEARCH)) {
+                String jql = Utils.getQueryParams(uri).get("jql");
+                JSONArray found = new JSONArray();
+
+                for (String key : jql.substring(jql.indexOf('(') + 1, jql.indexOf(')')).split(",")) {
+                    JSONObject json = issues.get(key.replace("\"", ""));
+
+                    if (json != null)
+                        found.add(json);
+                }
+
+                JSONObject result = new JSONObject();
+                result.put("startAt", 0);
+                result.put("maxResults", found.size());
+                result.put("total", found.size());
+                result.put("issues", found);
+                return result;
+            }
+
+            JSONObject json = issues.get(uri.getPath().substring(ISSUE.length()));
+
+            if (json == null)
+                throw new RestException("Not Found", 404, "", null);
+
+            return json;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 1; i <= 20; i++)
+            issues.put("TEST-" + i, Utils.getTestIssue("TEST-" + i, "2016-01-01T10:00:00.000+0000", "issue " + i));
+
+        restclient = Utils.getTestRestClient();
+        doAnswer(server).when(restclient).get(any(URI.class));
+    }
+
+    @After
+    public void tearDown() {
+        if (loader != null)
+            loader.close();
+    }
+
+    private List<URI> searches() throws Exception {
+        ArgumentCaptor<URI> uris = ArgumentCaptor.forClass(URI.class);
+        verify(restclient, atLeast(0)).get(uris.capture());
+
+        List<URI> result = new ArrayList<URI>();
+
+        for (URI uri : uris.getAllValues()) {
+            if (uri.getPath().equals(SEARCH))
+                result.add(uri);
+        }
+
+        return result;
+    }
+
+    @Test
+    public void testLookupsInWindowShareOneSearch() throws Exception {
+        loader = new IssueLoader(restclient, 100, 50, 2);
+        List<Future<Issue>> futures = new ArrayList<Future<Issue>>();
+
+        for (int i = 1; i <= 20; i++)
+            futures.add(loader.load("TEST-" + i, i % 2 == 0 ? "summary" : "summary,labels"));
+
+        for (int i = 1; i <= 20; i++)
+            assertEquals("issue " + i, futures.get(i - 1).get(5, TimeUnit.SECONDS).getSummary());
+
+        List<URI> searches = searches();
+        assertEquals(1, searches.size());
+        assertEquals("summary,labels", Utils.getQueryParams(searches.get(0)).get("fields"));
+        assertEquals(1, loader.getBatches());
+        assertEquals(20, loader.getRequested());
+    }
+
+    @Test
+    public void testFullBatchIsSentWithoutWaiting() throws Exception {
+        loader = new IssueLoader(restclient, 60000, 3, 1);
+
+        Future<Issue> a = loader.load("TEST-1");
+        Future<Issue> b = loader.load("TEST-2");
+        Future<Issue> c = loader.load("TEST-1");
+
+        assertEquals("TEST-1", a.get(5, TimeUnit.SECONDS).getKey());
+        assertEquals("TEST-2", b.get(5, TimeUnit.SECONDS).getKey());
+        assertNotSame(a.get(), c.get());
+        assertEquals("key in (\"TEST-1\",\"TEST-2\")", Utils.getQueryParams(searches().get(0)).get("jql"));
+    }
+
+    @Test
+    public void testMissingKeysFailSeparately() throws Exception {
+        loader = new IssueLoader(restclient, 20, 50, 1);
+
+        Future<Issue> found = loader.load("TEST-1");
+        Future<Issue> missing = loader.load("GONE-1");
+
+        assertEquals("issue 1", found.get(5, TimeUnit.SECONDS).getSummary());
+
+        try {
+            missing.get(5, TimeUnit.SECONDS);
+            fail("expected ExecutionException");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof JiraException);
+        }
+
+        assertEquals(1, loader.getFallbacks());
+    }
+
+    @Test
+    public void testFailedSearchFallsBackPerKey() throws Exception {
+        doThrow(new RestException("Service Unavailable", 503, "", null))
+            .when(restclient).get(Utils.withPath(SEARCH));
+        loader = new IssueLoader(restclient, 20, 50, 1);
+
+        Future<Issue> found = loader.load("TEST-1");
+        Future<Issue> missing = loader.load("GONE-1");
+
+        assertEquals("issue 1", found.get(5, TimeUnit.SECONDS).getSummary());
+
+        try {
+            missing.get(5, TimeUnit.SECONDS);
+            fail("expected ExecutionException");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof JiraException);
+            assertTrue(ex.getCause().getMessage().contains("GONE-1"));
+            assertTrue(!ex.getCause().getMessage().contains("TEST-1"));
+        }
+
+        assertEquals(2, loader.getFallbacks());
+    }
+
+    @Test
+    public void testScopeCachesByKey() throws Exception {
+        loader = new IssueLoader(restclient, 20, 50, 1);
+        IssueLoader.Scope scope = loader.newScope();
+
+        Issue first = scope.get("TEST-5");
+        assertSame(first, scope.get("TEST-5"));
+        assertEquals(1, searches().size());
+
+        scope.clear("TEST-5");
+        assertNotSame(first, scope.get("TEST-5"));
+        assertEquals(2, searches().size());
+    }
+
+    @Test
+    public void testClosedLoaderRejectsLookups() throws Exception {
+        loader = new IssueLoader(restclient);
+        loader.close();
+
+        try {
+            loader.get("TEST-1");
+            fail("expected JiraException");
+        } catch (JiraException ex) {
+            assertEquals("Issue loader is closed", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testUnionFields() {
+        assertEquals("*navigable,comment",
+            IssueLoader.unionFields(Arrays.asList(null, "comment", " comment,")));
+        assertEquals("summary", IssueLoader.unionFields(Arrays.asList("summary")));
+    }
+}
@@ -0,0 +1,62 @@
+package net.rcarz.jiraclient;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ResourceFactoryTest {
+
+    public static class Assignee extends User {
+        Assignee(RestClient restclient, JSONObject json) {
+            super(restclient, json);
+        }
+    }
+
+    private static JSONObject user(String name) {
+        JSONObject json = new JSONObject();
+        json.put("name", name);
+        json.put("displayName", name.toUpperCase());
+        return json;
+    }
+
+    @Test
+    public void testBuiltInFactories() {
+        JSONArray users = new JSONArray();
+        users.add(user("joe"));
+        users.add(user("ann"));
+
+        List<User> result = Field.getResourceArray(User.class, users, null);
+
+        assertEquals(2, result.size());
+        assertEquals("ann", result.get(1).getName());
+        assertEquals(User.class, result.get(1).getClass());
+    }
+
+    @Test
+    public void testRegisteredSubclass() {
+        assertNull(Field.getResource(Assignee.class, user("joe"), null));
+
+        Field.registerResourceFactory(Assignee.class, new ResourceFactory<Assignee>() {
+            public Assignee create(RestClient restclient, JSONObject json) {
+                return new Assignee(restclient, json);
+            }
+        });
+
+        Assignee assignee = Field.getResource(Assignee.class, user("joe"), null);
+        assertEquals("JOE", assignee.getDisplayName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCommentFactoryIsRejected() {
+        Field.registerResourceFactory(Comment.class, new ResourceFactory<Comment>() {
+            public Comment create(RestClient restclient, JSONObject json) {
+                return new Comment(restclient, json, null);
+            }
+        });
+    }
+}
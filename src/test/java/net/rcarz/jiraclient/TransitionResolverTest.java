@@ -0,0 +1,243 @@
+package net.rcarz.jiraclient;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class TransitionResolverTest {
+
+    private RestClient restclient;
+    private final Map<String, JSONObject> statuses = new HashMap<String, JSONObject>();
+    private JSONArray transitions;
+
+    private static JSONObject named(String id, String name) {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("name", name);
+        return json;
+    }
+
+    private static JSONArray transitions(String closeId) {
+        JSONObject close = named(closeId, "Close");
+        close.put("to", named("6", "Closed"));
+        close.put("fields", new JSONObject());
+
+        JSONArray result = new JSONArray();
+        result.add(close);
+        return result;
+    }
+
+    private static String keyOf(InvocationOnMock invocation) {
+        String path = ((URI)invocation.getArguments()[0]).getPath();
+        return path.substring((Resource.getBaseUri() + "issue/").length()).split("/")[0];
+    }
+
+    private JSONObject current(String key) {
+        JSONObject project = named("10000", "Test");
+        project.put("key", "TEST");
+
+        JSONObject json = Utils.getTestIssue(key, "2016-01-01T10:00:00.000+0000", "issue");
+        JSONObject fields = json.getJSONObject("fields");
+        fields.put(Field.PROJECT, project);
+        fields.put(Field.ISSUE_TYPE, named("3", "Task"));
+        fields.put(Field.STATUS, statuses.get(key));
+        return json;
+    }
+
+    /**
+     * Answers an issue GET with the issue's current status, and its
+     * transitions when expanded.
+     */
+    private final Answer<JSON> get = new Answer<JSON>() {
+        public JSON answer(InvocationOnMock invocation) throws Throwable {
+            JSONObject json = current(keyOf(invocation));
+            String expand = Utils.getQueryParams((URI)invocation.getArguments()[0]).get("expand");
+
+            if (expand != null && expand.startsWith("transitions"))
+                json.put("transitions", transitions);
+
+            return json;
+        }
+    };
+
+    /**
+     * Moves an issue to the target of a transition, rejecting unknown ids
+     * like the server does.
+     */
+    private final Answer<JSON> post = new Answer<JSON>() {
+        public JSON answer(InvocationOnMock invocation) throws Throwable {
+            JSONObject payload = (JSONObject)invocation.getArguments()[1];
+            String id = payload.getJSONObject("transition").getString("id");
+
+            for (Object t : transitions) {
+                if (((JSONObject)t).getString("id").equals(id)) {
+                    statuses.put(keyOf(invocation), ((JSONObject)t).getJSONObject("to"));
+                    return null;
+                }
+            }
+
+            throw new RestException("Bad Request", 400, "invalid transition " + id, null);
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        restclient = Utils.getTestRestClient();
+
+        for (int i = 1; i <= 3; i++) {
+            String key = "TEST-" + i;
+            statuses.put(key, named("1", "Open"));
+            doAnswer(get).when(restclient).get(Utils.withPath(Resource.getBaseUri() + "issue/" + key));
+            doAnswer(post).when(restclient).post(
+                Utils.withPath(Resource.getBaseUri() + "issue/" + key + "/transitions"), any(JSON.class));
+        }
+
+        transitions = transitions("31");
+    }
+
+    private Issue issue(String key) {
+        return new Issue(restclient, current(key));
+    }
+
+    private List<URI> requests(boolean gets) throws Exception {
+        ArgumentCaptor<URI> uris = ArgumentCaptor.forClass(URI.class);
+
+        if (gets)
+            verify(restclient, atLeast(0)).get(uris.capture());
+        else {
+            verify(restclient, atLeast(0)).post(uris.capture(), any(JSON.class));
+            verify(restclient, atLeast(0)).put(uris.capture(), any(JSON.class));
+        }
+
+        return uris.getAllValues();
+    }
+
+    private int gets() throws Exception {
+        return requests(true).size();
+    }
+
+    private int writes() throws Exception {
+        return requests(false).size();
+    }
+
+    private String status(String key) {
+        return statuses.get(key).getString("name");
+    }
+
+    @Test
+    public void testLaterTransitionsUseCachedState() throws Exception {
+        TransitionResolver resolver = new TransitionResolver(restclient);
+
+        issue("TEST-1").transition(resolver).execute("Close");
+        assertEquals(1, gets());
+        assertEquals(1, writes());
+
+        /* the cached state needs nothing but the POST */
+        issue("TEST-2").transition(resolver).execute(31);
+        assertEquals(1, gets());
+        assertEquals(2, writes());
+        verify(restclient, times(1)).post(
+            Utils.withPath(Resource.getBaseUri() + "issue/TEST-2/transitions"), any(JSON.class));
+
+        assertEquals(1, resolver.size());
+        assertEquals("Closed", status("TEST-1"));
+        assertEquals("Closed", status("TEST-2"));
+    }
+
+    @Test
+    public void testRejectedTransitionInvalidatesEntry() throws Exception {
+        TransitionResolver resolver = new TransitionResolver(restclient);
+        assertEquals("31", resolver.resolve(issue("TEST-1"), "Close").getId());
+
+        /* the workflow was republished with new transition ids */
+        transitions = transitions("41");
+        resolver.transition(issue("TEST-2"), "Close", new HashMap<String, Object>());
+
+        assertEquals(2, gets());
+        assertEquals(2, writes());
+        assertEquals("41", resolver.resolve(issue("TEST-3"), "Close").getId());
+        assertEquals(2, gets());
+        assertEquals("Closed", status("TEST-2"));
+    }
+
+    @Test
+    public void testUnknownTransition() throws Exception {
+        TransitionResolver resolver = new TransitionResolver(restclient);
+
+        try {
+            resolver.transition(issue("TEST-1"), "Reopen", new HashMap<String, Object>());
+            fail("expected JiraException");
+        } catch (JiraException ex) {
+            assertEquals(0, writes());
+        }
+    }
+
+    @Test
+    public void testStaleIssueResolvesAgainstCurrentState() throws Exception {
+        TransitionResolver resolver = new TransitionResolver(restclient);
+        Issue stale = issue("TEST-1");
+
+        resolver.resolve(issue("TEST-2"), "Close");
+        issue("TEST-1").transition(resolver).execute("Close");
+
+        JSONObject reopen = named("51", "Reopen");
+        reopen.put("to", named("1", "Open"));
+        reopen.put("fields", new JSONObject());
+        transitions = new JSONArray();
+        transitions.add(reopen);
+
+        /* the snapshot still says Open, whose entry only knows Close */
+        resolver.transition(stale, "Reopen", new HashMap<String, Object>());
+
+        assertEquals("Open", status("TEST-1"));
+        assertEquals(2, resolver.size());
+    }
+
+    @Test
+    public void testIssueWithoutStateCostsAGet() throws Exception {
+        TransitionResolver resolver = new TransitionResolver(restclient);
+        resolver.resolve(issue("TEST-1"), "Close");
+
+        JSONObject json = new JSONObject();
+        json.put("key", "TEST-2");
+        json.put("fields", new JSONObject());
+        new Issue(restclient, json).transition(resolver).execute("Close");
+
+        assertEquals(2, gets());
+        assertEquals(1, writes());
+        assertEquals("Closed", status("TEST-2"));
+    }
+
+    @Test
+    public void testNamesAndIdsAreMatchedSeparately() throws Exception {
+        JSONObject shadow = named("41", "31");
+        shadow.put("to", named("7", "Shadowed"));
+        shadow.put("fields", new JSONObject());
+        transitions.add(0, shadow);
+        TransitionResolver resolver = new TransitionResolver(restclient);
+
+        issue("TEST-1").transition(resolver).execute(31);
+        issue("TEST-2").transition(resolver).execute("31");
+
+        assertEquals("Closed", status("TEST-1"));
+        assertEquals("Shadowed", status("TEST-2"));
+    }
+}
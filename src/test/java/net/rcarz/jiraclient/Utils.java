@@ -1,10 +1,109 @@
 package net.rcarz.jiraclient;
 
+import net.sf.json.JSON;
 import net.sf.json.JSONObject;
 import net.sf.json.JSONSerializer;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.mockito.ArgumentMatcher;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
 
 public class Utils {
 
+    /**
+     * Answers like another answer after a delay, recording how many calls
+     * were running at once.
+     */
+    public static class Overlap implements Answer<Object> {
+        private final Answer<?> answer;
+        private final long delay;
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger max = new AtomicInteger();
+
+        public Overlap(Answer<?> answer, long delay) {
+            this.answer = answer;
+            this.delay = delay;
+        }
+
+        public Object answer(InvocationOnMock invocation) throws Throwable {
+            int now = running.incrementAndGet();
+
+            synchronized (max) {
+                max.set(Math.max(max.get(), now));
+            }
+
+            try {
+                Thread.sleep(delay);
+                return answer.answer(invocation);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        public int getMax() {
+            return max.get();
+        }
+    }
+
+    /**
+     * Creates a REST client for http://jira.example.com that answers every
+     * request with 404 until stubbed. Only the methods taking a URI need
+     * stubbing, the others build a URI and call them.
+     */
+    public static RestClient getTestRestClient() throws Exception {
+        RestClient restclient = spy(new RestClient(null, URI.create("http://jira.example.com")));
+        RestException notFound = new RestException("Not Found", 404, "", null);
+
+        doThrow(notFound).when(restclient).get(any(URI.class));
+        doThrow(notFound).when(restclient).post(any(URI.class), any(JSON.class));
+        doThrow(notFound).when(restclient).put(any(URI.class), any(JSON.class));
+        return restclient;
+    }
+
+    /**
+     * Matches a URI by its path.
+     */
+    public static URI withPath(final String path) {
+        return argThat(new ArgumentMatcher<URI>() {
+            public boolean matches(Object arg) {
+                return arg instanceof URI && ((URI)arg).getPath().equals(path);
+            }
+        });
+    }
+
+    public static Map<String, String> getQueryParams(URI uri) {
+        Map<String, String> params = new HashMap<String, String>();
+
+        for (NameValuePair nvp : URLEncodedUtils.parse(uri, "UTF-8"))
+            params.put(nvp.getName(), nvp.getValue());
+
+        return params;
+    }
+
+    public static JSONObject getTestIssue(String key, String updated, String summary) {
+        JSONObject fields = new JSONObject();
+        fields.put(Field.UPDATED_DATE, updated);
+        fields.put(Field.SUMMARY, summary);
+
+        JSONObject json = new JSONObject();
+        json.put("id", key.substring(key.indexOf('-') + 1));
+        json.put("key", key);
+        json.put("self", "http://jira.example.com" + Resource.getBaseUri() + "issue/" + key);
+        json.put("fields", fields);
+        return json;
+    }
+
     public static JSONObject getTestIssue() {
         JSONObject jsonObject = (JSONObject) JSONSerializer.toJSON("{\n" +
         "  \"expand\": \"renderedFields,names,schema,transitions,operations,editmeta,changelog\",\n" +
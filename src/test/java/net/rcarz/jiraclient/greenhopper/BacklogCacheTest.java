@@ -0,0 +1,185 @@
+package net.rcarz.jiraclient.greenhopper;
+
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.RestClient;
+import net.rcarz.jiraclient.Utils;
+import net.sf.json.JSON;
+import net.sf.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class BacklogCacheTest {
+
+    private RestClient restclient;
+    private final Map<String, String> backlogs = new ConcurrentHashMap<String, String>();
+    private RapidView rv;
+    private BacklogCache cache;
+    private final List<BacklogDiff> seen = new ArrayList<BacklogDiff>();
+
+    @Before
+    public void setUp() throws Exception {
+        restclient = Utils.getTestRestClient();
+        doAnswer(new Answer<JSON>() {
+            public JSON answer(InvocationOnMock invocation) throws Throwable {
+                String id = Utils.getQueryParams((URI)invocation.getArguments()[0]).get("rapidViewId");
+                return JSONObject.fromObject(backlogs.get(id));
+            }
+        }).when(restclient).get(Utils.withPath(GreenHopperResource.RESOURCE_URI + "xboard/plan/backlog/data"));
+
+        JSONObject json = new JSONObject();
+        json.put("id", 7);
+        json.put("name", "Board");
+        rv = new RapidView(restclient, json);
+
+        cache = new BacklogCache();
+        cache.subscribe(new BacklogListener() {
+            public void backlogChanged(RapidView rv, BacklogDiff diff) {
+                seen.add(diff);
+            }
+        });
+    }
+
+    private void serve(String sprintState, String sprintIssues, int... ids) {
+        StringBuilder issues = new StringBuilder();
+
+        for (int id : ids) {
+            if (issues.length() > 0)
+                issues.append(",");
+
+            issues.append("{\"id\":").append(id).append(",\"key\":\"TEST-").append(id).append("\"}");
+        }
+
+        backlogs.put("7", "{" +
+            "\"issues\":[" + issues + "]," +
+            "\"sprints\":[{\"id\":1,\"name\":\"Sprint 1\",\"state\":\"" + sprintState + "\"," +
+            "\"issuesIds\":[" + sprintIssues + "]}]}");
+    }
+
+    private static String keys(List<SprintIssue> issues) {
+        StringBuilder sb = new StringBuilder();
+
+        for (SprintIssue issue : issues)
+            sb.append(sb.length() > 0 ? "," : "").append(issue.getKey());
+
+        return sb.toString();
+    }
+
+    @Test
+    public void testFirstRefreshAddsEverything() throws Exception {
+        serve("ACTIVE", "1", 1, 2, 3);
+
+        BacklogDiff diff = rv.refreshBacklogData(cache);
+
+        assertNull(diff.getPrevious());
+        assertEquals("TEST-1,TEST-2,TEST-3", keys(diff.getAddedIssues()));
+        assertEquals(1, diff.getAddedSprints().size());
+        assertEquals(1, seen.size());
+        assertSame(diff.getCurrent(), cache.get(restclient, rv));
+        verify(restclient, times(1)).get(any(URI.class));
+    }
+
+    @Test
+    public void testUnchangedPayloadIsNotDecoded() throws Exception {
+        serve("ACTIVE", "1", 1, 2, 3);
+        Backlog first = rv.refreshBacklogData(cache).getCurrent();
+
+        BacklogDiff diff = rv.refreshBacklogData(cache);
+
+        assertTrue(diff.isEmpty());
+        assertSame(first, diff.getCurrent());
+        assertEquals(1, seen.size());
+        assertEquals(1, cache.getUnchanged());
+    }
+
+    @Test
+    public void testDiffReportsOnlyWhatChanged() throws Exception {
+        serve("ACTIVE", "1", 1, 2, 3, 4, 5, 6);
+        rv.refreshBacklogData(cache);
+
+        serve("ACTIVE", "1,7", 1, 5, 2, 3, 4, 7);
+        BacklogDiff diff = rv.refreshBacklogData(cache);
+
+        assertEquals("TEST-7", keys(diff.getAddedIssues()));
+        assertEquals("TEST-6", keys(diff.getRemovedIssues()));
+        assertEquals("TEST-5", keys(diff.getRerankedIssues()));
+        assertEquals(1, diff.getChangedSprints().size());
+        assertTrue(diff.getAddedSprints().isEmpty());
+        assertEquals(2, seen.size());
+        assertSame(diff, seen.get(1));
+    }
+
+    @Test
+    public void testSprintStateChange() throws Exception {
+        serve("ACTIVE", "1", 1, 2);
+        rv.refreshBacklogData(cache);
+
+        serve("CLOSED", "1", 1, 2);
+        BacklogDiff diff = rv.refreshBacklogData(cache);
+
+        assertTrue(diff.getAddedIssues().isEmpty());
+        assertTrue(diff.getRerankedIssues().isEmpty());
+        assertTrue(diff.getChangedSprints().get(0).isClosed());
+    }
+
+    @Test
+    public void testListenersRunOutsideTheLock() throws Exception {
+        serve("ACTIVE", "1", 1);
+        backlogs.put("8", "{\"issues\":[],\"sprints\":[]}");
+
+        JSONObject json = new JSONObject();
+        json.put("id", 8);
+        json.put("name", "Other");
+        final RapidView other = new RapidView(restclient, json);
+        final boolean[] done = { false };
+
+        cache.subscribe(new BacklogListener() {
+            public void backlogChanged(RapidView changed, BacklogDiff diff) {
+                if (changed.getId() != 7)
+                    return;
+
+                /* refreshes from another thread must not wait for this listener */
+                Thread t = new Thread(new Runnable() {
+                    public void run() {
+                        try {
+                            cache.refresh(restclient, other);
+                            cache.refresh(restclient, rv);
+                            done[0] = true;
+                        } catch (JiraException ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    }
+                });
+                t.start();
+
+                try {
+                    t.join(5000);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        rv.refreshBacklogData(cache);
+
+        assertTrue(done[0]);
+        assertEquals(3, cache.getRefreshes());
+        assertEquals(1, cache.getUnchanged());
+    }
+}
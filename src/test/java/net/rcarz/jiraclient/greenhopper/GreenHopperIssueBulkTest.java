@@ -0,0 +1,204 @@
+package net.rcarz.jiraclient.greenhopper;
+
+import net.rcarz.jiraclient.Issue;
+import net.rcarz.jiraclient.Resource;
+import net.rcarz.jiraclient.RestClient;
+import net.rcarz.jiraclient.RestException;
+import net.rcarz.jiraclient.Utils;
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+
+public class GreenHopperIssueBulkTest {
+
+    private static final String SEARCH = Resource.getBaseUri() + "search";
+
+    private final Map<String, JSONObject> issues = new LinkedHashMap<String, JSONObject>();
+    private final Map<String, String> movedFrom = new HashMap<String, String>();
+    private RestClient restclient;
+
+    /**
+     * Answers a key-in search, sent as a GET or a POST, in pages of at most
+     * KEYS_PER_SEARCH. Like JIRA, a key that doesn't exist fails the whole
+     * search unless validateQuery is false, and a moved issue is found
+     * by its old key.
+     */
+    private final Answer<JSON> search = new Answer<JSON>() {
+        public JSON answer(InvocationOnMock invocation) throws Throwable {
+            Object[] args = invocation.getArguments();
+            Map<String, String> params = new LinkedHashMap<String, String>();
+
+            if (args.length > 1) {
+                JSONObject body = (JSONObject)args[1];
+                for (Object k : body.keySet())
+                    params.put((String)k, body.getString((String)k));
+            } else
+                params = Utils.getQueryParams((URI)args[0]);
+
+            String jql = params.get("jql");
+            List<String> keys = new ArrayList<String>();
+
+            for (String k : jql.substring(jql.indexOf('(') + 1, jql.indexOf(')')).split(","))
+                keys.add(k.trim().replace("\"", ""));
+
+            if (!"false".equals(params.get("validateQuery"))) {
+                for (String k : keys) {
+                    if (!issues.containsKey(k) && !movedFrom.containsValue(k))
+                        throw new RestException("Bad Request", 400, "An issue with key '" + k +
+                            "' does not exist for field 'key'.", null);
+                }
+            }
+
+            List<JSONObject> matches = new ArrayList<JSONObject>();
+
+            for (String k : issues.keySet()) {
+                if (keys.contains(k) || keys.contains(movedFrom.get(k)))
+                    matches.add(issues.get(k));
+            }
+
+            int max = GreenHopperIssue.KEYS_PER_SEARCH;
+            int startAt = params.containsKey("startAt") ? Integer.parseInt(params.get("startAt")) : 0;
+            JSONArray page = new JSONArray();
+
+            for (int i = startAt; i < matches.size() && page.size() < max; i++)
+                page.add(matches.get(i));
+
+            JSONObject result = new JSONObject();
+            result.put("startAt", startAt);
+            result.put("maxResults", max);
+            result.put("total", matches.size());
+            result.put("issues", page);
+            return result;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        restclient = Utils.getTestRestClient();
+        doAnswer(search).when(restclient).get(Utils.withPath(SEARCH));
+        doAnswer(search).when(restclient).post(Utils.withPath(SEARCH), any(JSON.class));
+    }
+
+    private void putIssue(String key, String summary) {
+        issues.put(key, Utils.getTestIssue(key, "2014-01-01T00:00:00.000+0000", summary));
+    }
+
+    private SprintIssue sprintIssue(String key) {
+        JSONObject json = new JSONObject();
+        json.put("id", Integer.parseInt(key.substring(key.indexOf('-') + 1)));
+        json.put("key", key);
+        return new SprintIssue(restclient, json);
+    }
+
+    private int searches() throws Exception {
+        ArgumentCaptor<URI> uris = ArgumentCaptor.forClass(URI.class);
+        verify(restclient, atLeast(0)).get(uris.capture());
+        verify(restclient, atLeast(0)).post(uris.capture(), any(JSON.class));
+        return uris.getAllValues().size();
+    }
+
+    @Test
+    public void testIssuesAreResolvedInChunks() throws Exception {
+        List<SprintIssue> issues = new ArrayList<SprintIssue>();
+
+        for (int i = 250; i > 0; i--) {
+            putIssue("TEST-" + i, "Issue " + i);
+            issues.add(sprintIssue("TEST-" + i));
+        }
+
+        List<Issue> result = GreenHopperIssue.getJiraIssues(restclient, issues, "summary");
+
+        assertEquals(3, searches());
+        assertEquals(250, result.size());
+
+        for (int i = 0; i < issues.size(); i++)
+            assertEquals(issues.get(i).getKey(), result.get(i).getKey());
+
+        assertEquals("Issue 250", result.get(0).getSummary());
+    }
+
+    @Test
+    public void testDuplicatesAndMissingIssues() throws Exception {
+        putIssue("TEST-1", "One");
+        putIssue("TEST-2", "Two");
+
+        List<SprintIssue> issues = new ArrayList<SprintIssue>();
+        issues.add(sprintIssue("TEST-2"));
+        issues.add(sprintIssue("TEST-9"));
+        issues.add(sprintIssue("TEST-1"));
+        issues.add(sprintIssue("TEST-2"));
+
+        List<Issue> result = GreenHopperIssue.getJiraIssues(restclient, issues, null);
+
+        assertEquals(1, searches());
+        assertEquals(4, result.size());
+        assertEquals("Two", result.get(0).getSummary());
+        assertNull(result.get(1));
+        assertEquals("One", result.get(2).getSummary());
+        assertSame(result.get(0), result.get(3));
+    }
+
+    @Test
+    public void testMissingKeyInEveryChunk() throws Exception {
+        List<SprintIssue> issues = new ArrayList<SprintIssue>();
+
+        for (int i = 1; i <= 250; i++) {
+            if (i % 100 != 50)
+                putIssue("TEST-" + i, "Issue " + i);
+
+            issues.add(sprintIssue("TEST-" + i));
+        }
+
+        /* the search rejects unknown keys like JIRA unless validateQuery=false */
+        List<Issue> result = GreenHopperIssue.getJiraIssues(restclient, issues, "summary");
+
+        assertEquals(250, result.size());
+
+        for (int i = 1; i <= 250; i++) {
+            if (i % 100 == 50)
+                assertNull(result.get(i - 1));
+            else
+                assertEquals("Issue " + i, result.get(i - 1).getSummary());
+        }
+    }
+
+    @Test
+    public void testMovedIssuesAreMatchedById() throws Exception {
+        putIssue("TEST-1", "One");
+        putIssue("OTHER-2", "Two");
+        movedFrom.put("OTHER-2", "TEST-2");
+
+        List<SprintIssue> issues = new ArrayList<SprintIssue>();
+        issues.add(sprintIssue("TEST-2"));
+        issues.add(sprintIssue("TEST-1"));
+        issues.add(sprintIssue("TEST-3"));
+
+        List<Issue> result = GreenHopperIssue.getJiraIssues(restclient, issues, null);
+
+        assertEquals(3, result.size());
+        assertEquals("OTHER-2", result.get(0).getKey());
+        assertEquals("Two", result.get(0).getSummary());
+        assertEquals("One", result.get(1).getSummary());
+        assertNull(result.get(2));
+    }
+}
@@ -0,0 +1,145 @@
+package net.rcarz.jiraclient.greenhopper;
+
+import net.rcarz.jiraclient.RestClient;
+import net.rcarz.jiraclient.Utils;
+import net.sf.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.net.URI;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ScopeChangeBurndownTest {
+
+    private static final long D0 = 1400000000000L;
+    private static final long DAY = ScopeChangeBurndown.DAY;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private RestClient restclient;
+    private RapidView rv;
+    private Sprint sprint;
+
+    private static String at(long time, String changes) {
+        return "\"" + time + "\":[" + changes + "]";
+    }
+
+    private String chart(long completeTime) {
+        return "{" +
+            "\"startTime\":" + D0 + ",\"endTime\":" + (D0 + 5 * DAY) + "," +
+            "\"completeTime\":" + completeTime + ",\"now\":" + (D0 + 6 * DAY) + "," +
+            "\"changes\":{" +
+            at(D0 + 3 * DAY + 1000, "{\"key\":\"TEST-3\",\"added\":false}") + "," +
+            at(D0 - 1000,
+                "{\"key\":\"TEST-1\",\"statC\":{\"newValue\":5.0},\"added\":true}," +
+                "{\"key\":\"TEST-2\",\"statC\":{\"newValue\":3},\"added\":true}") + "," +
+            at(D0 + DAY + 1000, "{\"key\":\"TEST-1\",\"column\":{\"notDone\":false,\"newStatus\":\"6\"}}") + "," +
+            at(D0 + 2 * DAY + 1000, "{\"key\":\"TEST-3\",\"added\":true,\"statC\":{\"newValue\":2.0}}") + "," +
+            at(D0 + 2 * DAY + 2000, "{\"key\":\"TEST-2\",\"statC\":{\"oldValue\":3.0,\"newValue\":1.0}}") + "," +
+            at(D0 + 3 * DAY + 2000, "{\"key\":\"TEST-2\",\"column\":{\"notDone\":false,\"newStatus\":\"6\"}}") +
+            "}}";
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        restclient = Utils.getTestRestClient();
+
+        JSONObject json = new JSONObject();
+        json.put("id", 7);
+        json.put("name", "Board");
+        rv = new RapidView(restclient, json);
+
+        JSONObject s = new JSONObject();
+        s.put("id", 3);
+        s.put("name", "Sprint 3");
+        sprint = new Sprint(restclient, s);
+    }
+
+    private void serve(long completeTime) throws Exception {
+        doReturn(JSONObject.fromObject(chart(completeTime))).when(restclient).get(
+            Utils.withPath(GreenHopperResource.RESOURCE_URI + "rapid/charts/scopechangeburndownchart"));
+    }
+
+    @Test
+    public void testEventsAreDecodedInTimeOrder() throws Exception {
+        serve(D0 + 4 * DAY + 3600000);
+
+        ScopeChangeBurndown chart = rv.getScopeChangeBurndown(sprint);
+
+        ArgumentCaptor<URI> uris = ArgumentCaptor.forClass(URI.class);
+        verify(restclient, times(1)).get(uris.capture());
+        assertEquals("3", Utils.getQueryParams(uris.getValue()).get("sprintId"));
+        assertEquals("7", Utils.getQueryParams(uris.getValue()).get("rapidViewId"));
+        assertEquals(7, chart.size());
+        assertEquals(D0 - 1000, chart.getTime(0));
+        assertEquals("TEST-1", chart.getIssueKey(0));
+        assertEquals(5.0, chart.getScopeDelta(0), 0);
+        assertEquals("TEST-2", chart.getIssueKey(4));
+        assertEquals(-2.0, chart.getScopeDelta(4), 0);
+        assertEquals(0.0, chart.getCompletedDelta(4), 0);
+        assertTrue(chart.isCompleted());
+    }
+
+    @Test
+    public void testBurndownAndBurnup() throws Exception {
+        serve(D0 + 4 * DAY + 3600000);
+
+        ScopeChangeBurndown chart = rv.getScopeChangeBurndown(sprint);
+
+        assertArrayEquals(new double[] {8, 8, 3, 3, 0}, chart.getDailyBurndown(), 0);
+        assertArrayEquals(new double[] {0, 0, 5, 5, 6}, chart.getDailyBurnup(), 0);
+        assertArrayEquals(new double[] {8, 8, 8, 8, 6}, chart.getScope(D0, D0 + 4 * DAY, DAY), 0);
+        assertEquals(10.0, chart.getScope(D0 + 2 * DAY + 1500), 0);
+        assertEquals(5.0, chart.getRemaining(D0 + 2 * DAY + 1500), 0);
+        assertEquals(0.0, chart.getRemaining(D0 - 2000), 0);
+    }
+
+    @Test
+    public void testRunningSprintEndsAtPlannedEnd() throws Exception {
+        serve(0);
+
+        ScopeChangeBurndown chart = rv.getScopeChangeBurndown(sprint);
+
+        assertFalse(chart.isCompleted());
+        assertEquals(D0 + 5 * DAY, chart.getLastTime());
+        assertEquals(6, chart.getDailyBurndown().length);
+    }
+
+    @Test
+    public void testCompletedSprintsAreCached() throws Exception {
+        serve(D0 + 4 * DAY);
+
+        rv.getScopeChangeBurndown(sprint, new BurndownCache(tmp.getRoot()));
+
+        BurndownCache reopened = new BurndownCache(tmp.getRoot());
+        ScopeChangeBurndown chart = rv.getScopeChangeBurndown(sprint, reopened);
+
+        verify(restclient, times(1)).get(any(URI.class));
+        assertEquals(1, reopened.getHits());
+        assertEquals(7, chart.size());
+    }
+
+    @Test
+    public void testRunningSprintsExpire() throws Exception {
+        serve(0);
+
+        BurndownCache cache = new BurndownCache(tmp.getRoot(), 0);
+        rv.getScopeChangeBurndown(sprint, cache);
+        rv.getScopeChangeBurndown(sprint, cache);
+
+        verify(restclient, times(2)).get(any(URI.class));
+        assertEquals(0, tmp.getRoot().list().length);
+    }
+}
@@ -0,0 +1,142 @@
+package net.rcarz.jiraclient.greenhopper;
+
+import net.rcarz.jiraclient.RestClient;
+import net.rcarz.jiraclient.Utils;
+import net.sf.json.JSON;
+import net.sf.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+public class SprintReportCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * Serves sprint reports, sprints 1 to 5 being closed.
+     */
+    private final Answer<JSON> reports = new Answer<JSON>() {
+        public JSON answer(InvocationOnMock invocation) throws Throwable {
+            Map<String, String> params = Utils.getQueryParams((URI)invocation.getArguments()[0]);
+            int sprintId = Integer.parseInt(params.get("sprintId"));
+
+            synchronized (fetched) {
+                fetched.add(params.get("rapidViewId") + "-" + sprintId);
+            }
+
+            JSONObject sprint = new JSONObject();
+            sprint.put("id", sprintId);
+            sprint.put("name", "Sprint " + sprintId);
+            sprint.put("state", sprintId <= 5 ? "CLOSED" : "ACTIVE");
+
+            JSONObject contents = new JSONObject();
+            contents.put("sprint", sprint);
+            contents.put("issueKeysAddedDuringSprint", new String[] {"TEST-" + sprintId});
+
+            JSONObject result = new JSONObject();
+            result.put("contents", contents);
+            return result;
+        }
+    };
+
+    private final List<String> fetched = new ArrayList<String>();
+    private RestClient restclient;
+    private Utils.Overlap overlap;
+    private RapidView rv;
+    private List<Sprint> sprints;
+
+    @Before
+    public void setUp() throws Exception {
+        overlap = new Utils.Overlap(reports, 20);
+        restclient = Utils.getTestRestClient();
+        doAnswer(overlap).when(restclient).get(any(URI.class));
+
+        JSONObject json = new JSONObject();
+        json.put("id", 7);
+        json.put("name", "Board");
+        rv = new RapidView(restclient, json);
+
+        sprints = new ArrayList<Sprint>();
+
+        for (int i = 1; i <= 8; i++) {
+            JSONObject s = new JSONObject();
+            s.put("id", i);
+            s.put("name", "Sprint " + i);
+            sprints.add(new Sprint(restclient, s));
+        }
+    }
+
+    @Test
+    public void testClosedReportsArePermanent() throws Exception {
+        SprintReportCache cache = new SprintReportCache(tmp.getRoot(), 60000);
+
+        List<SprintReport> reports = rv.getSprintReports(sprints, cache);
+
+        assertEquals(8, reports.size());
+        for (int i = 0; i < 8; i++)
+            assertEquals("TEST-" + (i + 1), reports.get(i).getIssueKeysAddedDuringSprint().get(0));
+
+        assertEquals(8, fetched.size());
+        assertTrue(overlap.getMax() > 1);
+
+        rv.getSprintReports(sprints, cache);
+        assertEquals(8, fetched.size());
+        assertEquals(8, cache.getHits());
+
+        /* a new cache on the same directory still has the closed sprints */
+        SprintReportCache reopened = new SprintReportCache(tmp.getRoot(), 60000);
+        rv.getSprintReports(sprints, reopened);
+
+        assertEquals(11, fetched.size());
+        assertEquals(5, reopened.getHits());
+        assertTrue(reports.get(0).getSprint().isClosed());
+    }
+
+    @Test
+    public void testActiveReportsExpire() throws Exception {
+        SprintReportCache cache = new SprintReportCache(tmp.getRoot(), 0);
+
+        rv.getSprintReport(sprints.get(0), cache);
+        rv.getSprintReport(sprints.get(6), cache);
+        rv.getSprintReport(sprints.get(0), cache);
+        rv.getSprintReport(sprints.get(6), cache);
+
+        assertEquals("[7-1, 7-7, 7-7]", fetched.toString());
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testInvalidateDropsClosedReport() throws Exception {
+        SprintReportCache cache = new SprintReportCache(tmp.getRoot());
+
+        rv.getSprintReport(sprints.get(0), cache);
+        cache.invalidate(rv, sprints.get(0));
+        rv.getSprintReport(sprints.get(0), cache);
+
+        assertEquals(2, fetched.size());
+    }
+
+    @Test
+    public void testUncachedBulkFetch() throws Exception {
+        List<SprintReport> reports = rv.getSprintReports(sprints.subList(0, 3));
+
+        assertEquals(3, reports.size());
+        assertEquals("Sprint 3", reports.get(2).getSprint().getName());
+        assertEquals(3, fetched.size());
+    }
+}
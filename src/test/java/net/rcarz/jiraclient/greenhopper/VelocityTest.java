@@ -0,0 +1,78 @@
+package net.rcarz.jiraclient.greenhopper;
+
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.RestClient;
+import net.rcarz.jiraclient.Utils;
+import net.sf.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.net.URI;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class VelocityTest {
+
+    private RestClient restclient;
+    private RapidView rv;
+
+    @Before
+    public void setUp() throws Exception {
+        restclient = Utils.getTestRestClient();
+
+        JSONObject json = new JSONObject();
+        json.put("id", 7);
+        json.put("name", "Board");
+        rv = new RapidView(restclient, json);
+    }
+
+    private void serve(String json) throws Exception {
+        doReturn(JSONObject.fromObject(json)).when(restclient).get(
+            Utils.withPath(GreenHopperResource.RESOURCE_URI + "rapid/charts/velocity"));
+    }
+
+    @Test
+    public void testVelocityInOneRequest() throws Exception {
+        serve("{" +
+            "\"sprints\":[" +
+            "{\"id\":3,\"name\":\"Sprint 3\",\"state\":\"ACTIVE\"}," +
+            "{\"id\":2,\"name\":\"Sprint 2\",\"state\":\"CLOSED\"}," +
+            "{\"id\":1,\"name\":\"Sprint 1\",\"state\":\"CLOSED\"}]," +
+            "\"velocityStatEntries\":{" +
+            "\"3\":{\"estimated\":{\"value\":13.0,\"text\":\"13.0\"},\"completed\":{\"value\":2.0,\"text\":\"2.0\"}}," +
+            "\"2\":{\"estimated\":{\"value\":10.0,\"text\":\"10.0\"},\"completed\":{\"value\":8.0,\"text\":\"8.0\"}}," +
+            "\"1\":{\"estimated\":{\"value\":12.0,\"text\":\"12.0\"},\"completed\":{\"value\":12.0,\"text\":\"12.0\"}}}}");
+
+        Velocity velocity = rv.getVelocity();
+
+        ArgumentCaptor<URI> uris = ArgumentCaptor.forClass(URI.class);
+        verify(restclient, times(1)).get(uris.capture());
+        assertEquals("rapidViewId=7", uris.getValue().getQuery());
+        assertEquals(3, velocity.getEntries().size());
+        assertEquals("Sprint 3", velocity.getEntries().get(0).getSprint().getName());
+        assertEquals(Double.valueOf(10.0), velocity.getEntry(2).getEstimated().getValue());
+        assertEquals("8.0", velocity.getEntry(2).getCompleted().getText());
+        assertTrue(velocity.getEntry(1).getSprint().isClosed());
+        assertNull(velocity.getEntry(4));
+        assertEquals(10.0, velocity.getAverageCompleted(), 0.0001);
+    }
+
+    @Test
+    public void testMalformedVelocity() throws Exception {
+        serve("{\"sprints\":[]}");
+
+        try {
+            rv.getVelocity();
+            fail("expected JiraException");
+        } catch (JiraException ex) {
+            assertEquals("Velocity content is malformed", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package net.rcarz.jiraclient.mirror;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BitmapTest {
+
+    private static Bitmap range(int from, int to, int step) {
+        Bitmap bm = new Bitmap();
+
+        for (int i = from; i < to; i += step)
+            bm.add(i);
+
+        return bm;
+    }
+
+    @Test
+    public void testSparseOperations() {
+        Bitmap a = range(0, 10, 1);
+        Bitmap b = range(5, 200000, 5);
+
+        assertArrayEquals(new int[] {5}, a.and(b).toArray());
+        assertEquals(9, a.andNot(b).cardinality());
+        assertEquals(10 + 39999 - 1, a.or(b).cardinality());
+        assertTrue(a.or(b).contains(199995));
+        assertFalse(a.or(b).contains(199996));
+    }
+
+    @Test
+    public void testDenseChunksConvertBothWays() {
+        Bitmap even = range(0, 20000, 2);
+        Bitmap third = range(0, 20000, 3);
+
+        assertEquals(10000, even.cardinality());
+        assertEquals(3334, even.and(third).cardinality());
+        assertEquals(10000 + 6667 - 3334, even.or(third).cardinality());
+        assertEquals(10000 - 3334, even.andNot(third).cardinality());
+
+        for (int i = 0; i < 20000; i += 4)
+            assertTrue(even.remove(i));
+
+        assertEquals(5000, even.cardinality());
+        assertFalse(even.contains(4));
+        assertTrue(even.contains(6));
+        assertEquals(2, even.toArray()[0]);
+    }
+
+    @Test
+    public void testResultsAreIndependentOfInputs() {
+        Bitmap a = range(0, 5, 1);
+        Bitmap copy = a.or(new Bitmap());
+
+        a.remove(3);
+        assertTrue(copy.contains(3));
+        assertTrue(a.andNot(a).isEmpty());
+    }
+}
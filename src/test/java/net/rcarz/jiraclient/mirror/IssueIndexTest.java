@@ -0,0 +1,103 @@
+package net.rcarz.jiraclient.mirror;
+
+import net.rcarz.jiraclient.Field;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IssueIndexTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static Set<String> keys(String... keys) {
+        return new HashSet<String>(Arrays.asList(keys));
+    }
+
+    private static JSONObject named(String id, String name) {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("name", name);
+        return json;
+    }
+
+    private static JSONObject issue(String key, String status, String assignee, String sprint, String... labels) {
+        JSONObject fields = new JSONObject();
+        fields.put(Field.STATUS, named(status.equals("Open") ? "1" : "6", status));
+        fields.put(Field.LABELS, JSONArray.fromObject(labels));
+
+        if (assignee != null)
+            fields.put(Field.ASSIGNEE, named(null, assignee));
+
+        if (sprint != null) {
+            JSONArray sprints = new JSONArray();
+            sprints.add("com.atlassian.greenhopper.service.sprint.Sprint@1f2e[id=12,rapidViewId=3," +
+                "state=ACTIVE,name=" + sprint + ",startDate=2016-01-01T10:00:00.000Z]");
+            fields.put("customfield_10007", sprints);
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("id", "1" + key.substring(key.indexOf('-') + 1));
+        json.put("key", key);
+        json.put("fields", fields);
+        return json;
+    }
+
+    @Test
+    public void testBooleanCombinationsAndCounts() throws Exception {
+        IssueMirror mirror = new IssueMirror(tmp.getRoot());
+        mirror.put(issue("TEST-1", "Open", "alice", "Sprint 1", "ui"));
+        mirror.put(issue("TEST-2", "Open", "bob", null, "ui", "backend"));
+        mirror.put(issue("TEST-3", "Closed", "alice", "Sprint 1"));
+        mirror.put(issue("TEST-4", "Open", null, null));
+
+        IssueIndex idx = mirror.getIndex();
+        assertEquals(3, idx.count(Field.STATUS, "open"));
+        assertEquals(3, idx.count(Field.STATUS, "1"));
+        assertEquals(2, idx.count(IssueIndex.SPRINT, "12"));
+        assertEquals("customfield_10007", idx.getSprintField());
+
+        Bitmap openUi = idx.get(Field.STATUS, "Open").and(idx.get(Field.LABELS, "UI"));
+        assertEquals(keys("TEST-1", "TEST-2"), new HashSet<String>(idx.keys(openUi)));
+
+        Bitmap notAlice = idx.all().andNot(idx.get(Field.ASSIGNEE, "alice"));
+        assertEquals(keys("TEST-2", "TEST-4"), new HashSet<String>(idx.keys(notAlice)));
+
+        Bitmap either = idx.any(Field.ASSIGNEE, Arrays.asList("bob", IssueIndex.EMPTY))
+            .or(idx.get(IssueIndex.SPRINT, "sprint 1"));
+        assertEquals(4, either.cardinality());
+        mirror.close();
+    }
+
+    @Test
+    public void testIndexFollowsMirrorUpdates() throws Exception {
+        IssueMirror mirror = new IssueMirror(tmp.getRoot());
+        mirror.put(issue("TEST-1", "Open", "alice", null));
+        mirror.put(issue("TEST-2", "Open", "bob", null));
+
+        IssueIndex idx = mirror.getIndex();
+        mirror.put(issue("TEST-1", "Closed", "alice", null));
+        assertEquals(1, idx.count(Field.STATUS, "open"));
+        assertEquals(1, idx.count(Field.STATUS, "closed"));
+
+        int ordinal = idx.getOrdinal("TEST-2");
+        assertTrue(mirror.remove("TEST-2"));
+        assertEquals(0, idx.count(Field.STATUS, "open"));
+        assertEquals(-1, idx.getOrdinal("TEST-2"));
+
+        mirror.put(issue("TEST-3", "Open", "carol", null));
+        assertEquals(ordinal, idx.getOrdinal("TEST-3"));
+        assertEquals(keys("TEST-1", "TEST-3"), new HashSet<String>(idx.keys(idx.all())));
+        assertEquals(2, idx.size());
+        mirror.close();
+    }
+}
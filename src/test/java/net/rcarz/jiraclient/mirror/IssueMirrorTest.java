@@ -0,0 +1,184 @@
+package net.rcarz.jiraclient.mirror;
+
+import net.rcarz.jiraclient.Field;
+import net.rcarz.jiraclient.Issue;
+import net.rcarz.jiraclient.Resource;
+import net.rcarz.jiraclient.RestClient;
+import net.rcarz.jiraclient.Utils;
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.URI;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+
+public class IssueMirrorTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static JSONObject issue(String key, String summary) {
+        JSONObject json = Utils.getTestIssue();
+        json.put("key", key);
+        json.getJSONObject("fields").put("summary", summary);
+        return json;
+    }
+
+    /**
+     * Creates a client whose searches find the issues, in pages of the
+     * given size.
+     */
+    private static RestClient searching(final int pageSize, final JSONObject... issues) throws Exception {
+        RestClient restclient = Utils.getTestRestClient();
+
+        doAnswer(new Answer<JSON>() {
+            public JSON answer(InvocationOnMock invocation) throws Throwable {
+                String startAt = Utils.getQueryParams((URI)invocation.getArguments()[0]).get("startAt");
+                int start = startAt != null ? Integer.parseInt(startAt) : 0;
+                JSONArray page = new JSONArray();
+
+                for (int i = start; i < issues.length && page.size() < pageSize; i++)
+                    page.add(issues[i]);
+
+                JSONObject result = new JSONObject();
+                result.put("startAt", start);
+                result.put("maxResults", pageSize);
+                result.put("total", issues.length);
+                result.put("issues", page);
+                return result;
+            }
+        }).when(restclient).get(Utils.withPath(Resource.getBaseUri() + "search"));
+
+        return restclient;
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        IssueMirror mirror = new IssueMirror(tmp.getRoot());
+        mirror.put(issue("FILTA-43", "first"));
+
+        Issue issue = mirror.getIssue("FILTA-43", null);
+        assertNotNull(issue);
+        assertEquals("first", issue.getSummary());
+        assertEquals("Major", issue.getPriority().getName());
+        assertNull(mirror.getIssue("FILTA-44", null));
+        mirror.close();
+    }
+
+    @Test
+    public void testLatestVersionWinsAfterReopen() throws Exception {
+        IssueMirror mirror = new IssueMirror(tmp.getRoot());
+        mirror.put(issue("FILTA-1", "old"));
+        mirror.put(issue("FILTA-2", "gone"));
+        mirror.put(issue("FILTA-1", "new"));
+        assertTrue(mirror.remove("FILTA-2"));
+        assertFalse(mirror.remove("FILTA-2"));
+        mirror.close();
+
+        mirror = new IssueMirror(tmp.getRoot());
+        assertEquals(1, mirror.size());
+        assertEquals("new", mirror.getIssue("FILTA-1", null).getSummary());
+        assertNull(mirror.getJson("FILTA-2"));
+        assertTrue(mirror.getGarbageBytes() > 0);
+        mirror.close();
+    }
+
+    @Test
+    public void testSegmentsRollAndCompact() throws Exception {
+        IssueMirror mirror = new IssueMirror(tmp.getRoot(), 16 * 1024);
+
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 10; i++)
+                mirror.put(issue("FILTA-" + i, "round " + round));
+        }
+
+        assertTrue(mirror.getSegmentCount() > 1);
+        assertTrue(mirror.compactIfNeeded());
+        assertEquals(0, mirror.getGarbageBytes());
+        assertEquals(10, mirror.size());
+        mirror.close();
+
+        mirror = new IssueMirror(tmp.getRoot(), 16 * 1024);
+        assertEquals(10, mirror.size());
+        assertEquals("round 4", mirror.getIssue("FILTA-7", null).getSummary());
+        assertFalse(mirror.compactIfNeeded());
+        mirror.close();
+    }
+
+    @Test
+    public void testTornWriteIsDiscarded() throws Exception {
+        IssueMirror mirror = new IssueMirror(tmp.getRoot());
+        mirror.put(issue("FILTA-1", "kept"));
+        mirror.put(issue("FILTA-2", "torn"));
+        mirror.close();
+
+        File seg = new File(tmp.getRoot(), "0000000000.log");
+        RandomAccessFile raf = new RandomAccessFile(seg, "rw");
+        raf.setLength(raf.length() - 10);
+        raf.close();
+
+        mirror = new IssueMirror(tmp.getRoot());
+        assertEquals(1, mirror.size());
+        assertEquals("kept", mirror.getIssue("FILTA-1", null).getSummary());
+
+        mirror.put(issue("FILTA-3", "after"));
+        assertEquals("after", mirror.getIssue("FILTA-3", null).getSummary());
+        mirror.close();
+    }
+
+    @Test
+    public void testFreshnessAndSearchIngest() throws Exception {
+        RestClient restclient = searching(1,
+            Utils.getTestIssue("TEST-1", "2016-01-01T10:00:00.000+0000", "one"),
+            Utils.getTestIssue("TEST-2", "2016-01-01T10:05:00.000+0000", "two"));
+
+        IssueMirror mirror = new IssueMirror(tmp.getRoot());
+        int stored = mirror.ingest(Issue.search(restclient, "project = TEST", null, null, 1, null));
+
+        assertEquals(2, stored);
+        assertTrue(mirror.isFresh("TEST-2", 60000));
+        assertNotNull(mirror.getFreshIssue("TEST-1", 60000, restclient));
+        assertNull(mirror.getFreshIssue("TEST-1", -1, restclient));
+        mirror.close();
+    }
+
+    @Test
+    public void testOnlyCompleteIssuesAreServed() throws Exception {
+        RestClient restclient = searching(50,
+            Utils.getTestIssue("TEST-1", "2016-01-01T10:00:00.000+0000", "one"),
+            Utils.getTestIssue("TEST-2", "2016-01-01T10:05:00.000+0000", "two"));
+
+        IssueMirror mirror = new IssueMirror(tmp.getRoot());
+        mirror.ingest(Issue.search(restclient, "project = TEST", null, null, null, null));
+        mirror.putComplete(Field.getResource(Issue.class, issue("TEST-2", "full"), restclient));
+
+        assertNull(mirror.getCompleteIssue("TEST-1", 60000, restclient));
+        assertEquals("full", mirror.getCompleteIssue("TEST-2", 60000, restclient).getSummary());
+        assertNull(mirror.getCompleteIssue("TEST-2", -1, restclient));
+
+        mirror.compact();
+        mirror.close();
+
+        mirror = new IssueMirror(tmp.getRoot());
+        assertNull(mirror.getCompleteIssue("TEST-1", 60000, restclient));
+        assertNotNull(mirror.getCompleteIssue("TEST-2", 60000, restclient));
+
+        /* a later partial copy replaces the complete one */
+        mirror.put(issue("TEST-2", "partial"));
+        assertNull(mirror.getCompleteIssue("TEST-2", 60000, restclient));
+        mirror.close();
+    }
+}
@@ -0,0 +1,149 @@
+package net.rcarz.jiraclient.mirror;
+
+import net.rcarz.jiraclient.Field;
+import net.rcarz.jiraclient.Issue;
+import net.rcarz.jiraclient.Resource;
+import net.rcarz.jiraclient.RestClient;
+import net.rcarz.jiraclient.Utils;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class LocalSearchTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private RestClient restclient;
+    private final JSONArray issues = new JSONArray();
+    private IssueMirror mirror;
+    private LocalSearch search;
+
+    private static JSONObject named(String name) {
+        JSONObject json = new JSONObject();
+        json.put("name", name);
+        return json;
+    }
+
+    private void put(String key, String status, String assignee, String updated) throws Exception {
+        JSONObject json = Utils.getTestIssue(key, updated, key.toLowerCase());
+        JSONObject fields = json.getJSONObject("fields");
+        JSONObject project = named("Test");
+        project.put("key", "TEST");
+        fields.put(Field.PROJECT, project);
+        fields.put(Field.STATUS, named(status));
+
+        if (assignee != null)
+            fields.put(Field.ASSIGNEE, named(assignee));
+
+        mirror.put(json);
+        issues.add(json);
+    }
+
+    private static List<String> keys(List<Issue> issues) {
+        List<String> result = new ArrayList<String>();
+
+        for (Issue issue : issues)
+            result.add(issue.getKey());
+
+        return result;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        restclient = Utils.getTestRestClient();
+        mirror = new IssueMirror(tmp.getRoot());
+        search = new LocalSearch(mirror, restclient);
+
+        put("TEST-1", "Open", "alice", "2016-01-01T10:00:00.000+0000");
+        put("TEST-2", "In Progress", "alice", "2016-01-03T10:00:00.000+0000");
+        put("TEST-10", "Open", "alice", "2016-01-02T10:00:00.000+0000");
+        put("TEST-3", "Closed", "alice", "2016-01-04T10:00:00.000+0000");
+        put("TEST-4", "Open", "bob", "2016-01-05T10:00:00.000+0000");
+        put("TEST-5", "Open", null, "2016-01-06T10:00:00.000+0000");
+
+        JSONObject result = new JSONObject();
+        result.put("startAt", 0);
+        result.put("maxResults", 50);
+        result.put("total", issues.size());
+        result.put("issues", issues);
+        doReturn(result).when(restclient).get(Utils.withPath(Resource.getBaseUri() + "search"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mirror.close();
+    }
+
+    @Test
+    public void testCommonQueryIsAnsweredLocally() throws Exception {
+        LocalSearch.Result result = search.search(
+            "project = TEST AND status in (Open, \"In Progress\") AND assignee = alice ORDER BY updated");
+
+        assertTrue(result.plan.toString(), result.plan.isLocal());
+        assertEquals(3, result.total);
+        assertEquals("[TEST-2, TEST-10, TEST-1]", keys(result.issues).toString());
+        verify(restclient, never()).get(any(URI.class));
+    }
+
+    @Test
+    public void testKeyOrderPagingAndNegation() throws Exception {
+        LocalSearch.Result result = search.search("assignee != bob ORDER BY key ASC", 2, 1);
+
+        assertEquals(4, result.total);
+        assertEquals("[TEST-2, TEST-3]", keys(result.issues).toString());
+
+        Iterator<Issue> iter = result.iterator();
+        List<String> rest = new ArrayList<String>();
+
+        while (iter.hasNext())
+            rest.add(iter.next().getKey());
+
+        assertEquals("[TEST-2, TEST-3, TEST-10]", rest.toString());
+
+        result = search.search("assignee is EMPTY OR status = closed ORDER BY key DESC");
+        assertEquals("[TEST-5, TEST-3]", keys(result.issues).toString());
+    }
+
+    @Test
+    public void testTextQueriesUseTheTextIndex() throws Exception {
+        LocalSearch.Result result = search.search("text ~ \"test 10\" AND status = open ORDER BY key");
+
+        assertTrue(result.plan.toString(), result.plan.isLocal());
+        assertEquals("[TEST-10]", keys(result.issues).toString());
+        assertFalse(search.explain("text ~ \"test*\" ORDER BY key").isLocal());
+    }
+
+    @Test
+    public void testUnsupportedQueriesFallBackToServer() throws Exception {
+        LocalSearch.Result result = search.search("summary ~ test-1 ORDER BY key");
+
+        assertFalse(result.plan.isLocal());
+        assertTrue(result.plan.getDetail(), result.plan.getDetail().contains("summary"));
+        assertEquals(6, result.total);
+        verify(restclient, times(1)).get(any(URI.class));
+
+        assertFalse(search.explain("project = TEST").isLocal());
+        assertFalse(search.explain("key in (TEST-1, TEST-99) ORDER BY key").isLocal());
+        assertFalse(search.explain("assignee = currentUser() ORDER BY key").isLocal());
+        assertTrue(search.explain("key in (TEST-1, test-2) ORDER BY key").isLocal());
+    }
+}
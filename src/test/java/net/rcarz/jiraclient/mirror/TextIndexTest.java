@@ -0,0 +1,96 @@
+package net.rcarz.jiraclient.mirror;
+
+import net.rcarz.jiraclient.Field;
+import net.rcarz.jiraclient.Issue;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TextIndexTest {
+
+    private static Issue issue(String key, String summary, String description, String... comments) {
+        JSONObject fields = new JSONObject();
+        fields.put(Field.SUMMARY, summary);
+        fields.put(Field.DESCRIPTION, description);
+
+        JSONArray list = new JSONArray();
+        for (int i = 0; i < comments.length; i++) {
+            JSONObject c = new JSONObject();
+            c.put("id", Integer.toString(i));
+            c.put("body", comments[i]);
+            list.add(c);
+        }
+
+        JSONObject comment = new JSONObject();
+        comment.put("comments", list);
+        fields.put(Field.COMMENT, comment);
+
+        JSONObject json = new JSONObject();
+        json.put("key", key);
+        json.put("fields", fields);
+        return Field.getResource(Issue.class, json, null);
+    }
+
+    private static List<String> keys(List<TextIndex.Hit> hits) {
+        List<String> result = new ArrayList<String>();
+
+        for (TextIndex.Hit hit : hits)
+            result.add(hit.getKey());
+
+        return result;
+    }
+
+    @Test
+    public void testAllWordsMustMatchAndRankWithBm25() {
+        TextIndex idx = new TextIndex();
+        idx.update(issue("TEST-1", "Login page crashes", "Stack trace attached"));
+        idx.update(issue("TEST-2", "Crash on export", "The export crashes; crashes again on retry"));
+        idx.update(issue("TEST-3", "Slow dashboard", null, "Page crashes after the upgrade"));
+
+        assertEquals("[TEST-2, TEST-1, TEST-3]", keys(idx.search("crashes", 10)).toString());
+        assertEquals("[TEST-1, TEST-3]", keys(idx.search("PAGE crashes", 10)).toString());
+        assertEquals("[TEST-1]", keys(idx.search("page crashes", 1)).toString());
+        assertEquals(0, idx.count("crashes missing"));
+        assertEquals(0, idx.count("the of"));
+    }
+
+    @Test
+    public void testPhrasesUsePositions() {
+        TextIndex idx = new TextIndex();
+        idx.update(issue("TEST-1", "Out of memory in importer", null));
+        idx.update(issue("TEST-2", "Importer is out of disk, memory fine", null));
+        idx.update(issue("TEST-3", "Disk out", "memory"));
+
+        assertEquals("[TEST-1]", keys(idx.search("\"out of memory\"", 10)).toString());
+        assertEquals(2, idx.count("\"out of\" importer"));
+        assertEquals(0, idx.count("\"out memory\""));
+        assertEquals(0, idx.count("\"out memory\" disk"));
+    }
+
+    @Test
+    public void testUpdatesRemovalsAndPurge() {
+        TextIndex idx = new TextIndex();
+
+        for (int i = 0; i < 200; i++)
+            idx.update(issue("TEST-" + i, "round zero " + i, null));
+
+        for (int i = 0; i < 200; i++)
+            idx.update(issue("TEST-" + i, "round one " + i, null));
+
+        assertEquals(0, idx.count("zero"));
+        assertEquals(200, idx.count("round one"));
+        assertEquals("[TEST-42]", keys(idx.search("one 42", 10)).toString());
+
+        assertTrue(idx.remove("TEST-42"));
+        idx.purge();
+        assertEquals(199, idx.size());
+        assertEquals(0, idx.count("42"));
+        assertEquals("[TEST-7]", keys(idx.search("7 round", 10)).toString());
+    }
+}
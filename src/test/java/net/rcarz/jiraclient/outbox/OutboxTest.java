@@ -0,0 +1,249 @@
+package net.rcarz.jiraclient.outbox;
+
+import net.rcarz.jiraclient.Field;
+import net.rcarz.jiraclient.Resource;
+import net.rcarz.jiraclient.RestClient;
+import net.rcarz.jiraclient.RestException;
+import net.rcarz.jiraclient.Utils;
+import net.sf.json.JSON;
+import net.sf.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class OutboxTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private RestClient restclient;
+    private Writes writes;
+    private File file;
+
+    /**
+     * Records the writes to TEST-1 to TEST-3, failing the first ones with
+     * 503 when asked to and rejecting other issues with 404.
+     */
+    private static class Writes implements Answer<JSON> {
+        final List<String> paths = new ArrayList<String>();
+        final List<JSONObject> payloads = new ArrayList<JSONObject>();
+        final AtomicInteger failures = new AtomicInteger();
+
+        public JSON answer(InvocationOnMock invocation) throws Throwable {
+            String path = ((URI)invocation.getArguments()[0]).getPath();
+
+            if (failures.getAndDecrement() > 0)
+                throw new RestException("Service Unavailable", 503, "", null);
+
+            if (!path.matches(".*/issue/TEST-[1-3](/.*)?"))
+                throw new RestException("Not Found", 404, "", null);
+
+            synchronized (this) {
+                paths.add(path);
+                payloads.add((JSONObject)invocation.getArguments()[1]);
+            }
+
+            return new JSONObject();
+        }
+
+        synchronized List<String> commentsOn(String key) {
+            List<String> result = new ArrayList<String>();
+
+            for (int i = 0; i < paths.size(); i++) {
+                if (paths.get(i).endsWith("/issue/" + key + "/comment"))
+                    result.add(payloads.get(i).getString("body"));
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Holds every write until released.
+     */
+    private static class Gate implements Answer<JSON> {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final Answer<JSON> answer;
+
+        Gate(Answer<JSON> answer) {
+            this.answer = answer;
+        }
+
+        public JSON answer(InvocationOnMock invocation) throws Throwable {
+            entered.countDown();
+
+            try {
+                gate.await();
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+
+            return answer.answer(invocation);
+        }
+    }
+
+    private static RestClient writingTo(Answer<?> answer) throws Exception {
+        RestClient restclient = Utils.getTestRestClient();
+        doAnswer(answer).when(restclient).post(any(URI.class), any(JSON.class));
+        doAnswer(answer).when(restclient).put(any(URI.class), any(JSON.class));
+        return restclient;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        writes = new Writes();
+        restclient = writingTo(writes);
+        file = new File(tmp.getRoot(), "outbox.log");
+    }
+
+    @Test
+    public void testWritesAreSentInOrderPerIssue() throws Exception {
+        Utils.Overlap overlap = new Utils.Overlap(writes, 5);
+        Outbox outbox = new Outbox(writingTo(overlap), file, 3);
+
+        for (int n = 0; n < 5; n++) {
+            for (int i = 1; i <= 3; i++)
+                outbox.addComment("TEST-" + i, "comment " + n);
+        }
+
+        assertTrue(outbox.awaitEmpty(10000));
+        outbox.close();
+
+        assertEquals(15, outbox.getSent());
+        assertEquals(0, outbox.getDepth());
+        assertEquals(0, outbox.getLag());
+        assertTrue(overlap.getMax() <= 3);
+
+        for (int i = 1; i <= 3; i++) {
+            List<String> bodies = writes.commentsOn("TEST-" + i);
+            assertEquals(5, bodies.size());
+
+            for (int n = 0; n < 5; n++)
+                assertEquals("comment " + n, bodies.get(n));
+        }
+    }
+
+    @Test
+    public void testQueuedUpdatesAreCoalesced() throws Exception {
+        Gate gated = new Gate(writes);
+
+        Outbox outbox = new Outbox(writingTo(gated), file, 1);
+        outbox.addComment("TEST-1", "first");
+
+        /* wait for the comment to be in flight */
+        gated.entered.await();
+
+        outbox.update("TEST-1", Field.SUMMARY, "renamed");
+        outbox.update("TEST-1", Field.PRIORITY, Field.valueByName("Major"));
+        outbox.update("TEST-1", Field.SUMMARY, "renamed again");
+
+        assertEquals(2, outbox.getCoalesced());
+        assertEquals(2, outbox.getDepth());
+        assertTrue(outbox.getLag() >= 0);
+
+        gated.gate.countDown();
+        assertTrue(outbox.awaitEmpty(10000));
+        outbox.close();
+
+        assertEquals(2, writes.payloads.size());
+        JSONObject fields = writes.payloads.get(1).getJSONObject("fields");
+        assertEquals("renamed again", fields.getString(Field.SUMMARY));
+        assertEquals("Major", fields.getJSONObject(Field.PRIORITY).getString("name"));
+    }
+
+    @Test
+    public void testTransientFailuresAreRetried() throws Exception {
+        writes.failures.set(2);
+
+        Outbox outbox = new Outbox(restclient, file);
+        outbox.setRetryDelay(5);
+        outbox.addComment("TEST-1", "hello");
+        outbox.addComment("NOPE-1", "rejected");
+
+        assertTrue(outbox.awaitEmpty(10000));
+        outbox.close();
+
+        assertEquals(1, outbox.getSent());
+        assertEquals(1, outbox.getFailed().size());
+        assertEquals("NOPE-1", outbox.getFailed().get(0).getIssueKey());
+        assertEquals(2, outbox.getRetries());
+    }
+
+    @Test
+    public void testCoalescedUpdateKeepsAttempts() throws Exception {
+        writes.failures.set(100);
+
+        Outbox outbox = new Outbox(restclient, file, 1);
+        outbox.setMaxRetries(1);
+        outbox.setRetryDelay(200);
+        outbox.update("TEST-1", Field.SUMMARY, "renamed");
+
+        /* wait for the first attempt to fail */
+        for (int i = 0; i < 500 && outbox.getRetries() == 0; i++)
+            Thread.sleep(10);
+
+        outbox.update("TEST-1", Field.SUMMARY, "renamed again");
+
+        assertTrue(outbox.awaitEmpty(10000));
+        outbox.close();
+
+        assertEquals(1, outbox.getCoalesced());
+        assertEquals(1, outbox.getFailed().size());
+        assertEquals(2, outbox.getFailed().get(0).getAttempts());
+        verify(restclient, times(2)).put(any(URI.class), any(JSON.class));
+    }
+
+    @Test
+    public void testUnsentWritesSurviveRestart() throws Exception {
+        writes.failures.set(100);
+
+        Outbox outbox = new Outbox(restclient, file, 1);
+        outbox.setRetryDelay(60000);
+        outbox.addComment("TEST-1", "one");
+        outbox.addComment("TEST-1", "two");
+        outbox.update("TEST-2", Field.SUMMARY, "renamed");
+        outbox.close();
+
+        /* a torn record left by a crash */
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(raf.length());
+        raf.write(new byte[] {0, 0, 1, 0, 42});
+        raf.close();
+
+        Writes healthy = new Writes();
+        Outbox reopened = new Outbox(writingTo(healthy), file);
+        assertTrue(reopened.awaitEmpty(10000));
+        reopened.close();
+
+        assertEquals(3, reopened.getSent());
+        assertEquals("[one, two]", healthy.commentsOn("TEST-1").toString());
+
+        int update = healthy.paths.indexOf(Resource.getBaseUri() + "issue/TEST-2");
+        assertEquals("renamed", healthy.payloads.get(update).getJSONObject("fields").get(Field.SUMMARY));
+
+        /* everything was confirmed, nothing is sent a third time */
+        Outbox again = new Outbox(writingTo(healthy), file);
+        assertEquals(0, again.getDepth());
+        again.close();
+    }
+}
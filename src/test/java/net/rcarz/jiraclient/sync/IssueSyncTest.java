@@ -0,0 +1,196 @@
+package net.rcarz.jiraclient.sync;
+
+import net.rcarz.jiraclient.Field;
+import net.rcarz.jiraclient.Issue;
+import net.rcarz.jiraclient.JiraException;
+import net.rcarz.jiraclient.Resource;
+import net.rcarz.jiraclient.RestClient;
+import net.rcarz.jiraclient.Utils;
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.net.URI;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+
+public class IssueSyncTest {
+
+    private static final Pattern UPDATED_SINCE = Pattern.compile("updated >= \"([0-9/: ]+)\"");
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private RestClient restclient;
+    private File state;
+    private final Map<String, JSONObject> issues = new LinkedHashMap<String, JSONObject>();
+    private final List<String> received = new ArrayList<String>();
+
+    private final IssueSink sink = new IssueSink() {
+        public void accept(List<Issue> issues) {
+            for (Issue issue : issues)
+                received.add(issue.getKey());
+        }
+    };
+
+    private static Date updatedOf(JSONObject json) {
+        return Field.getDateTime(json.getJSONObject("fields").get(Field.UPDATED_DATE));
+    }
+
+    /**
+     * Answers a search for the issues updated since a time, in order of
+     * update and in pages of two.
+     */
+    private final Answer<JSON> search = new Answer<JSON>() {
+        public JSON answer(InvocationOnMock invocation) throws Throwable {
+            Map<String, String> params = Utils.getQueryParams((URI)invocation.getArguments()[0]);
+            List<JSONObject> matches = new ArrayList<JSONObject>(issues.values());
+            Matcher m = UPDATED_SINCE.matcher(params.get("jql"));
+
+            if (m.find()) {
+                SimpleDateFormat df = new SimpleDateFormat("yyyy/MM/dd HH:mm");
+                df.setTimeZone(TimeZone.getTimeZone("UTC"));
+                Date since = df.parse(m.group(1), new ParsePosition(0));
+
+                for (JSONObject json : issues.values()) {
+                    if (updatedOf(json).before(since))
+                        matches.remove(json);
+                }
+            }
+
+            Collections.sort(matches, new Comparator<JSONObject>() {
+                public int compare(JSONObject a, JSONObject b) {
+                    return updatedOf(a).compareTo(updatedOf(b));
+                }
+            });
+
+            int startAt = params.containsKey("startAt") ? Integer.parseInt(params.get("startAt")) : 0;
+            JSONArray page = new JSONArray();
+
+            for (int i = startAt; i < matches.size() && page.size() < 2; i++)
+                page.add(matches.get(i));
+
+            JSONObject result = new JSONObject();
+            result.put("startAt", startAt);
+            result.put("maxResults", 2);
+            result.put("total", matches.size());
+            result.put("issues", page);
+            return result;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        put("TEST-1", "2016-01-01T10:00:00.000+0000", "one");
+        put("TEST-2", "2016-01-01T10:05:00.000+0000", "two");
+        put("TEST-3", "2016-01-01T10:10:00.000+0000", "three");
+        state = new File(tmp.getRoot(), "sync.properties");
+        stubSearch();
+    }
+
+    private void put(String key, String updated, String summary) {
+        issues.put(key, Utils.getTestIssue(key, updated, summary));
+    }
+
+    private void stubSearch() throws Exception {
+        restclient = restclient == null ? Utils.getTestRestClient() : restclient;
+        doAnswer(search).when(restclient).get(Utils.withPath(Resource.getBaseUri() + "search"));
+    }
+
+    private IssueSync newSync() throws JiraException {
+        IssueSync sync = new IssueSync(restclient, "project = TEST", Watermark.load(state), sink);
+        sync.setTimeZone(TimeZone.getTimeZone("UTC"));
+        sync.setPageSize(2);
+        return sync;
+    }
+
+    @Test
+    public void testFirstRunDeliversEverythingAndPersistsWatermark() throws Exception {
+        assertEquals(3, newSync().run());
+        assertEquals("[TEST-1, TEST-2, TEST-3]", received.toString());
+        assertTrue(state.exists());
+
+        Watermark wm = Watermark.load(state);
+        assertEquals(1451643000000L, wm.getUpdated());
+        assertFalse(wm.isNew("TEST-3", wm.getUpdated()));
+    }
+
+    @Test
+    public void testSecondRunSkipsIssuesInOverlapWindow() throws Exception {
+        newSync().run();
+        received.clear();
+        reset(restclient);
+        stubSearch();
+
+        assertEquals(0, newSync().run());
+        assertTrue(received.isEmpty());
+
+        ArgumentCaptor<URI> uris = ArgumentCaptor.forClass(URI.class);
+        verify(restclient, atLeast(1)).get(uris.capture());
+        String jql = Utils.getQueryParams(uris.getAllValues().get(0)).get("jql");
+        assertTrue(jql, jql.contains("updated >= \"2016/01/01 10:05\""));
+    }
+
+    @Test
+    public void testOnlyChangedIssuesAreDelivered() throws Exception {
+        newSync().run();
+        received.clear();
+
+        put("TEST-1", "2016-01-01T11:00:00.000+0000", "one again");
+        put("TEST-4", "2016-01-01T11:30:00.000+0000", "four");
+
+        assertEquals(2, newSync().run());
+        assertEquals("[TEST-1, TEST-4]", received.toString());
+    }
+
+    @Test
+    public void testFailingSinkDoesNotAdvanceWatermark() throws Exception {
+        IssueSync sync = new IssueSync(restclient, "", Watermark.load(state), new IssueSink() {
+            public void accept(List<Issue> issues) throws JiraException {
+                throw new JiraException("sink is down");
+            }
+        });
+
+        try {
+            sync.run();
+            fail("sink failure should propagate");
+        } catch (JiraException ex) {
+            /* expected */
+        }
+
+        assertEquals(0, Watermark.load(state).getUpdated());
+        assertEquals(3, newSync().run());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOrderByIsRejected() throws Exception {
+        new IssueSync(restclient, "project = TEST ORDER BY key", Watermark.load(state), sink);
+    }
+}